@@ -27,11 +27,16 @@ import com.actiontech.dble.meta.ProxyMetaManager;
 import com.actiontech.dble.net.*;
 import com.actiontech.dble.net.handler.*;
 import com.actiontech.dble.net.mysql.WriteToBackendTask;
+import com.actiontech.dble.route.cache.ParentKeyLocationCache;
+import com.actiontech.dble.route.cache.RoutePlanCache;
 import com.actiontech.dble.server.ServerConnectionFactory;
 import com.actiontech.dble.server.status.SlowQueryLog;
 import com.actiontech.dble.server.variables.SystemVariables;
 import com.actiontech.dble.server.variables.VarsExtractorHandler;
+import com.actiontech.dble.server.workload.WorkloadManager;
 import com.actiontech.dble.singleton.*;
+import com.actiontech.dble.statistic.latency.LatencyMetricsServer;
+import com.actiontech.dble.statistic.stat.QueryResultDispatcher;
 import com.actiontech.dble.statistic.stat.ThreadWorkUsage;
 import com.actiontech.dble.util.ExecutorUtil;
 import com.actiontech.dble.util.TimeUtil;
@@ -149,6 +154,7 @@ public final class DbleServer {
         writeToBackendExecutor = ExecutorUtil.createFixed("writeToBackendExecutor", system.getWriteToBackendExecutor());
         complexQueryExecutor = ExecutorUtil.createCached("complexQueryExecutor", system.getComplexExecutor());
         timerExecutor = ExecutorUtil.createFixed("Timer", 1);
+        QueryMemoryGovernor.getInstance().init(system, businessExecutor);
 
         LOGGER.info("====================================Task Queue&Thread init start==================================");
         initTaskQueue(system);
@@ -226,6 +232,7 @@ public final class DbleServer {
         LOGGER.info("==============================Pull metaData from MySQL finish=====================================");
 
         FrontendUserManager.getInstance().initForLatest(config.getUsers(), system.getMaxCon());
+        WorkloadManager.getInstance().initForLatest(config.getUsers(), system.getMaxConcurrentComplexQuery());
 
 
         if (ClusterGeneralConfig.isUseGeneralCluster()) {
@@ -241,8 +248,14 @@ public final class DbleServer {
 
 
         CacheService.getInstance().init(this.systemVariables.isLowerCaseTableNames());
+        RoutePlanCache.getInstance().init(system.getSqlPlanCacheSize());
+        ParentKeyLocationCache.getInstance().init(system.getErParentKeyCacheSize());
         LOGGER.info("====================================Cache service init finish=====================================");
 
+        if (system.getUseSqlStat() == 1) {
+            QueryResultDispatcher.start();
+        }
+
         LOGGER.info("=====================================Perform XA recovery log======================================");
         performXARecoveryLog();
         LOGGER.info("====================================Perform XA recovery finish====================================");
@@ -251,6 +264,9 @@ public final class DbleServer {
         LOGGER.info(manager.getName() + " is started and listening on " + manager.getPort());
         server.start();
         LOGGER.info(server.getName() + " is started and listening on " + server.getPort());
+        if (system.getMetricsPort() > 0) {
+            LatencyMetricsServer.start(system.getMetricsPort());
+        }
         LOGGER.info("=====================================Server started success=======================================");
 
         Scheduler.getInstance().init(system, timerExecutor);
@@ -369,7 +385,7 @@ public final class DbleServer {
                     public void run() {
                         try {
                             for (NIOProcessor p : backendProcessors) {
-                                p.checkBackendCons();
+                                p.checkConnections();
                             }
                         } catch (Exception e) {
                             LOGGER.info("checkBackendCons caught err:" + e);
@@ -381,7 +397,7 @@ public final class DbleServer {
                     public void run() {
                         try {
                             for (NIOProcessor p : frontProcessors) {
-                                p.checkFrontCons();
+                                p.checkConnections();
                             }
                         } catch (Exception e) {
                             LOGGER.info("checkFrontCons caught err:" + e);
@@ -60,6 +60,11 @@ public interface BackendConnection extends ClosableConnection {
 
     boolean isAutocommit();
 
+    /**
+     * @return the hash of charset, isolation, autocommit and variables, see ConMap.getStateHash
+     */
+    int getStateHash();
+
     long getId();
 
     void closeWithoutRsp(String reason);
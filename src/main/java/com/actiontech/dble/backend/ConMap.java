@@ -9,20 +9,61 @@ import com.actiontech.dble.DbleServer;
 import com.actiontech.dble.backend.datasource.PhysicalDataSource;
 import com.actiontech.dble.backend.mysql.nio.MySQLConnection;
 import com.actiontech.dble.net.NIOProcessor;
+import com.actiontech.dble.net.mysql.CharsetNames;
 import com.actiontech.dble.util.StringUtil;
 
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
 
 public class ConMap {
     // key--schema
     private final ConcurrentMap<String, ConQueue> items = new ConcurrentHashMap<>();
+    // connections taken with the same session state or not, only counted when the state is given
+    private final LongAdder stateHitCount = new LongAdder();
+    private final LongAdder stateMissCount = new LongAdder();
 
     private static final String KEY_STRING_FOR_NULL_DATABASE = "KEY FOR NULL";
 
+    /**
+     * the hash of the session state which needs sync sql if the backend connection is not the
+     * same as the front connection. The charset and the values of variables are compared ignore
+     * case like MySQLConnection.getSynSql, the variables are hashed without order.
+     *
+     * @return the hash, never 0, which means the state is not given
+     */
+    public static int getStateHash(CharsetNames charset, int txIsolation, boolean autocommit,
+                                   Map<String, String> usrVariables, Map<String, String> sysVariables) {
+        int hash = autocommit ? 1 : 2;
+        hash = 31 * hash + txIsolation;
+        if (charset != null) {
+            hash = 31 * hash + lowerCaseHash(charset.getClient());
+            hash = 31 * hash + lowerCaseHash(charset.getResults());
+            hash = 31 * hash + lowerCaseHash(charset.getCollation());
+        }
+        hash = 31 * hash + variablesHash(usrVariables);
+        hash = 31 * hash + variablesHash(sysVariables);
+        return hash == 0 ? 1 : hash;
+    }
+
+    private static int variablesHash(Map<String, String> variables) {
+        int hash = 0;
+        if (variables != null) {
+            for (Entry<String, String> entry : variables.entrySet()) {
+                hash += lowerCaseHash(entry.getKey()) * 31 ^ lowerCaseHash(entry.getValue());
+            }
+        }
+        return hash;
+    }
+
+    private static int lowerCaseHash(String value) {
+        return value == null ? 0 : value.toLowerCase().hashCode();
+    }
+
     public ConQueue createAndGetSchemaConQueue(String schema) {
         ConQueue queue = items.get(schema == null ? KEY_STRING_FOR_NULL_DATABASE : schema);
         if (queue == null) {
@@ -37,6 +78,31 @@ public class ConMap {
         return items.get(schema == null ? KEY_STRING_FOR_NULL_DATABASE : schema);
     }
 
+    /**
+     * take the idle connection of the same schema and the same session state first,
+     * then any idle connection which needs sync sql
+     *
+     * @param stateHash the state of front connection by getStateHash, 0 means not given
+     */
+    public BackendConnection tryTakeCon(final String schema, boolean autoCommit, int stateHash) {
+        if (stateHash == 0) {
+            return tryTakeCon(schema, autoCommit);
+        }
+        final ConQueue queue = items.get(schema == null ? KEY_STRING_FOR_NULL_DATABASE : schema);
+        BackendConnection con = queue == null ? null : queue.takeSameStateCon(autoCommit, stateHash);
+        if (con == null) {
+            con = tryTakeCon(schema, autoCommit);
+        }
+        if (con != null) {
+            if (con.getStateHash() == stateHash) {
+                stateHitCount.increment();
+            } else {
+                stateMissCount.increment();
+            }
+        }
+        return con;
+    }
+
     public BackendConnection tryTakeCon(final String schema, boolean autoCommit) {
 
         final ConQueue queue = items.get(schema == null ? KEY_STRING_FOR_NULL_DATABASE : schema);
@@ -70,6 +136,14 @@ public class ConMap {
         }
     }
 
+    public long getStateHitCount() {
+        return stateHitCount.sum();
+    }
+
+    public long getStateMissCount() {
+        return stateMissCount.sum();
+    }
+
     public Collection<ConQueue> getAllConQueue() {
         return items.values();
     }
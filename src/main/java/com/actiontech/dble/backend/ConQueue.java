@@ -9,6 +9,8 @@ import java.util.ArrayList;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
 public class ConQueue {
+    // the idle connections at the head of queue checked for the same session state
+    private static final int MAX_STATE_SCAN = 32;
     private final ConcurrentLinkedQueue<BackendConnection> autoCommitCons = new ConcurrentLinkedQueue<>();
     private final ConcurrentLinkedQueue<BackendConnection> manCommitCons = new ConcurrentLinkedQueue<>();
     private long executeCount;
@@ -34,6 +36,32 @@ public class ConQueue {
 
     }
 
+    /**
+     * take the idle connection which has the same session state, so that no sync sql
+     * is sent before the query. The connection is removed from the queue only if no
+     * other thread has taken it.
+     */
+    public BackendConnection takeSameStateCon(boolean autoCommit, int stateHash) {
+        BackendConnection con = takeSameStateCon(autoCommit ? autoCommitCons : manCommitCons, stateHash);
+        if (con == null) {
+            con = takeSameStateCon(autoCommit ? manCommitCons : autoCommitCons, stateHash);
+        }
+        return con;
+    }
+
+    private BackendConnection takeSameStateCon(ConcurrentLinkedQueue<BackendConnection> queue, int stateHash) {
+        int scanned = 0;
+        for (BackendConnection con : queue) {
+            if (++scanned > MAX_STATE_SCAN) {
+                break;
+            }
+            if (!con.isClosed() && con.getStateHash() == stateHash && queue.remove(con)) {
+                return con;
+            }
+        }
+        return null;
+    }
+
     public long getExecuteCount() {
         return executeCount;
     }
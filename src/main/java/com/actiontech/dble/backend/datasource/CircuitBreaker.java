@@ -0,0 +1,234 @@
+/*
+ * Copyright (C) 2016-2020 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.backend.datasource;
+
+import com.actiontech.dble.DbleServer;
+import com.actiontech.dble.config.model.SystemConfig;
+import com.actiontech.dble.statistic.latency.LatencyHistogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * circuit breaker of a data source.
+ * <p>
+ * the queries of the last 10 seconds are counted in 10 slots of 1 second. The breaker is opened if
+ * the error percent reaches circuitBreakerErrorPercent or the p99 latency is over circuitBreakerLatencyThreshold.
+ * After circuitBreakerOpenTime one probe query is allowed (half open), its result closes or opens the breaker again.
+ * <p>
+ * the slot of a new second is cleared by the thread which wins the CAS of its epoch, the counts added
+ * by the others at the same time may be lost, which is acceptable for the statistics.
+ *
+ * @author ActionTech
+ */
+public final class CircuitBreaker {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CircuitBreaker.class);
+    private static final int SLOTS = 10;
+    private static final long SLOT_MILLIS = 1000L;
+    private static final int COUNT = 0;
+    private static final int FAILURES = 1;
+    private static final int SLOW = 2;
+    private static final int BUCKETS = 3;
+
+    private static final int CLOSED = 0;
+    private static final int OPEN = 1;
+    private static final int HALF_OPEN = 2;
+
+    private final String name;
+    private final AtomicLongArray[] slots = new AtomicLongArray[SLOTS];
+    private final AtomicLongArray slotEpochs = new AtomicLongArray(SLOTS);
+    private final AtomicInteger state = new AtomicInteger(CLOSED);
+    private final AtomicLong nextProbeTime = new AtomicLong();
+    private volatile long halfOpenTime;
+    private volatile long p95Epoch = -1;
+    private volatile long p95Micros = -1;
+
+    public CircuitBreaker(String name) {
+        this.name = name;
+        for (int i = 0; i < SLOTS; i++) {
+            slots[i] = new AtomicLongArray(BUCKETS + LatencyHistogram.BUCKET_COUNT);
+            slotEpochs.set(i, -1);
+        }
+    }
+
+    private static SystemConfig getSystem() {
+        return DbleServer.getInstance().getConfig().getSystem();
+    }
+
+    public boolean allowRequest() {
+        return allowRequest(System.currentTimeMillis());
+    }
+
+    /**
+     * @return true if closed, or the caller is granted the probe of the half open breaker
+     */
+    boolean allowRequest(long now) {
+        if (state.get() == CLOSED) {
+            return true;
+        }
+        long next = nextProbeTime.get();
+        if (now >= next && nextProbeTime.compareAndSet(next, now + getSystem().getCircuitBreakerOpenTime())) {
+            halfOpenTime = now;
+            if (state.compareAndSet(OPEN, HALF_OPEN)) {
+                LOGGER.info("circuit breaker of data source [" + name + "] is half open, send a probe query");
+            }
+            return true;
+        }
+        return false;
+    }
+
+    public boolean isClosed() {
+        return state.get() == CLOSED;
+    }
+
+    public void onResponse(long startMillis, long costMicros) {
+        onResponse(startMillis, costMicros, System.currentTimeMillis());
+    }
+
+    void onResponse(long startMillis, long costMicros, long now) {
+        long threshold = getSystem().getCircuitBreakerLatencyThreshold();
+        boolean slow = threshold > 0 && costMicros > threshold * 1000;
+        long value = Math.max(0, costMicros);
+        AtomicLongArray slot = slot(now);
+        slot.incrementAndGet(COUNT);
+        if (slow) {
+            slot.incrementAndGet(SLOW);
+        }
+        slot.incrementAndGet(BUCKETS + LatencyHistogram.bucketIndex(Math.min(value, LatencyHistogram.bucketUpperBound(LatencyHistogram.BUCKET_COUNT - 1))));
+        afterRecord(startMillis, !slow, now);
+    }
+
+    public void onFailure(long startMillis) {
+        onFailure(startMillis, System.currentTimeMillis());
+    }
+
+    void onFailure(long startMillis, long now) {
+        AtomicLongArray slot = slot(now);
+        slot.incrementAndGet(COUNT);
+        slot.incrementAndGet(FAILURES);
+        afterRecord(startMillis, false, now);
+    }
+
+    public long getP95Latency() {
+        return getP95Latency(System.currentTimeMillis());
+    }
+
+    /**
+     * @return the p95 latency(micros) of the last 10 seconds, -1 if the queries are not enough.
+     * It is computed once a second at most.
+     */
+    long getP95Latency(long now) {
+        long epoch = now / SLOT_MILLIS;
+        if (p95Epoch == epoch) {
+            return p95Micros;
+        }
+        long[] counts = new long[LatencyHistogram.BUCKET_COUNT];
+        long count = 0;
+        for (int i = 0; i < SLOTS; i++) {
+            if (inWindow(i, epoch)) {
+                AtomicLongArray slot = slots[i];
+                for (int j = 0; j < counts.length; j++) {
+                    long c = slot.get(BUCKETS + j);
+                    counts[j] += c;
+                    count += c;
+                }
+            }
+        }
+        long result = -1;
+        if (count >= getSystem().getCircuitBreakerMinRequests()) {
+            long rank = (long) Math.ceil(0.95 * count);
+            long seen = 0;
+            for (int j = 0; j < counts.length; j++) {
+                seen += counts[j];
+                if (seen >= rank) {
+                    result = LatencyHistogram.bucketUpperBound(j);
+                    break;
+                }
+            }
+        }
+        p95Micros = result;
+        p95Epoch = epoch;
+        return result;
+    }
+
+    private void afterRecord(long startMillis, boolean success, long now) {
+        int current = state.get();
+        if (current == HALF_OPEN) {
+            // the queries started before the probe are not the result of it
+            if (startMillis < halfOpenTime) {
+                return;
+            }
+            if (!success) {
+                open(HALF_OPEN, now);
+            } else if (state.compareAndSet(HALF_OPEN, CLOSED)) {
+                reset();
+                LOGGER.info("circuit breaker of data source [" + name + "] is closed");
+            }
+        } else if (current == CLOSED && shouldOpen(now)) {
+            open(CLOSED, now);
+        }
+    }
+
+    private boolean shouldOpen(long now) {
+        SystemConfig system = getSystem();
+        long epoch = now / SLOT_MILLIS;
+        long count = 0;
+        long failures = 0;
+        long slow = 0;
+        for (int i = 0; i < SLOTS; i++) {
+            if (inWindow(i, epoch)) {
+                count += slots[i].get(COUNT);
+                failures += slots[i].get(FAILURES);
+                slow += slots[i].get(SLOW);
+            }
+        }
+        if (count < system.getCircuitBreakerMinRequests()) {
+            return false;
+        }
+        int errorPercent = system.getCircuitBreakerErrorPercent();
+        if (errorPercent > 0 && failures * 100 >= count * errorPercent) {
+            return true;
+        }
+        // more than 1% of the queries are slow means the p99 latency is over the threshold
+        return system.getCircuitBreakerLatencyThreshold() > 0 && slow * 100 > count;
+    }
+
+    private void open(int expect, long now) {
+        nextProbeTime.set(now + getSystem().getCircuitBreakerOpenTime());
+        if (state.compareAndSet(expect, OPEN)) {
+            LOGGER.warn("circuit breaker of data source [" + name + "] is open, the read queries are not sent to it for " +
+                    getSystem().getCircuitBreakerOpenTime() + "ms");
+        }
+    }
+
+    private void reset() {
+        for (int i = 0; i < SLOTS; i++) {
+            slotEpochs.set(i, -1);
+        }
+        p95Epoch = -1;
+    }
+
+    private boolean inWindow(int index, long epoch) {
+        long slotEpoch = slotEpochs.get(index);
+        return slotEpoch > epoch - SLOTS && slotEpoch <= epoch;
+    }
+
+    private AtomicLongArray slot(long now) {
+        long epoch = now / SLOT_MILLIS;
+        int index = (int) (epoch % SLOTS);
+        AtomicLongArray slot = slots[index];
+        long old = slotEpochs.get(index);
+        if (old < epoch && slotEpochs.compareAndSet(index, old, epoch)) {
+            for (int i = 0; i < slot.length(); i++) {
+                slot.set(i, 0);
+            }
+        }
+        return slot;
+    }
+}
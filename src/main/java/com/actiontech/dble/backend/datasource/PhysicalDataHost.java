@@ -47,6 +47,7 @@ public class PhysicalDataHost {
     private static final int BALANCE_ALL = 2;
 
     public static final int WEIGHT = 0;
+    private static final int LAG_CHECK_COUNT = 3;
 
     private final String hostName;
     private final int balance;
@@ -197,7 +198,7 @@ public class PhysicalDataHost {
         return new LinkedList<>(allSourceMap.values());
     }
 
-    void getRWBalanceCon(String schema, boolean autocommit, ResponseHandler handler, Object attachment) throws Exception {
+    void getRWBalanceCon(String schema, boolean autocommit, int stateHash, ResponseHandler handler, Object attachment) throws Exception {
         PhysicalDataSource theNode = getRWBalanceNode();
         if (theNode.isDisabled()) {
             if (this.getAllActiveDataSources().size() > 0) {
@@ -217,21 +218,18 @@ public class PhysicalDataHost {
             AlertUtil.alert(AlarmCode.DATA_HOST_CAN_NOT_REACH, Alert.AlertLevel.WARN, heartbeatError, "mysql", theNode.getConfig().getId(), labels);
             throw new IOException(heartbeatError);
         }
-        theNode.getConnection(schema, autocommit, handler, attachment, false);
+        theNode.getConnection(schema, autocommit, stateHash, handler, attachment, false);
     }
 
     PhysicalDataSource getRWBalanceNode() {
         PhysicalDataSource theNode;
-        ArrayList<PhysicalDataSource> okSources;
         switch (balance) {
             case BALANCE_ALL: {
-                okSources = getAllActiveRWSources(true, checkSlaveSynStatus());
-                theNode = randomSelect(okSources, true);
+                theNode = selectActiveRWSource(true, checkSlaveSynStatus(), true);
                 break;
             }
             case BALANCE_ALL_BACK: {
-                okSources = getAllActiveRWSources(false, checkSlaveSynStatus());
-                theNode = randomSelect(okSources, true);
+                theNode = selectActiveRWSource(false, checkSlaveSynStatus(), true);
                 break;
             }
             case BALANCE_NONE:
@@ -251,11 +249,11 @@ public class PhysicalDataHost {
         if (balance == BALANCE_NONE) {
             return null;
         } else {
-            return randomSelect(getAllActiveRWSources(false, checkSlaveSynStatus()), false);
+            return selectActiveRWSource(false, checkSlaveSynStatus(), false);
         }
     }
 
-    boolean getReadCon(String schema, boolean autocommit, ResponseHandler handler, Object attachment) throws
+    boolean getReadCon(String schema, boolean autocommit, int stateHash, ResponseHandler handler, Object attachment) throws
             Exception {
         if (LOGGER.isDebugEnabled()) {
             LOGGER.debug("!readSources.isEmpty() " + (allSourceMap.values().size() > 1));
@@ -264,7 +262,7 @@ public class PhysicalDataHost {
             PhysicalDataSource theNode = getRandomAliveReadNode();
             if (theNode != null) {
                 theNode.setReadCount();
-                theNode.getConnection(schema, autocommit, handler, attachment, false);
+                theNode.getConnection(schema, autocommit, stateHash, handler, attachment, false);
                 return true;
             } else {
                 LOGGER.info("read host is not available.");
@@ -376,7 +374,45 @@ public class PhysicalDataHost {
     }
 
 
+    /**
+     * the sources whose circuit breaker is open are skipped
+     */
     private ArrayList<PhysicalDataSource> getAllActiveRWSources(boolean includeWriteNode, boolean filterWithSlaveThreshold) {
+        ArrayList<PhysicalDataSource> okSources = getAliveRWSources(includeWriteNode, filterWithSlaveThreshold);
+        okSources.removeIf(ds -> !ds.getCircuitBreaker().isClosed());
+        return okSources;
+    }
+
+    /**
+     * picks a source to send the query to. A source whose circuit breaker is open is picked only if it is
+     * granted the probe of the half open breaker, the query sent to it is the probe.
+     */
+    private PhysicalDataSource selectActiveRWSource(boolean includeWriteNode, boolean filterWithSlaveThreshold, boolean useWriteWhenEmpty) {
+        for (PhysicalDataSource ds : getAliveRWSources(includeWriteNode, filterWithSlaveThreshold)) {
+            if (!ds.getCircuitBreaker().isClosed() && ds.getCircuitBreaker().allowRequest()) {
+                return ds;
+            }
+        }
+        return randomSelect(getAllActiveRWSources(includeWriteNode, filterWithSlaveThreshold), useWriteWhenEmpty);
+    }
+
+    /**
+     * @return another read source for the hedged read of the query sent to exclude, null if there is none
+     */
+    public PhysicalDataSource getHedgeSource(PhysicalDataSource exclude) {
+        if (balance == BALANCE_NONE) {
+            return null;
+        }
+        ArrayList<PhysicalDataSource> okSources = getAllActiveRWSources(balance == BALANCE_ALL, checkSlaveSynStatus());
+        okSources.remove(exclude);
+        PhysicalDataSource theNode = randomSelect(okSources, false);
+        if (theNode != null) {
+            theNode.setReadCount();
+        }
+        return theNode;
+    }
+
+    private ArrayList<PhysicalDataSource> getAliveRWSources(boolean includeWriteNode, boolean filterWithSlaveThreshold) {
         ArrayList<PhysicalDataSource> okSources = new ArrayList<>(allSourceMap.values().size());
         if (!writeSource.isAlive() && !dataHostConfig.isTempReadHostAvailable()) {
             return okSources;
@@ -634,7 +670,9 @@ public class PhysicalDataHost {
             return false;
         }
         boolean isSync = dbSynStatus == MySQLHeartbeat.DB_SYN_NORMAL;
-        boolean isNotDelay = slaveBehindMaster < this.dataHostConfig.getSlaveThreshold();
+        // the delayed slave is selected again after its delay is below the threshold for some heartbeats
+        boolean isNotDelay = slaveBehindMaster < this.dataHostConfig.getSlaveThreshold() &&
+                theSource.getHeartbeat().getSeries().isLagBelow(this.dataHostConfig.getSlaveThreshold(), LAG_CHECK_COUNT);
         return isSync && isNotDelay;
     }
 
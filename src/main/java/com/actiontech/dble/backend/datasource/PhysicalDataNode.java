@@ -90,24 +90,32 @@ public class PhysicalDataNode {
 
     public void getConnection(String schema, boolean isMustWrite, boolean autoCommit, RouteResultsetNode rrs,
                               ResponseHandler handler, Object attachment) throws Exception {
+        getConnection(schema, isMustWrite, autoCommit, 0, rrs, handler, attachment);
+    }
+
+    /**
+     * @param stateHash the session state of the front connection by ConMap.getStateHash, 0 means not given
+     */
+    public void getConnection(String schema, boolean isMustWrite, boolean autoCommit, int stateHash, RouteResultsetNode rrs,
+                              ResponseHandler handler, Object attachment) throws Exception {
         if (isMustWrite) {
-            getWriteNodeConnection(schema, autoCommit, handler, attachment, false);
+            getWriteNodeConnection(schema, autoCommit, stateHash, handler, attachment, false);
             return;
         }
         if (rrs.getRunOnSlave() == null) {
             if (rrs.canRunINReadDB(autoCommit)) {
-                dataHost.getRWBalanceCon(schema, autoCommit, handler, attachment);
+                dataHost.getRWBalanceCon(schema, autoCommit, stateHash, handler, attachment);
             } else {
-                getWriteNodeConnection(schema, autoCommit, handler, attachment, false);
+                getWriteNodeConnection(schema, autoCommit, stateHash, handler, attachment, false);
             }
         } else {
             if (rrs.getRunOnSlave()) {
-                if (!dataHost.getReadCon(schema, autoCommit, handler, attachment)) {
+                if (!dataHost.getReadCon(schema, autoCommit, stateHash, handler, attachment)) {
                     throw new IllegalArgumentException("no valid readHost in DataHost:" + dataHost.getHostName());
                 }
             } else {
                 rrs.setCanRunInReadDB(false);
-                getWriteNodeConnection(schema, autoCommit, handler, attachment, false);
+                getWriteNodeConnection(schema, autoCommit, stateHash, handler, attachment, false);
             }
         }
     }
@@ -147,7 +155,7 @@ public class PhysicalDataNode {
         }
     }
 
-    private void getWriteNodeConnection(String schema, boolean autoCommit, ResponseHandler handler, Object attachment, boolean fakeRead) throws IOException {
+    private void getWriteNodeConnection(String schema, boolean autoCommit, int stateHash, ResponseHandler handler, Object attachment, boolean fakeRead) throws IOException {
         checkRequest(schema);
         if (dataHost.isInitSuccess()) {
             PhysicalDataSource writeSource = dataHost.getWriteSource();
@@ -158,7 +166,7 @@ public class PhysicalDataNode {
                 throw new IllegalArgumentException("The Data Source[" + writeSource.getConfig().getUrl() + "] is running with the --read-only option so it cannot execute this statement");
             }
             writeSource.setWriteCount();
-            writeSource.getConnection(schema, autoCommit, handler, attachment, true);
+            writeSource.getConnection(schema, autoCommit, stateHash, handler, attachment, true);
         } else {
             throw new IllegalArgumentException("Invalid DataSource:" + dataHost.getHostName());
         }
@@ -48,6 +48,7 @@ public abstract class PhysicalDataSource {
     private final DataHostConfig hostConfig;
     private PhysicalDataHost dataHost;
     private final AtomicInteger connectionCount;
+    private final CircuitBreaker circuitBreaker;
     private volatile AtomicBoolean disabled;
     private volatile boolean autocommitSynced = false;
     private volatile boolean isolationSynced = false;
@@ -65,6 +66,7 @@ public abstract class PhysicalDataSource {
         heartbeat = this.createHeartBeat();
         this.readNode = isReadNode;
         this.connectionCount = new AtomicInteger();
+        this.circuitBreaker = new CircuitBreaker(hostConfig.getName() + "." + name);
         this.disabled = new AtomicBoolean(config.isDisabled());
     }
 
@@ -75,6 +77,7 @@ public abstract class PhysicalDataSource {
         this.hostConfig = org.hostConfig;
         this.readNode = org.readNode;
         this.connectionCount = org.connectionCount;
+        this.circuitBreaker = org.circuitBreaker;
         this.disabled = new AtomicBoolean(org.disabled.get());
     }
 
@@ -200,6 +203,14 @@ public abstract class PhysicalDataSource {
         return heartbeat;
     }
 
+    public long getStateHitCount() {
+        return conMap.getStateHitCount();
+    }
+
+    public long getStateMissCount() {
+        return conMap.getStateMissCount();
+    }
+
     public int getIdleCount() {
         int total = 0;
         for (ConQueue queue : conMap.getAllConQueue()) {
@@ -340,10 +351,11 @@ public abstract class PhysicalDataSource {
     }
 
     void doHeartbeat() {
-        if (TimeUtil.currentTimeMillis() < heartbeatRecoveryTime) {
+        long now = TimeUtil.currentTimeMillis();
+        if (now < heartbeatRecoveryTime) {
             return;
         }
-        heartbeat.heartbeat();
+        heartbeat.heartbeatIfDue(now);
     }
 
     private BackendConnection takeCon(BackendConnection conn, String schema) {
@@ -387,6 +399,7 @@ public abstract class PhysicalDataSource {
                             Map<String, String> labels = AlertUtil.genSingleLabel("data_host", hostConfig.getName() + "-" + config.getHostName());
                             AlertUtil.alert(AlarmCode.CREATE_CONN_FAIL, Alert.AlertLevel.WARN, "createNewConn Error" + e.getMessage(), "mysql", config.getId(), labels);
                             ToResolveContainer.CREATE_CONN_FAIL.add(hostConfig.getName() + "-" + config.getHostName());
+                            circuitBreaker.onFailure(System.currentTimeMillis());
                             handler.connectionError(e, conn);
                         }
 
@@ -442,7 +455,15 @@ public abstract class PhysicalDataSource {
 
     public void getConnection(String schema, boolean autocommit, final ResponseHandler handler,
                               final Object attachment, boolean mustWrite) throws IOException {
-        BackendConnection con = this.conMap.tryTakeCon(schema, autocommit);
+        getConnection(schema, autocommit, 0, handler, attachment, mustWrite);
+    }
+
+    /**
+     * @param stateHash the session state of the front connection, an idle connection of the same state is preferred
+     */
+    public void getConnection(String schema, boolean autocommit, int stateHash, final ResponseHandler handler,
+                              final Object attachment, boolean mustWrite) throws IOException {
+        BackendConnection con = this.conMap.tryTakeCon(schema, autocommit, stateHash);
         if (con != null) {
             takeCon(con, handler, attachment, schema);
         } else {
@@ -593,6 +614,10 @@ public abstract class PhysicalDataSource {
         return config;
     }
 
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
     public boolean isAlive() {
         return !disabled.get() && ((heartbeat.getStatus() == MySQLHeartbeat.INIT_STATUS && testConnSuccess) || heartbeat.isHeartBeatOK());
     }
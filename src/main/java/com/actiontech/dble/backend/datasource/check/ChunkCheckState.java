@@ -0,0 +1,191 @@
+/*
+ * Copyright (C) 2016-2020 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+package com.actiontech.dble.backend.datasource.check;
+
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * ChunkCheckState, the chunks of a global table and the progress of the
+ * check, saved in a file after every chunk so that a check stopped by a
+ * restart goes on from where it stopped.
+ * <p>
+ * the chunks are split by the bounds of the primary key, chunk i is
+ * (bounds[i-1], bounds[i]], the first one has no lower bound and the last
+ * one has no upper bound.
+ *
+ * @author ActionTech
+ */
+final class ChunkCheckState {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ChunkCheckState.class);
+    static final long NO_LOWER = Long.MIN_VALUE;
+    static final long NO_UPPER = Long.MAX_VALUE;
+
+    private final File file;
+    private final String primaryKey;
+    private final List<Long> bounds = new ArrayList<>();
+    // the full check is not finished, next is the lower bound of the next chunk
+    private boolean running = false;
+    private long next = NO_LOWER;
+    // the start of the last finished check whose changes are all tracked since, 0 if there is not
+    private long lastRunStart = 0;
+    // the lower bounds of the chunks found different by the last check
+    private final SortedSet<Long> divergent = new TreeSet<>();
+
+    private ChunkCheckState(File file, String primaryKey) {
+        this.file = file;
+        this.primaryKey = primaryKey;
+    }
+
+    /**
+     * @return the state saved, or a new one if there is not or it is of another primary key
+     */
+    static ChunkCheckState load(String baseDir, String schema, String table, String primaryKey) {
+        File file = new File(baseDir, schema + "-" + table + ".json");
+        ChunkCheckState state = new ChunkCheckState(file, primaryKey);
+        if (!file.exists()) {
+            return state;
+        }
+        try {
+            JSONObject json = JSONObject.parseObject(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+            if (!primaryKey.equalsIgnoreCase(json.getString("primaryKey"))) {
+                return state;
+            }
+            state.running = json.getBooleanValue("running");
+            state.next = json.getLongValue("next");
+            state.lastRunStart = json.getLongValue("lastRunStart");
+            for (Object bound : json.getJSONArray("bounds")) {
+                state.bounds.add(((Number) bound).longValue());
+            }
+            for (Object lower : json.getJSONArray("divergent")) {
+                state.divergent.add(((Number) lower).longValue());
+            }
+        } catch (Exception e) {
+            LOGGER.warn("the state of the global check of " + schema + "." + table + " can't be read, check it from the start", e);
+            return new ChunkCheckState(file, primaryKey);
+        }
+        return state;
+    }
+
+    void save() {
+        JSONObject json = new JSONObject();
+        json.put("primaryKey", primaryKey);
+        json.put("running", running);
+        json.put("next", next);
+        json.put("lastRunStart", lastRunStart);
+        json.put("bounds", new JSONArray(new ArrayList<Object>(bounds)));
+        json.put("divergent", new JSONArray(new ArrayList<Object>(divergent)));
+        try {
+            File dir = file.getParentFile();
+            if (!dir.exists() && !dir.mkdirs()) {
+                throw new IOException("can't create " + dir);
+            }
+            File tmp = new File(dir, file.getName() + ".tmp");
+            Files.write(tmp.toPath(), json.toJSONString().getBytes(StandardCharsets.UTF_8));
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOGGER.warn("save the state of global check to " + file + " failed", e);
+        }
+    }
+
+    void startFull() {
+        running = true;
+        next = NO_LOWER;
+        bounds.clear();
+        divergent.clear();
+    }
+
+    /**
+     * a chunk of the full check is done
+     *
+     * @param upper the upper bound of the chunk, NO_UPPER if it's the last one
+     */
+    void chunkDone(long lower, long upper, boolean same) {
+        if (same) {
+            divergent.remove(lower);
+        } else {
+            divergent.add(lower);
+        }
+        if (upper != NO_UPPER) {
+            bounds.add(upper);
+        }
+        next = upper;
+    }
+
+    /**
+     * a chunk is checked again after the full check
+     */
+    void chunkChecked(long lower, boolean same) {
+        if (same) {
+            divergent.remove(lower);
+        } else {
+            divergent.add(lower);
+        }
+    }
+
+    /**
+     * @param runStart the start of the check, 0 if the changes since are not all tracked
+     */
+    void finish(long runStart) {
+        running = false;
+        next = NO_LOWER;
+        lastRunStart = runStart;
+    }
+
+    boolean isRunning() {
+        return running;
+    }
+
+    long getNext() {
+        return next;
+    }
+
+    long getLastRunStart() {
+        return lastRunStart;
+    }
+
+    SortedSet<Long> getDivergent() {
+        return divergent;
+    }
+
+    int getChunkCount() {
+        return bounds.size() + 1;
+    }
+
+    int getChunkOfKey(long key) {
+        int index = Collections.binarySearch(bounds, key);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    int getChunkOfLower(long lower) {
+        if (lower == NO_LOWER) {
+            return 0;
+        }
+        int index = Collections.binarySearch(bounds, lower);
+        return index >= 0 ? index + 1 : -1;
+    }
+
+    long getLower(int chunk) {
+        return chunk == 0 ? NO_LOWER : bounds.get(chunk - 1);
+    }
+
+    long getUpper(int chunk) {
+        return chunk == bounds.size() ? NO_UPPER : bounds.get(chunk);
+    }
+
+    static String rangeToString(long lower, long upper) {
+        return "(" + (lower == NO_LOWER ? "-inf" : String.valueOf(lower)) + ", " +
+                (upper == NO_UPPER ? "+inf" : String.valueOf(upper)) + "]";
+    }
+}
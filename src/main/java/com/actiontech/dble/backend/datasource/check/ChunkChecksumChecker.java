@@ -0,0 +1,399 @@
+/*
+ * Copyright (C) 2016-2020 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+package com.actiontech.dble.backend.datasource.check;
+
+import com.actiontech.dble.DbleServer;
+import com.actiontech.dble.alarm.AlarmCode;
+import com.actiontech.dble.alarm.Alert;
+import com.actiontech.dble.alarm.AlertUtil;
+import com.actiontech.dble.alarm.ToResolveContainer;
+import com.actiontech.dble.backend.datasource.PhysicalDataNode;
+import com.actiontech.dble.config.model.SystemConfig;
+import com.actiontech.dble.meta.protocol.StructureMeta;
+import com.actiontech.dble.singleton.ProxyMeta;
+import com.actiontech.dble.singleton.Scheduler;
+import com.actiontech.dble.sqlengine.MultiRowSQLQueryResultHandler;
+import com.actiontech.dble.sqlengine.SQLJob;
+import com.actiontech.dble.sqlengine.SQLQueryResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLNonTransientException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * ChunkChecksumChecker, globalCheckClass="CHUNK".
+ * <p>
+ * instead of one CHECKSUM TABLE, the table is split into chunks by the
+ * integer primary key, and the count and the crc of the rows of each chunk
+ * are compared between the data nodes, one chunk after another with a
+ * pause between. The check never waits in a thread, every chunk goes on from
+ * the callbacks of the queries and the next one is scheduled by Scheduler. After a full check, the next checks only the chunks
+ * written through dble since (see GlobalTableChangeTracker) and the chunks
+ * found different. The writes not through dble are only found by a full
+ * check, which happens again after a restart or when the writes can't be
+ * tracked.
+ * <p>
+ * tables without an integer primary key are checked by CHECKSUM TABLE.
+ *
+ * @author ActionTech
+ */
+public class ChunkChecksumChecker extends CheckSumChecker {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ChunkChecksumChecker.class);
+    private static final Set<String> RUNNING = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private static final Set<String> INTEGER_TYPES = new HashSet<>(Arrays.asList("tinyint", "smallint", "mediumint", "int", "integer", "bigint"));
+    private static final long QUERY_TIMEOUT_MINUTES = 10;
+    private static final String[] BOUND_COLS = new String[]{"bound"};
+    private static final String[] CHUNK_COLS = new String[]{"cnt", "crc"};
+
+    private final List<String> dataNodes = new ArrayList<>();
+
+    @Override
+    void addCheckNode(String dbName, PhysicalDataNode dataNode) {
+        super.addCheckNode(dbName, dataNode);
+        dataNodes.add(dataNode.getName());
+    }
+
+    @Override
+    void startCheckTable() {
+        StructureMeta.TableMeta tm;
+        try {
+            tm = ProxyMeta.getInstance().getTmManager().getSyncTableMeta(schema, tableName);
+        } catch (SQLNonTransientException e) {
+            tm = null;
+        }
+        final StructureMeta.ColumnMeta pk = tm == null ? null : getIntegerPrimaryKey(tm);
+        if (pk == null) {
+            LOGGER.info("Global check of " + schema + "." + tableName + " has no integer primary key, use checksum table instead");
+            super.startCheckTable();
+            return;
+        }
+        final String tableId = schema + "." + tableName;
+        if (!RUNNING.add(tableId)) {
+            LOGGER.info("Global check of " + tableId + " is running, skip this one");
+            if (handler != null) {
+                handler.collectResult(schema, tableName, 0, 0);
+            }
+            return;
+        }
+        // tracking starts before the check, so nothing written during the check is missed
+        final GlobalTableChangeTracker.TrackedTable tracked = GlobalTableChangeTracker.getInstance().register(schema, tableName, pk.getName(), pk.getAutoIncre());
+        final String chunkSql = getChunkSql(tableName, tm);
+        DbleServer.getInstance().getComplexQueryExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                ChunkCheck check;
+                try {
+                    check = new ChunkCheck(tableId, pk.getName(), chunkSql, tracked);
+                } catch (RuntimeException e) {
+                    RUNNING.remove(tableId);
+                    throw e;
+                }
+                check.step(check::start);
+            }
+        });
+    }
+
+    private void report(ChunkCheckState state, String pk, boolean success) {
+        String tableId = schema + "." + tableName;
+        SortedSet<Long> divergent = state.getDivergent();
+        if (!success) {
+            LOGGER.warn("Global Consistency Check for table :" + schema + "-" + tableName + " is not finished");
+        } else if (divergent.isEmpty()) {
+            resultResponse(Collections.<SQLQueryResult<List<Map<String, String>>>>emptyList());
+        } else {
+            StringBuilder sb = new StringBuilder("Global Consistency Check fail for table :");
+            sb.append(schema).append("-").append(tableName).append(", different ranges of ");
+            sb.append(pk).append(":");
+            for (Long lower : divergent) {
+                int chunk = state.getChunkOfLower(lower);
+                long upper = chunk >= 0 ? state.getUpper(chunk) : ChunkCheckState.NO_UPPER;
+                sb.append(" ").append(ChunkCheckState.rangeToString(lower, upper));
+            }
+            LOGGER.warn(sb.toString());
+            AlertUtil.alertSelf(AlarmCode.GLOBAL_TABLE_COLUMN_LOST, Alert.AlertLevel.WARN, sb.toString(), AlertUtil.genSingleLabel("TABLE", tableId));
+            ToResolveContainer.GLOBAL_TABLE_CONSISTENCY.add(tableId);
+        }
+        if (handler != null) {
+            handler.collectResult(schema, tableName, divergent.isEmpty() ? 1 : 2, success ? 0 : 1);
+        }
+    }
+
+    static StructureMeta.ColumnMeta getIntegerPrimaryKey(StructureMeta.TableMeta tm) {
+        if (!tm.hasPrimary() || tm.getPrimary().getColumnsCount() != 1) {
+            return null;
+        }
+        String pk = tm.getPrimary().getColumns(0);
+        for (StructureMeta.ColumnMeta column : tm.getColumnsList()) {
+            if (column.getName().equalsIgnoreCase(pk)) {
+                String type = column.getDataType().toLowerCase();
+                // unsigned bigint may be out of long
+                boolean outOfLong = "bigint".equals(type) && column.getIsUnsigned();
+                return INTEGER_TYPES.contains(type) && !outOfLong ? column : null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * the count and the crc of the rows, CONCAT_WS skips NULL so which columns are NULL is added too
+     */
+    static String getChunkSql(String table, StructureMeta.TableMeta tm) {
+        StringBuilder columns = new StringBuilder();
+        StringBuilder nulls = new StringBuilder();
+        for (StructureMeta.ColumnMeta column : tm.getColumnsList()) {
+            if (columns.length() > 0) {
+                columns.append(", ");
+                nulls.append(", ");
+            }
+            columns.append('`').append(column.getName()).append('`');
+            nulls.append("ISNULL(`").append(column.getName()).append("`)");
+        }
+        return "SELECT COUNT(*) AS cnt, COALESCE(BIT_XOR(CAST(CRC32(CONCAT_WS('#', " + columns + ", CONCAT(" + nulls +
+                "))) AS UNSIGNED)), 0) AS crc FROM `" + table + "`";
+    }
+
+    /**
+     * the upper bound of the chunk starting from lower, no row if it's the last chunk
+     */
+    static String getBoundSql(String table, String pk, long lower, int chunkSize) {
+        return "SELECT `" + pk + "` AS bound FROM `" + table + "`" + getRangeCondition(pk, lower, ChunkCheckState.NO_UPPER) +
+                " ORDER BY `" + pk + "` LIMIT " + (chunkSize - 1) + ", 1";
+    }
+
+    static String getRangeCondition(String pk, long lower, long upper) {
+        StringBuilder sb = new StringBuilder();
+        if (lower != ChunkCheckState.NO_LOWER) {
+            sb.append(" WHERE `").append(pk).append("` > ").append(lower);
+        }
+        if (upper != ChunkCheckState.NO_UPPER) {
+            sb.append(sb.length() == 0 ? " WHERE `" : " AND `").append(pk).append("` <= ").append(upper);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * one run of the check on a table. No thread waits for the queries: every
+     * step sends a query and the check goes on from its callback, the next
+     * chunk is scheduled after globalCheckChunkInterval.
+     */
+    private final class ChunkCheck {
+        private final String tableId;
+        private final String pk;
+        private final String chunkSql;
+        private final GlobalTableChangeTracker.TrackedTable tracked;
+        private final SystemConfig system;
+        private final ChunkCheckState state;
+        private final long allMark;
+        private final Map<Long, Long> keys;
+        private final AtomicBoolean finished = new AtomicBoolean(false);
+        private long runStart;
+        /* the next chunk of the full check */
+        private long lower;
+        /* the chunks left of the incremental check, null for the full check */
+        private Iterator<Integer> chunks;
+
+        ChunkCheck(String tableId, String pk, String chunkSql, GlobalTableChangeTracker.TrackedTable tracked) {
+            this.tableId = tableId;
+            this.pk = pk;
+            this.chunkSql = chunkSql;
+            this.tracked = tracked;
+            this.system = DbleServer.getInstance().getConfig().getSystem();
+            this.state = ChunkCheckState.load(system.getGlobalCheckStateBaseDir(), schema, tableName, pk);
+            this.runStart = System.currentTimeMillis();
+            this.allMark = tracked.getAllMark();
+            this.keys = tracked.snapshotKeys();
+        }
+
+        void start() {
+            if (state.isRunning()) {
+                LOGGER.info("Global check of " + schema + "." + tableName + " goes on from " + state.getNext());
+                // the writes before the restart are not tracked, the next has to be a full one
+                runStart = 0;
+            } else if (state.getLastRunStart() > 0 && tracked.getTrackingSince() <= state.getLastRunStart() && allMark == 0) {
+                chunks = getChangedChunks().iterator();
+                nextChangedChunk();
+                return;
+            } else {
+                state.startFull();
+            }
+            lower = state.getNext();
+            nextFullChunk();
+        }
+
+        private void nextFullChunk() {
+            String boundSql = getBoundSql(tableName, pk, lower, system.getGlobalCheckChunkSize());
+            query(boundSql, Collections.singletonList(dataNodes.get(0)), BOUND_COLS, this::compareFullChunk);
+        }
+
+        private void compareFullChunk(List<List<Map<String, String>>> boundResult) {
+            List<Map<String, String>> rows = boundResult.get(0);
+            final long upper = rows.isEmpty() ? ChunkCheckState.NO_UPPER : Long.parseLong(rows.get(0).get("bound"));
+            compareChunk(lower, upper, same -> {
+                state.chunkDone(lower, upper, same);
+                state.save();
+                lower = upper;
+                if (lower == ChunkCheckState.NO_UPPER) {
+                    finish(true);
+                } else {
+                    schedule(this::nextFullChunk);
+                }
+            });
+        }
+
+        private SortedSet<Integer> getChangedChunks() {
+            SortedSet<Integer> changed = new TreeSet<>();
+            for (Long key : keys.keySet()) {
+                changed.add(state.getChunkOfKey(key));
+            }
+            for (Long divergentLower : state.getDivergent()) {
+                int chunk = state.getChunkOfLower(divergentLower);
+                if (chunk >= 0) {
+                    changed.add(chunk);
+                }
+            }
+            LOGGER.info("Global check of " + schema + "." + tableName + " checks " + changed.size() + " of " + state.getChunkCount() + " chunks");
+            return changed;
+        }
+
+        private void nextChangedChunk() {
+            if (!chunks.hasNext()) {
+                finish(true);
+                return;
+            }
+            int chunk = chunks.next();
+            final long chunkLower = state.getLower(chunk);
+            compareChunk(chunkLower, state.getUpper(chunk), same -> {
+                state.chunkChecked(chunkLower, same);
+                schedule(this::nextChangedChunk);
+            });
+        }
+
+        private void compareChunk(long chunkLower, long upper, final Consumer<Boolean> next) {
+            query(chunkSql + getRangeCondition(pk, chunkLower, upper), dataNodes, CHUNK_COLS, results -> {
+                Map<String, String> first = results.get(0).get(0);
+                boolean same = true;
+                for (List<Map<String, String>> result : results) {
+                    Map<String, String> row = result.get(0);
+                    if (!Objects.equals(first.get("cnt"), row.get("cnt")) || !Objects.equals(first.get("crc"), row.get("crc"))) {
+                        same = false;
+                        break;
+                    }
+                }
+                next.accept(same);
+            });
+        }
+
+        private void query(String sql, List<String> nodes, String[] cols, Consumer<List<List<Map<String, String>>>> next) {
+            new NodesQuery(this, sql, next).run(nodes, cols);
+        }
+
+        private void schedule(final Runnable nextStep) {
+            Scheduler.getInstance().schedule(new Runnable() {
+                @Override
+                public void run() {
+                    step(nextStep);
+                }
+            }, system.getGlobalCheckChunkInterval());
+        }
+
+        /**
+         * the check ends if the step fails
+         */
+        void step(Runnable nextStep) {
+            try {
+                nextStep.run();
+            } catch (Exception e) {
+                LOGGER.warn("Global check of " + schema + "." + tableName + " error", e);
+                finish(false);
+            }
+        }
+
+        void finish(boolean success) {
+            if (!finished.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                if (success) {
+                    state.finish(runStart);
+                    tracked.clear(allMark, keys);
+                }
+                state.save();
+                report(state, pk, success);
+            } finally {
+                RUNNING.remove(tableId);
+            }
+        }
+    }
+
+    /**
+     * the sql sent to the nodes without waiting, next is called when every node
+     * returns its rows, and the check fails if any node fails or times out
+     */
+    private final class NodesQuery {
+        private final ChunkCheck check;
+        private final String sql;
+        private final Consumer<List<List<Map<String, String>>>> next;
+        private final List<SQLQueryResult<List<Map<String, String>>>> results = Collections.synchronizedList(new ArrayList<SQLQueryResult<List<Map<String, String>>>>());
+        private final List<SQLJob> jobs = new ArrayList<>();
+        private final AtomicInteger left = new AtomicInteger();
+        private final AtomicBoolean done = new AtomicBoolean(false);
+        private volatile ScheduledFuture<?> timeout;
+
+        NodesQuery(ChunkCheck check, String sql, Consumer<List<List<Map<String, String>>>> next) {
+            this.check = check;
+            this.sql = sql;
+            this.next = next;
+        }
+
+        void run(List<String> nodes, String[] cols) {
+            left.set(nodes.size());
+            for (String node : nodes) {
+                jobs.add(new SQLJob(sql, node, new MultiRowSQLQueryResultHandler(cols, this::onResult), true));
+            }
+            timeout = Scheduler.getInstance().schedule(this::onTimeout, TimeUnit.MINUTES.toMillis(QUERY_TIMEOUT_MINUTES));
+            for (SQLJob job : jobs) {
+                job.run();
+            }
+        }
+
+        private void onResult(SQLQueryResult<List<Map<String, String>>> result) {
+            results.add(result);
+            if (left.decrementAndGet() > 0 || !done.compareAndSet(false, true)) {
+                return;
+            }
+            timeout.cancel(false);
+            final List<List<Map<String, String>>> rows = new ArrayList<>(results.size());
+            for (SQLQueryResult<List<Map<String, String>>> nodeResult : results) {
+                if (!nodeResult.isSuccess()) {
+                    LOGGER.warn("Global check of " + schema + "." + tableName + " failed: " + sql);
+                    check.finish(false);
+                    return;
+                }
+                rows.add(nodeResult.getResult());
+            }
+            check.step(() -> next.accept(rows));
+        }
+
+        private void onTimeout() {
+            if (!done.compareAndSet(false, true)) {
+                return;
+            }
+            LOGGER.warn("Global check of " + schema + "." + tableName + " timeout: " + sql);
+            for (SQLJob job : jobs) {
+                if (!job.isFinished()) {
+                    job.terminate("global check timeout");
+                }
+            }
+            check.finish(false);
+        }
+    }
+}
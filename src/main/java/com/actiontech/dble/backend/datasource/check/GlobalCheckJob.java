@@ -23,6 +23,7 @@ public class GlobalCheckJob implements Job {
     public static final String GLOBAL_TABLE_CHECK_DEFAULT_CRON = "0 0 0 * * ?";
     public static final String GLOBAL_TABLE_CHECK_DEFAULT = "CHECKSUM";
     public static final String GLOBAL_TABLE_CHECK_COUNT = "COUNT";
+    public static final String GLOBAL_TABLE_CHECK_CHUNK = "CHUNK";
 
     private static final Logger LOGGER = LoggerFactory.getLogger(GlobalCheckJob.class);
     private volatile TableConfig tc;
@@ -58,6 +59,9 @@ public class GlobalCheckJob implements Job {
                 case GLOBAL_TABLE_CHECK_COUNT:
                     checker = new CountChecker();
                     break;
+                case GLOBAL_TABLE_CHECK_CHUNK:
+                    checker = new ChunkChecksumChecker();
+                    break;
                 default:
                     final Class<?> clz = Class.forName(tc.getGlobalCheckClass());
                     checker = (AbstractConsistencyChecker) clz.newInstance();
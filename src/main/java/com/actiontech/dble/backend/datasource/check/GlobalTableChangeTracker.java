@@ -0,0 +1,309 @@
+/*
+ * Copyright (C) 2016-2020 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+package com.actiontech.dble.backend.datasource.check;
+
+import com.actiontech.dble.util.StringUtil;
+import com.alibaba.druid.sql.ast.SQLExpr;
+import com.alibaba.druid.sql.ast.SQLStatement;
+import com.alibaba.druid.sql.ast.expr.*;
+import com.alibaba.druid.sql.ast.statement.*;
+import com.alibaba.druid.sql.dialect.mysql.ast.statement.MySqlDeleteStatement;
+import com.alibaba.druid.sql.dialect.mysql.ast.statement.MySqlInsertStatement;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * GlobalTableChangeTracker, keeps the primary keys written through dble
+ * for the global tables checked by ChunkChecksumChecker, so that the next
+ * check only needs the chunks holding them.
+ * <p>
+ * every mark gets a new sequence, the checker removes a mark only if its
+ * sequence is not changed after the check, so a write during the check is
+ * kept for the next one. When the keys of a write can't be known, the whole
+ * table is marked.
+ *
+ * @author ActionTech
+ */
+public final class GlobalTableChangeTracker {
+    private static final GlobalTableChangeTracker INSTANCE = new GlobalTableChangeTracker();
+    static final int MAX_TRACKED_KEYS = 10000;
+    /**
+     * the key of rows inserted by auto increment, it is in the last chunk
+     */
+    static final long TAIL_KEY = Long.MAX_VALUE;
+
+    private final Map<String, TrackedTable> tables = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+
+    private GlobalTableChangeTracker() {
+    }
+
+    public static GlobalTableChangeTracker getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * start tracking the table if it's not, the writes before are unknown
+     *
+     * @param autoIncrement if the rows inserted without the primary key get increasing keys
+     */
+    TrackedTable register(String schema, String table, String primaryKey, boolean autoIncrement) {
+        String key = getKey(schema, table);
+        TrackedTable tracked = tables.get(key);
+        if (tracked == null || !tracked.primaryKey.equalsIgnoreCase(primaryKey) || tracked.autoIncrement != autoIncrement) {
+            tracked = new TrackedTable(primaryKey, autoIncrement);
+            tables.put(key, tracked);
+        }
+        return tracked;
+    }
+
+    /**
+     * called by the route of every write
+     */
+    public void onWrite(String schema, SQLStatement statement) {
+        if (tables.isEmpty()) {
+            return;
+        }
+        if (statement instanceof SQLInsertStatement) {
+            SQLInsertStatement insert = (SQLInsertStatement) statement;
+            boolean duplicateUpdate = insert instanceof MySqlInsertStatement &&
+                    ((MySqlInsertStatement) insert).getDuplicateKeyUpdate().size() > 0;
+            onInsert(schema, insert.getTableSource(), insert.getColumns(), insert.getValuesList(),
+                    insert.getQuery() != null || duplicateUpdate);
+        } else if (statement instanceof SQLReplaceStatement) {
+            SQLReplaceStatement replace = (SQLReplaceStatement) statement;
+            onInsert(schema, replace.getTableSource(), replace.getColumns(), replace.getValuesList(), replace.getQuery() != null);
+        } else if (statement instanceof SQLUpdateStatement) {
+            SQLUpdateStatement update = (SQLUpdateStatement) statement;
+            onUpdate(schema, update);
+        } else if (statement instanceof SQLDeleteStatement) {
+            SQLDeleteStatement delete = (SQLDeleteStatement) statement;
+            boolean multiTable = delete instanceof MySqlDeleteStatement &&
+                    (((MySqlDeleteStatement) delete).getFrom() != null || ((MySqlDeleteStatement) delete).getUsing() != null);
+            if (multiTable || !(delete.getTableSource() instanceof SQLExprTableSource)) {
+                markAllTables();
+                return;
+            }
+            TrackedTable tracked = getTracked(schema, (SQLExprTableSource) delete.getTableSource());
+            if (tracked != null) {
+                markWhere(tracked, delete.getWhere());
+            }
+        }
+    }
+
+    /**
+     * for the writes without a statement, such as load data
+     */
+    public void markAll(String schema, String table) {
+        TrackedTable tracked = tables.get(getKey(schema, table));
+        if (tracked != null) {
+            tracked.markAll(sequence.incrementAndGet());
+        }
+    }
+
+    private void onInsert(String schema, SQLExprTableSource tableSource, List<SQLExpr> columns,
+                          List<SQLInsertStatement.ValuesClause> valuesList, boolean unknownKeys) {
+        TrackedTable tracked = getTracked(schema, tableSource);
+        if (tracked == null) {
+            return;
+        }
+        long seq = sequence.incrementAndGet();
+        int index = -1;
+        for (int i = 0; i < columns.size(); i++) {
+            if (isPrimaryKey(tracked, columns.get(i))) {
+                index = i;
+                break;
+            }
+        }
+        if (unknownKeys || (index < 0 && (columns.size() == 0 || !tracked.autoIncrement))) {
+            tracked.markAll(seq);
+            return;
+        }
+        List<Long> keys = new ArrayList<>(valuesList.size());
+        for (SQLInsertStatement.ValuesClause values : valuesList) {
+            Long key = index < 0 ? Long.valueOf(TAIL_KEY) : toKey(values.getValues().get(index));
+            if (key == null) {
+                tracked.markAll(seq);
+                return;
+            }
+            keys.add(key);
+        }
+        tracked.mark(keys, seq);
+    }
+
+    private void onUpdate(String schema, SQLUpdateStatement update) {
+        if (update.getFrom() != null || !(update.getTableSource() instanceof SQLExprTableSource)) {
+            markAllTables();
+            return;
+        }
+        TrackedTable tracked = getTracked(schema, (SQLExprTableSource) update.getTableSource());
+        if (tracked == null) {
+            return;
+        }
+        for (SQLUpdateSetItem item : update.getItems()) {
+            if (isPrimaryKey(tracked, item.getColumn())) {
+                // the new key is somewhere else
+                tracked.markAll(sequence.incrementAndGet());
+                return;
+            }
+        }
+        markWhere(tracked, update.getWhere());
+    }
+
+    private void markWhere(TrackedTable tracked, SQLExpr where) {
+        long seq = sequence.incrementAndGet();
+        List<Long> keys = new ArrayList<>();
+        if (where != null && collectKeys(tracked, where, keys)) {
+            tracked.mark(keys, seq);
+        } else {
+            tracked.markAll(seq);
+        }
+    }
+
+    /**
+     * the keys of the rows matching where, only `pk = ?` and `pk in (?)` joined by AND are known
+     *
+     * @return false if the keys can't be known
+     */
+    private static boolean collectKeys(TrackedTable tracked, SQLExpr where, List<Long> keys) {
+        if (where instanceof SQLBinaryOpExpr) {
+            SQLBinaryOpExpr binaryOp = (SQLBinaryOpExpr) where;
+            if (binaryOp.getOperator() == SQLBinaryOperator.BooleanAnd) {
+                // either side limits the rows
+                return collectKeys(tracked, binaryOp.getLeft(), keys) || collectKeys(tracked, binaryOp.getRight(), keys);
+            }
+            if (binaryOp.getOperator() == SQLBinaryOperator.Equality) {
+                Long key = null;
+                if (isPrimaryKey(tracked, binaryOp.getLeft())) {
+                    key = toKey(binaryOp.getRight());
+                } else if (isPrimaryKey(tracked, binaryOp.getRight())) {
+                    key = toKey(binaryOp.getLeft());
+                }
+                if (key != null) {
+                    keys.add(key);
+                    return true;
+                }
+            }
+        } else if (where instanceof SQLInListExpr) {
+            SQLInListExpr inList = (SQLInListExpr) where;
+            if (inList.isNot() || !isPrimaryKey(tracked, inList.getExpr())) {
+                return false;
+            }
+            List<Long> inKeys = new ArrayList<>(inList.getTargetList().size());
+            for (SQLExpr target : inList.getTargetList()) {
+                Long key = toKey(target);
+                if (key == null) {
+                    return false;
+                }
+                inKeys.add(key);
+            }
+            keys.addAll(inKeys);
+            return true;
+        }
+        return false;
+    }
+
+    private static boolean isPrimaryKey(TrackedTable tracked, SQLExpr expr) {
+        String column;
+        if (expr instanceof SQLIdentifierExpr) {
+            column = ((SQLIdentifierExpr) expr).getName();
+        } else if (expr instanceof SQLPropertyExpr) {
+            column = ((SQLPropertyExpr) expr).getName();
+        } else {
+            return false;
+        }
+        return tracked.primaryKey.equalsIgnoreCase(StringUtil.removeBackQuote(column));
+    }
+
+    private static Long toKey(SQLExpr expr) {
+        if (expr instanceof SQLIntegerExpr) {
+            return ((SQLIntegerExpr) expr).getNumber().longValue();
+        } else if (expr instanceof SQLCharExpr) {
+            try {
+                return Long.parseLong(((SQLCharExpr) expr).getText().trim());
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private TrackedTable getTracked(String schema, SQLExprTableSource tableSource) {
+        String owner = tableSource.getSchema();
+        String table = tableSource.getName().getSimpleName();
+        return tables.get(getKey(owner == null ? schema : StringUtil.removeBackQuote(owner), StringUtil.removeBackQuote(table)));
+    }
+
+    private void markAllTables() {
+        long seq = sequence.incrementAndGet();
+        for (TrackedTable tracked : tables.values()) {
+            tracked.markAll(seq);
+        }
+    }
+
+    private static String getKey(String schema, String table) {
+        return (schema == null ? "" : schema.toLowerCase()) + "." + table.toLowerCase();
+    }
+
+    static final class TrackedTable {
+        private final String primaryKey;
+        private final boolean autoIncrement;
+        private final long trackingSince = System.currentTimeMillis();
+        private final Map<Long, Long> keys = new ConcurrentHashMap<>();
+        private final AtomicLong allMark = new AtomicLong();
+
+        private TrackedTable(String primaryKey, boolean autoIncrement) {
+            this.primaryKey = primaryKey;
+            this.autoIncrement = autoIncrement;
+        }
+
+        private void mark(List<Long> writeKeys, long seq) {
+            if (keys.size() + writeKeys.size() > MAX_TRACKED_KEYS) {
+                markAll(seq);
+                return;
+            }
+            for (Long key : writeKeys) {
+                keys.put(key, seq);
+            }
+        }
+
+        private void markAll(long seq) {
+            allMark.set(seq);
+            keys.clear();
+        }
+
+        long getTrackingSince() {
+            return trackingSince;
+        }
+
+        /**
+         * @return the sequence of the last time the whole table is marked, 0 if not
+         */
+        long getAllMark() {
+            return allMark.get();
+        }
+
+        Map<Long, Long> snapshotKeys() {
+            return new HashMap<>(keys);
+        }
+
+        /**
+         * clear the marks taken by the snapshots if they are not marked again
+         */
+        void clear(long allMarkSnapshot, Map<Long, Long> keysSnapshot) {
+            if (allMarkSnapshot != 0) {
+                allMark.compareAndSet(allMarkSnapshot, 0);
+            }
+            for (Map.Entry<Long, Long> entry : keysSnapshot.entrySet()) {
+                keys.remove(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+}
@@ -73,9 +73,11 @@ public class MySQLDetector implements SQLQueryResultListener<SQLQueryResult<Map<
     public void heartbeat() {
         if (con == null) {
             heartbeat.setErrorResult("can't create conn for heartbeat");
+            heartbeat.recordHeartbeat(-1);
             return;
         } else if (con.isClosed()) {
             heartbeat.setErrorResult("conn for heartbeat is closed");
+            heartbeat.recordHeartbeat(-1);
             return;
         }
 
@@ -108,7 +110,8 @@ public class MySQLDetector implements SQLQueryResultListener<SQLQueryResult<Map<
     @Override
     public void onResult(SQLQueryResult<Map<String, String>> result) {
         lastReceivedQryTime = System.currentTimeMillis();
-        heartbeat.getRecorder().set((lastReceivedQryTime - lastSendQryTime));
+        long rtt = lastReceivedQryTime - lastSendQryTime;
+        heartbeat.getRecorder().set(rtt);
         if (result.isSuccess()) {
             PhysicalDataSource source = heartbeat.getSource();
             Map<String, String> resultResult = result.getResult();
@@ -120,6 +123,7 @@ public class MySQLDetector implements SQLQueryResultListener<SQLQueryResult<Map<
                 setStatusForNormalHeartbeat(source);
             }
         }
+        heartbeat.recordHeartbeat(result.isSuccess() ? rtt : -1);
     }
 
     private void setStatusForNormalHeartbeat(PhysicalDataSource source) {
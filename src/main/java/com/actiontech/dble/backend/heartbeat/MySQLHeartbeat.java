@@ -5,12 +5,15 @@
  */
 package com.actiontech.dble.backend.heartbeat;
 
+import com.actiontech.dble.DbleServer;
 import com.actiontech.dble.alarm.AlarmCode;
 import com.actiontech.dble.alarm.Alert;
 import com.actiontech.dble.alarm.AlertUtil;
 import com.actiontech.dble.backend.mysql.nio.MySQLDataSource;
+import com.actiontech.dble.config.model.SystemConfig;
 import com.actiontech.dble.statistic.DataSourceSyncRecorder;
 import com.actiontech.dble.statistic.HeartbeatRecorder;
+import com.actiontech.dble.statistic.HeartbeatSeries;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -33,10 +36,14 @@ public class MySQLHeartbeat {
     public static final int OK_STATUS = 1;
     static final int ERROR_STATUS = -1;
     static final int TIMEOUT_STATUS = -2;
+    private static final int SERIES_SIZE = 1024;
+    /* the data source is unstable if one of the latest heartbeats failed */
+    private static final int UNSTABLE_CHECK_COUNT = 5;
     private final int errorRetryCount;
     private final AtomicBoolean isChecking = new AtomicBoolean(false);
     private final HeartbeatRecorder recorder = new HeartbeatRecorder();
     private final DataSourceSyncRecorder asyncRecorder = new DataSourceSyncRecorder();
+    private final HeartbeatSeries series = new HeartbeatSeries(SERIES_SIZE);
     private final MySQLDataSource source;
     protected volatile int status;
     private String heartbeatSQL;
@@ -48,6 +55,10 @@ public class MySQLHeartbeat {
     private volatile Integer slaveBehindMaster;
     private MySQLDetector detector;
     private volatile String message;
+    // the current heartbeat period, 0 means dataNodeHeartbeatPeriod
+    private volatile long period = 0;
+    private volatile long lastStartTime;
+    private volatile long nextHeartbeatTime = 0;
 
     public MySQLHeartbeat(MySQLDataSource source) {
         this.source = source;
@@ -92,6 +103,8 @@ public class MySQLHeartbeat {
      */
     public void heartbeat() {
         if (isChecking.compareAndSet(false, true)) {
+            lastStartTime = System.currentTimeMillis();
+            nextHeartbeatTime = lastStartTime + getPeriod();
             if (detector == null || detector.isQuit()) {
                 detector = new MySQLDetector(this);
             }
@@ -110,6 +123,35 @@ public class MySQLHeartbeat {
         }
     }
 
+    /**
+     * execute heart beat if the period of the data source is passed, the running one is checked for timeout at every call
+     */
+    public void heartbeatIfDue(long now) {
+        if (isChecking.get() || now >= nextHeartbeatTime) {
+            heartbeat();
+        }
+    }
+
+    /**
+     * record the heartbeat into the series and adjust the period by the series
+     *
+     * @param rtt -1 means failed
+     */
+    void recordHeartbeat(long rtt) {
+        Integer lag = slaveBehindMaster;
+        series.record(System.currentTimeMillis(), rtt, source.getHostConfig().isShowSlaveSql() && lag != null ? lag : -1);
+        SystemConfig system = DbleServer.getInstance().getConfig().getSystem();
+        long slowPeriod = system.getDataNodeHeartbeatPeriod();
+        long fastPeriod = Math.min(system.getDataNodeHeartbeatFastPeriod(), slowPeriod);
+        if (status != OK_STATUS || dbSynStatus == DB_SYN_ERROR || series.isUnstable(UNSTABLE_CHECK_COUNT) || series.isLagging()) {
+            period = fastPeriod;
+        } else {
+            // slow down step by step after the data source becomes healthy
+            period = Math.min(Math.max(getPeriod(), fastPeriod) * 2, slowPeriod);
+        }
+        nextHeartbeatTime = lastStartTime + period;
+    }
+
     public void setErrorResult(String errMsg) {
         this.isChecking.set(false);
         this.message = errMsg;
@@ -188,6 +230,7 @@ public class MySQLHeartbeat {
         LOGGER.warn("heartbeat to [" + source.getConfig().getUrl() + "] setTimeout");
         this.isChecking.set(false);
         status = TIMEOUT_STATUS;
+        recordHeartbeat(-1);
     }
 
     public Integer getSlaveBehindMaster() {
@@ -253,6 +296,18 @@ public class MySQLHeartbeat {
         return heartbeatSQL;
     }
 
+    public HeartbeatSeries getSeries() {
+        return series;
+    }
+
+    /**
+     * @return the current heartbeat period of the data source
+     */
+    public long getPeriod() {
+        long current = period;
+        return current == 0 ? DbleServer.getInstance().getConfig().getSystem().getDataNodeHeartbeatPeriod() : current;
+    }
+
     public DataSourceSyncRecorder getAsyncRecorder() {
         return this.asyncRecorder;
     }
@@ -7,6 +7,7 @@ package com.actiontech.dble.backend.mysql.nio;
 
 import com.actiontech.dble.DbleServer;
 import com.actiontech.dble.backend.BackendConnection;
+import com.actiontech.dble.backend.ConMap;
 import com.actiontech.dble.backend.mysql.CharsetUtil;
 import com.actiontech.dble.backend.mysql.nio.handler.ResponseHandler;
 import com.actiontech.dble.backend.mysql.xa.TxState;
@@ -53,11 +54,16 @@ public class MySQLConnection extends AbstractConnection implements
     private volatile boolean isDDL = false;
     private volatile boolean isRowDataFlowing = false;
     private volatile boolean isExecuting = false;
+    // the start of the query measured by the circuit breaker, 0 means not measured
+    private volatile long executeStartNanos = 0;
+    private volatile long executeStartMillis;
     private volatile StatusSync statusSync;
     private volatile boolean metaDataSynced = true;
     private volatile TxState xaStatus = TxState.TX_INITIALIZE_STATE;
     private volatile int txIsolation;
     private volatile boolean autocommit;
+    /* the hash of the session state by ConMap.getStateHash, updated when the state is changed */
+    private volatile int stateHash;
     private volatile boolean complexQuery;
     private volatile NonBlockingSession session;
     private long oldTimestamp;
@@ -136,6 +142,7 @@ public class MySQLConnection extends AbstractConnection implements
         this.complexQuery = false;
         this.usrVariables = new LinkedHashMap<>();
         this.sysVariables = new LinkedHashMap<>();
+        updateStateHash();
     }
 
     public void register() throws IOException {
@@ -153,6 +160,19 @@ public class MySQLConnection extends AbstractConnection implements
         this.initCharacterSet(DbleServer.getInstance().getConfig().getSystem().getCharset());
         this.usrVariables.clear();
         this.sysVariables.clear();
+        updateStateHash();
+    }
+
+    @Override
+    public void setCharsetName(CharsetNames charsetName) {
+        super.setCharsetName(charsetName);
+        updateStateHash();
+    }
+
+    @Override
+    public void initCharacterSet(String name) {
+        super.initCharacterSet(name);
+        updateStateHash();
     }
 
     public void setHost(String host) {
@@ -293,6 +313,18 @@ public class MySQLConnection extends AbstractConnection implements
         return autocommit;
     }
 
+    @Override
+    public int getStateHash() {
+        return stateHash;
+    }
+
+    /**
+     * the idle connections are scanned by their state hash, so it is computed when the state is changed only
+     */
+    private void updateStateHash() {
+        stateHash = ConMap.getStateHash(charsetName, txIsolation, autocommit, usrVariables, sysVariables);
+    }
+
     public Object getAttachment() {
         return attachment;
     }
@@ -310,8 +342,7 @@ public class MySQLConnection extends AbstractConnection implements
         } catch (UnsupportedEncodingException e) {
             throw new RuntimeException(e);
         }
-        isExecuting = true;
-        lastTime = TimeUtil.currentTimeMillis();
+        startExecuting();
         int size = packet.calcPacketSize();
         if (size >= MySQLPacket.MAX_PACKET_SIZE) {
             packet.writeBigPackage(this, size);
@@ -321,6 +352,38 @@ public class MySQLConnection extends AbstractConnection implements
 
     }
 
+    /**
+     * send the sql in the COM_QUERY packet of the client, after the synSQL if there is.
+     * the sql is in the charset of the client already.
+     */
+    private void sendQueryPacket(String synSQL, byte[] queryPacket, CharsetNames clientCharset) {
+        CommandPacket packet = new CommandPacket();
+        packet.setPacketId(0);
+        packet.setCommand(MySQLPacket.COM_QUERY);
+        int sqlOffset = MySQLPacket.PACKET_HEADER_SIZE + 1;
+        if (synSQL == null) {
+            packet.setArg(queryPacket, sqlOffset);
+        } else {
+            byte[] synBytes;
+            try {
+                synBytes = synSQL.getBytes(CharsetUtil.getJavaCharset(clientCharset.getClient()));
+            } catch (UnsupportedEncodingException e) {
+                throw new RuntimeException(e);
+            }
+            byte[] arg = new byte[synBytes.length + queryPacket.length - sqlOffset];
+            System.arraycopy(synBytes, 0, arg, 0, synBytes.length);
+            System.arraycopy(queryPacket, sqlOffset, arg, synBytes.length, queryPacket.length - sqlOffset);
+            packet.setArg(arg);
+        }
+        startExecuting();
+        int size = packet.calcPacketSize();
+        if (size >= MySQLPacket.MAX_PACKET_SIZE) {
+            packet.writeBigPackage(this, size);
+        } else {
+            packet.write(this);
+        }
+    }
+
     private WriteToBackendTask sendQueryCmdTask(String query, CharsetNames clientCharset) {
         CommandPacket packet = new CommandPacket();
         packet.setPacketId(0);
@@ -330,8 +393,7 @@ public class MySQLConnection extends AbstractConnection implements
         } catch (UnsupportedEncodingException e) {
             throw new RuntimeException(e);
         }
-        isExecuting = true;
-        lastTime = TimeUtil.currentTimeMillis();
+        startExecuting();
         return new WriteToBackendTask(this, packet);
     }
 
@@ -375,6 +437,7 @@ public class MySQLConnection extends AbstractConnection implements
     public void executeMultiNode(RouteResultsetNode rrn, ServerConnection sc,
                                  boolean isAutoCommit) {
         String xaTxId = getConnXID(session.getSessionXaID(), rrn.getMultiplexNum().longValue());
+        session.markExecutedNode(rrn);
         if (!sc.isAutocommit() && !sc.isTxStart() && rrn.isModifySQL()) {
             sc.setTxStart(true);
         }
@@ -466,11 +529,14 @@ public class MySQLConnection extends AbstractConnection implements
     public void execute(RouteResultsetNode rrn, ServerConnection sc,
                         boolean isAutoCommit) {
         String xaTxId = getConnXID(session.getSessionXaID(), rrn.getMultiplexNum().longValue());
+        session.markExecutedNode(rrn);
         if (!sc.isAutocommit() && !sc.isTxStart() && rrn.isModifySQL()) {
             sc.setTxStart(true);
         }
         StringBuilder synSQL = getSynSql(xaTxId, rrn, sc.getCharset(), sc.getTxIsolation(), isAutoCommit, sc.getUsrVariables(), sc.getSysVariables());
-        synAndDoExecute(synSQL, rrn, sc.getCharset());
+        // the statement is not changed by the route, forward the packet of the client instead of encoding it again
+        byte[] queryPacket = sc.getQueryPacket(rrn.getStatement(), sc.getCharset().getClient());
+        synAndDoExecute(synSQL, rrn, sc.getCharset(), queryPacket);
     }
 
     public String getConnXID(String sessionXaId, long multiplexNum) {
@@ -482,22 +548,31 @@ public class MySQLConnection extends AbstractConnection implements
         }
     }
 
-    private void synAndDoExecute(StringBuilder synSQL, RouteResultsetNode rrn, CharsetNames clientCharset) {
+    private void synAndDoExecute(StringBuilder synSQL, RouteResultsetNode rrn, CharsetNames clientCharset, byte[] queryPacket) {
         if (synSQL == null) {
             // not need syn connection
             if (session != null) {
                 session.setBackendRequestTime(this.id);
             }
-            sendQueryCmd(rrn.getStatement(), clientCharset);
+            if (queryPacket != null) {
+                sendQueryPacket(null, queryPacket, clientCharset);
+            } else {
+                sendQueryCmd(rrn.getStatement(), clientCharset);
+            }
             return;
         }
 
-        // and our query sql to multi command at last
-        synSQL.append(rrn.getStatement()).append(";");
         // syn and execute others
         if (session != null) {
             session.setBackendRequestTime(this.id);
         }
+        if (queryPacket != null) {
+            // the sql of the client is the last one, it needs no ';'
+            this.sendQueryPacket(synSQL.toString(), queryPacket, clientCharset);
+            return;
+        }
+        // and our query sql to multi command at last
+        synSQL.append(rrn.getStatement()).append(";");
         this.sendQueryCmd(synSQL.toString(), clientCharset);
         // waiting syn result...
 
@@ -585,7 +660,7 @@ public class MySQLConnection extends AbstractConnection implements
     public void query(String query, boolean isAutoCommit) {
         RouteResultsetNode rrn = new RouteResultsetNode("default", ServerParse.SELECT, query);
         StringBuilder synSQL = getSynSql(null, rrn, this.charsetName, this.txIsolation, isAutoCommit, this.getUsrVariables(), this.getSysVariables());
-        synAndDoExecute(synSQL, rrn, this.charsetName);
+        synAndDoExecute(synSQL, rrn, this.charsetName, null);
 
     }
 
@@ -611,6 +686,7 @@ public class MySQLConnection extends AbstractConnection implements
     @Override
     public synchronized void close(final String reason) {
         if (!isClosed) {
+            cancelExecute();
             if (isAuthenticated && channel.isOpen()) {
                 try {
                     closeReason = reason;
@@ -633,6 +709,12 @@ public class MySQLConnection extends AbstractConnection implements
         }
     }
 
+    @Override
+    public void closeByIOError(String reason) {
+        executeFailed();
+        close(reason);
+    }
+
     @Override
     public void startFlowControl(BackendConnection bcon) {
         LOGGER.info("Session start flow control " + this);
@@ -689,6 +771,7 @@ public class MySQLConnection extends AbstractConnection implements
      * @param reason
      */
     public void closeInner(final String reason) {
+        cancelExecute();
         innerTerminate(reason == null ? closeReason : reason);
         if (this.respHandler != null) {
             closeResponseHandler(reason == null ? closeReason : reason);
@@ -753,6 +836,7 @@ public class MySQLConnection extends AbstractConnection implements
         statusSync = null;
         isDDL = false;
         testing = false;
+        executeStartNanos = 0;
         setResponseHandler(null);
         setSession(null);
         logResponse.set(false);
@@ -776,10 +860,54 @@ public class MySQLConnection extends AbstractConnection implements
         }
     }
 
+    private void startExecuting() {
+        isExecuting = true;
+        lastTime = TimeUtil.currentTimeMillis();
+        if (isDDL) {
+            executeStartNanos = 0;
+        } else {
+            executeStartMillis = System.currentTimeMillis();
+            executeStartNanos = System.nanoTime();
+        }
+        if (processor != null) {
+            // the sql timeout is checked by the timing wheel of the processor
+            processor.scheduleCheck(this, lastTime + DbleServer.getInstance().getConfig().getSystem().getSqlExecuteTimeout() * 1000L);
+        }
+    }
+
     public void setExecuting(boolean executing) {
         isExecuting = executing;
     }
 
+    /**
+     * the response of the query is finished, record it to the circuit breaker of the pool
+     */
+    public void executeFinished() {
+        long start = executeStartNanos;
+        if (start != 0) {
+            executeStartNanos = 0;
+            pool.getCircuitBreaker().onResponse(executeStartMillis, (System.nanoTime() - start) / 1000);
+        }
+    }
+
+    /**
+     * the query is failed without response
+     */
+    public void executeFailed() {
+        long start = executeStartNanos;
+        if (start != 0) {
+            executeStartNanos = 0;
+            pool.getCircuitBreaker().onFailure(executeStartMillis);
+        }
+    }
+
+    /**
+     * the query is killed by dble, it is neither a response nor a failure of the data source
+     */
+    public void cancelExecute() {
+        executeStartNanos = 0;
+    }
+
     public boolean setResponseHandler(ResponseHandler queryHandler) {
         if (handler instanceof MySQLConnectionHandler) {
             ((MySQLConnectionHandler) handler).setResponseHandler(queryHandler);
@@ -982,6 +1110,7 @@ public class MySQLConnection extends AbstractConnection implements
             }
             conn.sysVariables = sysVariables;
             conn.usrVariables = usrVariables;
+            conn.updateStateHash();
         }
     }
 }
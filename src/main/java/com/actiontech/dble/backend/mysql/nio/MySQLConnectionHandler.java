@@ -30,6 +30,8 @@ public class MySQLConnectionHandler extends BackendAsyncHandler {
     private static final int RESULT_STATUS_INIT = 0;
     private static final int RESULT_STATUS_HEADER = 1;
     private static final int RESULT_STATUS_FIELD_EOF = 2;
+    // header, 0xfe and the warnings are before the status of EOF packet
+    private static final int EOF_STATUS_OFFSET = MySQLPacket.PACKET_HEADER_SIZE + 3;
 
     private final MySQLConnection source;
     private volatile int resultStatus;
@@ -156,6 +158,9 @@ public class MySQLConnectionHandler extends BackendAsyncHandler {
      */
     private void handleOkPacket(byte[] data) {
         ResponseHandler respHand = responseHandler;
+        if (!hasMoreResults(data, okStatusOffset(data))) {
+            source.executeFinished();
+        }
         if (respHand != null) {
             respHand.okResponse(data, source);
         }
@@ -166,6 +171,8 @@ public class MySQLConnectionHandler extends BackendAsyncHandler {
      */
     private void handleErrorPacket(byte[] data) {
         final ResponseHandler respHand = responseHandler;
+        // the error packet is a failure of the data source
+        this.source.executeFailed();
         this.source.setExecuting(false);
         this.source.setRowDataFlowing(false);
         this.source.signal();
@@ -228,6 +235,9 @@ public class MySQLConnectionHandler extends BackendAsyncHandler {
         if (session != null && !source.isTesting() && this.source.getLogResponse().compareAndSet(false, true)) {
             session.setBackendResponseEndTime(this.source);
         }
+        if (!hasMoreResults(data, EOF_STATUS_OFFSET)) {
+            this.source.executeFinished();
+        }
         this.source.setExecuting(false);
         this.source.setRowDataFlowing(false);
         this.source.getLogResponse().set(false);
@@ -239,6 +249,31 @@ public class MySQLConnectionHandler extends BackendAsyncHandler {
         }
     }
 
+    /**
+     * header, affected rows and insert id are before the status of OK packet
+     */
+    private static int okStatusOffset(byte[] data) {
+        int offset = MySQLPacket.PACKET_HEADER_SIZE + 1;
+        offset += lengthSize(data[offset]);
+        return offset + lengthSize(data[offset]);
+    }
+
+    private static int lengthSize(byte first) {
+        int length = first & 0xff;
+        if (length < 251) {
+            return 1;
+        } else if (length == 252) {
+            return 3;
+        } else if (length == 253) {
+            return 4;
+        }
+        return 9;
+    }
+
+    private static boolean hasMoreResults(byte[] data, int statusOffset) {
+        return statusOffset < data.length && (data[statusOffset] & StatusFlags.SERVER_MORE_RESULTS_EXISTS) != 0;
+    }
+
     @Override
     protected void handleDataError(Exception e) {
         LOGGER.info(this.source.toString() + " handle data error:", e);
@@ -248,6 +283,8 @@ public class MySQLConnectionHandler extends BackendAsyncHandler {
             LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1000));
         }
         resultStatus = RESULT_STATUS_INIT;
+        // the data is not handled by dble, it is not a failure of the data source
+        this.source.cancelExecute();
         this.source.setExecuting(false);
         this.source.setRowDataFlowing(false);
         this.source.signal();
@@ -9,7 +9,6 @@ import com.actiontech.dble.DbleServer;
 import com.actiontech.dble.backend.BackendConnection;
 import com.actiontech.dble.backend.datasource.PhysicalDataNode;
 import com.actiontech.dble.backend.mysql.nio.MySQLConnection;
-import com.actiontech.dble.cache.CachePool;
 import com.actiontech.dble.config.ErrorCode;
 import com.actiontech.dble.net.ConnectionException;
 import com.actiontech.dble.net.mysql.ErrorPacket;
@@ -18,7 +17,6 @@ import com.actiontech.dble.net.mysql.RowDataPacket;
 import com.actiontech.dble.route.RouteResultsetNode;
 import com.actiontech.dble.server.NonBlockingSession;
 import com.actiontech.dble.server.parser.ServerParse;
-import com.actiontech.dble.singleton.CacheService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -34,6 +32,9 @@ import java.util.concurrent.locks.ReentrantLock;
 /**
  * company where id=(select company_id from customer where id=3); the one which
  * return data (id) is the data node to store child table's records
+ * <p>
+ * with multi keys, the sql is like select distinct company_id from customer where company_id in (...),
+ * the data node of every key returned is kept
  *
  * @author wuzhih, huqing.yan
  */
@@ -42,6 +43,8 @@ public class FetchStoreNodeOfChildTableHandler implements ResponseHandler {
     private final String sql;
     private AtomicBoolean hadResult = new AtomicBoolean(false);
     private volatile String dataNode;
+    private final boolean multiKeys;
+    private final Map<String, String> keyDataNodes = new ConcurrentHashMap<>();
     private Map<String, BackendConnection> receiveMap = new ConcurrentHashMap<>();
     private Map<String, String> nodesErrorReason = new ConcurrentHashMap<>();
     protected final ReentrantLock lock = new ReentrantLock();
@@ -49,25 +52,29 @@ public class FetchStoreNodeOfChildTableHandler implements ResponseHandler {
     private final NonBlockingSession session;
 
     public FetchStoreNodeOfChildTableHandler(String sql, NonBlockingSession session) {
+        this(sql, session, false);
+    }
+
+    public FetchStoreNodeOfChildTableHandler(String sql, NonBlockingSession session, boolean multiKeys) {
         this.sql = sql;
         this.session = session;
+        this.multiKeys = multiKeys;
     }
 
-    public String execute(String schema, ArrayList<String> dataNodes) throws ConnectionException {
-        String key = schema + ":" + sql;
-        CachePool cache = CacheService.getCachePoolByName("ER_SQL2PARENTID");
-        if (cache != null) {
-            String cacheResult = (String) cache.get(key);
-            if (cacheResult != null) {
-                return cacheResult;
-            }
-        }
+    /**
+     * @return the data node of the keys found, only for multi keys
+     */
+    public Map<String, String> executeForKeys(ArrayList<String> dataNodes) throws ConnectionException {
+        execute(dataNodes);
+        return keyDataNodes;
+    }
 
+    public String execute(ArrayList<String> dataNodes) throws ConnectionException {
         int totalCount = dataNodes.size();
 
         LOGGER.debug("find child node with sql:" + sql);
         for (String dn : dataNodes) {
-            if (!LOGGER.isDebugEnabled()) {
+            if (!LOGGER.isDebugEnabled() && !multiKeys) {
                 //no early return when debug
                 if (dataNode != null) {
                     LOGGER.debug(" found return ");
@@ -121,13 +128,6 @@ public class FetchStoreNodeOfChildTableHandler implements ResponseHandler {
             fatalErrorMsg.append("}");
             throw new ConnectionException(ErrorCode.ER_UNKNOWN_ERROR, fatalErrorMsg.toString());
         }
-
-        if (!LOGGER.isDebugEnabled()) {
-            //no cached when debug
-            if (dataNode != null && cache != null) {
-                cache.putIfAbsent(key, dataNode);
-            }
-        }
         return dataNode;
 
     }
@@ -203,6 +203,16 @@ public class FetchStoreNodeOfChildTableHandler implements ResponseHandler {
         if (LOGGER.isDebugEnabled()) {
             LOGGER.debug("received rowResponse response from  " + conn);
         }
+        if (multiKeys) {
+            RowDataPacket rowDataPkg = new RowDataPacket(1);
+            rowDataPkg.read(row);
+            byte[] key = rowDataPkg.fieldValues.get(0);
+            String node = ((RouteResultsetNode) conn.getAttachment()).getName();
+            if (key != null && keyDataNodes.putIfAbsent(new String(key), node) != null) {
+                LOGGER.info("find multi data nodes for child table store, key is " + new String(key) + ", sql is:  " + sql);
+            }
+            return false;
+        }
         if (hadResult.compareAndSet(false, true)) {
             lock.lock();
             try {
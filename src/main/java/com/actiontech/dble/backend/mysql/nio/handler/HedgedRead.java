@@ -0,0 +1,343 @@
+/*
+ * Copyright (C) 2016-2020 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.backend.mysql.nio.handler;
+
+import com.actiontech.dble.DbleServer;
+import com.actiontech.dble.backend.BackendConnection;
+import com.actiontech.dble.backend.datasource.PhysicalDataHost;
+import com.actiontech.dble.backend.datasource.PhysicalDataNode;
+import com.actiontech.dble.backend.datasource.PhysicalDataSource;
+import com.actiontech.dble.backend.mysql.nio.MySQLConnection;
+import com.actiontech.dble.config.model.SystemConfig;
+import com.actiontech.dble.net.mysql.ErrorPacket;
+import com.actiontech.dble.net.mysql.FieldPacket;
+import com.actiontech.dble.net.mysql.RowDataPacket;
+import com.actiontech.dble.route.RouteResultset;
+import com.actiontech.dble.route.RouteResultsetNode;
+import com.actiontech.dble.server.NonBlockingSession;
+import com.actiontech.dble.server.ServerConnection;
+import com.actiontech.dble.server.parser.ServerParse;
+import com.actiontech.dble.singleton.Scheduler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * hedged read of the read only query of SingleNodeHandler.
+ * <p>
+ * if the read source does not respond in its p95 latency, the query is sent to another read source too.
+ * The connection responds first is the winner, the responses of the other one are ignored and its query is killed
+ * by KILL QUERY. The loser is released to the pool after both its query and the KILL QUERY are finished,
+ * so the KILL QUERY can't interrupt the next query sent by the connection.
+ * A connection closed or broken before it responds doesn't win, its failure is ignored while the other
+ * one is still running the query.
+ *
+ * @author ActionTech
+ */
+final class HedgedRead {
+    private static final Logger LOGGER = LoggerFactory.getLogger(HedgedRead.class);
+
+    private final SingleNodeHandler handler;
+    private final RouteResultsetNode node;
+    private final NonBlockingSession session;
+    private final PhysicalDataNode dataNode;
+    private final int stateHash;
+    private final AtomicInteger loserSteps = new AtomicInteger();
+    private volatile BackendConnection winner;
+    private volatile MySQLConnection loser;
+    private BackendConnection primary;
+    private BackendConnection hedge;
+    private BackendConnection failed;
+    private ScheduledFuture<?> timer;
+
+    HedgedRead(SingleNodeHandler handler, RouteResultsetNode node, NonBlockingSession session, PhysicalDataNode dataNode, int stateHash) {
+        this.handler = handler;
+        this.node = node;
+        this.session = session;
+        this.dataNode = dataNode;
+        this.stateHash = stateHash;
+    }
+
+    /**
+     * @return null if the query can't be hedged
+     */
+    static HedgedRead create(SingleNodeHandler handler, RouteResultset rrs, RouteResultsetNode node, NonBlockingSession session,
+                             PhysicalDataNode dataNode, int stateHash) {
+        if (DbleServer.getInstance().getConfig().getSystem().getUseHedgedRead() != 1 || rrs.getSqlType() != ServerParse.SELECT ||
+                rrs.isCallStatement() || rrs.isLoadData() || session.getIsMultiStatement().get()) {
+            return null;
+        }
+        ServerConnection source = session.getSource();
+        if (!source.isAutocommit() || source.isTxStart() || source.isLocked()) {
+            return null;
+        }
+        if (node.getRunOnSlave() != null || !node.canRunINReadDB(true) ||
+                dataNode.getDataHost().getDataHostConfig().getBalance() == PhysicalDataHost.BALANCE_NONE) {
+            return null;
+        }
+        return new HedgedRead(handler, node, session, dataNode, stateHash);
+    }
+
+    /**
+     * start the timer of the hedge before the query is sent by conn
+     */
+    synchronized void primaryAcquired(BackendConnection conn) {
+        primary = conn;
+        if (!(conn instanceof MySQLConnection)) {
+            return;
+        }
+        long p95 = ((MySQLConnection) conn).getPool().getCircuitBreaker().getP95Latency();
+        if (p95 < 0) {
+            // too few queries to know the latency of the source
+            return;
+        }
+        SystemConfig system = DbleServer.getInstance().getConfig().getSystem();
+        long delay = Math.max(p95 / 1000, system.getHedgedReadMinDelay());
+        timer = Scheduler.getInstance().schedule(new Runnable() {
+            @Override
+            public void run() {
+                sendHedge();
+            }
+        }, delay);
+    }
+
+    /**
+     * called before every response of SingleNodeHandler, the first connection responds wins
+     *
+     * @return false if the response is from the loser and should be ignored
+     */
+    boolean accept(BackendConnection conn) {
+        if (winner == conn) {
+            return true;
+        }
+        synchronized (this) {
+            if (winner != null || (conn != null && conn == failed)) {
+                return false;
+            }
+            if (conn == null || (conn != primary && conn != hedge)) {
+                return true;
+            }
+            winner = conn;
+            BackendConnection other = conn == primary ? hedge : primary;
+            // set before the responses of the loser are ignored, the failed one has nothing to kill
+            loser = other == failed ? null : (MySQLConnection) other;
+            if (timer != null) {
+                timer.cancel(false);
+            }
+        }
+        if (conn == hedge) {
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("hedged read of " + node + " wins, connection " + conn);
+            }
+            session.bindConnection(node, conn);
+        }
+        if (loser != null) {
+            kill(loser);
+        }
+        return true;
+    }
+
+    /**
+     * called by SingleNodeHandler when the connection is closed or broken, the failure is reported to the client only if
+     * the other connection is not running the query
+     *
+     * @return false if the failure should be ignored
+     */
+    boolean fail(BackendConnection conn) {
+        if (winner == conn) {
+            return true;
+        }
+        synchronized (this) {
+            if (winner != null || (conn != null && conn == failed)) {
+                return false;
+            }
+            if (conn == null || (conn != primary && conn != hedge)) {
+                return true;
+            }
+            BackendConnection other = conn == primary ? hedge : primary;
+            if (other != null && failed == null) {
+                failed = conn;
+                LOGGER.info("connection " + conn + " of hedged read of " + node + " failed, wait for the other one");
+                return false;
+            }
+            // no hedge is sent, or both failed
+            winner = conn;
+            if (timer != null) {
+                timer.cancel(false);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * called by SingleNodeHandler when the last packet of the query of the loser is ignored
+     */
+    void loserFinished(BackendConnection conn) {
+        if (conn == loser) {
+            loserStepFinished();
+        }
+    }
+
+    private void sendHedge() {
+        PhysicalDataSource source;
+        synchronized (this) {
+            if (winner != null || session.closed()) {
+                return;
+            }
+            source = dataNode.getDataHost().getHedgeSource(((MySQLConnection) primary).getPool());
+        }
+        if (source == null) {
+            return;
+        }
+        try {
+            source.getConnection(dataNode.getDatabase(), true, stateHash, new HedgeAcquiredHandler(), node, false);
+        } catch (Exception e) {
+            LOGGER.info("get connection of hedged read from " + source.getName() + " failed", e);
+        }
+    }
+
+    private void kill(MySQLConnection conn) {
+        // the killed query is not counted by the circuit breaker
+        conn.cancelExecute();
+        try {
+            conn.getPool().getConnection(conn.getSchema(), true, new KillQueryHandler(), null, false);
+        } catch (Exception e) {
+            LOGGER.info("get connection to kill the loser of hedged read failed", e);
+            conn.close("the loser of hedged read");
+        }
+    }
+
+    private void loserStepFinished() {
+        if (loserSteps.incrementAndGet() == 2 && !loser.isClosed()) {
+            loser.release();
+        }
+    }
+
+    private void killFailed(String reason) {
+        LOGGER.info("kill query of the loser of hedged read " + loser + " failed: " + reason);
+        loser.close("kill query of the loser of hedged read failed");
+    }
+
+    /**
+     * sends the query by the hedge connection unless there is a winner already
+     */
+    void hedgeAcquired(BackendConnection conn) {
+        synchronized (this) {
+            if (winner == null && !session.closed()) {
+                hedge = conn;
+                conn.setResponseHandler(handler);
+                conn.setSession(session);
+                conn.execute(node, session.getSource(), true);
+                return;
+            }
+        }
+        conn.release();
+    }
+
+    private final class HedgeAcquiredHandler implements ResponseHandler {
+
+        @Override
+        public void connectionAcquired(BackendConnection conn) {
+            hedgeAcquired(conn);
+        }
+
+        @Override
+        public void connectionError(Throwable e, BackendConnection conn) {
+            LOGGER.info("connection of hedged read error " + conn, e);
+        }
+
+        @Override
+        public void errorResponse(byte[] err, BackendConnection conn) {
+            // the responses are handled by SingleNodeHandler
+        }
+
+        @Override
+        public void okResponse(byte[] ok, BackendConnection conn) {
+        }
+
+        @Override
+        public void fieldEofResponse(byte[] header, List<byte[]> fields, List<FieldPacket> fieldPackets, byte[] eof,
+                                     boolean isLeft, BackendConnection conn) {
+        }
+
+        @Override
+        public boolean rowResponse(byte[] rowNull, RowDataPacket rowPacket, boolean isLeft, BackendConnection conn) {
+            return false;
+        }
+
+        @Override
+        public void rowEofResponse(byte[] eof, boolean isLeft, BackendConnection conn) {
+        }
+
+        @Override
+        public void writeQueueAvailable() {
+        }
+
+        @Override
+        public void connectionClose(BackendConnection conn, String reason) {
+        }
+    }
+
+    /**
+     * sends KILL QUERY of the loser, the loser connection is kept
+     */
+    private final class KillQueryHandler implements ResponseHandler {
+
+        @Override
+        public void connectionAcquired(BackendConnection conn) {
+            conn.setResponseHandler(this);
+            conn.setSession(session);
+            ((MySQLConnection) conn).sendQueryCmd("KILL QUERY " + loser.getThreadId(), session.getSource().getCharset());
+        }
+
+        @Override
+        public void connectionError(Throwable e, BackendConnection conn) {
+            killFailed(e.toString());
+        }
+
+        @Override
+        public void errorResponse(byte[] err, BackendConnection conn) {
+            ErrorPacket errPacket = new ErrorPacket();
+            errPacket.read(err);
+            conn.release();
+            killFailed(new String(errPacket.getMessage()));
+        }
+
+        @Override
+        public void okResponse(byte[] ok, BackendConnection conn) {
+            conn.release();
+            loserStepFinished();
+        }
+
+        @Override
+        public void fieldEofResponse(byte[] header, List<byte[]> fields, List<FieldPacket> fieldPackets, byte[] eof,
+                                     boolean isLeft, BackendConnection conn) {
+        }
+
+        @Override
+        public boolean rowResponse(byte[] rowNull, RowDataPacket rowPacket, boolean isLeft, BackendConnection conn) {
+            return false;
+        }
+
+        @Override
+        public void rowEofResponse(byte[] eof, boolean isLeft, BackendConnection conn) {
+            conn.close("close unexpected packet of kill query");
+            killFailed("unexpected packet");
+        }
+
+        @Override
+        public void writeQueueAvailable() {
+        }
+
+        @Override
+        public void connectionClose(BackendConnection conn, String reason) {
+            killFailed(reason);
+        }
+    }
+}
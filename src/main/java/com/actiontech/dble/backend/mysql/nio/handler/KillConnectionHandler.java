@@ -32,6 +32,8 @@ public class KillConnectionHandler implements ResponseHandler {
                                  NonBlockingSession session) {
         this.toKilled = (MySQLConnection) toKilled;
         this.session = session;
+        // the killed query is not counted by the circuit breaker
+        this.toKilled.cancelExecute();
     }
 
     @Override
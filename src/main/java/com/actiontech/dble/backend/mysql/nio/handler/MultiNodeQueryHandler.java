@@ -129,7 +129,8 @@ public class MultiNodeQueryHandler extends MultiNodeHandler implements LoadDataR
                 // create new connection
                 node.setRunOnSlave(rrs.getRunOnSlave());
                 PhysicalDataNode dn = DbleServer.getInstance().getConfig().getDataNodes().get(node.getName());
-                dn.getConnection(dn.getDatabase(), session.getSource().isTxStart(), sessionAutocommit, node, this, node);
+                int stateHash = session.getSource().getBackendStateHash(sessionAutocommit && !session.getSource().isTxStart() && !node.isModifySQL());
+                dn.getConnection(dn.getDatabase(), session.getSource().isTxStart(), sessionAutocommit, stateHash, node, this, node);
             }
         }
     }
@@ -440,7 +441,7 @@ public class MultiNodeQueryHandler extends MultiNodeHandler implements LoadDataR
             if (!errorResponse.get()) {
                 FlowCotrollerConfig fconfig = WriteQueueFlowController.getFlowCotrollerConfig();
                 if (fconfig.isEnableFlowControl() &&
-                        session.getSource().getWriteQueue().size() > fconfig.getStart()) {
+                        session.getSource().isWriteQueueOverflow(fconfig)) {
                     session.getSource().startFlowControl(conn);
                 }
                 if (prepared) {
@@ -534,7 +535,7 @@ public class MultiNodeQueryHandler extends MultiNodeHandler implements LoadDataR
             }
             assert rrs != null;
             QueryResult queryResult = new QueryResult(session.getSource().getUser(), rrs.getSqlType(),
-                    rrs.getStatement(), selectRows, netInBytes, netOutBytes, session.getQueryStartTime(), System.currentTimeMillis(), resultSize);
+                    rrs.getStatement(), rrs, selectRows, netInBytes, netOutBytes, session.getQueryStartTime(), System.currentTimeMillis(), resultSize);
             if (LOGGER.isDebugEnabled()) {
                 LOGGER.debug("try to record sql:" + rrs.getStatement());
             }
@@ -20,6 +20,7 @@ import com.actiontech.dble.plan.Order;
 import com.actiontech.dble.plan.common.item.ItemField;
 import com.actiontech.dble.route.RouteResultset;
 import com.actiontech.dble.server.NonBlockingSession;
+import com.actiontech.dble.sqlengine.mpp.PartialAggregateMerger;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -36,6 +37,7 @@ public class MultiNodeSelectHandler extends MultiNodeQueryHandler {
     private RowDataComparator rowComparator;
     private OutputHandler outputHandler;
     private volatile boolean noNeedRows = false;
+    private PartialAggregateMerger aggregateMerger;
 
     public MultiNodeSelectHandler(RouteResultset rrs, NonBlockingSession session) {
         super(rrs, session);
@@ -142,7 +144,12 @@ public class MultiNodeSelectHandler extends MultiNodeQueryHandler {
             orderBys.add(new Order(itemField));
         }
         rowComparator = new RowDataComparator(HandlerTool.createFields(fieldPackets), orderBys);
-        outputHandler.fieldEofResponse(null, null, fieldPackets, null, false, conn);
+        if (rrs.getPartialAggregation() != null) {
+            aggregateMerger = new PartialAggregateMerger(rrs.getPartialAggregation(), fieldPackets, session.getSource().getCharset().getResults());
+            outputHandler.fieldEofResponse(null, null, aggregateMerger.getFieldPackets(), null, false, conn);
+        } else {
+            outputHandler.fieldEofResponse(null, null, fieldPackets, null, false, conn);
+        }
     }
 
     private void startOwnThread() {
@@ -178,28 +185,20 @@ public class MultiNodeSelectHandler extends MultiNodeQueryHandler {
                     BlockingQueue<HeapItem> topItemQueue = queues.get(top.getIndex());
                     HeapItem item = topItemQueue.take();
                     heap.replaceTop(item);
-                    //limit
-                    this.selectRows++;
-                    if (rrs.getLimitSize() >= 0) {
-                        if (selectRows <= rrs.getLimitStart()) {
-                            continue;
-                        } else if (selectRows > (rrs.getLimitStart() < 0 ? 0 : rrs.getLimitStart()) + rrs.getLimitSize()) {
-                            noNeedRows = true;
-                            while (!heap.isEmpty()) {
-                                HeapItem itemToDiscard = heap.poll();
-                                if (!itemToDiscard.isNullItem()) {
-                                    BlockingQueue<HeapItem> discardQueue = queues.get(itemToDiscard.getIndex());
-                                    while (true) {
-                                        if (discardQueue.take().isNullItem() || isFail()) {
-                                            break;
-                                        }
-                                    }
-                                }
-                            }
-                            continue;
+                    if (aggregateMerger == null) {
+                        outputRow(heap, top.getRowData(), top.getRowPacket(), top.getIndex());
+                    } else {
+                        RowDataPacket merged = aggregateMerger.add(top.getRowPacket());
+                        if (merged != null) {
+                            outputRow(heap, null, merged, top.getIndex());
                         }
                     }
-                    outputHandler.rowResponse(top.getRowData(), top.getRowPacket(), false, top.getIndex());
+                }
+            }
+            if (aggregateMerger != null && !noNeedRows) {
+                RowDataPacket merged = aggregateMerger.finish();
+                if (merged != null) {
+                    outputRow(heap, null, merged, null);
                 }
             }
             Iterator<Map.Entry<BackendConnection, BlockingQueue<HeapItem>>> iterator = this.queues.entrySet().iterator();
@@ -217,4 +216,36 @@ public class MultiNodeSelectHandler extends MultiNodeQueryHandler {
             session.onQueryError(msg.getBytes());
         }
     }
+
+    private void outputRow(ArrayMinHeap<HeapItem> heap, byte[] row, RowDataPacket rowPacket, BackendConnection conn) throws InterruptedException {
+        if (noNeedRows) {
+            return;
+        }
+        //limit
+        this.selectRows++;
+        if (rrs.getLimitSize() >= 0) {
+            if (selectRows <= rrs.getLimitStart()) {
+                return;
+            } else if (selectRows > (rrs.getLimitStart() < 0 ? 0 : rrs.getLimitStart()) + rrs.getLimitSize()) {
+                noNeedRows = true;
+                discardRows(heap);
+                return;
+            }
+        }
+        outputHandler.rowResponse(row, rowPacket, false, conn);
+    }
+
+    private void discardRows(ArrayMinHeap<HeapItem> heap) throws InterruptedException {
+        while (!heap.isEmpty()) {
+            HeapItem itemToDiscard = heap.poll();
+            if (!itemToDiscard.isNullItem()) {
+                BlockingQueue<HeapItem> discardQueue = queues.get(itemToDiscard.getIndex());
+                while (true) {
+                    if (discardQueue.take().isNullItem() || isFail()) {
+                        break;
+                    }
+                }
+            }
+        }
+    }
 }
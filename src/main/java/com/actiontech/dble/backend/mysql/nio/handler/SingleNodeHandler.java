@@ -60,6 +60,7 @@ public class SingleNodeHandler implements ResponseHandler, LoadDataResponseHandl
     private List<FieldPacket> fieldPackets = new ArrayList<>();
     private volatile boolean connClosed = false;
     protected AtomicBoolean writeToClient = new AtomicBoolean(false);
+    private volatile HedgedRead hedgedRead;
 
 
     public SingleNodeHandler(RouteResultset rrs, NonBlockingSession session) {
@@ -76,6 +77,7 @@ public class SingleNodeHandler implements ResponseHandler, LoadDataResponseHandl
 
     public void execute() throws Exception {
         connClosed = false;
+        hedgedRead = null;
         if (rrs.isLoadData()) {
             packetId = session.getSource().getLoadDataInfileHandler().getLastPackId();
         } else {
@@ -104,7 +106,10 @@ public class SingleNodeHandler implements ResponseHandler, LoadDataResponseHandl
         node.setRunOnSlave(rrs.getRunOnSlave());
         ServerConfig conf = DbleServer.getInstance().getConfig();
         PhysicalDataNode dn = conf.getDataNodes().get(node.getName());
-        dn.getConnection(dn.getDatabase(), session.getSource().isTxStart(), session.getSource().isAutocommit(), node, this, node);
+        ServerConnection source = session.getSource();
+        int stateHash = source.getBackendStateHash(source.isAutocommit() && !source.isTxStart());
+        hedgedRead = HedgedRead.create(this, rrs, node, session, dn, stateHash);
+        dn.getConnection(dn.getDatabase(), source.isTxStart(), source.isAutocommit(), stateHash, node, this, node);
     }
 
     protected void execute(BackendConnection conn) {
@@ -127,11 +132,17 @@ public class SingleNodeHandler implements ResponseHandler, LoadDataResponseHandl
     @Override
     public void connectionAcquired(final BackendConnection conn) {
         session.bindConnection(node, conn);
+        if (hedgedRead != null) {
+            hedgedRead.primaryAcquired(conn);
+        }
         execute(conn);
     }
 
     @Override
     public void connectionError(Throwable e, BackendConnection conn) {
+        if (hedgedRead != null && !hedgedRead.fail(conn)) {
+            return;
+        }
         LOGGER.warn("Backend connect Error, Connection info:" + conn, e);
         ErrorPacket errPacket = new ErrorPacket();
         errPacket.setPacketId(++packetId);
@@ -143,6 +154,10 @@ public class SingleNodeHandler implements ResponseHandler, LoadDataResponseHandl
 
     @Override
     public void errorResponse(byte[] data, BackendConnection conn) {
+        if (hedgedRead != null && !hedgedRead.accept(conn)) {
+            hedgedRead.loserFinished(conn);
+            return;
+        }
         ErrorPacket err = new ErrorPacket();
         err.read(data);
         err.setPacketId(++packetId);
@@ -213,6 +228,10 @@ public class SingleNodeHandler implements ResponseHandler, LoadDataResponseHandl
      */
     @Override
     public void okResponse(byte[] data, BackendConnection conn) {
+        if (hedgedRead != null && !hedgedRead.accept(conn)) {
+            hedgedRead.loserFinished(conn);
+            return;
+        }
         this.netOutBytes += data.length;
 
         boolean executeResponse = conn.syncAndExecute();
@@ -281,6 +300,10 @@ public class SingleNodeHandler implements ResponseHandler, LoadDataResponseHandl
      */
     @Override
     public void rowEofResponse(byte[] eof, boolean isLeft, BackendConnection conn) {
+        if (hedgedRead != null && !hedgedRead.accept(conn)) {
+            hedgedRead.loserFinished(conn);
+            return;
+        }
         this.netOutBytes += eof.length;
         this.resultSize += eof.length;
         // if it's call statement,it will not release connection
@@ -312,7 +335,7 @@ public class SingleNodeHandler implements ResponseHandler, LoadDataResponseHandl
             if (rrs.getStatement() != null) {
                 netInBytes = rrs.getStatement().getBytes().length;
             }
-            QueryResult queryResult = new QueryResult(session.getSource().getUser(), rrs.getSqlType(), rrs.getStatement(), selectRows,
+            QueryResult queryResult = new QueryResult(session.getSource().getUser(), rrs.getSqlType(), rrs.getStatement(), rrs, selectRows,
                     netInBytes, netOutBytes, session.getQueryStartTime(), System.currentTimeMillis(), resultSize);
             if (LOGGER.isDebugEnabled()) {
                 LOGGER.debug("try to record sql:" + rrs.getStatement());
@@ -324,6 +347,9 @@ public class SingleNodeHandler implements ResponseHandler, LoadDataResponseHandl
     @Override
     public void fieldEofResponse(byte[] header, List<byte[]> fields, List<FieldPacket> fieldPacketsNull, byte[] eof,
                                  boolean isLeft, BackendConnection conn) {
+        if (hedgedRead != null && !hedgedRead.accept(conn)) {
+            return;
+        }
         this.netOutBytes += header.length;
         this.resultSize += header.length;
         for (byte[] field : fields) {
@@ -390,6 +416,9 @@ public class SingleNodeHandler implements ResponseHandler, LoadDataResponseHandl
 
     @Override
     public boolean rowResponse(byte[] row, RowDataPacket rowPacket, boolean isLeft, BackendConnection conn) {
+        if (hedgedRead != null && !hedgedRead.accept(conn)) {
+            return false;
+        }
 
         this.netOutBytes += row.length;
         this.resultSize += row.length;
@@ -418,7 +447,7 @@ public class SingleNodeHandler implements ResponseHandler, LoadDataResponseHandl
             if (!writeToClient.get()) {
                 FlowCotrollerConfig fconfig = WriteQueueFlowController.getFlowCotrollerConfig();
                 if (fconfig.isEnableFlowControl() &&
-                        session.getSource().getWriteQueue().size() > fconfig.getStart()) {
+                        session.getSource().isWriteQueueOverflow(fconfig)) {
                     session.getSource().startFlowControl(conn);
                 }
                 if (prepared) {
@@ -455,6 +484,9 @@ public class SingleNodeHandler implements ResponseHandler, LoadDataResponseHandl
 
     @Override
     public void connectionClose(BackendConnection conn, String reason) {
+        if (hedgedRead != null && !hedgedRead.fail(conn)) {
+            return;
+        }
         if (connClosed) {
             return;
         }
@@ -19,7 +19,6 @@ import com.actiontech.dble.backend.mysql.nio.handler.util.CallBackHandler;
 import com.actiontech.dble.config.ErrorCode;
 import com.actiontech.dble.config.model.SchemaConfig;
 import com.actiontech.dble.config.model.TableConfig;
-import com.actiontech.dble.net.mysql.ErrorPacket;
 import com.actiontech.dble.plan.Order;
 import com.actiontech.dble.plan.common.exception.MySQLOutPutException;
 import com.actiontech.dble.plan.common.item.Item;
@@ -41,14 +40,9 @@ import com.alibaba.druid.sql.ast.SQLOrderingSpecification;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.ReentrantLock;
 
 public abstract class BaseHandlerBuilder {
     private static final Logger LOGGER = LoggerFactory.getLogger(BaseHandlerBuilder.class);
@@ -97,7 +91,7 @@ public abstract class BaseHandlerBuilder {
         boolean isNestLoopJoin = isNestLoopStrategy(node);
         if (isNestLoopJoin) {
             nestLoopBuild();
-        } else if (PlanUtil.isGlobal(node)) {
+        } else if (PlanUtil.isGlobal(node) && !PlanUtil.existApproxSum(node)) {
             // the query can be send to a certain node
             noShardBuild();
         } else if (canDoAsMerge()) {
@@ -424,117 +418,99 @@ public abstract class BaseHandlerBuilder {
         return schemaConfig.getTables().get(table);
     }
 
-    protected void handleBlockingSubQuery() {
+    /**
+     * start the sub queries of the node, the build is done again after they are finished.
+     * The finished ones are not executed again, their builders are added to subQueryBuilderList.
+     */
+    protected void handleAsyncSubQuery() {
         if (node.getSubQueries().size() == 0) {
             return;
         }
-        final ReentrantLock lock = new ReentrantLock();
-        final Condition finishSubQuery = lock.newCondition();
-        final AtomicBoolean finished = new AtomicBoolean(false);
-        final AtomicInteger subNodes = new AtomicInteger(node.getSubQueries().size());
-        final CopyOnWriteArrayList<ErrorPacket> errorPackets = new CopyOnWriteArrayList<>();
+        List<SubQueryHandler> pendingHandlers = new ArrayList<>();
+        List<ItemSubQuery> pendingSubQueries = new ArrayList<>();
         for (ItemSubQuery itemSubQuery : node.getSubQueries()) {
+            BaseHandlerBuilder finished = isExplain ? null : hBuilder.getFinishedSubQuery(itemSubQuery);
+            if (finished != null) {
+                getSubQueryBuilderList().add(finished);
+                continue;
+            }
+            SubQueryHandler tempHandler = null;
             if (itemSubQuery instanceof ItemSingleRowSubQuery) {
-                final SubQueryHandler tempHandler = new SingleRowSubQueryHandler(getSequenceId(), session, (ItemSingleRowSubQuery) itemSubQuery);
-                if (isExplain) {
-                    handleSubQueryForExplain(lock, finishSubQuery, finished, subNodes, itemSubQuery.getPlanNode(), tempHandler);
-                } else {
-                    handleSubQuery(lock, finishSubQuery, finished, subNodes, errorPackets, itemSubQuery.getPlanNode(), tempHandler);
-                }
+                tempHandler = new SingleRowSubQueryHandler(getSequenceId(), session, (ItemSingleRowSubQuery) itemSubQuery);
             } else if (itemSubQuery instanceof ItemInSubQuery) {
-                final SubQueryHandler tempHandler = new InSubQueryHandler(getSequenceId(), session, (ItemInSubQuery) itemSubQuery);
-                if (isExplain) {
-                    handleSubQueryForExplain(lock, finishSubQuery, finished, subNodes, itemSubQuery.getPlanNode(), tempHandler);
-                } else {
-                    handleSubQuery(lock, finishSubQuery, finished, subNodes, errorPackets, itemSubQuery.getPlanNode(), tempHandler);
-                }
+                tempHandler = new InSubQueryHandler(getSequenceId(), session, (ItemInSubQuery) itemSubQuery);
             } else if (itemSubQuery instanceof ItemAllAnySubQuery) {
-                final SubQueryHandler tempHandler = new AllAnySubQueryHandler(getSequenceId(), session, (ItemAllAnySubQuery) itemSubQuery);
-                if (isExplain) {
-                    handleSubQueryForExplain(lock, finishSubQuery, finished, subNodes, itemSubQuery.getPlanNode(), tempHandler);
-                } else {
-                    handleSubQuery(lock, finishSubQuery, finished, subNodes, errorPackets, itemSubQuery.getPlanNode(), tempHandler);
-                }
+                tempHandler = new AllAnySubQueryHandler(getSequenceId(), session, (ItemAllAnySubQuery) itemSubQuery);
+            }
+            if (tempHandler != null) {
+                pendingHandlers.add(tempHandler);
+                pendingSubQueries.add(itemSubQuery);
             }
         }
-        lock.lock();
-        try {
-            while (!finished.get()) {
-                finishSubQuery.await();
+        if (pendingHandlers.isEmpty()) {
+            return;
+        }
+        if (isExplain) {
+            for (int i = 0; i < pendingHandlers.size(); i++) {
+                handleSubQueryForExplain(pendingSubQueries.get(i).getPlanNode(), pendingHandlers.get(i));
             }
-        } catch (InterruptedException e) {
-            LOGGER.info("execute ScalarSubQuery " + e);
-            ErrorPacket errorPackage = new ErrorPacket();
-            errorPackage.setErrNo(ErrorCode.ER_UNKNOWN_ERROR);
-            String errorMsg = e.getMessage() == null ? e.toString() : e.getMessage();
-            errorPackage.setMessage(errorMsg.getBytes(StandardCharsets.UTF_8));
-            errorPackets.add(errorPackage);
-        } finally {
-            lock.unlock();
+            return;
         }
-        if (errorPackets.size() > 0) {
-            throw new MySQLOutPutException(errorPackets.get(0).getErrNo(), "", new String(errorPackets.get(0).getMessage(), StandardCharsets.UTF_8));
+        SubQueryWaiter waiter = new SubQueryWaiter(pendingHandlers.size());
+        for (int i = 0; i < pendingHandlers.size(); i++) {
+            handleSubQuery(waiter, pendingSubQueries.get(i), pendingHandlers.get(i));
         }
+        throw new SubQueryPendingException(waiter);
     }
 
-    private void handleSubQueryForExplain(final ReentrantLock lock, final Condition finishSubQuery, final AtomicBoolean finished,
-                                          final AtomicInteger subNodes, final PlanNode planNode, final SubQueryHandler tempHandler) {
+    private void handleSubQueryForExplain(final PlanNode planNode, final SubQueryHandler tempHandler) {
         tempHandler.setForExplain();
         BaseHandlerBuilder builder = hBuilder.getBuilder(session, planNode, true);
         DMLResponseHandler endHandler = builder.getEndHandler();
         endHandler.setNextHandler(tempHandler);
         this.getSubQueryBuilderList().add(builder);
-        subQueryFinished(subNodes, lock, finished, finishSubQuery);
     }
 
-    private void handleSubQuery(final ReentrantLock lock, final Condition finishSubQuery, final AtomicBoolean finished,
-                                final AtomicInteger subNodes, final CopyOnWriteArrayList<ErrorPacket> errorPackets, final PlanNode planNode, final SubQueryHandler tempHandler) {
-        DbleServer.getInstance().getComplexQueryExecutor().execute(new Runnable() {
+    private void handleSubQuery(final SubQueryWaiter waiter, final ItemSubQuery itemSubQuery, final SubQueryHandler tempHandler) {
+        final HandlerBuilder.BuildCallBack subQueryStarter = new HandlerBuilder.BuildCallBack() {
             @Override
-            public void run() {
-                boolean startHandler = false;
-                try {
-                    BaseHandlerBuilder builder = hBuilder.getBuilder(session, planNode, false);
-                    DMLResponseHandler endHandler = builder.getEndHandler();
-                    endHandler.setNextHandler(tempHandler);
-                    getSubQueryBuilderList().add(builder);
-                    CallBackHandler tempDone = new CallBackHandler() {
-                        @Override
-                        public void call() throws Exception {
-                            if (tempHandler.getErrorPacket() != null) {
-                                errorPackets.add(tempHandler.getErrorPacket());
-                            }
-                            subQueryFinished(subNodes, lock, finished, finishSubQuery);
+            public void onBuilt(final BaseHandlerBuilder builder) {
+                DMLResponseHandler endHandler = builder.getEndHandler();
+                endHandler.setNextHandler(tempHandler);
+                CallBackHandler tempDone = new CallBackHandler() {
+                    @Override
+                    public void call() throws Exception {
+                        if (tempHandler.getErrorPacket() != null) {
+                            waiter.addError(tempHandler.getErrorPacket());
+                        } else {
+                            hBuilder.subQueryFinished(itemSubQuery, builder);
                         }
-                    };
-                    tempHandler.setTempDoneCallBack(tempDone);
-                    startHandler = true;
+                        waiter.subQueryFinished();
+                    }
+                };
+                tempHandler.setTempDoneCallBack(tempDone);
+                try {
                     HandlerBuilder.startHandler(endHandler);
                 } catch (Exception e) {
+                    // the handler calls back after it is started
                     LOGGER.info("execute ItemScalarSubQuery error", e);
-                    ErrorPacket errorPackage = new ErrorPacket();
-                    errorPackage.setErrNo(ErrorCode.ER_UNKNOWN_ERROR);
-                    String errorMsg = e.getMessage() == null ? e.toString() : e.getMessage();
-                    errorPackage.setMessage(errorMsg.getBytes(StandardCharsets.UTF_8));
-                    errorPackets.add(errorPackage);
-                    if (!startHandler) {
-                        subQueryFinished(subNodes, lock, finished, finishSubQuery);
-                    }
+                    waiter.addError(SubQueryWaiter.createErrorPacket(e));
                 }
             }
-        });
-    }
 
-    private void subQueryFinished(AtomicInteger subNodes, ReentrantLock lock, AtomicBoolean finished, Condition finishSubQuery) {
-        if (subNodes.decrementAndGet() == 0) {
-            lock.lock();
-            try {
-                finished.set(true);
-                finishSubQuery.signal();
-            } finally {
-                lock.unlock();
+            @Override
+            public void onError(Exception e) {
+                LOGGER.info("execute ItemScalarSubQuery error", e);
+                waiter.addError(SubQueryWaiter.createErrorPacket(e));
+                waiter.subQueryFinished();
             }
-        }
+        };
+        DbleServer.getInstance().getComplexQueryExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                hBuilder.buildStage(itemSubQuery.getPlanNode(), subQueryStarter);
+            }
+        });
     }
 
 }
@@ -9,14 +9,15 @@ import com.actiontech.dble.backend.mysql.nio.handler.query.DMLResponseHandler;
 import com.actiontech.dble.backend.mysql.nio.handler.query.impl.BaseSelectHandler;
 import com.actiontech.dble.backend.mysql.nio.handler.query.impl.MultiNodeMergeHandler;
 import com.actiontech.dble.backend.mysql.nio.handler.query.impl.OutputHandler;
+import com.actiontech.dble.DbleServer;
+import com.actiontech.dble.plan.common.item.subquery.ItemSubQuery;
 import com.actiontech.dble.plan.node.*;
 import com.actiontech.dble.route.RouteResultsetNode;
 import com.actiontech.dble.server.NonBlockingSession;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.HashSet;
-import java.util.Set;
+import java.util.*;
 
 public class HandlerBuilder {
     private static Logger logger = LoggerFactory.getLogger(HandlerBuilder.class);
@@ -24,6 +25,10 @@ public class HandlerBuilder {
     private PlanNode node;
     private NonBlockingSession session;
     private Set<RouteResultsetNode> rrsNodes = new HashSet<>();
+    /* the rrs nodes checked by the build of the current thread, removed if the build is done again */
+    private final ThreadLocal<List<RouteResultsetNode>> buildingRrsNodes = new ThreadLocal<>();
+    /* the builders of the finished sub queries, the sub queries are executed once only */
+    private final Map<ItemSubQuery, BaseHandlerBuilder> finishedSubQueries = Collections.synchronizedMap(new IdentityHashMap<>());
 
     public HandlerBuilder(PlanNode node, NonBlockingSession session) {
         this.node = node;
@@ -36,6 +41,10 @@ public class HandlerBuilder {
                 rrss.getMultiplexNum().incrementAndGet();
             }
             rrsNodes.add(rrss);
+            List<RouteResultsetNode> building = buildingRrsNodes.get();
+            if (building != null) {
+                building.add(rrss);
+            }
         }
     }
 
@@ -60,25 +69,123 @@ public class HandlerBuilder {
         return builder;
     }
 
-    public BaseHandlerBuilder build() throws Exception {
+    BaseHandlerBuilder getFinishedSubQuery(ItemSubQuery itemSubQuery) {
+        return finishedSubQueries.get(itemSubQuery);
+    }
+
+    void subQueryFinished(ItemSubQuery itemSubQuery, BaseHandlerBuilder builder) {
+        finishedSubQueries.put(itemSubQuery, builder);
+    }
+
+    /**
+     * build the handlers and start them, the session is called back when they are started or failed
+     */
+    public void build() {
         final long startTime = System.nanoTime();
-        BaseHandlerBuilder builder = getBuilder(session, node, false);
-        DMLResponseHandler endHandler = builder.getEndHandler();
-        OutputHandler fh = new OutputHandler(BaseHandlerBuilder.getSequenceId(), session);
-        endHandler.setNextHandler(fh);
-        //set slave only into rrsNode
-        for (DMLResponseHandler startHandler : fh.getMerges()) {
-            MultiNodeMergeHandler mergeHandler = (MultiNodeMergeHandler) startHandler;
-            for (BaseSelectHandler baseHandler : mergeHandler.getExeHandlers()) {
-                baseHandler.getRrss().setRunOnSlave(this.session.getComplexRrs().getRunOnSlave());
+        buildStage(node, new BuildCallBack() {
+            @Override
+            public void onBuilt(BaseHandlerBuilder builder) throws Exception {
+                DMLResponseHandler endHandler = builder.getEndHandler();
+                OutputHandler fh = new OutputHandler(BaseHandlerBuilder.getSequenceId(), session);
+                endHandler.setNextHandler(fh);
+                //set slave only into rrsNode
+                for (DMLResponseHandler startHandler : fh.getMerges()) {
+                    MultiNodeMergeHandler mergeHandler = (MultiNodeMergeHandler) startHandler;
+                    for (BaseSelectHandler baseHandler : mergeHandler.getExeHandlers()) {
+                        baseHandler.getRrss().setRunOnSlave(session.getComplexRrs().getRunOnSlave());
+                    }
+                }
+                session.endComplexRoute();
+                HandlerBuilder.startHandler(fh);
+                session.endComplexExecute();
+                long endTime = System.nanoTime();
+                logger.debug("HandlerBuilder.build cost:" + (endTime - startTime));
+                session.onMultiResultSetStarted(builder);
             }
+
+            @Override
+            public void onError(Exception e) {
+                session.onMultiResultSetError(node, e);
+            }
+        });
+    }
+
+    /**
+     * build the handlers of the plan node and go on with the callback.
+     * if the sub queries of the node are executing, the build is done again by the continuation of them
+     * instead of waiting in the thread, so the complex queries in flight are not bounded by the threads.
+     */
+    void buildStage(final PlanNode planNode, final BuildCallBack callBack) {
+        BaseHandlerBuilder builder;
+        try {
+            builder = tryBuild(planNode);
+        } catch (SubQueryPendingException e) {
+            final SubQueryWaiter waiter = e.getWaiter();
+            waiter.onFinished(new Runnable() {
+                @Override
+                public void run() {
+                    DbleServer.getInstance().getComplexQueryExecutor().execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            Exception error = waiter.getError();
+                            if (error != null) {
+                                callBack.onError(error);
+                            } else {
+                                buildStage(planNode, callBack);
+                            }
+                        }
+                    });
+                }
+            });
+            return;
+        } catch (Exception e) {
+            callBack.onError(e);
+            return;
+        }
+        try {
+            callBack.onBuilt(builder);
+        } catch (Exception e) {
+            callBack.onError(e);
+        }
+    }
+
+    /**
+     * build the node in the thread and wait for its sub queries, only for the node built
+     * while the handlers are running, such as the big node of nest loop join
+     */
+    BaseHandlerBuilder buildWaitingSubQuery(PlanNode planNode) throws InterruptedException {
+        while (true) {
+            try {
+                return tryBuild(planNode);
+            } catch (SubQueryPendingException e) {
+                SubQueryWaiter waiter = e.getWaiter();
+                waiter.await();
+                if (waiter.getError() != null) {
+                    throw waiter.getError();
+                }
+            }
+        }
+    }
+
+    private BaseHandlerBuilder tryBuild(PlanNode planNode) {
+        List<RouteResultsetNode> outer = buildingRrsNodes.get();
+        List<RouteResultsetNode> building = new ArrayList<>();
+        buildingRrsNodes.set(building);
+        try {
+            BaseHandlerBuilder builder = getBuilder(session, planNode, false);
+            if (outer != null) {
+                outer.addAll(building);
+            }
+            return builder;
+        } catch (SubQueryPendingException e) {
+            // the rrs nodes will be checked again by the next build
+            for (RouteResultsetNode rrsNode : building) {
+                removeRrs(rrsNode);
+            }
+            throw e;
+        } finally {
+            buildingRrsNodes.set(outer);
         }
-        session.endComplexRoute();
-        HandlerBuilder.startHandler(fh);
-        session.endComplexExecute();
-        long endTime = System.nanoTime();
-        logger.debug("HandlerBuilder.build cost:" + (endTime - startTime));
-        return builder;
     }
 
     private BaseHandlerBuilder createBuilder(final NonBlockingSession nonBlockingSession, PlanNode planNode, boolean isExplain) {
@@ -99,4 +206,12 @@ public class HandlerBuilder {
         throw new RuntimeException("not supported tree node type:" + planNode.type());
     }
 
+    /**
+     * the next step after the handlers of a plan node are built
+     */
+    interface BuildCallBack {
+        void onBuilt(BaseHandlerBuilder builder) throws Exception;
+
+        void onError(Exception e);
+    }
 }
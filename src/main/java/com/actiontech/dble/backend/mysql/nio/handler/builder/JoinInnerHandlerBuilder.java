@@ -29,7 +29,7 @@ public class JoinInnerHandlerBuilder extends BaseHandlerBuilder {
 
     @Override
     protected void handleSubQueries() {
-        handleBlockingSubQuery();
+        handleAsyncSubQuery();
     }
 
     @Override
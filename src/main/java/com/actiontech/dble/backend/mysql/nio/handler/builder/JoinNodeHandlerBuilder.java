@@ -46,7 +46,7 @@ class JoinNodeHandlerBuilder extends BaseHandlerBuilder {
 
     @Override
     protected void handleSubQueries() {
-        handleBlockingSubQuery();
+        handleAsyncSubQuery();
     }
 
     @Override
@@ -109,7 +109,8 @@ class JoinNodeHandlerBuilder extends BaseHandlerBuilder {
                 public void call() throws Exception {
                     Set<String> valueSet = tempHandler.getValueSet();
                     buildNestFilters(tnBig, keyToPass, valueSet, tempHandler.getMaxPartSize());
-                    DMLResponseHandler bigLh = buildJoinChild(tnBig, !isLeftSmall);
+                    // the rows of the small node are sent after the callback, so it waits for the sub queries here
+                    DMLResponseHandler bigLh = getJoinChildEnd(hBuilder.buildWaitingSubQuery(tnBig), !isLeftSmall);
                     synchronized (tempHandler) {
                         bigLh.setNextHandlerOnly(tempHandler.getNextHandler());
                     }
@@ -137,7 +138,10 @@ class JoinNodeHandlerBuilder extends BaseHandlerBuilder {
     }
 
     private DMLResponseHandler buildJoinChild(PlanNode child, boolean isLeft) {
-        BaseHandlerBuilder builder = hBuilder.getBuilder(session, child, isExplain);
+        return getJoinChildEnd(hBuilder.getBuilder(session, child, isExplain), isLeft);
+    }
+
+    private DMLResponseHandler getJoinChildEnd(BaseHandlerBuilder builder, boolean isLeft) {
         if (builder.getSubQueryBuilderList().size() > 0) {
             this.getSubQueryBuilderList().addAll(builder.getSubQueryBuilderList());
         }
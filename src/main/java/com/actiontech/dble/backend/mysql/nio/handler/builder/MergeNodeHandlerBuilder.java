@@ -6,7 +6,7 @@
 package com.actiontech.dble.backend.mysql.nio.handler.builder;
 
 import com.actiontech.dble.backend.mysql.nio.handler.query.DMLResponseHandler;
-import com.actiontech.dble.backend.mysql.nio.handler.query.impl.DistinctHandler;
+import com.actiontech.dble.backend.mysql.nio.handler.query.impl.UnionDistinctHandler;
 import com.actiontech.dble.backend.mysql.nio.handler.query.impl.UnionHandler;
 import com.actiontech.dble.plan.node.PlanNode;
 import com.actiontech.dble.plan.node.MergeNode;
@@ -46,7 +46,7 @@ class MergeNodeHandlerBuilder extends BaseHandlerBuilder {
         UnionHandler uh = new UnionHandler(getSequenceId(), session, node.getComeInFields(), node.getChildren().size());
         addHandler(uh);
         if (node.isUnion()) {
-            DistinctHandler dh = new DistinctHandler(getSequenceId(), session, node.getColumnsSelected());
+            UnionDistinctHandler dh = new UnionDistinctHandler(getSequenceId(), session, node.getColumnsSelected());
             addHandler(dh);
         }
     }
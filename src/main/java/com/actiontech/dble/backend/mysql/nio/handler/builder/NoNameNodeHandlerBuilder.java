@@ -40,7 +40,7 @@ class NoNameNodeHandlerBuilder extends BaseHandlerBuilder {
 
     @Override
     protected void handleSubQueries() {
-        handleBlockingSubQuery();
+        handleAsyncSubQuery();
     }
 
     @Override
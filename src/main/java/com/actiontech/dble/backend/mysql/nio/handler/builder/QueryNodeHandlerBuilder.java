@@ -26,7 +26,7 @@ class QueryNodeHandlerBuilder extends BaseHandlerBuilder {
 
     @Override
     protected void handleSubQueries() {
-        handleBlockingSubQuery();
+        handleAsyncSubQuery();
     }
 
     @Override
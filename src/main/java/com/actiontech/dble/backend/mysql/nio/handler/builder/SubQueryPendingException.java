@@ -0,0 +1,26 @@
+/*
+ * Copyright (C) 2016-2020 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.backend.mysql.nio.handler.builder;
+
+/**
+ * thrown by the build of a node whose sub queries are started but not finished yet,
+ * the build is done again after the sub queries are finished.
+ *
+ * @author ActionTech
+ */
+final class SubQueryPendingException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+    private final transient SubQueryWaiter waiter;
+
+    SubQueryPendingException(SubQueryWaiter waiter) {
+        super("sub queries are executing", null, false, false);
+        this.waiter = waiter;
+    }
+
+    SubQueryWaiter getWaiter() {
+        return waiter;
+    }
+}
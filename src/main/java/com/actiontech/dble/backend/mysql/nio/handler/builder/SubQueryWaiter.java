@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2016-2020 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.backend.mysql.nio.handler.builder;
+
+import com.actiontech.dble.config.ErrorCode;
+import com.actiontech.dble.net.mysql.ErrorPacket;
+import com.actiontech.dble.plan.common.exception.MySQLOutPutException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * the sub queries of a node which are executing, the continuation is called after all of them are finished
+ *
+ * @author ActionTech
+ */
+final class SubQueryWaiter {
+    private final AtomicInteger subNodes;
+    private final CountDownLatch finished = new CountDownLatch(1);
+    private final List<ErrorPacket> errorPackets = new CopyOnWriteArrayList<>();
+    private Runnable continuation;
+
+    SubQueryWaiter(int subNodes) {
+        this.subNodes = new AtomicInteger(subNodes);
+    }
+
+    static ErrorPacket createErrorPacket(Exception e) {
+        ErrorPacket errorPackage = new ErrorPacket();
+        errorPackage.setErrNo(ErrorCode.ER_UNKNOWN_ERROR);
+        String errorMsg = e.getMessage() == null ? e.toString() : e.getMessage();
+        errorPackage.setMessage(errorMsg.getBytes(StandardCharsets.UTF_8));
+        return errorPackage;
+    }
+
+    void addError(ErrorPacket errorPacket) {
+        errorPackets.add(errorPacket);
+    }
+
+    void subQueryFinished() {
+        if (subNodes.decrementAndGet() == 0) {
+            Runnable next;
+            synchronized (this) {
+                finished.countDown();
+                next = continuation;
+            }
+            if (next != null) {
+                next.run();
+            }
+        }
+    }
+
+    /**
+     * call next after the sub queries are finished, at once if they are finished already
+     */
+    void onFinished(Runnable next) {
+        synchronized (this) {
+            if (finished.getCount() > 0) {
+                continuation = next;
+                return;
+            }
+        }
+        next.run();
+    }
+
+    /**
+     * only for the node built while the handlers are running, the others use onFinished
+     */
+    void await() throws InterruptedException {
+        finished.await();
+    }
+
+    /**
+     * @return the error of the sub queries, null if all of them are succeeded
+     */
+    MySQLOutPutException getError() {
+        if (errorPackets.isEmpty()) {
+            return null;
+        }
+        ErrorPacket errorPacket = errorPackets.get(0);
+        return new MySQLOutPutException(errorPacket.getErrNo(), "", new String(errorPacket.getMessage(), StandardCharsets.UTF_8));
+    }
+}
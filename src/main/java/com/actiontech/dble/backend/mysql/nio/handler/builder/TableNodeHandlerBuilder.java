@@ -34,7 +34,7 @@ class TableNodeHandlerBuilder extends BaseHandlerBuilder {
 
     @Override
     protected void handleSubQueries() {
-        handleBlockingSubQuery();
+        handleAsyncSubQuery();
     }
 
     @Override
@@ -206,7 +206,7 @@ public class OutputHandler extends BaseDMLHandler {
             if (sql != null) {
                 netInBytes += sql.getBytes().length;
                 QueryResult queryResult = new QueryResult(session.getSource().getUser(), ServerParse.SELECT,
-                        sql, selectRows, netInBytes, netOutBytes, session.getQueryStartTime(), System.currentTimeMillis(), netOutBytes);
+                        sql, session.getComplexRrs(), selectRows, netInBytes, netOutBytes, session.getQueryStartTime(), System.currentTimeMillis(), netOutBytes);
                 if (logger.isDebugEnabled()) {
                     logger.debug("try to record sql:" + sql);
                 }
@@ -236,6 +236,7 @@ public class OutputHandler extends BaseDMLHandler {
                 error.setMessage("unknown error".getBytes());
             }
             error.setPacketId(++packetId);
+            session.releaseWorkload();
             session.getSource().write(error.toBytes());
         } finally {
             lock.unlock();
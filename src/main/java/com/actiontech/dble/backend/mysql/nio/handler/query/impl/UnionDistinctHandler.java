@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2016-2020 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.backend.mysql.nio.handler.query.impl;
+
+import com.actiontech.dble.backend.BackendConnection;
+import com.actiontech.dble.backend.mysql.nio.handler.query.BaseDMLHandler;
+import com.actiontech.dble.backend.mysql.nio.handler.util.HandlerTool;
+import com.actiontech.dble.backend.mysql.nio.handler.util.RowDataComparator;
+import com.actiontech.dble.backend.mysql.store.HashDistinctResult;
+import com.actiontech.dble.net.mysql.FieldPacket;
+import com.actiontech.dble.net.mysql.RowDataPacket;
+import com.actiontech.dble.plan.common.field.Field;
+import com.actiontech.dble.plan.common.item.Item;
+import com.actiontech.dble.server.NonBlockingSession;
+import com.actiontech.dble.singleton.BufferPoolManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * the distinct handler of union, rows are distinct by hash and sent as soon as
+ * they are seen for the first time, so that the union needs not to wait for all
+ * rows to be sorted. The rows spilled to disk are sent at the row eof.
+ *
+ * @author ActionTech
+ */
+public class UnionDistinctHandler extends BaseDMLHandler {
+    private static final Logger LOGGER = LoggerFactory.getLogger(UnionDistinctHandler.class);
+
+    private HashDistinctResult distinctResult;
+    private List<Item> distinctCols;
+    /* rows come from the children of union at the same time */
+    private ReentrantLock lock = new ReentrantLock();
+
+    public UnionDistinctHandler(long id, NonBlockingSession session, List<Item> columns) {
+        super(id, session);
+        this.distinctCols = columns;
+    }
+
+    @Override
+    public HandlerType type() {
+        return HandlerType.DISTINCT;
+    }
+
+    public void fieldEofResponse(byte[] headerNull, List<byte[]> fieldsNull, final List<FieldPacket> fieldPackets,
+                                 byte[] eofNull, boolean isLeft, BackendConnection conn) {
+        session.setHandlerStart(this);
+        if (terminate.get())
+            return;
+        this.fieldPackets = fieldPackets;
+        List<Field> sourceFields = HandlerTool.createFields(this.fieldPackets);
+        RowDataComparator comparator = new RowDataComparator(this.fieldPackets, HandlerTool.makeOrder(this.distinctCols), this.isAllPushDown(), type());
+        distinctResult = new HashDistinctResult(BufferPoolManager.getBufferPool(), sourceFields.size(), sourceFields, comparator,
+                session.getOtherBufferMC());
+        nextHandler.fieldEofResponse(null, null, this.fieldPackets, null, this.isLeft, conn);
+    }
+
+    public boolean rowResponse(byte[] rowNull, final RowDataPacket rowPacket, boolean isLeft, BackendConnection conn) {
+        if (terminate.get())
+            return true;
+        boolean firstSeen;
+        lock.lock();
+        try {
+            firstSeen = distinctResult.add(rowPacket);
+        } finally {
+            lock.unlock();
+        }
+        if (firstSeen) {
+            nextHandler.rowResponse(null, rowPacket, this.isLeft, conn);
+        }
+        return false;
+    }
+
+    @Override
+    public void rowEofResponse(byte[] data, boolean isLeft, BackendConnection conn) {
+        LOGGER.debug("roweof");
+        if (terminate.get())
+            return;
+        lock.lock();
+        try {
+            distinctResult.done(row -> nextHandler.rowResponse(null, row, this.isLeft, conn));
+            distinctResult.close();
+        } finally {
+            lock.unlock();
+        }
+        session.setHandlerEnd(this);
+        nextHandler.rowEofResponse(null, this.isLeft, conn);
+    }
+
+    @Override
+    public void onTerminate() {
+        lock.lock();
+        try {
+            if (this.distinctResult != null)
+                this.distinctResult.close();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+}
@@ -13,7 +13,9 @@ import com.actiontech.dble.backend.mysql.nio.handler.transaction.xa.stage.XAStag
 import com.actiontech.dble.config.ErrorCode;
 import com.actiontech.dble.net.mysql.ErrorPacket;
 import com.actiontech.dble.net.mysql.FieldPacket;
+import com.actiontech.dble.net.mysql.OkPacket;
 import com.actiontech.dble.net.mysql.RowDataPacket;
+import com.actiontech.dble.net.mysql.StatusFlags;
 import com.actiontech.dble.server.NonBlockingSession;
 import com.actiontech.dble.util.StringUtil;
 import org.slf4j.Logger;
@@ -51,6 +53,12 @@ public abstract class AbstractXAHandler extends MultiNodeHandler {
         if (logger.isDebugEnabled()) {
             logger.debug("receive ok from " + conn);
         }
+        OkPacket okPacket = new OkPacket();
+        okPacket.read(ok);
+        if ((okPacket.getServerStatus() & StatusFlags.SERVER_MORE_RESULTS_EXISTS) > 0) {
+            // the commands are pipelined, wait for the ok of the last one
+            return;
+        }
         conn.syncAndExecute();
         this.currentStage.onConnectionOk((MySQLConnection) conn);
         if (decrementToZero(conn)) {
@@ -160,6 +168,13 @@ public abstract class AbstractXAHandler extends MultiNodeHandler {
         this.packetIfSuccess = packetIfSuccess;
     }
 
+    /**
+     * the transaction is finished, but the client is told the error instead of OK
+     */
+    public void setErrorIfSuccess(String errMsg) {
+        this.packetIfSuccess = makeErrorPacket(errMsg);
+    }
+
     public void interruptTx(String reason) {
         setFail(reason);
         session.getSource().setTxInterrupt(reason);
@@ -86,15 +86,24 @@ public class XAHandler extends AbstractXAHandler implements TransactionHandler {
     }
 
     private void initXALogEntry() {
+        // the read only participants are never prepared, so there is nothing to recover
+        int writerCount = 0;
+        for (RouteResultsetNode rrn : session.getTargetKeys()) {
+            if (!session.isReadOnlyTarget(rrn)) {
+                writerCount++;
+            }
+        }
         CoordinatorLogEntry coordinatorLogEntry = new CoordinatorLogEntry(session.getSessionXaID(),
-                new ParticipantLogEntry[session.getTargetCount()], TxState.TX_STARTED_STATE);
+                new ParticipantLogEntry[writerCount], TxState.TX_STARTED_STATE);
         XAStateLog.flushMemoryRepository(session.getSessionXaID(), coordinatorLogEntry);
 
         int position = 0;
         for (RouteResultsetNode rrn : session.getTargetKeys()) {
             final BackendConnection conn = session.getTarget(rrn);
             conn.setResponseHandler(this);
-
+            if (session.isReadOnlyTarget(rrn)) {
+                continue;
+            }
             XAStateLog.initRecoveryLog(session.getSessionXaID(), position, (MySQLConnection) conn);
             position++;
         }
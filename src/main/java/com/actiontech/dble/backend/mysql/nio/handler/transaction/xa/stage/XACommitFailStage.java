@@ -31,7 +31,11 @@ public class XACommitFailStage extends XACommitStage {
     private AtomicInteger backgroundRetryTimes = new AtomicInteger(1);
 
     public XACommitFailStage(NonBlockingSession session, AbstractXAHandler handler) {
-        super(session, handler);
+        this(session, handler, false);
+    }
+
+    XACommitFailStage(NonBlockingSession session, AbstractXAHandler handler, boolean onePhase) {
+        super(session, handler, onePhase);
         this.xaOldThreadIds = new ConcurrentHashMap<>(session.getTargetCount());
     }
 
@@ -118,6 +122,11 @@ public class XACommitFailStage extends XACommitStage {
             if (handler.isSuccess() && !handler.isExistXid()) {
                 // Unknown XID ,if xa transaction only contains select statement, xid will lost after restart server although prepared
                 xaOldThreadIds.remove(rrn);
+                if (isOnePhase()) {
+                    // the branch is not prepared, it is either committed or rolled back when its conn was lost
+                    xaHandler.setErrorIfSuccess("the result of XA COMMIT ONE PHASE in dataNode " + rrn.getName() +
+                            " is unknown because the connection was lost, please check the data");
+                }
                 conn.setXaStatus(TxState.TX_COMMITTED_STATE);
                 XAStateLog.saveXARecoveryLog(session.getSessionXaID(), conn);
                 conn.setXaStatus(TxState.TX_INITIALIZE_STATE);
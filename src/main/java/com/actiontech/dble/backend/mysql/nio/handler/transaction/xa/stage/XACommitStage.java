@@ -13,15 +13,32 @@ import org.slf4j.LoggerFactory;
 public class XACommitStage extends XAStage {
 
     private static Logger logger = LoggerFactory.getLogger(XACommitStage.class);
+    /* the only participant left is not prepared, commit it with one phase */
+    private final boolean onePhase;
+    /* the conn is lost when committing with one phase, the branch may have been committed */
+    private volatile boolean commitUnknown = false;
 
     public XACommitStage(NonBlockingSession session, AbstractXAHandler handler) {
+        this(session, handler, false);
+    }
+
+    XACommitStage(NonBlockingSession session, AbstractXAHandler handler, boolean onePhase) {
         super(session, handler);
+        this.onePhase = onePhase;
     }
 
     @Override
     public XAStage next(boolean isFail, String errMsg, byte[] errPacket) {
-        if (isFail) {
-            return new XACommitFailStage(session, xaHandler);
+        if (isFail && onePhase && !commitUnknown) {
+            // nothing is committed, the same as XA END failed
+            if (xaHandler.isInterruptTx()) {
+                session.getSource().setTxInterrupt(errMsg);
+                session.getSource().write(errPacket);
+                return null;
+            }
+            return new XARollbackStage(session, xaHandler, true);
+        } else if (isFail) {
+            return new XACommitFailStage(session, xaHandler, onePhase);
         }
         // success
         XAStateLog.saveXARecoveryLog(session.getSessionXaID(), TxState.TX_COMMITTED_STATE);
@@ -40,17 +57,22 @@ public class XACommitStage extends XAStage {
 
     @Override
     public void onEnterStage(MySQLConnection conn) {
-        if (conn.isClosed()) {
+        if (conn.getXaStatus() == TxState.TX_INITIALIZE_STATE) {
+            // the read only participant has been committed with one phase
+            xaHandler.fakedResponse(conn, null);
+        } else if (conn.isClosed()) {
+            commitUnknown = onePhase;
             conn.setXaStatus(TxState.TX_COMMIT_FAILED_STATE);
             xaHandler.fakedResponse(conn, "the conn has been closed before executing XA COMMIT");
         } else {
             RouteResultsetNode rrn = (RouteResultsetNode) conn.getAttachment();
             String xaTxId = conn.getConnXID(session.getSessionXaID(), rrn.getMultiplexNum().longValue());
+            String cmd = onePhase ? "XA COMMIT " + xaTxId + " ONE PHASE" : "XA COMMIT " + xaTxId;
             if (logger.isDebugEnabled()) {
-                logger.debug("XA COMMIT " + xaTxId + " to " + conn);
+                logger.debug(cmd + " to " + conn);
             }
             XaDelayProvider.delayBeforeXaCommit(rrn.getName(), xaTxId);
-            conn.execCmd("XA COMMIT " + xaTxId);
+            conn.execCmd(cmd);
         }
     }
 
@@ -63,20 +85,24 @@ public class XACommitStage extends XAStage {
 
     @Override
     public void onConnectionError(MySQLConnection conn, int errNo) {
-        conn.setXaStatus(TxState.TX_COMMIT_FAILED_STATE);
+        if (onePhase) {
+            // not prepared and not committed, the branch is rolled back by closing the conn
+            conn.close();
+            conn.setXaStatus(TxState.TX_CONN_QUIT);
+        } else {
+            conn.setXaStatus(TxState.TX_COMMIT_FAILED_STATE);
+        }
         XAStateLog.saveXARecoveryLog(session.getSessionXaID(), conn);
     }
 
     @Override
     public void onConnectionClose(MySQLConnection conn) {
-        conn.setXaStatus(TxState.TX_COMMIT_FAILED_STATE);
-        XAStateLog.saveXARecoveryLog(session.getSessionXaID(), conn);
+        onConnectionLost(conn);
     }
 
     @Override
     public void onConnectError(MySQLConnection conn) {
-        conn.setXaStatus(TxState.TX_COMMIT_FAILED_STATE);
-        XAStateLog.saveXARecoveryLog(session.getSessionXaID(), conn);
+        onConnectionLost(conn);
     }
 
     @Override
@@ -88,4 +114,17 @@ public class XACommitStage extends XAStage {
         return TxState.TX_COMMITTING_STATE;
     }
 
+    boolean isOnePhase() {
+        return onePhase;
+    }
+
+    /**
+     * the result of XA COMMIT is unknown, retry it by XACommitFailStage
+     */
+    private void onConnectionLost(MySQLConnection conn) {
+        commitUnknown = onePhase;
+        conn.setXaStatus(TxState.TX_COMMIT_FAILED_STATE);
+        XAStateLog.saveXARecoveryLog(session.getSessionXaID(), conn);
+    }
+
 }
@@ -11,10 +11,22 @@ import com.actiontech.dble.server.NonBlockingSession;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * XA END the participants, the commands of the following stage are pipelined after XA END when committing:
+ * <p>
+ * a read only participant and the only participant are committed with XA COMMIT ONE PHASE directly,
+ * the others are prepared with XA PREPARE if there are more than one of them.
+ */
 public class XAEndStage extends XAStage {
 
     private static Logger logger = LoggerFactory.getLogger(XAEndStage.class);
     private volatile boolean isRollback;
+    /* the count of the participants which are not read only */
+    private volatile int writerCount;
+    private volatile boolean withPrepare = false;
+    private volatile boolean prepareUnconnect = false;
+    /* the conn of the only participant is lost, XA COMMIT ONE PHASE may have been executed */
+    private volatile boolean commitUnknown = false;
 
     public XAEndStage(NonBlockingSession session, AbstractXAHandler handler, boolean isRollback) {
         super(session, handler);
@@ -28,20 +40,51 @@ public class XAEndStage extends XAStage {
     @Override
     public TransactionStage next(boolean isFail, String errMsg, byte[] errPacket) {
         if (isRollback) {
-            return new XARollbackStage(session, xaHandler, true);
+            return new XARollbackStage(session, xaHandler, !withPrepare);
         }
 
         if (isFail) {
-            if (xaHandler.isInterruptTx()) {
+            if (commitUnknown) {
+                return new XACommitFailStage(session, xaHandler, true);
+            } else if (prepareUnconnect) {
+                xaHandler.setPacketIfSuccess(errPacket);
+            } else if (xaHandler.isInterruptTx()) {
                 session.getSource().setTxInterrupt(errMsg);
                 session.getSource().write(errPacket);
                 return null;
-            } else {
-                return new XARollbackStage(session, xaHandler, true);
             }
+            return new XARollbackStage(session, xaHandler, !withPrepare);
         }
 
-        return new XAPrepareStage(session, xaHandler);
+        if (withPrepare) {
+            return new XACommitStage(session, xaHandler);
+        } else if (writerCount == 1 && session.getTargetCount() > 1) {
+            // the read only participants have been committed
+            return new XACommitStage(session, xaHandler, true);
+        }
+        // all the participants have been committed with one phase
+        XAStateLog.saveXARecoveryLog(session.getSessionXaID(), TxState.TX_COMMITTED_STATE);
+        feedback(true);
+        return null;
+    }
+
+    @Override
+    public void onEnterStage() {
+        if (!isRollback) {
+            writerCount = 0;
+            for (RouteResultsetNode rrn : session.getTargetKeys()) {
+                if (!session.isReadOnlyTarget(rrn)) {
+                    writerCount++;
+                }
+            }
+            withPrepare = writerCount > 1;
+            if (withPrepare && !XAStateLog.saveXARecoveryLog(session.getSessionXaID(), TxState.TX_PREPARING_STATE)) {
+                // only end the participants, the transaction can't be committed
+                withPrepare = false;
+                xaHandler.setFail("saveXARecoveryLog error, the stage is TX_PREPARING_STATE");
+            }
+        }
+        super.onEnterStage();
     }
 
     @Override
@@ -52,22 +95,37 @@ public class XAEndStage extends XAStage {
         } else {
             RouteResultsetNode rrn = (RouteResultsetNode) conn.getAttachment();
             String xaTxId = conn.getConnXID(session.getSessionXaID(), rrn.getMultiplexNum().longValue());
+            XaDelayProvider.delayBeforeXaEnd(rrn.getName(), xaTxId);
+            StringBuilder cmd = new StringBuilder("XA END ").append(xaTxId);
+            if (isOnePhase(rrn)) {
+                XaDelayProvider.delayBeforeXaCommit(rrn.getName(), xaTxId);
+                cmd.append(";XA COMMIT ").append(xaTxId).append(" ONE PHASE");
+            } else if (withPrepare) {
+                XaDelayProvider.delayBeforeXaPrepare(rrn.getName(), xaTxId);
+                cmd.append(";XA PREPARE ").append(xaTxId);
+            }
             if (logger.isDebugEnabled()) {
-                logger.debug("XA END " + xaTxId + " to " + conn);
+                logger.debug(cmd + " to " + conn);
             }
-            XaDelayProvider.delayBeforeXaEnd(rrn.getName(), xaTxId);
-            conn.execCmd("XA END " + xaTxId);
+            conn.execCmd(cmd.toString());
         }
     }
 
     @Override
     public void onConnectionOk(MySQLConnection conn) {
-        conn.setXaStatus(TxState.TX_ENDED_STATE);
-        XAStateLog.saveXARecoveryLog(session.getSessionXaID(), conn);
+        if (isOnePhase((RouteResultsetNode) conn.getAttachment())) {
+            conn.setXaStatus(TxState.TX_COMMITTED_STATE);
+            XAStateLog.saveXARecoveryLog(session.getSessionXaID(), conn);
+            conn.setXaStatus(TxState.TX_INITIALIZE_STATE);
+        } else {
+            conn.setXaStatus(withPrepare ? TxState.TX_PREPARED_STATE : TxState.TX_ENDED_STATE);
+            XAStateLog.saveXARecoveryLog(session.getSessionXaID(), conn);
+        }
     }
 
     @Override
     public void onConnectionError(MySQLConnection conn, int errNo) {
+        // not prepared, the branch is rolled back by closing the conn
         conn.close();
         conn.setXaStatus(TxState.TX_CONN_QUIT);
         XAStateLog.saveXARecoveryLog(session.getSessionXaID(), conn);
@@ -75,16 +133,12 @@ public class XAEndStage extends XAStage {
 
     @Override
     public void onConnectionClose(MySQLConnection conn) {
-        conn.close();
-        conn.setXaStatus(TxState.TX_CONN_QUIT);
-        XAStateLog.saveXARecoveryLog(session.getSessionXaID(), conn);
+        onConnectionLost(conn);
     }
 
     @Override
     public void onConnectError(MySQLConnection conn) {
-        conn.close();
-        conn.setXaStatus(TxState.TX_CONN_QUIT);
-        XAStateLog.saveXARecoveryLog(session.getSessionXaID(), conn);
+        onConnectionLost(conn);
     }
 
     @Override
@@ -92,4 +146,24 @@ public class XAEndStage extends XAStage {
         return END_STAGE;
     }
 
+    private void onConnectionLost(MySQLConnection conn) {
+        boolean onePhase = isOnePhase((RouteResultsetNode) conn.getAttachment());
+        if (withPrepare && !onePhase) {
+            // XA PREPARE may have been executed
+            prepareUnconnect = true;
+            conn.setXaStatus(TxState.TX_PREPARE_UNCONNECT_STATE);
+        } else if (onePhase && session.getTargetCount() == 1) {
+            // the lost read only participants change nothing, but the only one may have been committed
+            commitUnknown = true;
+            conn.setXaStatus(TxState.TX_COMMIT_FAILED_STATE);
+        } else {
+            conn.close();
+            conn.setXaStatus(TxState.TX_CONN_QUIT);
+        }
+        XAStateLog.saveXARecoveryLog(session.getSessionXaID(), conn);
+    }
+
+    private boolean isOnePhase(RouteResultsetNode rrn) {
+        return !isRollback && (session.getTargetCount() == 1 || session.isReadOnlyTarget(rrn));
+    }
 }
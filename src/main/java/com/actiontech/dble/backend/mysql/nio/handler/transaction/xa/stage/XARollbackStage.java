@@ -52,8 +52,8 @@ public class XARollbackStage extends XAStage {
     public void onEnterStage(MySQLConnection conn) {
         TxState state = conn.getXaStatus();
         RouteResultsetNode rrn = (RouteResultsetNode) conn.getAttachment();
-        // if conn is closed or has been rollbacked, release conn
-        if (state == TxState.TX_CONN_QUIT || state == TxState.TX_ROLLBACKED_STATE ||
+        // if conn is closed, has been rollbacked or committed with one phase, release conn
+        if (state == TxState.TX_CONN_QUIT || state == TxState.TX_ROLLBACKED_STATE || state == TxState.TX_INITIALIZE_STATE ||
                 (lastStageIsXAEnd && conn.isClosed())) {
             xaHandler.fakedResponse(conn, null);
             session.releaseConnection(rrn, logger.isDebugEnabled(), false);
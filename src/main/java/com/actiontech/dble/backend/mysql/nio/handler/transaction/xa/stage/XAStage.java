@@ -10,7 +10,6 @@ import com.actiontech.dble.server.NonBlockingSession;
 public abstract class XAStage implements TransactionStage {
 
     public static final String END_STAGE = "XA END STAGE";
-    public static final String PREPARE_STAGE = "XA PREPARE STAGE";
     public static final String COMMIT_STAGE = "XA COMMIT STAGE";
     public static final String COMMIT_FAIL_STAGE = "XA COMMIT FAIL STAGE";
     public static final String ROLLBACK_STAGE = "XA ROLLBACK STAGE";
@@ -29,8 +29,17 @@ public class RowDataComparator implements Comparator<RowDataPacket> {
     private List<Field> cmpFields;
     private List<Boolean> ascList;
 
+    /* to create a copy of the comparator */
+    private List<FieldPacket> fps;
+    private List<Order> orders;
+    private boolean allPushDown;
+    private DMLResponseHandler.HandlerType type;
 
     public RowDataComparator(List<FieldPacket> fps, List<Order> orders, boolean allPushDown, DMLResponseHandler.HandlerType type) {
+        this.fps = fps;
+        this.orders = orders;
+        this.allPushDown = allPushDown;
+        this.type = type;
         sourceFields = HandlerTool.createFields(fps);
         if (orders != null && orders.size() > 0) {
             ascList = new ArrayList<>();
@@ -58,6 +67,7 @@ public class RowDataComparator implements Comparator<RowDataPacket> {
 
     public RowDataComparator(List<Field> fields, List<Order> orders) {
         sourceFields = fields;
+        this.orders = orders;
         if (orders != null && orders.size() > 0) {
             ascList = new ArrayList<>();
             cmpFields = new ArrayList<>();
@@ -73,6 +83,26 @@ public class RowDataComparator implements Comparator<RowDataPacket> {
             }
         }
     }
+
+    /**
+     * the fields and items of a comparator are reused by every row compared,
+     * so the copy is used to compare in another thread
+     *
+     * @return a comparator of the same orders which shares nothing with this one
+     */
+    public RowDataComparator copy() {
+        if (type != null) {
+            return new RowDataComparator(fps, orders, allPushDown, type);
+        }
+        List<FieldPacket> packets = new ArrayList<>(sourceFields.size());
+        for (Field field : sourceFields) {
+            FieldPacket fp = new FieldPacket();
+            field.makeField(fp);
+            packets.add(fp);
+        }
+        return new RowDataComparator(HandlerTool.createFields(packets), orders);
+    }
+
     private static Item createOrderItem(Item sel, List<Field> fields, boolean allPushDown, DMLResponseHandler.HandlerType type) {
         Item ret = null;
         if (sel.basicConstItem())
@@ -118,12 +148,13 @@ public class RowDataComparator implements Comparator<RowDataPacket> {
     }
 
     private List<byte[]> getCmpBytes(RowDataPacket o) {
-        if (o.getCmpValue(this) == null) {
+        List<byte[]> bo = o.getCmpValue(this);
+        if (bo == null) {
             HandlerTool.initFields(sourceFields, o.fieldValues);
-            List<byte[]> bo = HandlerTool.getItemListBytes(cmpItems);
+            bo = HandlerTool.getItemListBytes(cmpItems);
             o.cacheCmpValue(this, bo);
         }
-        return o.getCmpValue(this);
+        return bo;
     }
 
     private int cmp(RowDataPacket o1, RowDataPacket o2, int index) {
@@ -9,6 +9,7 @@ import com.actiontech.dble.DbleServer;
 import com.actiontech.dble.alarm.AlarmCode;
 import com.actiontech.dble.alarm.Alert;
 import com.actiontech.dble.alarm.AlertUtil;
+import com.actiontech.dble.backend.mysql.store.fs.FileBase;
 import com.actiontech.dble.backend.mysql.store.fs.FilePath;
 import com.actiontech.dble.backend.mysql.store.fs.FileUtils;
 import com.actiontech.dble.config.ErrorCode;
@@ -170,6 +171,22 @@ public class FileStore {
         return read(buffer);
     }
 
+    /**
+     * the bytes from pos without copying them if the file is memory mapped, the file pointer is not moved.
+     * The view must not be used after the file is closed.
+     *
+     * @return null if the bytes are not in one mapped file, read them instead
+     */
+    public ByteBuffer slice(long pos, int len) {
+        int index = (int) (pos / mappedFileSize);
+        long offset = pos % mappedFileSize;
+        if (index > files.size() - 1 || offset + len > mappedFileSize) {
+            return null;
+        }
+        FileChannel file = files.get(index);
+        return file instanceof FileBase ? ((FileBase) file).slice(offset, len) : null;
+    }
+
     /**
      * Go to the specified file location.
      *
@@ -248,6 +265,29 @@ public class FileStore {
         }
     }
 
+    /**
+     * Shrink the file to newLength, the mapped files after it are closed and deleted.
+     * The first one is kept for the later writes.
+     *
+     * @param newLength the new length, not larger than the file size
+     */
+    public void truncate(long newLength) {
+        int keep = Math.max(1, (int) ((newLength + mappedFileSize - 1) / mappedFileSize));
+        while (files.size() > keep) {
+            int last = files.size() - 1;
+            try {
+                files.remove(last).close();
+            } catch (IOException e) {
+                logger.info("close file error :", e);
+            } finally {
+                FileCounter.getInstance().decrement();
+            }
+            FileUtils.tryDelete(fileNames.remove(last));
+        }
+        fileLength = Math.min(fileLength, newLength);
+        filePos = Math.min(filePos, newLength);
+    }
+
     /**
      * Get the file size in bytes.
      *
@@ -0,0 +1,396 @@
+/*
+ * Copyright (C) 2016-2020 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.backend.mysql.store;
+
+import com.actiontech.dble.backend.mysql.nio.handler.util.RowDataComparator;
+import com.actiontech.dble.backend.mysql.store.diskbuffer.UnSortedResultDiskBuffer;
+import com.actiontech.dble.backend.mysql.store.memalloc.MemSizeController;
+import com.actiontech.dble.buffer.BufferPool;
+import com.actiontech.dble.net.mysql.RowDataPacket;
+import com.actiontech.dble.plan.common.MySQLcom;
+import com.actiontech.dble.plan.common.field.Field;
+import com.actiontech.dble.plan.common.field.num.FieldBit;
+import com.actiontech.dble.plan.common.field.num.FieldNum;
+import com.actiontech.dble.plan.common.field.num.FieldReal;
+import com.actiontech.dble.plan.common.field.string.FieldStr;
+import com.actiontech.dble.plan.common.field.temporal.FieldTemporal;
+import com.actiontech.dble.plan.common.field.temporal.FieldTime;
+import com.actiontech.dble.plan.common.time.MySQLTime;
+import com.actiontech.dble.plan.common.time.MyTime;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * HashDistinctResult, distinct rows by the hash of them, a row can be sent
+ * as soon as it's added for the first time.
+ * <p>
+ * only the hashes and the bytes of the distinct rows are kept, rows with the
+ * same hash are compared by the comparator. The rows are split into
+ * partitions by the hash, when the memory is not enough, the biggest
+ * partition is written to disk with its rows sent, and the later rows of it
+ * are written to disk too. They are distinct by a new HashDistinctResult of
+ * the next level in done().
+ *
+ * @author ActionTech
+ */
+public class HashDistinctResult {
+    private static final int PARTITION_BITS = 4;
+    private static final int PARTITION_COUNT = 1 << PARTITION_BITS;
+    private static final int MAX_LEVEL = 64 / PARTITION_BITS - 1;
+    /* the array of the row and the slots of the hash table */
+    private static final int ROW_OVERHEAD = 48;
+    private static final int SPILL_BATCH = 128;
+
+    private final BufferPool pool;
+    private final int fieldCount;
+    private final List<Field> fields;
+    private final RowDataComparator comparator;
+    private final MemSizeController bufferMC;
+    private final int maxLevel;
+    private final int level;
+    private final Partition[] partitions = new Partition[PARTITION_COUNT];
+    private int maxMemory = 262144;
+    private long currentMemory;
+
+    /**
+     * @param fields the fields of the rows, the hash of a field equals if the comparator takes them as equal
+     */
+    public HashDistinctResult(BufferPool pool, int fieldCount, List<Field> fields, RowDataComparator comparator, MemSizeController bufferMC) {
+        this(pool, fieldCount, fields, comparator, bufferMC, 0, MAX_LEVEL);
+    }
+
+    private HashDistinctResult(BufferPool pool, int fieldCount, List<Field> fields, RowDataComparator comparator,
+                               MemSizeController bufferMC, int level, int maxLevel) {
+        this.pool = pool;
+        this.fieldCount = fieldCount;
+        this.fields = fields;
+        this.comparator = comparator;
+        this.bufferMC = bufferMC;
+        this.level = level;
+        this.maxLevel = maxLevel;
+        for (int i = 0; i < PARTITION_COUNT; i++) {
+            partitions[i] = new Partition();
+        }
+    }
+
+    /**
+     * @return true if the row is added for the first time and can be sent now, false if it's a
+     * duplicate one or it's written to disk and will be checked in done()
+     */
+    public boolean add(RowDataPacket row) {
+        return addRow(row, hash(row));
+    }
+
+    /**
+     * all rows are added, the distinct rows written to disk and not sent
+     *
+     * @param consumer where the rows are sent
+     */
+    public void done(Consumer<RowDataPacket> consumer) {
+        releaseMemoryPartitions();
+        for (Partition partition : partitions) {
+            if (partition.seen == null) {
+                continue;
+            }
+            partition.flush();
+            HashDistinctResult next = new HashDistinctResult(pool, fieldCount, fields, comparator, bufferMC, level + 1, maxLevel);
+            next.maxMemory = maxMemory;
+            try {
+                partition.seen.done();
+                RowDataPacket row;
+                while ((row = partition.seen.next()) != null) {
+                    // sent already, it's never sent by the next level again
+                    next.addSeen(row);
+                }
+                partition.pending.done();
+                while ((row = partition.pending.next()) != null) {
+                    if (next.add(row)) {
+                        consumer.accept(row);
+                    }
+                }
+                next.done(consumer);
+            } finally {
+                next.close();
+                partition.close();
+            }
+        }
+    }
+
+    public void close() {
+        for (Partition partition : partitions) {
+            partition.close();
+        }
+        if (bufferMC != null) {
+            bufferMC.subSize(currentMemory);
+        }
+        currentMemory = 0;
+    }
+
+    public void setMaxMemory(int maxMemory) {
+        this.maxMemory = maxMemory;
+    }
+
+    private boolean addRow(RowDataPacket row, long hash) {
+        Partition partition = getPartition(hash);
+        if (partition.seen != null) {
+            partition.addPending(row.toBytes());
+            return false;
+        }
+        if (partition.contains(hash, row)) {
+            return false;
+        }
+        insertRow(partition, hash, row.toBytes());
+        return true;
+    }
+
+    /**
+     * add the row which is sent already, the rows sent are distinct
+     */
+    private void addSeen(RowDataPacket row) {
+        long hash = hash(row);
+        Partition partition = getPartition(hash);
+        if (partition.seen != null) {
+            partition.addSeen(row.toBytes());
+        } else {
+            insertRow(partition, hash, row.toBytes());
+        }
+    }
+
+    private Partition getPartition(long hash) {
+        return partitions[(int) (hash >>> (64 - PARTITION_BITS * (level + 1))) & (PARTITION_COUNT - 1)];
+    }
+
+    private void insertRow(Partition partition, long hash, byte[] bytes) {
+        partition.insert(hash, bytes);
+        int increment = bytes.length + ROW_OVERHEAD;
+        partition.memory += increment;
+        currentMemory += increment;
+        boolean needSpill;
+        if (bufferMC != null) {
+            needSpill = !bufferMC.addSize(increment);
+        } else {
+            needSpill = currentMemory > maxMemory;
+        }
+        if (needSpill && level < maxLevel) {
+            spill();
+        }
+    }
+
+    /**
+     * the rows in memory are all sent, release them before the partitions on disk are distinct
+     */
+    private void releaseMemoryPartitions() {
+        long released = 0;
+        for (Partition partition : partitions) {
+            if (partition.seen == null) {
+                released += partition.memory;
+                partition.close();
+                partition.memory = 0;
+            }
+        }
+        currentMemory -= released;
+        if (bufferMC != null) {
+            bufferMC.subSize(released);
+        }
+    }
+
+    /**
+     * write the biggest partition to disk
+     */
+    private void spill() {
+        Partition biggest = null;
+        for (Partition partition : partitions) {
+            if (partition.seen == null && (biggest == null || partition.memory > biggest.memory)) {
+                biggest = partition;
+            }
+        }
+        if (biggest == null || biggest.size == 0) {
+            return;
+        }
+        long released = biggest.spill();
+        currentMemory -= released;
+        if (bufferMC != null) {
+            bufferMC.subSize(released);
+        }
+    }
+
+    /**
+     * the hash of the values as the fields compare them, strings ignore the case, numbers ignore the scale,
+     * temporal values are hashed by the packed time and bits ignore the leading zeros
+     */
+    long hash(RowDataPacket row) {
+        long h = 1;
+        for (int i = 0; i < fieldCount; i++) {
+            h = h * 0x9E3779B97F4A7C15L + hashValue(fields.get(i), row.getValue(i));
+        }
+        // mix the bits, both the high bits for the partition and the low bits for the slot are used
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h == 0 ? 1 : h;
+    }
+
+    private static long hashValue(Field field, byte[] value) {
+        if (value == null) {
+            return 0;
+        }
+        try {
+            if (field instanceof FieldStr) {
+                String str = MySQLcom.getFullString(field.getJavaCharsetName(), value).toUpperCase();
+                long h = 7;
+                for (int i = 0; i < str.length(); i++) {
+                    h = h * 31 + str.charAt(i);
+                }
+                return h;
+            } else if (field instanceof FieldNum || field instanceof FieldReal) {
+                String str = MySQLcom.getFullString(field.getJavaCharsetName(), value);
+                return Double.doubleToLongBits(new BigDecimal(str.trim()).doubleValue());
+            } else if (field instanceof FieldTime) {
+                MySQLTime time = new MySQLTime();
+                MyTime.strToTimeWithWarn(MySQLcom.getFullString(field.getJavaCharsetName(), value), time);
+                return MyTime.timeToLonglongDatetimePacked(time);
+            } else if (field instanceof FieldTemporal) {
+                MySQLTime time = new MySQLTime();
+                MyTime.strToDatetimeWithWarn(MySQLcom.getFullString(field.getJavaCharsetName(), value), time, MyTime.TIME_FUZZY_DATE);
+                return MyTime.timeToLonglongDatetimePacked(time);
+            }
+        } catch (Exception e) {
+            // the value can't be normalized, compared only by the comparator
+            return 17;
+        }
+        int start = 0;
+        if (field instanceof FieldBit) {
+            while (start < value.length && value[start] == 0) {
+                start++;
+            }
+        }
+        long h = 7;
+        for (int i = start; i < value.length; i++) {
+            h = h * 31 + value[i];
+        }
+        return h;
+    }
+
+    private final class Partition {
+        private long[] hashes = new long[64];
+        private int[] indexes = new int[64];
+        private List<byte[]> rows = new ArrayList<>();
+        private int size;
+        private long memory;
+        /* not null if the partition is on disk */
+        private UnSortedResultDiskBuffer seen;
+        private UnSortedResultDiskBuffer pending;
+        private List<byte[]> seenBatch;
+        private List<byte[]> pendingBatch;
+
+        private boolean contains(long hash, RowDataPacket row) {
+            int mask = hashes.length - 1;
+            for (int slot = (int) hash & mask; hashes[slot] != 0; slot = (slot + 1) & mask) {
+                if (hashes[slot] == hash) {
+                    RowDataPacket stored = new RowDataPacket(fieldCount);
+                    stored.read(rows.get(indexes[slot]));
+                    if (comparator.compare(stored, row) == 0) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        private void insert(long hash, byte[] bytes) {
+            if ((size + 1) * 2 > hashes.length) {
+                resize();
+            }
+            rows.add(bytes);
+            put(hashes, indexes, hash, size);
+            size++;
+        }
+
+        private void resize() {
+            long[] newHashes = new long[hashes.length * 2];
+            int[] newIndexes = new int[indexes.length * 2];
+            for (int i = 0; i < hashes.length; i++) {
+                if (hashes[i] != 0) {
+                    put(newHashes, newIndexes, hashes[i], indexes[i]);
+                }
+            }
+            hashes = newHashes;
+            indexes = newIndexes;
+        }
+
+        private void put(long[] table, int[] tableIndexes, long hash, int index) {
+            int mask = table.length - 1;
+            int slot = (int) hash & mask;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = hash;
+            tableIndexes[slot] = index;
+        }
+
+        /**
+         * @return the memory released
+         */
+        private long spill() {
+            seen = new UnSortedResultDiskBuffer(pool, fieldCount);
+            pending = new UnSortedResultDiskBuffer(pool, fieldCount);
+            seenBatch = new ArrayList<>(SPILL_BATCH);
+            pendingBatch = new ArrayList<>(SPILL_BATCH);
+            for (int i = 0; i < rows.size(); i += SPILL_BATCH) {
+                seen.addRowBytes(rows.subList(i, Math.min(i + SPILL_BATCH, rows.size())));
+            }
+            final long released = memory;
+            hashes = null;
+            indexes = null;
+            rows = null;
+            size = 0;
+            memory = 0;
+            return released;
+        }
+
+        private void addSeen(byte[] bytes) {
+            seenBatch.add(bytes);
+            if (seenBatch.size() >= SPILL_BATCH) {
+                flush();
+            }
+        }
+
+        private void addPending(byte[] bytes) {
+            pendingBatch.add(bytes);
+            if (pendingBatch.size() >= SPILL_BATCH) {
+                flush();
+            }
+        }
+
+        private void flush() {
+            if (!seenBatch.isEmpty()) {
+                seen.addRowBytes(seenBatch);
+                seenBatch.clear();
+            }
+            if (!pendingBatch.isEmpty()) {
+                pending.addRowBytes(pendingBatch);
+                pendingBatch.clear();
+            }
+        }
+
+        private void close() {
+            if (seen != null) {
+                seen.close();
+                pending.close();
+                seen = null;
+                pending = null;
+            }
+            rows = null;
+            hashes = null;
+            indexes = null;
+        }
+    }
+}
@@ -62,7 +62,7 @@ public abstract class LocalResult implements ResultStore {
             currentMemory += incrementSize;
             boolean needFlush = false;
             if (bufferMC != null) {
-                if (!bufferMC.addSize(incrementSize)) {
+                if (!bufferMC.addSize(incrementSize) || isBatchFull()) {
                     needFlush = true;
                 }
             } else if (currentMemory > maxMemory) {
@@ -193,13 +193,30 @@ public abstract class LocalResult implements ResultStore {
 
     protected final void addRowsToDisk() {
         beforeFlushRows();
-        rowCount = external.addRows(rows);
+        rowCount = flushRows(currentMemory);
         rows.clear();
-        if (bufferMC != null)
-            bufferMC.subSize(currentMemory);
         currentMemory = 0;
     }
 
+    /**
+     * flush rows into disk and give back their memory to bufferMC
+     *
+     * @return the row count of external
+     */
+    protected int flushRows(int memory) {
+        int count = external.addRows(rows);
+        if (bufferMC != null)
+            bufferMC.subSize(memory);
+        return count;
+    }
+
+    /**
+     * @return true if the rows should be flushed before bufferMC is full
+     */
+    protected boolean isBatchFull() {
+        return false;
+    }
+
     /**
      * job to do before flush rows into disk
      */
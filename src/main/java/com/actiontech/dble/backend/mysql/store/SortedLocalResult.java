@@ -5,16 +5,21 @@
 
 package com.actiontech.dble.backend.mysql.store;
 
+import com.actiontech.dble.DbleServer;
 import com.actiontech.dble.backend.mysql.nio.handler.util.RowDataComparator;
-import com.actiontech.dble.backend.mysql.store.diskbuffer.SortedResultDiskBuffer;
+import com.actiontech.dble.backend.mysql.store.diskbuffer.ExternalSortDiskBuffer;
+import com.actiontech.dble.backend.mysql.store.memalloc.MemSizeController;
 import com.actiontech.dble.backend.mysql.store.result.ResultExternal;
 import com.actiontech.dble.buffer.BufferPool;
+import com.actiontech.dble.config.model.SystemConfig;
 
 import java.util.Collections;
 
 public class SortedLocalResult extends LocalResult {
 
     protected RowDataComparator rowCmp;
+    /* the memory of a run, the runs being sorted and the rows in memory share bufferMC */
+    private long runMemory = Long.MAX_VALUE;
 
     public SortedLocalResult(BufferPool pool, int fieldsCount, RowDataComparator rowCmp, String charset) {
         this(DEFAULT_INITIAL_CAPACITY, fieldsCount, pool, rowCmp, charset);
@@ -28,12 +33,35 @@ public class SortedLocalResult extends LocalResult {
 
     @Override
     protected ResultExternal makeExternal() {
-        return new SortedResultDiskBuffer(pool, fieldsCount, rowCmp);
+        SystemConfig system = DbleServer.getInstance().getConfig().getSystem();
+        return new ExternalSortDiskBuffer(pool, fieldsCount, rowCmp, rowCmp::copy, system.getOrderByParallelism(),
+                system.getOrderByMergeFanIn(), DbleServer.getInstance().getComplexQueryExecutor());
+    }
+
+    @Override
+    public LocalResult setMemSizeController(MemSizeController memSizeController) {
+        if (memSizeController != null) {
+            // at most orderByParallelism runs are sorted while the next one is filled
+            int parallelism = Math.max(DbleServer.getInstance().getConfig().getSystem().getOrderByParallelism(), 1);
+            runMemory = memSizeController.getMaxSize() / (parallelism + 1);
+        }
+        return super.setMemSizeController(memSizeController);
+    }
+
+    @Override
+    protected int flushRows(int memory) {
+        // the memory is given back after the run is sorted and written
+        return ((ExternalSortDiskBuffer) external).addRows(rows, bufferMC, memory);
+    }
+
+    @Override
+    protected boolean isBatchFull() {
+        return currentMemory > runMemory;
     }
 
     @Override
     protected void beforeFlushRows() {
-        Collections.sort(rows, this.rowCmp);
+        // the flushed rows become a run which is sorted by ExternalSortDiskBuffer, maybe in another thread
     }
 
     @Override
@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) 2016-2020 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.backend.mysql.store.diskbuffer;
+
+import com.actiontech.dble.config.ErrorCode;
+import com.actiontech.dble.util.exception.TmpFileException;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * encoding of the blocks of rows written by SortedResultDiskBuffer.
+ * <p>
+ * a block is int(length of the rest), varint(row count) and the columns one by one.
+ * A column is stored by its dictionary if its values repeat: byte(1), varint(dictionary size),
+ * the values of the dictionary, and a varint code of each row, 0 meaning NULL.
+ * Otherwise it is byte(0) and the value of each row. A value is varint(length + 1) and the bytes, 0 meaning NULL.
+ * <p>
+ * the values of a dictionary are decoded once for the block and shared by the rows.
+ *
+ * @author ActionTech
+ */
+final class ColumnarBlockCodec {
+    static final int BLOCK_ROWS = 256;
+    static final int BLOCK_BYTES = 64 * 1024;
+    static final int HEADER_SIZE = 4;
+    private static final byte PLAIN = 0;
+    private static final byte DICTIONARY = 1;
+
+    private ColumnarBlockCodec() {
+    }
+
+    /**
+     * @return the length of the block after the header
+     */
+    static int readHeader(ByteBuffer header) {
+        return header.getInt();
+    }
+
+    static int readRowCount(ByteBuffer block) {
+        return readVarInt(block);
+    }
+
+    /**
+     * @return the values of the block by columns
+     */
+    static byte[][][] decode(ByteBuffer block, int rowCount, int fieldCount) {
+        byte[][][] columns = new byte[fieldCount][][];
+        for (int i = 0; i < fieldCount; i++) {
+            byte[][] values = new byte[rowCount][];
+            byte encoding = block.get();
+            if (encoding == DICTIONARY) {
+                byte[][] dictionary = new byte[readVarInt(block)][];
+                for (int j = 0; j < dictionary.length; j++) {
+                    dictionary[j] = readValue(block);
+                }
+                for (int j = 0; j < rowCount; j++) {
+                    int code = readVarInt(block);
+                    values[j] = code == 0 ? null : dictionary[code - 1];
+                }
+            } else if (encoding == PLAIN) {
+                for (int j = 0; j < rowCount; j++) {
+                    values[j] = readValue(block);
+                }
+            } else {
+                throw TmpFileException.get(ErrorCode.ER_FILE_READ, "columnar block");
+            }
+            columns[i] = values;
+        }
+        if (block.hasRemaining()) {
+            throw TmpFileException.get(ErrorCode.ER_FILE_READ, "columnar block");
+        }
+        return columns;
+    }
+
+    private static byte[] readValue(ByteBuffer block) {
+        int n = readVarInt(block);
+        if (n == 0) {
+            return null;
+        }
+        byte[] value = new byte[n - 1];
+        block.get(value);
+        return value;
+    }
+
+    private static int readVarInt(ByteBuffer block) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = block.get();
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * encoder of the blocks, the rows are added by columns
+     */
+    static final class Encoder {
+        private final Map<ByteBuffer, Integer> dictionary = new HashMap<>();
+        private final List<byte[]> dictionaryValues = new ArrayList<>();
+        private int[] codes = new int[BLOCK_ROWS];
+        private byte[] out = new byte[BLOCK_BYTES];
+        private int outLen;
+
+        /**
+         * @param columns the values of the rows by columns
+         * @return the length of the block in buffer()
+         */
+        int encode(byte[][][] columns, int rowCount) {
+            outLen = HEADER_SIZE;
+            writeVarInt(rowCount);
+            for (byte[][] values : columns) {
+                encodeColumn(values, rowCount);
+            }
+            int length = outLen - HEADER_SIZE;
+            out[0] = (byte) (length >>> 24);
+            out[1] = (byte) (length >>> 16);
+            out[2] = (byte) (length >>> 8);
+            out[3] = (byte) length;
+            return outLen;
+        }
+
+        byte[] buffer() {
+            return out;
+        }
+
+        private void encodeColumn(byte[][] values, int rowCount) {
+            if (codes.length < rowCount) {
+                codes = new int[rowCount];
+            }
+            dictionary.clear();
+            dictionaryValues.clear();
+            int notNull = 0;
+            for (int i = 0; i < rowCount; i++) {
+                byte[] v = values[i];
+                if (v == null) {
+                    codes[i] = 0;
+                    continue;
+                }
+                notNull++;
+                Integer code = dictionary.get(ByteBuffer.wrap(v));
+                if (code == null) {
+                    dictionaryValues.add(v);
+                    code = dictionaryValues.size();
+                    dictionary.put(ByteBuffer.wrap(v), code);
+                }
+                codes[i] = code;
+            }
+            // every value of the dictionary is used twice at least on average
+            if (dictionaryValues.size() * 2 <= notNull) {
+                ensure(1);
+                out[outLen++] = DICTIONARY;
+                writeVarInt(dictionaryValues.size());
+                for (byte[] v : dictionaryValues) {
+                    writeValue(v);
+                }
+                for (int i = 0; i < rowCount; i++) {
+                    writeVarInt(codes[i]);
+                }
+            } else {
+                ensure(1);
+                out[outLen++] = PLAIN;
+                for (int i = 0; i < rowCount; i++) {
+                    writeValue(values[i]);
+                }
+            }
+        }
+
+        private void writeValue(byte[] v) {
+            if (v == null) {
+                writeVarInt(0);
+            } else {
+                writeVarInt(v.length + 1);
+                ensure(v.length);
+                System.arraycopy(v, 0, out, outLen, v.length);
+                outLen += v.length;
+            }
+        }
+
+        private void writeVarInt(int value) {
+            ensure(5);
+            outLen = SortedRunCodec.writeVarInt(out, outLen, value);
+        }
+
+        private void ensure(int increment) {
+            if (outLen + increment > out.length) {
+                out = Arrays.copyOf(out, Math.max(out.length << 1, outLen + increment));
+            }
+        }
+    }
+}
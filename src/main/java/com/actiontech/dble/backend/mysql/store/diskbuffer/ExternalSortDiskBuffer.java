@@ -0,0 +1,319 @@
+/*
+ * Copyright (C) 2016-2020 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.backend.mysql.store.diskbuffer;
+
+import com.actiontech.dble.backend.mysql.nio.handler.util.ArrayMinHeap;
+import com.actiontech.dble.backend.mysql.store.FileStore;
+import com.actiontech.dble.backend.mysql.store.diskbuffer.SortedRunCodec.RunTape;
+import com.actiontech.dble.backend.mysql.store.memalloc.MemSizeController;
+import com.actiontech.dble.buffer.BufferPool;
+import com.actiontech.dble.config.ErrorCode;
+import com.actiontech.dble.net.mysql.RowDataPacket;
+import com.actiontech.dble.util.MinHeap;
+import com.actiontech.dble.util.exception.TmpFileException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+/**
+ * external merge sort for order by.
+ * <p>
+ * every flushed batch of rows becomes a run, the runs are sorted and encoded
+ * by the executor (at most parallelism runs in flight) and appended to the
+ * temp file prefix-compressed. Every run is sorted by its own comparator from
+ * runCmpFactory, because a comparator may keep the state of the row compared,
+ * and keeps its memory charged until it's written. When done() is called, runs are merged in
+ * passes of at most fanIn runs until the last pass can be streamed by next().
+ * Every pass writes its runs to a new temp file, and the file of the former
+ * pass is deleted after the pass, so at most two passes are kept.
+ *
+ * @author ActionTech
+ */
+public class ExternalSortDiskBuffer extends ResultDiskBuffer {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ExternalSortDiskBuffer.class);
+    static final int READ_AHEAD_SIZE = 64 * 1024;
+    private static final int MERGE_FLUSH_SIZE = 1024 * 1024;
+
+    private final Comparator<RowDataPacket> comparator;
+    private final Supplier<? extends Comparator<RowDataPacket>> runCmpFactory;
+    private final Comparator<RunTape> tapeCmp;
+    private final int parallelism;
+    private final int fanIn;
+    private final ExecutorService executor;
+    private final Semaphore runPermits;
+    private final List<Future<?>> runTasks = new ArrayList<>();
+    private final Object fileLock = new Object();
+    /* [start, end) of every run in the file */
+    private List<long[]> runs = new ArrayList<>();
+    private long fileEnd = 0;
+    private volatile boolean closed = false;
+
+    private List<RunTape> tapes;
+    private MinHeap<RunTape> heap;
+
+    public ExternalSortDiskBuffer(BufferPool pool, int columnCount, Comparator<RowDataPacket> cmp,
+                                  Supplier<? extends Comparator<RowDataPacket>> runCmpFactory, int parallelism,
+                                  int fanIn, ExecutorService executor) {
+        super(pool, columnCount);
+        this.comparator = cmp;
+        this.runCmpFactory = runCmpFactory;
+        this.parallelism = executor == null ? 1 : Math.max(parallelism, 1);
+        this.fanIn = Math.max(fanIn, 2);
+        this.executor = executor;
+        this.runPermits = new Semaphore(this.parallelism);
+        this.tapeCmp = new Comparator<RunTape>() {
+            @Override
+            public int compare(RunTape o1, RunTape o2) {
+                return comparator.compare(o1.current(), o2.current());
+            }
+        };
+    }
+
+    @Override
+    public int tapeCount() {
+        synchronized (fileLock) {
+            return runs.size();
+        }
+    }
+
+    @Override
+    public int addRows(List<RowDataPacket> rows) {
+        return addRows(rows, null, 0);
+    }
+
+    /**
+     * @param mc     the memory of the rows is subtracted from it after the run is written, may be null
+     * @param memory the memory of the rows
+     */
+    public int addRows(List<RowDataPacket> rows, final MemSizeController mc, final long memory) {
+        final RowDataPacket[] run = rows.toArray(new RowDataPacket[rows.size()]);
+        rowCount += run.length;
+        if (parallelism == 1) {
+            sortAndWrite(run, mc, memory);
+            return rowCount;
+        }
+        runPermits.acquireUninterruptibly();
+        try {
+            runTasks.add(executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        if (!closed) {
+                            sortAndWrite(run, null, 0);
+                        }
+                    } finally {
+                        runPermits.release();
+                        if (mc != null) {
+                            mc.subSize(memory);
+                        }
+                    }
+                }
+            }));
+        } catch (RejectedExecutionException e) {
+            runPermits.release();
+            sortAndWrite(run, mc, memory);
+        }
+        return rowCount;
+    }
+
+    private void sortAndWrite(RowDataPacket[] run, MemSizeController mc, long memory) {
+        try {
+            sortAndWrite(run);
+        } finally {
+            if (mc != null) {
+                mc.subSize(memory);
+            }
+        }
+    }
+
+    private void sortAndWrite(RowDataPacket[] run) {
+        Arrays.sort(run, runCmpFactory.get());
+        SortedRunCodec.Encoder encoder = new SortedRunCodec.Encoder(MERGE_FLUSH_SIZE);
+        for (RowDataPacket row : run) {
+            encoder.append(row);
+        }
+        synchronized (fileLock) {
+            long start = fileEnd;
+            fileEnd = append(file, fileEnd, encoder);
+            runs.add(new long[]{start, fileEnd});
+        }
+    }
+
+    /**
+     * appends to the temp file are serialized by fileLock while runs are written in parallel
+     *
+     * @return the end of the target after appending
+     */
+    private static long append(FileStore target, long end, SortedRunCodec.Encoder encoder) {
+        if (encoder.size() == 0) {
+            return end;
+        }
+        target.seek(end);
+        target.write(ByteBuffer.wrap(encoder.buffer(), 0, encoder.size()));
+        long newEnd = end + encoder.size();
+        encoder.clearBuffer();
+        return newEnd;
+    }
+
+    @Override
+    public void done() {
+        waitForRuns(true);
+        int pass = 0;
+        while (runs.size() > fanIn) {
+            List<long[]> merged = new ArrayList<>((runs.size() + fanIn - 1) / fanIn);
+            FileStore output = new FileStore("nioMapped:Memory", "rw");
+            long outputEnd = 0;
+            try {
+                for (int i = 0; i < runs.size(); i += fanIn) {
+                    List<long[]> group = runs.subList(i, Math.min(i + fanIn, runs.size()));
+                    long start = outputEnd;
+                    outputEnd = group.size() == 1 ? copyRun(group.get(0), output, start) : mergeRuns(group, output, start);
+                    merged.add(new long[]{start, outputEnd});
+                }
+            } catch (RuntimeException e) {
+                output.closeAndDeleteSilently();
+                throw e;
+            }
+            synchronized (fileLock) {
+                // the runs of the former pass are merged, reclaim them
+                file.closeAndDeleteSilently();
+                file = output;
+                fileEnd = outputEnd;
+                runs = merged;
+            }
+            pass++;
+        }
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("external sort done, rows:" + rowCount + ", merge passes:" + pass + ", bytes:" + fileEnd);
+        }
+    }
+
+    /**
+     * @return the end of the output after the merged run
+     */
+    private long mergeRuns(List<long[]> group, FileStore output, long start) {
+        MinHeap<RunTape> mergeHeap = openTapes(group, new ArrayList<RunTape>(group.size()));
+        SortedRunCodec.Encoder encoder = new SortedRunCodec.Encoder(MERGE_FLUSH_SIZE);
+        long end = start;
+        while (!mergeHeap.isEmpty()) {
+            encoder.append(pollRow(mergeHeap));
+            if (encoder.size() >= MERGE_FLUSH_SIZE) {
+                end = append(output, end, encoder);
+            }
+        }
+        return append(output, end, encoder);
+    }
+
+    /**
+     * the run left alone in a pass is copied to the output as it is
+     *
+     * @return the end of the output after the run
+     */
+    private long copyRun(long[] run, FileStore output, long start) {
+        ByteBuffer buffer = ByteBuffer.allocate(READ_AHEAD_SIZE);
+        long pos = run[0];
+        long end = start;
+        while (pos < run[1]) {
+            buffer.clear();
+            file.seek(pos);
+            pos += file.read(buffer, run[1]);
+            buffer.flip();
+            output.seek(end);
+            end += buffer.remaining();
+            output.write(buffer);
+        }
+        return end;
+    }
+
+    private MinHeap<RunTape> openTapes(List<long[]> group, List<RunTape> opened) {
+        MinHeap<RunTape> minHeap = new ArrayMinHeap<>(Math.max(group.size(), 1), tapeCmp);
+        for (long[] run : group) {
+            RunTape tape = new RunTape(file, columnCount, run[0], run[1], READ_AHEAD_SIZE);
+            opened.add(tape);
+            if (tape.advance()) {
+                minHeap.add(tape);
+            }
+        }
+        return minHeap;
+    }
+
+    private RowDataPacket pollRow(MinHeap<RunTape> minHeap) {
+        RunTape top = minHeap.peak();
+        RowDataPacket row = top.current();
+        if (top.advance()) {
+            minHeap.replaceTop(top);
+        } else {
+            minHeap.poll();
+        }
+        return row;
+    }
+
+    @Override
+    public RowDataPacket next() {
+        if (heap == null || heap.isEmpty())
+            return null;
+        return pollRow(heap);
+    }
+
+    @Override
+    public void reset() {
+        if (tapes == null) {
+            tapes = new ArrayList<>(runs.size());
+            heap = openTapes(runs, tapes);
+            return;
+        }
+        heap.clear();
+        for (RunTape tape : tapes) {
+            tape.rewind();
+            if (tape.advance()) {
+                heap.add(tape);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        waitForRuns(false);
+        tapes = null;
+        heap = null;
+        super.close();
+    }
+
+    private void waitForRuns(boolean throwError) {
+        RuntimeException error = null;
+        for (Future<?> task : runTasks) {
+            try {
+                task.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                error = TmpFileException.get(ErrorCode.ER_FILE_WRITE, e, "sorted run");
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                error = cause instanceof RuntimeException ? (RuntimeException) cause :
+                        TmpFileException.get(ErrorCode.ER_FILE_WRITE, cause, "sorted run");
+            }
+        }
+        runTasks.clear();
+        if (error != null && throwError) {
+            throw error;
+        }
+    }
+}
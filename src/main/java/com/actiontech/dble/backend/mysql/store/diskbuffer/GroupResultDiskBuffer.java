@@ -20,6 +20,7 @@ import org.apache.commons.lang.SerializationUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -65,6 +66,20 @@ public class GroupResultDiskBuffer extends DistinctResultDiskBuffer {
         return new GroupResultDiskTape(pool, file, columnCount, sums.size());
     }
 
+    @Override
+    protected int spilledColumnCount() {
+        return sums.size() + columnCount;
+    }
+
+    @Override
+    protected byte[] spilledValue(RowDataPacket row, int index) {
+        if (index >= sums.size()) {
+            return row.getValue(index - sums.size());
+        }
+        Object obj = ((DGRowPacket) row).getSumTran(index);
+        return obj == null ? null : SerializationUtils.serialize((Serializable) obj);
+    }
+
     @Override
     protected void onFoundRow(RowDataPacket oldRow, RowDataPacket row) {
         // we need to calculate group by
@@ -113,7 +128,7 @@ public class GroupResultDiskBuffer extends DistinctResultDiskBuffer {
      * @author ActionTech
      * @CreateTime 2015/5/20
      */
-    static class GroupResultDiskTape extends ResultDiskTape {
+    static class GroupResultDiskTape extends BlockDiskTape {
         private final int orgFieldCount;
         private final int sumSize;
 
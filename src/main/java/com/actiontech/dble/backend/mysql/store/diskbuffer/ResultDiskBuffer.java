@@ -9,9 +9,11 @@ import com.actiontech.dble.backend.mysql.ByteUtil;
 import com.actiontech.dble.backend.mysql.store.FileStore;
 import com.actiontech.dble.backend.mysql.store.result.ResultExternal;
 import com.actiontech.dble.buffer.BufferPool;
+import com.actiontech.dble.config.ErrorCode;
 import com.actiontech.dble.net.mysql.MySQLPacket;
 import com.actiontech.dble.net.mysql.RowDataPacket;
 import com.actiontech.dble.util.exception.NotSupportException;
+import com.actiontech.dble.util.exception.TmpFileException;
 
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
@@ -121,16 +123,27 @@ public abstract class ResultDiskBuffer implements ResultExternal {
         ByteBuffer readBuffer;
 
         ResultDiskTape(BufferPool pool, FileStore file, int fieldCount) {
+            this(pool, file, fieldCount, pool.allocate());
+        }
+
+        ResultDiskTape(BufferPool pool, FileStore file, int fieldCount, ByteBuffer readBuffer) {
             this.pool = pool;
             this.file = file;
             this.fieldCount = fieldCount;
-            this.readBuffer = pool.allocate();
+            this.readBuffer = readBuffer;
         }
 
         public boolean isEnd() {
             return isReadAll();
         }
 
+        void rewind() {
+            filePos = start;
+            pos = start;
+            readBufferOffset = 0;
+            readBuffer.clear();
+        }
+
         public RowDataPacket nextRow() {
             if (isReadAll())
                 return null;
@@ -236,4 +249,78 @@ public abstract class ResultDiskBuffer implements ResultExternal {
         }
     }
 
+    /**
+     * the tape of the blocks encoded by ColumnarBlockCodec, a block is read from the mapped file without copying
+     * and its rows are made of the decoded columns.
+     */
+    static class BlockDiskTape extends ResultDiskTape {
+        private byte[][][] block;
+        private int blockRows;
+        private int blockIndex;
+        /* used if the block can't be sliced from the mapped file */
+        private byte[] readBytes;
+
+        BlockDiskTape(BufferPool pool, FileStore file, int fieldCount) {
+            super(pool, file, fieldCount, null);
+        }
+
+        @Override
+        public boolean isEnd() {
+            return blockIndex == blockRows && pos == end;
+        }
+
+        @Override
+        public RowDataPacket nextRow() {
+            if (blockIndex == blockRows) {
+                if (pos == end) {
+                    return null;
+                }
+                readBlock();
+            }
+            RowDataPacket row = new RowDataPacket(fieldCount);
+            for (byte[][] column : block) {
+                row.add(column[blockIndex]);
+            }
+            blockIndex++;
+            return row;
+        }
+
+        @Override
+        void rewind() {
+            pos = start;
+            filePos = start;
+            block = null;
+            blockRows = 0;
+            blockIndex = 0;
+        }
+
+        private void readBlock() {
+            int length = ColumnarBlockCodec.readHeader(read(pos, ColumnarBlockCodec.HEADER_SIZE));
+            ByteBuffer data = read(pos + ColumnarBlockCodec.HEADER_SIZE, length);
+            blockRows = ColumnarBlockCodec.readRowCount(data);
+            block = ColumnarBlockCodec.decode(data, blockRows, fieldCount);
+            blockIndex = 0;
+            pos += ColumnarBlockCodec.HEADER_SIZE + length;
+            filePos = pos;
+        }
+
+        private ByteBuffer read(long position, int length) {
+            ByteBuffer view = file.slice(position, length);
+            if (view != null) {
+                return view;
+            }
+            if (readBytes == null || readBytes.length < length) {
+                readBytes = new byte[Math.max(length, ColumnarBlockCodec.BLOCK_BYTES)];
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(readBytes, 0, length);
+            while (buffer.hasRemaining()) {
+                file.seek(position + buffer.position());
+                if (file.read(buffer, end) <= 0) {
+                    throw TmpFileException.get(ErrorCode.ER_FILE_READ, "columnar block");
+                }
+            }
+            buffer.flip();
+            return buffer;
+        }
+    }
 }
@@ -20,7 +20,8 @@ import java.util.List;
 
 /**
  * sort need diskbuffer, when done() is called,users use next() to get the
- * result rows which have been sorted already
+ * result rows which have been sorted already.
+ * every tape is written by the columnar blocks of ColumnarBlockCodec
  *
  * @author ActionTech
  */
@@ -41,6 +42,7 @@ public class SortedResultDiskBuffer extends ResultDiskBuffer {
      */
     protected MinHeap<TapeItem> heap;
     protected Comparator<TapeItem> heapCmp;
+    private ColumnarBlockCodec.Encoder encoder;
 
     public SortedResultDiskBuffer(BufferPool pool, int columnCount, RowDataComparator cmp) {
         super(pool, columnCount);
@@ -74,23 +76,33 @@ public class SortedResultDiskBuffer extends ResultDiskBuffer {
          * we should make rows sorted first, then write them into file
          */
         if (logger.isDebugEnabled()) {
-            logger.debug(" convert list to array start:" + TimeUtil.currentTimeMillis());
+            logger.debug("write rows to disk start:" + TimeUtil.currentTimeMillis());
         }
-        RowDataPacket[] rowArray = new RowDataPacket[rows.size()];
-        rows.toArray(rowArray);
         final long start = file.getFilePointer();
-        for (RowDataPacket row : rowArray) {
-            byte[] b = row.toBytes();
-            writeBuffer = writeToBuffer(b, writeBuffer);
+        // the rows are written by blocks of columns
+        byte[][][] columns = new byte[spilledColumnCount()][ColumnarBlockCodec.BLOCK_ROWS][];
+        int blockRows = 0;
+        int blockBytes = 0;
+        for (RowDataPacket row : rows) {
+            for (int i = 0; i < columns.length; i++) {
+                byte[] v = spilledValue(row, i);
+                columns[i][blockRows] = v;
+                blockBytes += v == null ? 1 : v.length + 1;
+            }
+            blockRows++;
+            if (blockRows == ColumnarBlockCodec.BLOCK_ROWS || blockBytes >= ColumnarBlockCodec.BLOCK_BYTES) {
+                writeBlock(columns, blockRows);
+                blockRows = 0;
+                blockBytes = 0;
+            }
+        }
+        if (blockRows > 0) {
+            writeBlock(columns, blockRows);
         }
-        // help for gc
-        rowArray = null;
-        writeBuffer.flip();
-        file.write(writeBuffer);
-        writeBuffer.clear();
         /* make a new tape */
         ResultDiskTape tape = makeResultDiskTape();
         tape.start = start;
+        tape.pos = start;
         tape.filePos = start;
         tape.end = file.getFilePointer();
         tapes.add(tape);
@@ -101,13 +113,32 @@ public class SortedResultDiskBuffer extends ResultDiskBuffer {
         return rowCount;
     }
 
+    private void writeBlock(byte[][][] columns, int blockRows) {
+        if (encoder == null) {
+            encoder = new ColumnarBlockCodec.Encoder();
+        }
+        int length = encoder.encode(columns, blockRows);
+        file.write(encoder.buffer(), 0, length);
+    }
+
     /**
      * to override by group by
      *
      * @return
      */
     protected ResultDiskTape makeResultDiskTape() {
-        return new ResultDiskTape(pool, file, columnCount);
+        return new BlockDiskTape(pool, file, columnCount);
+    }
+
+    /**
+     * the count of the columns written to the tapes, to override by group by
+     */
+    protected int spilledColumnCount() {
+        return columnCount;
+    }
+
+    protected byte[] spilledValue(RowDataPacket row, int index) {
+        return row.getValue(index);
     }
 
     @Override
@@ -125,10 +156,7 @@ public class SortedResultDiskBuffer extends ResultDiskBuffer {
     @Override
     public final void reset() {
         for (ResultDiskTape tape : tapes) {
-            tape.filePos = tape.start;
-            tape.pos = tape.start;
-            tape.readBufferOffset = 0;
-            tape.readBuffer.clear();
+            tape.rewind();
         }
         resetHeap();
     }
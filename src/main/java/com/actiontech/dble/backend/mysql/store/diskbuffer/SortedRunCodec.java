@@ -0,0 +1,250 @@
+/*
+ * Copyright (C) 2016-2020 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.backend.mysql.store.diskbuffer;
+
+import com.actiontech.dble.backend.mysql.store.FileStore;
+import com.actiontech.dble.config.ErrorCode;
+import com.actiontech.dble.net.mysql.RowDataPacket;
+import com.actiontech.dble.util.exception.TmpFileException;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * encoding of the sorted runs written by ExternalSortDiskBuffer.
+ * <p>
+ * a row is stored as its column values, each one prefixed by a varint of
+ * (length + 1), 0 meaning NULL. Since the rows of a run are sorted, each row
+ * only stores the bytes which differ from the previous row:
+ * varint(shared prefix length), varint(suffix length), suffix.
+ *
+ * @author ActionTech
+ */
+final class SortedRunCodec {
+    private static final int INITIAL_ROW_SIZE = 256;
+
+    private SortedRunCodec() {
+    }
+
+    static RowDataPacket decodeRow(byte[] data, int length, int fieldCount) {
+        RowDataPacket row = new RowDataPacket(fieldCount);
+        int p = 0;
+        for (int i = 0; i < fieldCount; i++) {
+            int n = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = data[p++];
+                n |= (b & 0x7f) << shift;
+                if ((b & 0x80) == 0) {
+                    break;
+                }
+            }
+            if (n == 0) {
+                row.add(null);
+            } else {
+                row.add(Arrays.copyOfRange(data, p, p + n - 1));
+                p += n - 1;
+            }
+        }
+        if (p != length) {
+            throw TmpFileException.get(ErrorCode.ER_FILE_READ, "sorted run");
+        }
+        return row;
+    }
+
+    static int writeVarInt(byte[] dest, int offset, int value) {
+        while ((value & ~0x7f) != 0) {
+            dest[offset++] = (byte) ((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        dest[offset++] = (byte) value;
+        return offset;
+    }
+
+    /**
+     * append-only encoder of one run, the encoded bytes can be taken away by
+     * chunks without breaking the prefix chain.
+     */
+    static final class Encoder {
+        private byte[] prev = new byte[INITIAL_ROW_SIZE];
+        private int prevLen;
+        private byte[] cur = new byte[INITIAL_ROW_SIZE];
+        private int curLen;
+        private byte[] out;
+        private int outLen;
+
+        Encoder(int initialSize) {
+            this.out = new byte[Math.max(initialSize, INITIAL_ROW_SIZE)];
+        }
+
+        void append(RowDataPacket row) {
+            curLen = 0;
+            for (int i = 0; i < row.getFieldCount(); i++) {
+                byte[] v = row.getValue(i);
+                if (v == null) {
+                    writeRowVarInt(0);
+                } else {
+                    writeRowVarInt(v.length + 1);
+                    ensureRow(v.length);
+                    System.arraycopy(v, 0, cur, curLen, v.length);
+                    curLen += v.length;
+                }
+            }
+            int shared = 0;
+            int max = Math.min(prevLen, curLen);
+            while (shared < max && prev[shared] == cur[shared]) {
+                shared++;
+            }
+            ensureOut(10 + curLen - shared);
+            outLen = writeVarInt(out, outLen, shared);
+            outLen = writeVarInt(out, outLen, curLen - shared);
+            System.arraycopy(cur, shared, out, outLen, curLen - shared);
+            outLen += curLen - shared;
+            byte[] tmp = prev;
+            prev = cur;
+            prevLen = curLen;
+            cur = tmp;
+        }
+
+        byte[] buffer() {
+            return out;
+        }
+
+        int size() {
+            return outLen;
+        }
+
+        void clearBuffer() {
+            outLen = 0;
+        }
+
+        private void writeRowVarInt(int value) {
+            ensureRow(5);
+            curLen = writeVarInt(cur, curLen, value);
+        }
+
+        private void ensureRow(int increment) {
+            if (curLen + increment > cur.length) {
+                cur = Arrays.copyOf(cur, Math.max(cur.length << 1, curLen + increment));
+            }
+        }
+
+        private void ensureOut(int increment) {
+            if (outLen + increment > out.length) {
+                out = Arrays.copyOf(out, Math.max(out.length << 1, outLen + increment));
+            }
+        }
+    }
+
+    /**
+     * sequential reader of one run with its own read-ahead window, so that a
+     * merge of many runs does one large read per run instead of one per row.
+     */
+    static final class RunTape {
+        private final FileStore file;
+        private final int fieldCount;
+        private final long start;
+        private final long end;
+        private final int readAheadSize;
+        private long filePos;
+        private byte[] window;
+        private int pos;
+        private int limit;
+        private byte[] prev = new byte[INITIAL_ROW_SIZE];
+        private int prevLen;
+        private byte[] cur = new byte[INITIAL_ROW_SIZE];
+        private RowDataPacket current;
+
+        RunTape(FileStore file, int fieldCount, long start, long end, int readAheadSize) {
+            this.file = file;
+            this.fieldCount = fieldCount;
+            this.start = start;
+            this.end = end;
+            this.readAheadSize = readAheadSize;
+            rewind();
+        }
+
+        void rewind() {
+            this.filePos = start;
+            this.window = null;
+            this.pos = 0;
+            this.limit = 0;
+            this.prevLen = 0;
+            this.current = null;
+        }
+
+        RowDataPacket current() {
+            return current;
+        }
+
+        /**
+         * @return false if the run is exhausted
+         */
+        boolean advance() {
+            if (pos == limit && filePos >= end) {
+                current = null;
+                window = null;
+                return false;
+            }
+            int shared = readVarInt();
+            int suffix = readVarInt();
+            int len = shared + suffix;
+            if (cur.length < len) {
+                cur = new byte[Math.max(cur.length << 1, len)];
+            }
+            System.arraycopy(prev, 0, cur, 0, shared);
+            ensure(suffix);
+            System.arraycopy(window, pos, cur, shared, suffix);
+            pos += suffix;
+            byte[] tmp = prev;
+            prev = cur;
+            prevLen = len;
+            cur = tmp;
+            current = decodeRow(prev, prevLen, fieldCount);
+            return true;
+        }
+
+        private int readVarInt() {
+            int value = 0;
+            for (int shift = 0; ; shift += 7) {
+                ensure(1);
+                byte b = window[pos++];
+                value |= (b & 0x7f) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+        }
+
+        private void ensure(int n) {
+            if (limit - pos >= n) {
+                return;
+            }
+            if (window == null) {
+                window = new byte[Math.max(readAheadSize, n)];
+            } else {
+                int remain = limit - pos;
+                byte[] target = window.length < n ? new byte[Math.max(window.length << 1, n)] : window;
+                System.arraycopy(window, pos, target, 0, remain);
+                window = target;
+                limit = remain;
+                pos = 0;
+            }
+            while (limit - pos < n && filePos < end) {
+                ByteBuffer buffer = ByteBuffer.wrap(window, limit, window.length - limit);
+                file.seek(filePos);
+                int read = file.read(buffer, end);
+                if (read <= 0) {
+                    break;
+                }
+                filePos += read;
+                limit += read;
+            }
+            if (limit - pos < n) {
+                throw TmpFileException.get(ErrorCode.ER_FILE_READ, "sorted run");
+            }
+        }
+    }
+}
@@ -55,12 +55,24 @@ public class UnSortedResultDiskBuffer extends ResultDiskBuffer {
         return rowCount;
     }
 
+    /**
+     * add rows which are already the bytes of row packets
+     */
+    public int addRowBytes(List<byte[]> rows) {
+        for (byte[] b : rows) {
+            writeBuffer = writeToBuffer(b, writeBuffer);
+        }
+        writeBuffer.flip();
+        file.write(writeBuffer);
+        writeBuffer.clear();
+        mainTape.end = file.getFilePointer();
+        rowCount += rows.size();
+        return rowCount;
+    }
+
     @Override
     public void reset() {
-        mainTape.pos = mainTape.start;
-        mainTape.filePos = mainTape.start;
-        mainTape.readBufferOffset = 0;
-        mainTape.readBuffer.clear();
+        mainTape.rewind();
     }
 
     @Override
@@ -71,4 +71,13 @@ public abstract class FileBase extends FileChannel {
     public FileLock tryLock(long position, long size, boolean shared) throws IOException {
         throw new UnsupportedOperationException();
     }
+
+    /**
+     * a read only view of the bytes of the file without copying them, the view must not be used after the file is closed
+     *
+     * @return null if it is not supported by the file
+     */
+    public ByteBuffer slice(long position, int length) {
+        return null;
+    }
 }
@@ -230,6 +230,8 @@ class FileNioMapped extends FileBase {
     @Override
     public synchronized int write(ByteBuffer src) throws IOException {
         int len = src.remaining();
+        // reads move the mapped position, so write at pos like read() does
+        mapped.position(pos);
         if (mapped.capacity() < pos + len) {
             int offset = src.position();
             int length = mapped.capacity() - pos;
@@ -251,6 +253,17 @@ class FileNioMapped extends FileBase {
         }
     }
 
+    @Override
+    public synchronized ByteBuffer slice(long position, int length) {
+        if (mapped == null || position < 0 || position + length > fileLength) {
+            return null;
+        }
+        ByteBuffer view = mapped.asReadOnlyBuffer();
+        view.position((int) position);
+        view.limit((int) position + length);
+        return view.slice();
+    }
+
     @Override
     public synchronized FileLock tryLock(long position, long size, boolean shared) throws IOException {
         return file.getChannel().tryLock(position, size, shared);
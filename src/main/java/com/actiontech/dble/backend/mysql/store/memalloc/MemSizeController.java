@@ -5,6 +5,8 @@
 
 package com.actiontech.dble.backend.mysql.store.memalloc;
 
+import com.actiontech.dble.singleton.QueryMemoryGovernor;
+
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
@@ -16,10 +18,19 @@ import java.util.concurrent.atomic.AtomicLong;
 public class MemSizeController {
     private AtomicLong size;
     private long maxSize;
+    /* the memory of all sessions, may be null */
+    private final QueryMemoryGovernor governor;
+    /* the memory reserved from the governor and not released yet */
+    private final AtomicLong reserved = new AtomicLong();
 
     public MemSizeController(long maxSize) {
+        this(maxSize, null);
+    }
+
+    public MemSizeController(long maxSize, QueryMemoryGovernor governor) {
         this.size = new AtomicLong();
         this.maxSize = maxSize;
+        this.governor = governor;
     }
 
     /**
@@ -29,12 +40,17 @@ public class MemSizeController {
      * @return reached limit?, if false:not ok, need flush to disk
      */
     public boolean addSize(long increment) {
+        boolean globalOk = true;
+        if (governor != null) {
+            reserved.addAndGet(increment);
+            globalOk = governor.reserve(increment);
+        }
         for (; ; ) {
             long current = size.get();
             long next = current + increment;
             if (size.compareAndSet(current, next)) {
                 long minLeft = 32;
-                return next + minLeft < maxSize;
+                return next + minLeft < maxSize && globalOk;
             }
         }
     }
@@ -47,6 +63,37 @@ public class MemSizeController {
                 throw new RuntimeException("unexpected!");
             }
             if (size.compareAndSet(current, next)) {
+                if (governor != null) {
+                    release(decrement);
+                }
+                return;
+            }
+        }
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * give back the memory reserved from the governor when the query ends or the session is closed,
+     * the buffers freed later don't release it again
+     */
+    public void releaseReserved() {
+        if (governor != null) {
+            release(Long.MAX_VALUE);
+        }
+    }
+
+    private void release(long decrement) {
+        for (; ; ) {
+            long current = reserved.get();
+            long released = Math.min(current, decrement);
+            if (released <= 0) {
+                return;
+            }
+            if (reserved.compareAndSet(current, current - released)) {
+                governor.release(released);
                 return;
             }
         }
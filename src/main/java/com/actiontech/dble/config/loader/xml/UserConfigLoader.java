@@ -60,6 +60,7 @@ public class UserConfigLoader implements Loader<UserConfig, XMLServerLoader> {
                     props.remove("maxCon");
                     user.setMaxCon(Integer.parseInt(maxCon));
                 }
+                loadWorkload(user, props, xsl.problemReporter);
 
                 String readOnlyStr = (String) props.get("readOnly");
                 if (null != readOnlyStr) {
@@ -102,6 +103,31 @@ public class UserConfigLoader implements Loader<UserConfig, XMLServerLoader> {
         }
     }
 
+    private void loadWorkload(UserConfig user, Map<String, Object> props, ProblemReporter reporter) {
+        user.setMaxComplexQuery(getWorkloadProperty(props, "maxComplexQuery", user.getMaxComplexQuery(), 0, Integer.MAX_VALUE, reporter));
+        user.setMaxBackendCon(getWorkloadProperty(props, "maxBackendCon", user.getMaxBackendCon(), 0, Integer.MAX_VALUE, reporter));
+        user.setPriority(getWorkloadProperty(props, "priority", user.getPriority(), 1, 100, reporter));
+        user.setQueueTimeout(getWorkloadProperty(props, "queueTimeout", (int) user.getQueueTimeout(), 0, Integer.MAX_VALUE, reporter));
+    }
+
+    private int getWorkloadProperty(Map<String, Object> props, String name, int defaultValue, int min, int max, ProblemReporter reporter) {
+        String value = (String) props.remove(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        int result;
+        try {
+            result = Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            result = min - 1;
+        }
+        if (result >= min && result <= max) {
+            return result;
+        }
+        reporter.warn("property[" + name + "] " + value + " in server.xml is illegal, use " + defaultValue + " replaced");
+        return defaultValue;
+    }
+
     private void loadPrivileges(UserConfig userConfig, Element node, ProblemReporter reporter) {
         UserPrivilegesConfig privilegesConfig = new UserPrivilegesConfig();
 
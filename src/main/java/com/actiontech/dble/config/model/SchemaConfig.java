@@ -26,6 +26,8 @@ public class SchemaConfig {
     private final String[] allDataNodeStrArr;
     private Map<ERTable, Set<ERTable>> fkErRelations;
     private Map<String, Set<ERTable>> funcNodeERMap;
+    /* the parent tables whose rows are queried to route the insert of child tables */
+    private final Set<String> locatedParents = new HashSet<>();
 
     public SchemaConfig(String name, String dataNode,
                         Map<String, TableConfig> tables, int defaultMaxLimit) {
@@ -100,6 +102,9 @@ public class SchemaConfig {
                 eraTables.add(new ERTable(name, tc.getName(), column));
                 continue;
             }
+            if (tc.getLocateRTableKeySql() != null) {
+                locatedParents.add(parent.getName());
+            }
             if (parent.getDirectRouteTC() == null || tc.getDirectRouteTC() == null) {
                 if (fkErRelations == null) {
                     fkErRelations = new HashMap<>();
@@ -194,6 +199,10 @@ public class SchemaConfig {
         return fkErRelations;
     }
 
+    public boolean isLocatedParent(String tableName) {
+        return locatedParents.contains(tableName);
+    }
+
     public String getRandomDataNode() {
         if (this.allDataNodeStrArr == null) {
             return null;
@@ -64,6 +64,7 @@ public final class SystemConfig {
     private int useCostTimeStat = 0;
     private int maxCostStatSize = 100;
     private int costSamplePercent = 1;
+    private int metricsPort = 0;
     //connection
     private String charset = "utf8mb4";
     private int maxPacketSize = 4 * 1024 * 1024;
@@ -77,12 +78,22 @@ public final class SystemConfig {
     //heartbeat check period
     private long dataNodeIdleCheckPeriod = 5 * 60 * 1000L;
     private long dataNodeHeartbeatPeriod = 10 * 1000L;
+    // the heartbeat period of the unstable or lagging data source
+    private long dataNodeHeartbeatFastPeriod = 1000L;
 
     //processor check conn
     private long processorCheckPeriod = 1000L;
     private long idleTimeout = DEFAULT_IDLE_TIMEOUT;
     // sql execute timeout (second)
     private long sqlExecuteTimeout = 300;
+    // circuit breaker of data source, 0 means off
+    private int circuitBreakerErrorPercent = 0;
+    private long circuitBreakerLatencyThreshold = 0; // ms
+    private int circuitBreakerMinRequests = 20;
+    private long circuitBreakerOpenTime = 10000; // ms
+    // hedged read of the read only query
+    private int useHedgedRead = 0;
+    private long hedgedReadMinDelay = 10; // ms
 
     //transaction log
     private int recordTxn = 0;
@@ -107,6 +118,17 @@ public final class SystemConfig {
     private int orderMemSize = 4;
     private int joinMemSize = 4;
 
+    //external sort of order by
+    private int orderByParallelism = 2;
+    private int orderByMergeFanIn = 16;
+
+    // memory of all complex queries, unit is M, 0 means a quarter of the max heap
+    private int queryMemoryBudget = 0;
+    private int queryMemorySpillPercent = 80;
+    private long queryAdmissionTimeout = 1000L;
+    // complex queries of all users run at the same time, 0 means not limited
+    private int maxConcurrentComplexQuery = 0;
+
     // off Heap unit:bytes
     // a page size
     private int bufferPoolPageSize = 1024 * 1024 * 2;
@@ -117,6 +139,11 @@ public final class SystemConfig {
     private boolean useDefaultPageNumber = true;
     private int mappedFileSize = 1024 * 1024 * 64;
 
+    // templates of route kept by the normalized sql, 0 means not use
+    private int sqlPlanCacheSize = 10000;
+    // data nodes of the parent keys kept for the insert of child tables, 0 means not use
+    private int erParentKeyCacheSize = 10000;
+
     // sql statistics
     private int useSqlStat = 1;
     private int sqlRecordCount = 10;
@@ -140,6 +167,10 @@ public final class SystemConfig {
     //view
     private String viewPersistenceConfBaseDir = SystemConfig.getHomePath() + File.separatorChar + "viewConf" + File.separatorChar;
     private String viewPersistenceConfBaseName = "viewJson";
+    //chunked global table check
+    private int globalCheckChunkSize = 1000;
+    private long globalCheckChunkInterval = 100; //ms
+    private String globalCheckStateBaseDir = SystemConfig.getHomePath() + File.separatorChar + "globalCheck" + File.separatorChar;
 
     // for join tmp results
     private int mergeQueueSize = 1024;
@@ -164,6 +195,9 @@ public final class SystemConfig {
     private boolean enableFlowControl = false;
     private int flowControlStartThreshold = 4096;
     private int flowControlStopThreshold = 256;
+    private boolean enableFlowControlSpill = false;
+    private int flowControlSpillMaxSize = 1024;
+    private boolean enablePartialAggregation = true;
 
     //only for compatibility
     private boolean useNewSpellRotate = false;
@@ -321,6 +355,32 @@ public final class SystemConfig {
         return home;
     }
 
+    public int getSqlPlanCacheSize() {
+        return sqlPlanCacheSize;
+    }
+
+    @SuppressWarnings("unused")
+    public void setSqlPlanCacheSize(int sqlPlanCacheSize) {
+        if (sqlPlanCacheSize >= 0) {
+            this.sqlPlanCacheSize = sqlPlanCacheSize;
+        } else if (this.problemReporter != null) {
+            problemReporter.warn(String.format(WARNING_FORMAT, "sqlPlanCacheSize", sqlPlanCacheSize, this.sqlPlanCacheSize));
+        }
+    }
+
+    public int getErParentKeyCacheSize() {
+        return erParentKeyCacheSize;
+    }
+
+    @SuppressWarnings("unused")
+    public void setErParentKeyCacheSize(int erParentKeyCacheSize) {
+        if (erParentKeyCacheSize >= 0) {
+            this.erParentKeyCacheSize = erParentKeyCacheSize;
+        } else if (this.problemReporter != null) {
+            problemReporter.warn(String.format(WARNING_FORMAT, "erParentKeyCacheSize", erParentKeyCacheSize, this.erParentKeyCacheSize));
+        }
+    }
+
     public int getUseSqlStat() {
         return useSqlStat;
     }
@@ -539,6 +599,19 @@ public final class SystemConfig {
         }
     }
 
+    public long getDataNodeHeartbeatFastPeriod() {
+        return dataNodeHeartbeatFastPeriod;
+    }
+
+    @SuppressWarnings("unused")
+    public void setDataNodeHeartbeatFastPeriod(long dataNodeHeartbeatFastPeriod) {
+        if (dataNodeHeartbeatFastPeriod > 0) {
+            this.dataNodeHeartbeatFastPeriod = dataNodeHeartbeatFastPeriod;
+        } else if (this.problemReporter != null) {
+            problemReporter.warn(String.format(WARNING_FORMAT, "dataNodeHeartbeatFastPeriod", dataNodeHeartbeatFastPeriod, this.dataNodeHeartbeatFastPeriod));
+        }
+    }
+
     public long getSqlExecuteTimeout() {
         return sqlExecuteTimeout;
     }
@@ -552,6 +625,84 @@ public final class SystemConfig {
         }
     }
 
+    public int getCircuitBreakerErrorPercent() {
+        return circuitBreakerErrorPercent;
+    }
+
+    @SuppressWarnings("unused")
+    public void setCircuitBreakerErrorPercent(int circuitBreakerErrorPercent) {
+        if (circuitBreakerErrorPercent >= 0 && circuitBreakerErrorPercent <= 100) {
+            this.circuitBreakerErrorPercent = circuitBreakerErrorPercent;
+        } else if (this.problemReporter != null) {
+            problemReporter.warn(String.format(WARNING_FORMAT, "circuitBreakerErrorPercent", circuitBreakerErrorPercent, this.circuitBreakerErrorPercent));
+        }
+    }
+
+    public long getCircuitBreakerLatencyThreshold() {
+        return circuitBreakerLatencyThreshold;
+    }
+
+    @SuppressWarnings("unused")
+    public void setCircuitBreakerLatencyThreshold(long circuitBreakerLatencyThreshold) {
+        if (circuitBreakerLatencyThreshold >= 0) {
+            this.circuitBreakerLatencyThreshold = circuitBreakerLatencyThreshold;
+        } else if (this.problemReporter != null) {
+            problemReporter.warn(String.format(WARNING_FORMAT, "circuitBreakerLatencyThreshold", circuitBreakerLatencyThreshold, this.circuitBreakerLatencyThreshold));
+        }
+    }
+
+    public int getCircuitBreakerMinRequests() {
+        return circuitBreakerMinRequests;
+    }
+
+    @SuppressWarnings("unused")
+    public void setCircuitBreakerMinRequests(int circuitBreakerMinRequests) {
+        if (circuitBreakerMinRequests > 0) {
+            this.circuitBreakerMinRequests = circuitBreakerMinRequests;
+        } else if (this.problemReporter != null) {
+            problemReporter.warn(String.format(WARNING_FORMAT, "circuitBreakerMinRequests", circuitBreakerMinRequests, this.circuitBreakerMinRequests));
+        }
+    }
+
+    public long getCircuitBreakerOpenTime() {
+        return circuitBreakerOpenTime;
+    }
+
+    @SuppressWarnings("unused")
+    public void setCircuitBreakerOpenTime(long circuitBreakerOpenTime) {
+        if (circuitBreakerOpenTime > 0) {
+            this.circuitBreakerOpenTime = circuitBreakerOpenTime;
+        } else if (this.problemReporter != null) {
+            problemReporter.warn(String.format(WARNING_FORMAT, "circuitBreakerOpenTime", circuitBreakerOpenTime, this.circuitBreakerOpenTime));
+        }
+    }
+
+    public int getUseHedgedRead() {
+        return useHedgedRead;
+    }
+
+    @SuppressWarnings("unused")
+    public void setUseHedgedRead(int useHedgedRead) {
+        if (useHedgedRead >= 0 && useHedgedRead <= 1) {
+            this.useHedgedRead = useHedgedRead;
+        } else if (this.problemReporter != null) {
+            problemReporter.warn(String.format(WARNING_FORMAT, "useHedgedRead", useHedgedRead, this.useHedgedRead));
+        }
+    }
+
+    public long getHedgedReadMinDelay() {
+        return hedgedReadMinDelay;
+    }
+
+    @SuppressWarnings("unused")
+    public void setHedgedReadMinDelay(long hedgedReadMinDelay) {
+        if (hedgedReadMinDelay > 0) {
+            this.hedgedReadMinDelay = hedgedReadMinDelay;
+        } else if (this.problemReporter != null) {
+            problemReporter.warn(String.format(WARNING_FORMAT, "hedgedReadMinDelay", hedgedReadMinDelay, this.hedgedReadMinDelay));
+        }
+    }
+
 
     public long getShowBinlogStatusTimeout() {
         return showBinlogStatusTimeout;
@@ -924,6 +1075,84 @@ public final class SystemConfig {
         }
     }
 
+    public int getOrderByParallelism() {
+        return orderByParallelism;
+    }
+
+    @SuppressWarnings("unused")
+    public void setOrderByParallelism(int orderByParallelism) {
+        if (orderByParallelism > 0) {
+            this.orderByParallelism = orderByParallelism;
+        } else if (this.problemReporter != null) {
+            problemReporter.warn(String.format(WARNING_FORMAT, "orderByParallelism", orderByParallelism, this.orderByParallelism));
+        }
+    }
+
+    public int getOrderByMergeFanIn() {
+        return orderByMergeFanIn;
+    }
+
+    @SuppressWarnings("unused")
+    public void setOrderByMergeFanIn(int orderByMergeFanIn) {
+        if (orderByMergeFanIn >= 2) {
+            this.orderByMergeFanIn = orderByMergeFanIn;
+        } else if (this.problemReporter != null) {
+            problemReporter.warn(String.format(WARNING_FORMAT, "orderByMergeFanIn", orderByMergeFanIn, this.orderByMergeFanIn));
+        }
+    }
+
+    public int getQueryMemoryBudget() {
+        return queryMemoryBudget;
+    }
+
+    @SuppressWarnings("unused")
+    public void setQueryMemoryBudget(int queryMemoryBudget) {
+        if (queryMemoryBudget >= 0) {
+            this.queryMemoryBudget = queryMemoryBudget;
+        } else if (this.problemReporter != null) {
+            problemReporter.warn(String.format(WARNING_FORMAT, "queryMemoryBudget", queryMemoryBudget, this.queryMemoryBudget));
+        }
+    }
+
+    public int getQueryMemorySpillPercent() {
+        return queryMemorySpillPercent;
+    }
+
+    @SuppressWarnings("unused")
+    public void setQueryMemorySpillPercent(int queryMemorySpillPercent) {
+        if (queryMemorySpillPercent > 0 && queryMemorySpillPercent <= 100) {
+            this.queryMemorySpillPercent = queryMemorySpillPercent;
+        } else if (this.problemReporter != null) {
+            problemReporter.warn(String.format(WARNING_FORMAT, "queryMemorySpillPercent", queryMemorySpillPercent, this.queryMemorySpillPercent));
+        }
+    }
+
+    public long getQueryAdmissionTimeout() {
+        return queryAdmissionTimeout;
+    }
+
+    @SuppressWarnings("unused")
+    public void setQueryAdmissionTimeout(long queryAdmissionTimeout) {
+        if (queryAdmissionTimeout >= 0) {
+            this.queryAdmissionTimeout = queryAdmissionTimeout;
+        } else if (this.problemReporter != null) {
+            problemReporter.warn(String.format(WARNING_FORMAT, "queryAdmissionTimeout", queryAdmissionTimeout, this.queryAdmissionTimeout));
+        }
+    }
+
+    public int getMaxConcurrentComplexQuery() {
+        return maxConcurrentComplexQuery;
+    }
+
+    @SuppressWarnings("unused")
+    public void setMaxConcurrentComplexQuery(int maxConcurrentComplexQuery) {
+        if (maxConcurrentComplexQuery >= 0) {
+            this.maxConcurrentComplexQuery = maxConcurrentComplexQuery;
+        } else if (this.problemReporter != null) {
+            problemReporter.warn(String.format(WARNING_FORMAT, "maxConcurrentComplexQuery", maxConcurrentComplexQuery, this.maxConcurrentComplexQuery));
+        }
+    }
+
     public int getMappedFileSize() {
         return mappedFileSize;
     }
@@ -982,6 +1211,41 @@ public final class SystemConfig {
         this.viewPersistenceConfBaseName = viewPersistenceConfBaseName;
     }
 
+    public int getGlobalCheckChunkSize() {
+        return globalCheckChunkSize;
+    }
+
+    @SuppressWarnings("unused")
+    public void setGlobalCheckChunkSize(int globalCheckChunkSize) {
+        if (globalCheckChunkSize > 0) {
+            this.globalCheckChunkSize = globalCheckChunkSize;
+        } else if (this.problemReporter != null) {
+            problemReporter.warn(String.format(WARNING_FORMAT, "globalCheckChunkSize", globalCheckChunkSize, this.globalCheckChunkSize));
+        }
+    }
+
+    public long getGlobalCheckChunkInterval() {
+        return globalCheckChunkInterval;
+    }
+
+    @SuppressWarnings("unused")
+    public void setGlobalCheckChunkInterval(long globalCheckChunkInterval) {
+        if (globalCheckChunkInterval >= 0) {
+            this.globalCheckChunkInterval = globalCheckChunkInterval;
+        } else if (this.problemReporter != null) {
+            problemReporter.warn(String.format(WARNING_FORMAT, "globalCheckChunkInterval", globalCheckChunkInterval, this.globalCheckChunkInterval));
+        }
+    }
+
+    public String getGlobalCheckStateBaseDir() {
+        return globalCheckStateBaseDir;
+    }
+
+    @SuppressWarnings("unused")
+    public void setGlobalCheckStateBaseDir(String globalCheckStateBaseDir) {
+        this.globalCheckStateBaseDir = globalCheckStateBaseDir;
+    }
+
     public int getUseCostTimeStat() {
         return useCostTimeStat;
     }
@@ -1021,6 +1285,19 @@ public final class SystemConfig {
         }
     }
 
+    public int getMetricsPort() {
+        return metricsPort;
+    }
+
+    @SuppressWarnings("unused")
+    public void setMetricsPort(int metricsPort) {
+        if (metricsPort >= 0 && metricsPort <= 65535) {
+            this.metricsPort = metricsPort;
+        } else if (this.problemReporter != null) {
+            problemReporter.warn(String.format(WARNING_FORMAT, "metricsPort", metricsPort, this.metricsPort));
+        }
+    }
+
     public int getUseThreadUsageStat() {
         return useThreadUsageStat;
     }
@@ -1245,6 +1522,37 @@ public final class SystemConfig {
         this.flowControlStopThreshold = flowControlStopThreshold;
     }
 
+    public boolean isEnableFlowControlSpill() {
+        return enableFlowControlSpill;
+    }
+
+    @SuppressWarnings("unused")
+    public void setEnableFlowControlSpill(boolean enableFlowControlSpill) {
+        this.enableFlowControlSpill = enableFlowControlSpill;
+    }
+
+    public int getFlowControlSpillMaxSize() {
+        return flowControlSpillMaxSize;
+    }
+
+    @SuppressWarnings("unused")
+    public void setFlowControlSpillMaxSize(int flowControlSpillMaxSize) {
+        if (flowControlSpillMaxSize > 0) {
+            this.flowControlSpillMaxSize = flowControlSpillMaxSize;
+        } else if (this.problemReporter != null) {
+            problemReporter.warn(String.format(WARNING_FORMAT, "flowControlSpillMaxSize", flowControlSpillMaxSize, this.flowControlSpillMaxSize));
+        }
+    }
+
+    public boolean isEnablePartialAggregation() {
+        return enablePartialAggregation;
+    }
+
+    @SuppressWarnings("unused")
+    public void setEnablePartialAggregation(boolean enablePartialAggregation) {
+        this.enablePartialAggregation = enablePartialAggregation;
+    }
+
     @Override
     public String toString() {
         return "SystemConfig [" +
@@ -1271,6 +1579,7 @@ public final class SystemConfig {
                 ", useCostTimeStat=" + useCostTimeStat +
                 ", maxCostStatSize=" + maxCostStatSize +
                 ", costSamplePercent=" + costSamplePercent +
+                ", metricsPort=" + metricsPort +
                 ", charset=" + charset +
                 ", maxPacketSize=" + maxPacketSize +
                 ", autocommit=" + autocommit +
@@ -1279,9 +1588,16 @@ public final class SystemConfig {
                 ", checkTableConsistencyPeriod=" + checkTableConsistencyPeriod +
                 ", dataNodeIdleCheckPeriod=" + dataNodeIdleCheckPeriod +
                 ", dataNodeHeartbeatPeriod=" + dataNodeHeartbeatPeriod +
+                ", dataNodeHeartbeatFastPeriod=" + dataNodeHeartbeatFastPeriod +
                 ", processorCheckPeriod=" + processorCheckPeriod +
                 ", idleTimeout=" + idleTimeout +
                 ", sqlExecuteTimeout=" + sqlExecuteTimeout +
+                ", circuitBreakerErrorPercent=" + circuitBreakerErrorPercent +
+                ", circuitBreakerLatencyThreshold=" + circuitBreakerLatencyThreshold +
+                ", circuitBreakerMinRequests=" + circuitBreakerMinRequests +
+                ", circuitBreakerOpenTime=" + circuitBreakerOpenTime +
+                ", useHedgedRead=" + useHedgedRead +
+                ", hedgedReadMinDelay=" + hedgedReadMinDelay +
                 ", recordTxn=" + recordTxn +
                 ", transactionLogBaseDir=" + transactionLogBaseDir +
                 ", transactionLogBaseName=" + transactionLogBaseName +
@@ -1295,9 +1611,17 @@ public final class SystemConfig {
                 ", otherMemSize=" + otherMemSize +
                 ", orderMemSize=" + orderMemSize +
                 ", joinMemSize=" + joinMemSize +
+                ", orderByParallelism=" + orderByParallelism +
+                ", orderByMergeFanIn=" + orderByMergeFanIn +
+                ", queryMemoryBudget=" + queryMemoryBudget +
+                ", queryMemorySpillPercent=" + queryMemorySpillPercent +
+                ", queryAdmissionTimeout=" + queryAdmissionTimeout +
+                ", maxConcurrentComplexQuery=" + maxConcurrentComplexQuery +
                 ", bufferPoolChunkSize=" + bufferPoolChunkSize +
                 ", bufferPoolPageSize=" + bufferPoolPageSize +
                 ", bufferPoolPageNumber=" + bufferPoolPageNumber +
+                ", sqlPlanCacheSize=" + sqlPlanCacheSize +
+                ", erParentKeyCacheSize=" + erParentKeyCacheSize +
                 ", useSqlStat=" + useSqlStat +
                 ", sqlRecordCount=" + sqlRecordCount +
                 ", maxResultSet=" + maxResultSet +
@@ -1311,6 +1635,9 @@ public final class SystemConfig {
                 ", backSocketNoDelay=" + backSocketNoDelay +
                 ", viewPersistenceConfBaseDir=" + viewPersistenceConfBaseDir +
                 ", viewPersistenceConfBaseName=" + viewPersistenceConfBaseName +
+                ", globalCheckChunkSize=" + globalCheckChunkSize +
+                ", globalCheckChunkInterval=" + globalCheckChunkInterval +
+                ", globalCheckStateBaseDir=" + globalCheckStateBaseDir +
                 ", joinQueueSize=" + joinQueueSize +
                 ", mergeQueueSize=" + mergeQueueSize +
                 ", orderByQueueSize=" + orderByQueueSize +
@@ -1327,6 +1654,9 @@ public final class SystemConfig {
                 ", enableFlowControl=" + enableFlowControl +
                 ", flowControlStartThreshold=" + flowControlStartThreshold +
                 ", flowControlStopThreshold=" + flowControlStopThreshold +
+                ", enableFlowControlSpill=" + enableFlowControlSpill +
+                ", flowControlSpillMaxSize=" + flowControlSpillMaxSize +
+                ", enablePartialAggregation=" + enablePartialAggregation +
                 "]";
     }
 
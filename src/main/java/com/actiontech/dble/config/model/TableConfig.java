@@ -40,6 +40,7 @@ public class TableConfig {
     private final String joinKey;
     private final String parentKey;
     private final String locateRTableKeySql;
+    private final String locateRTableKeysSql;
     private final TableConfig directRouteTC;
 
     public TableConfig(String name, String cacheKey, boolean needAddLimit,
@@ -92,7 +93,7 @@ public class TableConfig {
                     locateRTableKeySql = null;
                 } else {
                     directRouteTC = null;
-                    locateRTableKeySql = genLocateRootParentSQL();
+                    locateRTableKeySql = genLocateRootParentSQL(false);
                 }
             } else if (parentTC.getDirectRouteTC() != null) {
                 /*
@@ -105,11 +106,11 @@ public class TableConfig {
                     locateRTableKeySql = null;
                 } else {
                     directRouteTC = null;
-                    locateRTableKeySql = genLocateRootParentSQL();
+                    locateRTableKeySql = genLocateRootParentSQL(false);
                 }
             } else {
                 directRouteTC = null;
-                locateRTableKeySql = genLocateRootParentSQL();
+                locateRTableKeySql = genLocateRootParentSQL(false);
             }
         } else {
             this.joinKey = null;
@@ -117,6 +118,7 @@ public class TableConfig {
             locateRTableKeySql = null;
             directRouteTC = this;
         }
+        locateRTableKeysSql = locateRTableKeySql == null ? null : genLocateRootParentSQL(true);
     }
 
 
@@ -147,7 +149,7 @@ public class TableConfig {
                     locateRTableKeySql = null;
                 } else {
                     directRouteTC = null;
-                    locateRTableKeySql = genLocateRootParentSQL();
+                    locateRTableKeySql = genLocateRootParentSQL(false);
                 }
             } else if (parentTC.getDirectRouteTC() != null) {
                 if (parentKey.equals(parentTC.joinKey)) {
@@ -155,16 +157,17 @@ public class TableConfig {
                     locateRTableKeySql = null;
                 } else {
                     directRouteTC = null;
-                    locateRTableKeySql = genLocateRootParentSQL();
+                    locateRTableKeySql = genLocateRootParentSQL(false);
                 }
             } else {
                 directRouteTC = null;
-                locateRTableKeySql = genLocateRootParentSQL();
+                locateRTableKeySql = genLocateRootParentSQL(false);
             }
         } else {
             locateRTableKeySql = null;
             directRouteTC = this;
         }
+        locateRTableKeysSql = locateRTableKeySql == null ? null : genLocateRootParentSQL(true);
     }
 
 
@@ -199,21 +202,28 @@ public class TableConfig {
         return locateRTableKeySql;
     }
 
+    /**
+     * @return the sql to find the join keys stored in a data node, the keys joined by ',' and ')' are appended
+     */
+    public String getLocateRTableKeysSql() {
+        return locateRTableKeysSql;
+    }
+
     public boolean isGlobalTable() {
         return this.tableType == TableTypeEnum.TYPE_GLOBAL_TABLE;
     }
 
-    private String genLocateRootParentSQL() {
+    private String genLocateRootParentSQL(boolean multiKeys) {
         TableConfig tb = this;
         StringBuilder tableSb = new StringBuilder();
         StringBuilder condition = new StringBuilder();
         TableConfig prevTC = tb;
         int level = 0;
-        String latestCond = null;
+        String latestColumn = null;
         while (tb.parentTC != null) {
             tableSb.append(tb.parentTC.name).append(',');
             if (level == 0) {
-                latestCond = " " + tb.parentTC.getName() + '.' + tb.parentKey + "=";
+                latestColumn = tb.parentTC.getName() + '.' + tb.parentKey;
             } else {
                 String relation = tb.parentTC.getName() + '.' + tb.parentKey + '=' + tb.name + '.' + tb.joinKey;
                 condition.append(relation).append(" AND ");
@@ -222,10 +232,9 @@ public class TableConfig {
             prevTC = tb;
             tb = tb.parentTC;
         }
+        String latestCond = multiKeys ? " " + latestColumn + " IN (" : " " + latestColumn + "=";
         return "SELECT " +
-                prevTC.parentTC.name +
-                '.' +
-                prevTC.parentKey +
+                (multiKeys ? "DISTINCT " + latestColumn : prevTC.parentTC.name + '.' + prevTC.parentKey) +
                 " FROM " +
                 tableSb.substring(0, tableSb.length() - 1) +
                 " WHERE " +
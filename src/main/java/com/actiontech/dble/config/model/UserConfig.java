@@ -17,6 +17,11 @@ public class UserConfig {
     private String password;
     private String encryptPassword;
     private int maxCon = 0;                        // default 0 means not check
+    // workload group, 0 means not limited
+    private int maxComplexQuery = 0;
+    private int maxBackendCon = 0;
+    private int priority = 10;
+    private long queueTimeout = 3000L;
     private UserPrivilegesConfig privilegesConfig;    //privileges for tables
 
     private boolean readOnly = false;
@@ -64,6 +69,38 @@ public class UserConfig {
         this.maxCon = maxCon;
     }
 
+    public int getMaxComplexQuery() {
+        return maxComplexQuery;
+    }
+
+    public void setMaxComplexQuery(int maxComplexQuery) {
+        this.maxComplexQuery = maxComplexQuery;
+    }
+
+    public int getMaxBackendCon() {
+        return maxBackendCon;
+    }
+
+    public void setMaxBackendCon(int maxBackendCon) {
+        this.maxBackendCon = maxBackendCon;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    public void setPriority(int priority) {
+        this.priority = priority;
+    }
+
+    public long getQueueTimeout() {
+        return queueTimeout;
+    }
+
+    public void setQueueTimeout(long queueTimeout) {
+        this.queueTimeout = queueTimeout;
+    }
+
     public Set<String> getSchemas() {
         return schemas;
     }
@@ -87,7 +124,9 @@ public class UserConfig {
     @Override
     public String toString() {
         return "UserConfig [name=" + this.name + ", password=" + this.password + ", encryptPassword=" +
-                this.encryptPassword + ", maxCon=" + this.maxCon + ", manager=" + this.manager +
+                this.encryptPassword + ", maxCon=" + this.maxCon + ", maxComplexQuery=" + this.maxComplexQuery +
+                ", maxBackendCon=" + this.maxBackendCon + ", priority=" + this.priority +
+                ", queueTimeout=" + this.queueTimeout + ", manager=" + this.manager +
                 ", readOnly=" + this.readOnly + ", schemas=" + this.schemas + "]";
     }
 
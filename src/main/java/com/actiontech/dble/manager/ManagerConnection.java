@@ -7,7 +7,6 @@ package com.actiontech.dble.manager;
 
 import com.actiontech.dble.backend.BackendConnection;
 import com.actiontech.dble.net.FrontendConnection;
-import com.actiontech.dble.util.TimeUtil;
 
 import java.io.IOException;
 import java.nio.channels.NetworkChannel;
@@ -25,13 +24,15 @@ public class ManagerConnection extends FrontendConnection {
 
     @Override
     public boolean isIdleTimeout() {
-        if (skipIdleCheck) {
-            return false;
-        } else if (isAuthenticated) {
-            return super.isIdleTimeout();
+        return !skipIdleCheck && super.isIdleTimeout();
+    }
+
+    @Override
+    public long getIdleExpireTime() {
+        if (isAuthenticated) {
+            return super.getIdleExpireTime();
         } else {
-            return TimeUtil.currentTimeMillis() > Math.max(lastWriteTime,
-                    lastReadTime) + AUTH_TIMEOUT;
+            return Math.max(lastWriteTime, lastReadTime) + AUTH_TIMEOUT;
         }
     }
 
@@ -10,6 +10,7 @@ public class DumpFileConfig {
     private String writePath;
     private int writeQueueSize = 500;
     private int maxValues = 4000;
+    private int routerThreads = Runtime.getRuntime().availableProcessors();
 
     public String getDefaultSchema() {
         return defaultSchema;
@@ -61,4 +62,12 @@ public class DumpFileConfig {
     public void setMaxValues(int maxValues) {
         this.maxValues = maxValues;
     }
+
+    public int getRouterThreads() {
+        return routerThreads;
+    }
+
+    public void setRouterThreads(int routerThreads) {
+        this.routerThreads = routerThreads;
+    }
 }
@@ -6,6 +6,7 @@ import com.actiontech.dble.config.model.TableConfig;
 import com.actiontech.dble.manager.dump.handler.DefaultHandler;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 
@@ -29,13 +30,16 @@ public final class DumpFileContext {
     // other
     private boolean isSkip = false;
     private DumpFileWriter writer;
+    private DumpFileRouter router;
     private List<ErrorMsg> errors;
     private boolean needSkipError;
     private DumpFileConfig config;
 
-    public DumpFileContext(DumpFileWriter writer, DumpFileConfig config) {
+    public DumpFileContext(DumpFileWriter writer, DumpFileRouter router, DumpFileConfig config) {
         this.writer = writer;
-        this.errors = new ArrayList<>(10);
+        this.router = router;
+        // the errors are also added by the workers of router
+        this.errors = Collections.synchronizedList(new ArrayList<ErrorMsg>(10));
         this.config = config;
     }
 
@@ -144,10 +148,18 @@ public final class DumpFileContext {
         return writer;
     }
 
+    public DumpFileRouter getRouter() {
+        return router;
+    }
+
     public void addError(String error) {
         this.errors.add(new ErrorMsg(schema + "-" + table, error));
     }
 
+    public void addError(String target, String error) {
+        this.errors.add(new ErrorMsg(target, error));
+    }
+
     public List<ErrorMsg> getErrors() {
         return errors;
     }
@@ -23,9 +23,9 @@ public final class DumpFileExecutor implements Runnable {
     private DumpFileContext context;
     private Thread self;
 
-    public DumpFileExecutor(BlockingQueue<String> queue, DumpFileWriter writer, DumpFileConfig config, SchemaConfig schemaConfig) {
+    public DumpFileExecutor(BlockingQueue<String> queue, DumpFileWriter writer, DumpFileRouter router, DumpFileConfig config, SchemaConfig schemaConfig) {
         this.queue = queue;
-        this.context = new DumpFileContext(writer, config);
+        this.context = new DumpFileContext(writer, router, config);
         if (schemaConfig != null) {
             this.context.setDefaultSchema(schemaConfig);
         }
@@ -64,6 +64,10 @@ public final class DumpFileExecutor implements Runnable {
                 }
 
                 int type = ServerParse.parse(stmt);
+                if (type != ServerParse.INSERT) {
+                    // keep the order of the statements
+                    context.getRouter().await();
+                }
                 // pre handle
                 if (preHandle(writer, type, stmt)) {
                     continue;
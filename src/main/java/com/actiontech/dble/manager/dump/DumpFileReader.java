@@ -2,17 +2,23 @@ package com.actiontech.dble.manager.dump;
 
 import com.actiontech.dble.backend.mysql.store.fs.FileUtils;
 import com.actiontech.dble.manager.ManagerConnection;
+import com.actiontech.dble.util.TimeUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.lang.reflect.Method;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.concurrent.BlockingQueue;
 import java.util.regex.Pattern;
 
 /**
+ * read the dump file by memory mapped chunks and split it into statements by ';' out of the quotes and the comments
+ *
  * @author Baofengqi
  */
 public final class DumpFileReader {
@@ -20,13 +26,24 @@ public final class DumpFileReader {
     public static final Logger LOGGER = LoggerFactory.getLogger("dumpFileLog");
     public static final String EOF = "dump file eof";
     public static final Pattern CREATE_VIEW = Pattern.compile("CREATE\\s+VIEW\\s+`?([a-zA-Z_0-9\\-_]+)`?\\s+", Pattern.CASE_INSENSITIVE);
-    private StringBuilder tempStr = new StringBuilder(200);
+    private static final long CHUNK_SIZE = 0x4000000L;
     private BlockingQueue<String> readQueue;
     private FileChannel fileChannel;
     private long fileLength;
-    private long readLength;
+    private volatile long readLength;
     private int readPercent;
 
+    // the part of the statement in the previous chunks
+    private byte[] pending = new byte[0x20000];
+    private int pendingLength = 0;
+    // the state of the splitter, kept between the chunks
+    private byte quote = 0;
+    private boolean escape = false;
+    private boolean lineComment = false;
+    private boolean blockComment = false;
+    private byte prev = 0;
+    private byte prev2 = 0;
+
     public DumpFileReader(BlockingQueue<String> queue) {
         this.readQueue = queue;
     }
@@ -38,27 +55,31 @@ public final class DumpFileReader {
 
     public void start(ManagerConnection c, DumpFileExecutor executor) throws IOException, InterruptedException {
         LOGGER.info("begin to read dump file.");
+        long startTime = TimeUtil.currentTimeMillis();
         try {
-            ByteBuffer buffer = ByteBuffer.allocate(0x20000);
-            int byteRead = fileChannel.read(buffer);
-            while (byteRead != -1) {
+            while (readLength < fileLength) {
                 if (c.isClosed() || executor.isStop()) {
                     LOGGER.info("finish to read dump file, tha task is interrupted.");
                     throw new InterruptedException();
                 }
-                readLength += byteRead;
+                long size = Math.min(CHUNK_SIZE, fileLength - readLength);
+                MappedByteBuffer chunk = fileChannel.map(FileChannel.MapMode.READ_ONLY, readLength, size);
+                try {
+                    readStatements(chunk);
+                } finally {
+                    unmap(chunk);
+                }
+                readLength += size;
                 float percent = ((float) readLength / (float) fileLength) * 100;
                 if (((int) percent) - readPercent > 5 || (int) percent == 100) {
                     readPercent = (int) percent;
-                    LOGGER.info("dump file has bean read " + readPercent + "%");
+                    long cost = Math.max(TimeUtil.currentTimeMillis() - startTime, 1);
+                    LOGGER.info("dump file has bean read " + readPercent + "%, " + (readLength * 1000 / cost >> 20) + " MB/s");
                 }
-                readSQLByEOF(buffer.array(), byteRead);
-                buffer.clear();
-                byteRead = fileChannel.read(buffer);
             }
-            if (tempStr != null) {
-                this.readQueue.put(tempStr.toString());
-                this.tempStr = null;
+            if (pendingLength > 0) {
+                this.readQueue.put(new String(pending, 0, pendingLength, StandardCharsets.UTF_8));
+                pendingLength = 0;
             }
             this.readQueue.put(EOF);
         } finally {
@@ -73,39 +94,87 @@ public final class DumpFileReader {
         }
     }
 
-    // read one statement by ;
-    private void readSQLByEOF(byte[] linesByte, int byteRead) throws InterruptedException {
-        String stmts = new String(linesByte, 0, byteRead, StandardCharsets.UTF_8);
-        boolean endWithEOF = stmts.endsWith(";");
-        String[] lines = stmts.split(";");
-        int len = lines.length - 1;
+    /**
+     * @return the bytes of the dump file have been read
+     */
+    public long getReadLength() {
+        return readLength;
+    }
+
+    // read statements split by ;
+    void readStatements(ByteBuffer chunk) throws InterruptedException {
+        int limit = chunk.limit();
+        int stmtStart = 0;
+        for (int i = 0; i < limit; i++) {
+            byte b = chunk.get(i);
+            if (escape) {
+                escape = false;
+            } else if (quote != 0) {
+                if (b == '\\' && quote != '`') {
+                    escape = true;
+                } else if (b == quote) {
+                    quote = 0;
+                }
+            } else if (lineComment) {
+                lineComment = b != '\n';
+            } else if (blockComment) {
+                blockComment = !(b == '/' && prev == '*');
+            } else if (b == '\'' || b == '"' || b == '`') {
+                quote = b;
+            } else if (b == '*' && prev == '/') {
+                blockComment = true;
+                // the '*' can't close the comment
+                b = 0;
+            } else if ((b == ' ' || b == '\t') && prev == '-' && prev2 == '-') {
+                lineComment = true;
+            } else if (b == ';') {
+                putStatement(chunk, stmtStart, i);
+                stmtStart = i + 1;
+            }
+            prev2 = prev;
+            prev = b;
+        }
+        appendPending(chunk, stmtStart, limit);
+    }
 
-        int i = 0;
-        if (len > 0 && tempStr != null) {
-            tempStr.append(lines[0]);
-            this.readQueue.put(tempStr.toString());
-            tempStr = null;
-            i = 1;
+    private void putStatement(ByteBuffer chunk, int start, int end) throws InterruptedException {
+        String stmt;
+        if (pendingLength == 0) {
+            byte[] bytes = new byte[end - start];
+            ByteBuffer src = chunk.duplicate();
+            src.limit(end).position(start);
+            src.get(bytes);
+            stmt = new String(bytes, StandardCharsets.UTF_8);
+        } else {
+            appendPending(chunk, start, end);
+            stmt = new String(pending, 0, pendingLength, StandardCharsets.UTF_8);
+            pendingLength = 0;
         }
+        this.readQueue.put(stmt);
+    }
 
-        for (; i < len; i++) {
-            this.readQueue.put(lines[i]);
+    private void appendPending(ByteBuffer chunk, int start, int end) {
+        int length = end - start;
+        if (pendingLength + length > pending.length) {
+            pending = Arrays.copyOf(pending, Math.max(pending.length << 1, pendingLength + length));
         }
+        ByteBuffer src = chunk.duplicate();
+        src.limit(end).position(start);
+        src.get(pending, pendingLength, length);
+        pendingLength += length;
+    }
 
-        if (!endWithEOF) {
-            if (tempStr == null) {
-                tempStr = new StringBuilder(lines[len]);
-            } else {
-                tempStr.append(lines[len]);
-            }
-        } else {
-            if (tempStr != null) {
-                tempStr.append(lines[len]);
-                this.readQueue.put(tempStr.toString());
-                tempStr = null;
-            } else {
-                this.readQueue.put(lines[len]);
+    private static void unmap(MappedByteBuffer buffer) {
+        // release the mapping now instead of waiting for gc, see FileNioMapped
+        try {
+            Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            Object cleaner = cleanerMethod.invoke(buffer);
+            if (cleaner != null) {
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
             }
+        } catch (Exception e) {
+            LOGGER.debug("unmap dump file error, it is left to gc", e);
         }
     }
 
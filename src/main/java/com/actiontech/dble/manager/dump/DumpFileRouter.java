@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2016-2020 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.manager.dump;
+
+import com.actiontech.dble.util.ExecutorUtil;
+import com.actiontech.dble.util.NameableExecutor;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * routes the values of the insert statements by several workers, the other statements must wait
+ * by await() until the inserts before them are routed, so that the order in the files of the data nodes is kept.
+ *
+ * @author ActionTech
+ */
+public final class DumpFileRouter {
+
+    private final NameableExecutor workers;
+    /* the count of the statements can be waiting for routing, keep the memory bounded */
+    private final int maxPending;
+    private final Semaphore permits;
+    private final AtomicLong statements = new AtomicLong(0);
+    private final AtomicLong rows = new AtomicLong(0);
+    /* the first unexpected error of the workers, the split fails with it */
+    private volatile String failure;
+
+    public DumpFileRouter(int threads, int maxPending) {
+        this.workers = ExecutorUtil.createFixed("dump-file-router", Math.max(threads, 1));
+        this.maxPending = maxPending;
+        this.permits = new Semaphore(maxPending);
+    }
+
+    public void submit(final Runnable task) throws InterruptedException {
+        checkFailure();
+        permits.acquire();
+        try {
+            workers.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        task.run();
+                    } finally {
+                        permits.release();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            throw e;
+        }
+        statements.incrementAndGet();
+    }
+
+    /**
+     * wait until all the submitted statements are routed
+     */
+    public void await() throws InterruptedException {
+        permits.acquire(maxPending);
+        permits.release(maxPending);
+        checkFailure();
+    }
+
+    /**
+     * the statements can't be routed any more, the next submit() or await() throws
+     */
+    public void fail(String error) {
+        if (failure == null) {
+            failure = error;
+        }
+    }
+
+    private void checkFailure() {
+        if (failure != null) {
+            throw new RuntimeException("dump file router exit, because:" + failure);
+        }
+    }
+
+    public void stop() {
+        workers.shutdownNow();
+    }
+
+    public void addRows(long count) {
+        rows.addAndGet(count);
+    }
+
+    public long getStatements() {
+        return statements.get();
+    }
+
+    public long getRows() {
+        return rows.get();
+    }
+}
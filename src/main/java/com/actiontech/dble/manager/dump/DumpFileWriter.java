@@ -9,6 +9,7 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.util.Date;
 import java.util.Map;
 import java.util.Set;
@@ -21,6 +22,7 @@ public class DumpFileWriter {
 
     private static final Logger LOGGER = LoggerFactory.getLogger("dumpFileLog");
     private static final String FILE_NAME_FORMAT = "%s-%s-%d.dump";
+    private static final int BUFFER_SIZE = 0x100000;
     private Map<String, DataNodeWriter> dataNodeWriters = new ConcurrentHashMap<>();
     private AtomicInteger finished = new AtomicInteger(0);
     private volatile boolean isDeleteFile = false;
@@ -52,16 +54,21 @@ public class DumpFileWriter {
         }
     }
 
+    /**
+     * the statement is put into the queue at once, so it is not mixed with the ones written by the other threads
+     */
     public void write(String dataNode, String stmt, boolean isChanged, boolean needEOF) throws InterruptedException {
         DataNodeWriter writer = this.dataNodeWriters.get(dataNode);
         if (writer != null) {
-            if (writer.isAddEof()) {
-                writer.write(";");
-                writer.setAddEof(false);
+            if (!isChanged && !needEOF) {
+                writer.write(stmt);
+                return;
             }
-            if (isChanged) writer.write("\n");
-            writer.write(stmt);
-            if (needEOF) writer.write(";");
+            StringBuilder sb = new StringBuilder(stmt.length() + 2);
+            if (isChanged) sb.append("\n");
+            sb.append(stmt);
+            if (needEOF) sb.append(";");
+            writer.write(sb.toString());
         }
     }
 
@@ -69,26 +76,9 @@ public class DumpFileWriter {
         write(dataNode, stmt, false, true);
     }
 
-    public void writeInsertHeader(String dataNode, String stmt) throws InterruptedException {
-        DataNodeWriter writer = this.dataNodeWriters.get(dataNode);
-        if (writer != null) {
-            writer.write("\n");
-            writer.write(stmt);
-            writer.setAddEof(true);
-        }
-    }
-
-    public void writeInsertValues(String dataNode, String stmt) throws InterruptedException {
-        DataNodeWriter writer = this.dataNodeWriters.get(dataNode);
-        if (writer != null) {
-            writer.write(stmt);
-        }
-    }
-
     public void writeAll(String stmt) throws InterruptedException {
         for (DataNodeWriter writer : dataNodeWriters.values()) {
-            writer.write(stmt);
-            writer.write(";");
+            writer.write(stmt.equals(DumpFileReader.EOF) ? stmt : stmt + ";");
         }
     }
 
@@ -107,8 +97,7 @@ public class DumpFileWriter {
         private String dataNode;
         private String path;
         private Thread self;
-        // insert values eof
-        private boolean addEof = false;
+        private ByteBuffer buffer;
 
         DataNodeWriter(String dataNode, int queueSize) {
             this.dataNode = dataNode;
@@ -116,23 +105,41 @@ public class DumpFileWriter {
             this.queue = new ArrayBlockingQueue<>(queueSize);
         }
 
-        public void setAddEof(boolean addEof) {
-            this.addEof = addEof;
-        }
-
-        public boolean isAddEof() {
-            return addEof;
-        }
-
         void open(String fileName) throws IOException {
             this.path = fileName;
             this.fileChannel = FileUtils.open(fileName, "rw");
+            this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
         }
 
         void write(String stmt) throws InterruptedException {
             this.queue.put(stmt);
         }
 
+        private void write(byte[] bytes) throws IOException {
+            if (bytes.length > buffer.remaining()) {
+                flush();
+                if (bytes.length > buffer.capacity()) {
+                    writeFully(ByteBuffer.wrap(bytes));
+                    return;
+                }
+            }
+            buffer.put(bytes);
+        }
+
+        private void flush() throws IOException {
+            if (this.fileChannel != null && buffer.position() > 0) {
+                buffer.flip();
+                writeFully(buffer);
+                buffer.clear();
+            }
+        }
+
+        private void writeFully(ByteBuffer src) throws IOException {
+            while (src.hasRemaining()) {
+                this.fileChannel.write(src);
+            }
+        }
+
         void close() throws IOException {
             this.fileChannel.close();
             dataNodeWriters.remove(dataNode);
@@ -147,7 +154,12 @@ public class DumpFileWriter {
                 String stmt;
                 long startTime = TimeUtil.currentTimeMillis();
                 while (!Thread.currentThread().isInterrupted()) {
-                    stmt = this.queue.take();
+                    stmt = this.queue.poll();
+                    if (stmt == null) {
+                        // write the buffer before waiting
+                        flush();
+                        stmt = this.queue.take();
+                    }
                     if (LOGGER.isDebugEnabled()) {
                         long endTime = TimeUtil.currentTimeMillis();
                         if (endTime - startTime > 1000) {
@@ -161,12 +173,13 @@ public class DumpFileWriter {
                     }
 
                     if (stmt.equals(DumpFileReader.EOF)) {
+                        flush();
                         LOGGER.info("finish to write dump file.");
                         close();
                         return;
                     }
                     if (this.fileChannel != null) {
-                        this.fileChannel.write(ByteBuffer.wrap(stmt.getBytes()));
+                        write(stmt.getBytes(StandardCharsets.UTF_8));
                     }
                 }
             } catch (IOException e) {
@@ -3,108 +3,68 @@ package com.actiontech.dble.manager.dump.handler;
 import com.actiontech.dble.config.model.TableConfig;
 import com.actiontech.dble.manager.dump.DumpException;
 import com.actiontech.dble.manager.dump.DumpFileContext;
+import com.actiontech.dble.route.parser.util.InsertValuesTokenizer;
 import com.actiontech.dble.meta.protocol.StructureMeta;
-import com.actiontech.dble.route.factory.RouteStrategyFactory;
 import com.actiontech.dble.singleton.ProxyMeta;
-import com.actiontech.dble.singleton.SequenceManager;
 import com.actiontech.dble.util.CollectionUtil;
-import com.actiontech.dble.util.StringUtil;
-import com.alibaba.druid.sql.SQLUtils;
-import com.alibaba.druid.sql.ast.SQLExpr;
 import com.alibaba.druid.sql.ast.SQLStatement;
-import com.alibaba.druid.sql.ast.expr.SQLIntegerExpr;
-import com.alibaba.druid.sql.ast.statement.SQLInsertStatement;
-import com.alibaba.druid.sql.dialect.mysql.ast.statement.MySqlInsertStatement;
 
 import java.sql.SQLNonTransientException;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+/**
+ * the values of the inserts of the sharding tables and the tables using global sequence are
+ * routed by the workers of DumpFileRouter, see InsertRouteTask
+ */
 class InsertHandler extends DefaultHandler {
 
-    private static final Pattern INSERT_STMT = Pattern.compile("insert\\s+into\\s+`?(.*)`\\s+values", Pattern.CASE_INSENSITIVE);
-    private final ShardingValuesHandler shardingValuesHandler = new ShardingValuesHandler();
-    private final DefaultValuesHandler defaultValuesHandler = new DefaultValuesHandler();
-    private DefaultValuesHandler valuesHandler;
     private String currentTable;
+    private String insertHeader;
+    private AtomicBoolean incrementReplaced;
 
     @Override
     public SQLStatement preHandle(DumpFileContext context, String stmt) throws DumpException, SQLNonTransientException {
-        // get table name simply
-        String table = null;
-        Matcher matcher = InsertHandler.INSERT_STMT.matcher(stmt);
-        if (matcher.find()) {
-            table = matcher.group(1);
-        }
+        // only the header of the insert is parsed here
+        InsertValuesTokenizer tokenizer = new InsertValuesTokenizer(stmt);
+        String table = tokenizer.getTable();
         context.setTable(table);
-        if (table != null && table.equalsIgnoreCase(currentTable)) {
-            if (context.isSkipContext() || context.getTableType() == TableType.DEFAULT) {
-                return null;
-            }
-            return RouteStrategyFactory.getRouteStrategy().parserSQL(stmt);
-        } else {
-            currentTable = table;
+        if (table.equalsIgnoreCase(currentTable)) {
+            return null;
         }
-
+        currentTable = table;
         if (context.isSkipContext() || context.getTableType() == TableType.DEFAULT) {
             return null;
         }
 
-        MySqlInsertStatement insert = (MySqlInsertStatement) RouteStrategyFactory.getRouteStrategy().parserSQL(stmt);
         // check columns from insert columns
-        checkColumns(context, insert.getColumns());
-        // add
-        StringBuilder insertHeader = new StringBuilder("INSERT INTO ");
-        insertHeader.append("`");
-        insertHeader.append(context.getTable());
-        insertHeader.append("`");
-        if (!CollectionUtil.isEmpty(insert.getColumns())) {
-            insertHeader.append(insert.getColumns().toString());
-        }
-        insertHeader.append(" VALUES");
-        if (context.getTableType() == TableType.SHARDING) {
-            shardingValuesHandler.reset();
-            valuesHandler = shardingValuesHandler;
-        } else {
-            valuesHandler = defaultValuesHandler;
-        }
-        valuesHandler.setInsertHeader(insertHeader);
-        return insert;
-    }
-
-    @Override
-    public void handle(DumpFileContext context, SQLStatement sqlStatement) throws InterruptedException {
-        MySqlInsertStatement insert = (MySqlInsertStatement) sqlStatement;
-        SQLInsertStatement.ValuesClause valueClause;
-
-        valuesHandler.preProcess(context);
-        for (int i = 0; i < insert.getValuesList().size(); i++) {
-            valueClause = insert.getValuesList().get(i);
-            try {
-                processIncrementColumn(context, valueClause.getValues());
-                valuesHandler.process(context, valueClause.getValues(), i == 0);
-            } catch (SQLNonTransientException e) {
-                context.addError(e.getMessage());
+        checkColumns(context, tokenizer.getColumns());
+        StringBuilder header = new StringBuilder("INSERT INTO `");
+        header.append(context.getTable());
+        header.append("`");
+        if (!CollectionUtil.isEmpty(tokenizer.getColumns())) {
+            header.append("(");
+            for (int i = 0; i < tokenizer.getColumns().size(); i++) {
+                if (i != 0) {
+                    header.append(",");
+                }
+                header.append("`").append(tokenizer.getColumns().get(i)).append("`");
             }
+            header.append(")");
         }
-        valuesHandler.postProcess(context);
+        header.append(" VALUES");
+        insertHeader = header.toString();
+        incrementReplaced = new AtomicBoolean(false);
+        return null;
     }
 
-    private void processIncrementColumn(DumpFileContext context, List<SQLExpr> values) throws SQLNonTransientException {
-        int incrementIndex = context.getIncrementColumnIndex();
-        if (incrementIndex == -1) {
+    @Override
+    public void handle(DumpFileContext context, String stmt) throws InterruptedException {
+        if (context.getTableType() == TableType.DEFAULT) {
+            super.handle(context, stmt);
             return;
         }
-
-        String tableKey = StringUtil.getFullName(context.getSchema(), context.getTable());
-        long val = SequenceManager.getHandler().nextId(tableKey);
-        SQLExpr value = values.get(incrementIndex);
-        if (!StringUtil.isEmpty(SQLUtils.toMySqlString(value)) && !context.isNeedSkipError()) {
-            context.addError("For table using global sequence, dble has set increment column values for you.");
-            context.setNeedSkipError(true);
-        }
-        values.set(incrementIndex, new SQLIntegerExpr(val));
+        context.getRouter().submit(new InsertRouteTask(context, stmt, insertHeader, incrementReplaced));
     }
 
     /**
@@ -116,7 +76,7 @@ class InsertHandler extends DefaultHandler {
      * @throws DumpException
      * @throws SQLNonTransientException
      */
-    private void checkColumns(DumpFileContext context, List<SQLExpr> columns) throws DumpException, SQLNonTransientException {
+    private void checkColumns(DumpFileContext context, List<String> columns) throws DumpException, SQLNonTransientException {
         int partitionColumnIndex = context.getPartitionColumnIndex();
         int incrementColumnIndex = context.getIncrementColumnIndex();
 
@@ -131,8 +91,7 @@ class InsertHandler extends DefaultHandler {
         if (isAutoIncrement || tableConfig.getPartitionColumn() != null) {
             if (!CollectionUtil.isEmpty(columns)) {
                 for (int i = 0; i < columns.size(); i++) {
-                    SQLExpr column = columns.get(i);
-                    String columnName = StringUtil.removeBackQuote(column.toString());
+                    String columnName = columns.get(i);
                     if (isAutoIncrement && columnName.equalsIgnoreCase(tableConfig.getIncrementColumn())) {
                         incrementColumnIndex = i;
                     }
@@ -0,0 +1,148 @@
+package com.actiontech.dble.manager.dump.handler;
+
+import com.actiontech.dble.config.model.TableConfig;
+import com.actiontech.dble.manager.dump.DumpException;
+import com.actiontech.dble.manager.dump.DumpFileContext;
+import com.actiontech.dble.manager.dump.DumpFileWriter;
+import com.actiontech.dble.route.parser.util.InsertValuesTokenizer;
+import com.actiontech.dble.singleton.SequenceManager;
+import com.actiontech.dble.util.StringUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLNonTransientException;
+import java.sql.SQLSyntaxErrorException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * split the values of one insert statement to the data nodes, run by the workers of DumpFileRouter,
+ * so everything needed from DumpFileContext is copied when it is created
+ */
+class InsertRouteTask implements Runnable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("dumpFileLog");
+    private final DumpFileContext context;
+    private final String stmt;
+    private final String insertHeader;
+    private final AtomicBoolean incrementReplaced;
+    private final String schema;
+    private final String table;
+    private final TableConfig tableConfig;
+    private final int partitionColumnIndex;
+    private final int incrementColumnIndex;
+    private final int maxValues;
+
+    InsertRouteTask(DumpFileContext context, String stmt, String insertHeader, AtomicBoolean incrementReplaced) {
+        this.context = context;
+        this.stmt = stmt;
+        this.insertHeader = insertHeader;
+        this.incrementReplaced = incrementReplaced;
+        this.schema = context.getSchema();
+        this.table = context.getTable();
+        this.tableConfig = context.getTableConfig();
+        this.partitionColumnIndex = tableConfig.getPartitionColumn() == null ? -1 : context.getPartitionColumnIndex();
+        this.incrementColumnIndex = tableConfig.isAutoIncrement() ? context.getIncrementColumnIndex() : -1;
+        this.maxValues = context.getConfig().getMaxValues();
+    }
+
+    @Override
+    public void run() {
+        try {
+            InsertValuesTokenizer tokenizer = new InsertValuesTokenizer(stmt);
+            tokenizer.setWantedColumns(partitionColumnIndex, incrementColumnIndex);
+            Map<String, NodeValues> nodeValues = new HashMap<>();
+            long rows = 0;
+            while (tokenizer.nextTuple()) {
+                rows++;
+                try {
+                    routeTuple(tokenizer, nodeValues);
+                } catch (SQLNonTransientException e) {
+                    addError(e.getMessage());
+                }
+            }
+            DumpFileWriter writer = context.getWriter();
+            for (Map.Entry<String, NodeValues> entry : nodeValues.entrySet()) {
+                writer.write(entry.getKey(), entry.getValue().values.toString(), true, true);
+            }
+            context.getRouter().addRows(rows);
+        } catch (DumpException | SQLSyntaxErrorException e) {
+            String currentStmt = getCurrentStmt();
+            LOGGER.warn("current stmt[" + currentStmt + "] error.", e);
+            addError("current stmt[" + currentStmt + "] error,because:" + e.getMessage());
+        } catch (RuntimeException e) {
+            // the values may be lost, the split can't go on
+            String currentStmt = getCurrentStmt();
+            LOGGER.warn("dump file router exit, current stmt[" + currentStmt + "] error.", e);
+            addError("current stmt[" + currentStmt + "] error,because:" + e);
+            context.getRouter().fail(e.toString());
+        } catch (InterruptedException e) {
+            LOGGER.warn("dump file router is interrupted.");
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void routeTuple(InsertValuesTokenizer tokenizer, Map<String, NodeValues> nodeValues) throws SQLNonTransientException {
+        String tuple;
+        String shardingValue = partitionColumnIndex == -1 ? null : tokenizer.getValue(0);
+        if (incrementColumnIndex == -1) {
+            tuple = stmt.substring(tokenizer.getTupleStart(), tokenizer.getTupleEnd());
+        } else {
+            if (tokenizer.getValue(1) != null && incrementReplaced.compareAndSet(false, true)) {
+                addError("For table using global sequence, dble has set increment column values for you.");
+            }
+            long val = SequenceManager.getHandler().nextId(StringUtil.getFullName(schema, table));
+            if (incrementColumnIndex == partitionColumnIndex) {
+                shardingValue = String.valueOf(val);
+            }
+            tuple = stmt.substring(tokenizer.getTupleStart(), tokenizer.getValueStart(1)) + val +
+                    stmt.substring(tokenizer.getValueEnd(1), tokenizer.getTupleEnd());
+        }
+
+        if (partitionColumnIndex == -1) {
+            for (String dataNode : tableConfig.getDataNodes()) {
+                append(nodeValues, dataNode, tuple);
+            }
+            return;
+        }
+        Integer nodeIndex;
+        try {
+            nodeIndex = tableConfig.getRule().getRuleAlgorithm().calculate(shardingValue);
+        } catch (Exception e) {
+            throw new SQLNonTransientException("can't calculate valid datanode shardingValue" + tuple + ",due to " + e.getMessage());
+        }
+        // null means can't find any valid index
+        if (nodeIndex == null || nodeIndex >= tableConfig.getDataNodes().size()) {
+            throw new SQLNonTransientException("can't find any valid datanode shardingValue" + tuple);
+        }
+        append(nodeValues, tableConfig.getDataNodes().get(nodeIndex), tuple);
+    }
+
+    private void append(Map<String, NodeValues> nodeValues, String dataNode, String tuple) {
+        NodeValues node = nodeValues.get(dataNode);
+        if (node == null) {
+            node = new NodeValues();
+            nodeValues.put(dataNode, node);
+        }
+        if (node.count == maxValues) {
+            node.values.append(";\n");
+            node.count = 0;
+        }
+        node.values.append(node.count == 0 ? insertHeader : ",").append(tuple);
+        node.count++;
+    }
+
+    private String getCurrentStmt() {
+        return stmt.length() <= 1024 ? stmt : stmt.substring(0, 1024);
+    }
+
+    private void addError(String error) {
+        context.addError(schema + "-" + table, error);
+    }
+
+    private static class NodeValues {
+        private final StringBuilder values = new StringBuilder();
+        private int count = 0;
+    }
+}
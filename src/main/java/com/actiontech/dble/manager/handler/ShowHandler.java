@@ -232,6 +232,15 @@ public final class ShowHandler {
             case ManagerParseShow.SHOW_QUESTIONS:
                 ShowQuestions.execute(c);
                 break;
+            case ManagerParseShow.LATENCY:
+                ShowLatency.execute(c);
+                break;
+            case ManagerParseShow.MEMORY:
+                ShowMemory.execute(c);
+                break;
+            case ManagerParseShow.WORKLOAD:
+                ShowWorkload.execute(c);
+                break;
             case ManagerParseShow.DATADISTRIBUTION_WHERE:
                 String name = stmt.substring(rs >>> 8).trim();
                 if (StringUtil.isEmpty(name)) {
@@ -10,6 +10,7 @@ import com.actiontech.dble.manager.response.DumpFileError;
 import com.actiontech.dble.net.mysql.OkPacket;
 import com.actiontech.dble.util.CollectionUtil;
 import com.actiontech.dble.util.StringUtil;
+import com.actiontech.dble.util.TimeUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -23,7 +24,7 @@ import java.util.regex.Pattern;
 
 public final class SplitDumpHandler {
 
-    private static final Pattern SPLIT_STMT = Pattern.compile("([^\\s]+)\\s+([^\\s]+)\\s*(-s([^\\s]+))?\\s*(-r(\\d+))?\\s*(-w(\\d+))?\\s*(-l(\\d+))?", Pattern.CASE_INSENSITIVE);
+    private static final Pattern SPLIT_STMT = Pattern.compile("([^\\s]+)\\s+([^\\s]+)\\s*(-s([^\\s]+))?\\s*(-r(\\d+))?\\s*(-w(\\d+))?\\s*(-l(\\d+))?\\s*(-t(\\d+))?", Pattern.CASE_INSENSITIVE);
     public static final Logger LOGGER = LoggerFactory.getLogger("dumpFileLog");
 
     private SplitDumpHandler() {
@@ -49,10 +50,12 @@ public final class SplitDumpHandler {
             }
         }
 
+        final long startTime = TimeUtil.currentTimeMillis();
         DumpFileWriter writer = new DumpFileWriter();
         BlockingQueue<String> queue = new ArrayBlockingQueue<>(config.getReadQueueSize());
         DumpFileReader reader = new DumpFileReader(queue);
-        DumpFileExecutor dumpFileExecutor = new DumpFileExecutor(queue, writer, config, defaultSchemaConfig);
+        DumpFileRouter router = new DumpFileRouter(config.getRouterThreads(), config.getReadQueueSize());
+        DumpFileExecutor dumpFileExecutor = new DumpFileExecutor(queue, writer, router, config, defaultSchemaConfig);
         try {
             // firstly check file
             reader.open(config.getReadFile());
@@ -73,6 +76,7 @@ public final class SplitDumpHandler {
             LOGGER.info("finish to split dump file, because the task is interrupted.");
             // manager connection is closed or waiting blocking queue
             dumpFileExecutor.stop();
+            router.stop();
             writer.stop();
             return;
         }
@@ -81,12 +85,18 @@ public final class SplitDumpHandler {
             LockSupport.parkNanos(1000);
         }
 
+        router.stop();
         if (c.isClosed()) {
             dumpFileExecutor.stop();
             writer.stop();
             return;
         }
 
+        long cost = Math.max(TimeUtil.currentTimeMillis() - startTime, 1);
+        LOGGER.info("split " + (reader.getReadLength() >> 20) + " MB in " + cost + " ms, " +
+                (reader.getReadLength() * 1000 / cost >> 20) + " MB/s, " + router.getStatements() + " inserts with " +
+                router.getRows() + " rows are routed, " + router.getRows() * 1000 / cost + " rows/s.");
+
         List<ErrorMsg> errors = dumpFileExecutor.getContext().getErrors();
         if (CollectionUtil.isEmpty(errors)) {
             OkPacket packet = new OkPacket();
@@ -120,6 +130,9 @@ public final class SplitDumpHandler {
             if (m.group(10) != null) {
                 config.setMaxValues(Integer.parseInt(m.group(10)));
             }
+            if (m.group(12) != null) {
+                config.setRouterThreads(Integer.parseInt(m.group(12)));
+            }
         }
         return config;
     }
@@ -41,6 +41,7 @@ import com.actiontech.dble.route.parser.ManagerParseConfig;
 import com.actiontech.dble.server.ServerConnection;
 import com.actiontech.dble.server.variables.SystemVariables;
 import com.actiontech.dble.server.variables.VarsExtractorHandler;
+import com.actiontech.dble.server.workload.WorkloadManager;
 import com.actiontech.dble.singleton.ClusterGeneralConfig;
 import com.actiontech.dble.singleton.CronScheduler;
 import com.actiontech.dble.singleton.FrontendUserManager;
@@ -395,6 +396,7 @@ public final class ReloadConfig {
                     initFailed(newDataHosts);
                 }
                 FrontendUserManager.getInstance().initForLatest(newUsers, loader.getSystem().getMaxCon());
+                WorkloadManager.getInstance().initForLatest(newUsers, loader.getSystem().getMaxConcurrentComplexQuery());
                 ReloadLogHelper.info("reload config: apply new config end", LOGGER);
                 recycleOldBackendConnections(recycleHosts, ((loadAllMode & ManagerParseConfig.OPTF_MODE) != 0));
                 return result;
@@ -455,6 +457,7 @@ public final class ReloadConfig {
                     initFailed(newDataHosts);
                 }
                 FrontendUserManager.getInstance().initForLatest(newUsers, loader.getSystem().getMaxCon());
+                WorkloadManager.getInstance().initForLatest(newUsers, loader.getSystem().getMaxConcurrentComplexQuery());
                 ReloadLogHelper.info("reload config: apply new config end", LOGGER);
                 recycleOldBackendConnections(config.getBackupDataHosts(), ((loadAllMode & ManagerParseConfig.OPTF_MODE) != 0));
                 return result;
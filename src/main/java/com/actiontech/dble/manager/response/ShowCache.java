@@ -16,6 +16,8 @@ import com.actiontech.dble.net.mysql.EOFPacket;
 import com.actiontech.dble.net.mysql.FieldPacket;
 import com.actiontech.dble.net.mysql.ResultSetHeaderPacket;
 import com.actiontech.dble.net.mysql.RowDataPacket;
+import com.actiontech.dble.route.cache.ParentKeyLocationCache;
+import com.actiontech.dble.route.cache.RoutePlanCache;
 import com.actiontech.dble.util.FormatUtil;
 import com.actiontech.dble.util.LongUtil;
 import com.actiontech.dble.util.StringUtil;
@@ -91,6 +93,18 @@ public final class ShowCache {
                 }
             }
         }
+        RoutePlanCache planCache = RoutePlanCache.getInstance();
+        if (planCache.isEnabled()) {
+            RowDataPacket row = getRow("RoutePlanCache", planCache.getCacheStatic(), c.getCharset().getResults());
+            row.setPacketId(++packetId);
+            buffer = row.write(buffer, c, true);
+        }
+        ParentKeyLocationCache parentKeyCache = ParentKeyLocationCache.getInstance();
+        if (parentKeyCache.isEnabled()) {
+            RowDataPacket row = getRow("ERParentKeyCache", parentKeyCache.getCacheStatic(), c.getCharset().getResults());
+            row.setPacketId(++packetId);
+            buffer = row.write(buffer, c, true);
+        }
 
         // write last eof
         EOFPacket lastEof = new EOFPacket();
@@ -34,7 +34,7 @@ public final class ShowDataSource {
     private ShowDataSource() {
     }
 
-    private static final int FIELD_COUNT = 12;
+    private static final int FIELD_COUNT = 14;
     private static final ResultSetHeaderPacket HEADER = PacketUtil.getHeader(FIELD_COUNT);
     private static final FieldPacket[] FIELDS = new FieldPacket[FIELD_COUNT];
     private static final EOFPacket EOF = new EOFPacket();
@@ -78,6 +78,12 @@ public final class ShowDataSource {
         FIELDS[i++].setPacketId(++packetId);
 
         FIELDS[i] = PacketUtil.getField("DISABLED", Fields.FIELD_TYPE_VAR_STRING);
+        FIELDS[i++].setPacketId(++packetId);
+
+        FIELDS[i] = PacketUtil.getField("STATE_HIT", Fields.FIELD_TYPE_LONGLONG);
+        FIELDS[i++].setPacketId(++packetId);
+
+        FIELDS[i] = PacketUtil.getField("STATE_MISS", Fields.FIELD_TYPE_LONGLONG);
         FIELDS[i].setPacketId(++packetId);
 
         EOF.setPacketId(++packetId);
@@ -147,6 +153,8 @@ public final class ShowDataSource {
         row.add(LongUtil.toBytes(ds.getReadCount()));
         row.add(LongUtil.toBytes(ds.getWriteCount()));
         row.add(StringUtil.encode(ds.isDisabled() ? "true" : "false", charset));
+        row.add(LongUtil.toBytes(ds.getStateHitCount()));
+        row.add(LongUtil.toBytes(ds.getStateMissCount()));
         return row;
     }
 
@@ -19,7 +19,7 @@ import com.actiontech.dble.net.mysql.ResultSetHeaderPacket;
 import com.actiontech.dble.net.mysql.RowDataPacket;
 import com.actiontech.dble.route.parser.ManagerParseShow;
 import com.actiontech.dble.statistic.DataSourceSyncRecorder;
-import com.actiontech.dble.statistic.DataSourceSyncRecorder.Record;
+import com.actiontech.dble.statistic.HeartbeatSeries;
 import com.actiontech.dble.util.LongUtil;
 import com.actiontech.dble.util.StringUtil;
 
@@ -127,8 +127,14 @@ public final class ShowDatasourceSynDetail {
                 DataSourceSyncRecorder record = hb.getAsyncRecorder();
                 Map<String, String> states = record.getRecords();
                 if (name.equals(ds.getName())) {
-                    List<Record> data = record.getAsyncRecords();
-                    for (Record r : data) {
+                    if (states.isEmpty()) {
+                        break;
+                    }
+                    SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+                    for (HeartbeatSeries.Point point : hb.getSeries().getPoints()) {
+                        if (point.getRtt() < 0) {
+                            continue;
+                        }
                         RowDataPacket row = new RowDataPacket(FIELD_COUNT);
                         row.add(StringUtil.encode(datahost, charset));
                         row.add(StringUtil.encode(ds.getName(), charset));
@@ -137,10 +143,9 @@ public final class ShowDatasourceSynDetail {
                         row.add(StringUtil.encode(states.get("Master_Host"), charset));
                         row.add(LongUtil.toBytes(Long.parseLong(states.get("Master_Port"))));
                         row.add(StringUtil.encode(states.get("Master_User"), charset));
-                        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-                        String time = sdf.format(new Date(r.getTime()));
+                        String time = sdf.format(new Date(point.getTime()));
                         row.add(StringUtil.encode(time, charset));
-                        row.add(LongUtil.toBytes((Long) r.getValue()));
+                        row.add(LongUtil.toBytes(point.getLag()));
 
                         list.add(row);
                     }
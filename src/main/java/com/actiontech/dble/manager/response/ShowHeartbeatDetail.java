@@ -20,9 +20,8 @@ import com.actiontech.dble.net.mysql.ResultSetHeaderPacket;
 import com.actiontech.dble.net.mysql.RowDataPacket;
 import com.actiontech.dble.route.parser.ManagerParseHeartbeat;
 import com.actiontech.dble.route.parser.util.Pair;
-import com.actiontech.dble.statistic.HeartbeatRecorder;
+import com.actiontech.dble.statistic.HeartbeatSeries;
 import com.actiontech.dble.util.IntegerUtil;
-import com.actiontech.dble.util.LongUtil;
 import com.actiontech.dble.util.StringUtil;
 
 import java.nio.ByteBuffer;
@@ -37,7 +36,7 @@ public final class ShowHeartbeatDetail {
     private ShowHeartbeatDetail() {
     }
 
-    private static final int FIELD_COUNT = 5;
+    private static final int FIELD_COUNT = 6;
     private static final ResultSetHeaderPacket HEADER = PacketUtil.getHeader(FIELD_COUNT);
     private static final FieldPacket[] FIELDS = new FieldPacket[FIELD_COUNT];
     private static final EOFPacket EOF = new EOFPacket();
@@ -62,6 +61,9 @@ public final class ShowHeartbeatDetail {
         FIELDS[i] = PacketUtil.getField("EXECUTE_TIME", Fields.FIELD_TYPE_VAR_STRING);
         FIELDS[i++].setPacketId(++packetId);
 
+        FIELDS[i] = PacketUtil.getField("SECONDS_BEHIND_MASTER", Fields.FIELD_TYPE_LONG);
+        FIELDS[i++].setPacketId(++packetId);
+
         EOF.setPacketId(++packetId);
     }
 
@@ -125,16 +127,16 @@ public final class ShowHeartbeatDetail {
         }
         if (hb != null) {
             SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-            Queue<HeartbeatRecorder.Record> heartbeatRecorders = hb.getRecorder().getRecordsAll();
-            for (HeartbeatRecorder.Record record : heartbeatRecorders) {
+            for (HeartbeatSeries.Point point : hb.getSeries().getPoints()) {
                 RowDataPacket row = new RowDataPacket(FIELD_COUNT);
                 row.add(StringUtil.encode(name, charset));
                 row.add(StringUtil.encode(ip, charset));
                 row.add(IntegerUtil.toBytes(port));
-                long time = record.getTime();
-                String timeStr = sdf.format(new Date(time));
+                String timeStr = sdf.format(new Date(point.getTime()));
                 row.add(StringUtil.encode(timeStr, charset));
-                row.add(LongUtil.toBytes(record.getValue()));
+                // the failed heartbeat and unknown Seconds_Behind_Master are NULL
+                row.add(point.getRtt() < 0 ? null : IntegerUtil.toBytes(point.getRtt()));
+                row.add(point.getLag() < 0 ? null : IntegerUtil.toBytes(point.getLag()));
 
                 list.add(row);
             }
@@ -145,6 +147,7 @@ public final class ShowHeartbeatDetail {
             row.add(null);
             row.add(null);
             row.add(null);
+            row.add(null);
             list.add(row);
         }
 
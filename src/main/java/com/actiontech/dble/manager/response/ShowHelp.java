@@ -146,6 +146,9 @@ public final class ShowHelp {
         HELPS.put("show @@reload_status", "Report latest reload status in this dble");
         HELPS.put("show @@user", "Report all user in this dble");
         HELPS.put("show @@user.privilege", "Report privilege of all business user in this dble");
+        HELPS.put("show @@latency", "Report the latency percentiles of every stage of query by user, schema and data node");
+        HELPS.put("show @@memory", "Report the memory used by complex queries and the admission of them");
+        HELPS.put("show @@workload", "Report the running queries, queue depth and wait time of the workload group of every user");
         HELPS.put("show @@questions", "Report the questions & transactions have been executed in server port");
         HELPS.put("show @@data_distribution where table ='schema.table'", "Report the data distribution in different data node");
 
@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2016-2020 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+package com.actiontech.dble.manager.response;
+
+import com.actiontech.dble.backend.mysql.PacketUtil;
+import com.actiontech.dble.config.Fields;
+import com.actiontech.dble.manager.ManagerConnection;
+import com.actiontech.dble.net.mysql.EOFPacket;
+import com.actiontech.dble.net.mysql.FieldPacket;
+import com.actiontech.dble.net.mysql.ResultSetHeaderPacket;
+import com.actiontech.dble.net.mysql.RowDataPacket;
+import com.actiontech.dble.statistic.latency.LatencyHistogram;
+import com.actiontech.dble.statistic.latency.LatencyStat;
+import com.actiontech.dble.util.LongUtil;
+import com.actiontech.dble.util.StringUtil;
+
+import java.nio.ByteBuffer;
+
+/**
+ * ShowLatency, the latency percentiles of every stage by user, schema and data node
+ *
+ * @author ActionTech
+ */
+public final class ShowLatency {
+    private ShowLatency() {
+    }
+
+    private static final int FIELD_COUNT = 10;
+    private static final ResultSetHeaderPacket HEADER = PacketUtil.getHeader(FIELD_COUNT);
+    private static final FieldPacket[] FIELDS = new FieldPacket[FIELD_COUNT];
+    private static final EOFPacket EOF = new EOFPacket();
+
+    static {
+        int i = 0;
+        byte packetId = 0;
+        HEADER.setPacketId(++packetId);
+
+        FIELDS[i] = PacketUtil.getField("TYPE", Fields.FIELD_TYPE_VAR_STRING);
+        FIELDS[i++].setPacketId(++packetId);
+        FIELDS[i] = PacketUtil.getField("NAME", Fields.FIELD_TYPE_VAR_STRING);
+        FIELDS[i++].setPacketId(++packetId);
+        FIELDS[i] = PacketUtil.getField("STAGE", Fields.FIELD_TYPE_VAR_STRING);
+        FIELDS[i++].setPacketId(++packetId);
+        FIELDS[i] = PacketUtil.getField("COUNT", Fields.FIELD_TYPE_LONGLONG);
+        FIELDS[i++].setPacketId(++packetId);
+        FIELDS[i] = PacketUtil.getField("AVG(us)", Fields.FIELD_TYPE_LONGLONG);
+        FIELDS[i++].setPacketId(++packetId);
+        FIELDS[i] = PacketUtil.getField("P50(us)", Fields.FIELD_TYPE_LONGLONG);
+        FIELDS[i++].setPacketId(++packetId);
+        FIELDS[i] = PacketUtil.getField("P90(us)", Fields.FIELD_TYPE_LONGLONG);
+        FIELDS[i++].setPacketId(++packetId);
+        FIELDS[i] = PacketUtil.getField("P99(us)", Fields.FIELD_TYPE_LONGLONG);
+        FIELDS[i++].setPacketId(++packetId);
+        FIELDS[i] = PacketUtil.getField("P999(us)", Fields.FIELD_TYPE_LONGLONG);
+        FIELDS[i++].setPacketId(++packetId);
+        FIELDS[i] = PacketUtil.getField("MAX(us)", Fields.FIELD_TYPE_LONGLONG);
+        FIELDS[i].setPacketId(++packetId);
+        EOF.setPacketId(++packetId);
+    }
+
+    public static void execute(ManagerConnection c) {
+        ByteBuffer buffer = c.allocate();
+
+        buffer = HEADER.write(buffer, c, true);
+
+        for (FieldPacket field : FIELDS) {
+            buffer = field.write(buffer, c, true);
+        }
+
+        buffer = EOF.write(buffer, c, true);
+
+        byte packetId = EOF.getPacketId();
+        for (LatencyStat.Entry entry : LatencyStat.getInstance().getEntries()) {
+            RowDataPacket row = getRow(entry, c.getCharset().getResults());
+            row.setPacketId(++packetId);
+            buffer = row.write(buffer, c, true);
+        }
+
+        EOFPacket lastEof = new EOFPacket();
+        lastEof.setPacketId(++packetId);
+        buffer = lastEof.write(buffer, c, true);
+        c.write(buffer);
+    }
+
+    private static RowDataPacket getRow(LatencyStat.Entry entry, String charset) {
+        LatencyHistogram.Snapshot snapshot = entry.getSnapshot();
+        RowDataPacket row = new RowDataPacket(FIELD_COUNT);
+        row.add(StringUtil.encode(entry.getType(), charset));
+        row.add(StringUtil.encode(entry.getName(), charset));
+        row.add(StringUtil.encode(entry.getStage().getLabel(), charset));
+        row.add(LongUtil.toBytes(snapshot.getCount()));
+        row.add(LongUtil.toBytes(snapshot.getMean()));
+        row.add(LongUtil.toBytes(snapshot.getValueAt(0.5)));
+        row.add(LongUtil.toBytes(snapshot.getValueAt(0.9)));
+        row.add(LongUtil.toBytes(snapshot.getValueAt(0.99)));
+        row.add(LongUtil.toBytes(snapshot.getValueAt(0.999)));
+        row.add(LongUtil.toBytes(snapshot.getMax()));
+        return row;
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2016-2020 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+package com.actiontech.dble.manager.response;
+
+import com.actiontech.dble.backend.mysql.PacketUtil;
+import com.actiontech.dble.config.Fields;
+import com.actiontech.dble.manager.ManagerConnection;
+import com.actiontech.dble.net.mysql.EOFPacket;
+import com.actiontech.dble.net.mysql.FieldPacket;
+import com.actiontech.dble.net.mysql.ResultSetHeaderPacket;
+import com.actiontech.dble.net.mysql.RowDataPacket;
+import com.actiontech.dble.singleton.QueryMemoryGovernor;
+import com.actiontech.dble.util.IntegerUtil;
+import com.actiontech.dble.util.LongUtil;
+
+import java.nio.ByteBuffer;
+
+/**
+ * ShowMemory, the memory used by the buffers of all complex queries and the admission of them
+ *
+ * @author ActionTech
+ */
+public final class ShowMemory {
+    private ShowMemory() {
+    }
+
+    private static final int FIELD_COUNT = 8;
+    private static final ResultSetHeaderPacket HEADER = PacketUtil.getHeader(FIELD_COUNT);
+    private static final FieldPacket[] FIELDS = new FieldPacket[FIELD_COUNT];
+    private static final EOFPacket EOF = new EOFPacket();
+
+    static {
+        int i = 0;
+        byte packetId = 0;
+        HEADER.setPacketId(++packetId);
+
+        FIELDS[i] = PacketUtil.getField("BUDGET", Fields.FIELD_TYPE_LONGLONG);
+        FIELDS[i++].setPacketId(++packetId);
+        FIELDS[i] = PacketUtil.getField("SPILL_THRESHOLD", Fields.FIELD_TYPE_LONGLONG);
+        FIELDS[i++].setPacketId(++packetId);
+        FIELDS[i] = PacketUtil.getField("USED", Fields.FIELD_TYPE_LONGLONG);
+        FIELDS[i++].setPacketId(++packetId);
+        FIELDS[i] = PacketUtil.getField("PEAK", Fields.FIELD_TYPE_LONGLONG);
+        FIELDS[i++].setPacketId(++packetId);
+        FIELDS[i] = PacketUtil.getField("EARLY_SPILL_COUNT", Fields.FIELD_TYPE_LONGLONG);
+        FIELDS[i++].setPacketId(++packetId);
+        FIELDS[i] = PacketUtil.getField("ADMITTED_COUNT", Fields.FIELD_TYPE_LONGLONG);
+        FIELDS[i++].setPacketId(++packetId);
+        FIELDS[i] = PacketUtil.getField("WAITING_COUNT", Fields.FIELD_TYPE_LONG);
+        FIELDS[i++].setPacketId(++packetId);
+        FIELDS[i] = PacketUtil.getField("REJECTED_COUNT", Fields.FIELD_TYPE_LONGLONG);
+        FIELDS[i].setPacketId(++packetId);
+        EOF.setPacketId(++packetId);
+    }
+
+    public static void execute(ManagerConnection c) {
+        ByteBuffer buffer = c.allocate();
+
+        buffer = HEADER.write(buffer, c, true);
+
+        for (FieldPacket field : FIELDS) {
+            buffer = field.write(buffer, c, true);
+        }
+
+        buffer = EOF.write(buffer, c, true);
+
+        byte packetId = EOF.getPacketId();
+        RowDataPacket row = getRow(QueryMemoryGovernor.getInstance());
+        row.setPacketId(++packetId);
+        buffer = row.write(buffer, c, true);
+
+        EOFPacket lastEof = new EOFPacket();
+        lastEof.setPacketId(++packetId);
+        buffer = lastEof.write(buffer, c, true);
+        c.write(buffer);
+    }
+
+    private static RowDataPacket getRow(QueryMemoryGovernor governor) {
+        RowDataPacket row = new RowDataPacket(FIELD_COUNT);
+        row.add(LongUtil.toBytes(governor.getBudget()));
+        row.add(LongUtil.toBytes(governor.getSpillThreshold()));
+        row.add(LongUtil.toBytes(governor.getUsed()));
+        row.add(LongUtil.toBytes(governor.getPeak()));
+        row.add(LongUtil.toBytes(governor.getEarlySpillCount()));
+        row.add(LongUtil.toBytes(governor.getAdmittedCount()));
+        row.add(IntegerUtil.toBytes(governor.getWaitingCount()));
+        row.add(LongUtil.toBytes(governor.getRejectedCount()));
+        return row;
+    }
+}
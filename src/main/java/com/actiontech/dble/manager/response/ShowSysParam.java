@@ -94,6 +94,7 @@ public final class ShowSysParam {
         paramValues.add(sysConfig.getUseCostTimeStat() + "");
         paramValues.add(sysConfig.getMaxCostStatSize() + "");
         paramValues.add(sysConfig.getCostSamplePercent() + "");
+        paramValues.add(sysConfig.getMetricsPort() + "");
         paramValues.add(sysConfig.getCharset() + "");
         paramValues.add(sysConfig.getMaxPacketSize() + "");
         paramValues.add(sysConfig.getTxIsolation() > 4 || sysConfig.getTxIsolation() < 1 ? "Incorrect isolation" : ISOLATION_LEVELS[sysConfig.getTxIsolation()]);
@@ -102,9 +103,16 @@ public final class ShowSysParam {
         paramValues.add(sysConfig.getCheckTableConsistencyPeriod() + "ms");
         paramValues.add(sysConfig.getDataNodeIdleCheckPeriod() / 1000 + " Seconds");
         paramValues.add(sysConfig.getDataNodeHeartbeatPeriod() / 1000 + " Seconds");
+        paramValues.add(sysConfig.getDataNodeHeartbeatFastPeriod() + "ms");
         paramValues.add(sysConfig.getProcessorCheckPeriod() / 1000 + " Seconds");
         paramValues.add(sysConfig.getIdleTimeout() / 1000 / 60 + " Minutes");
         paramValues.add(sysConfig.getSqlExecuteTimeout() + " Seconds");
+        paramValues.add(sysConfig.getCircuitBreakerErrorPercent() + "%");
+        paramValues.add(sysConfig.getCircuitBreakerLatencyThreshold() + "ms");
+        paramValues.add(sysConfig.getCircuitBreakerMinRequests() + "");
+        paramValues.add(sysConfig.getCircuitBreakerOpenTime() + "ms");
+        paramValues.add(sysConfig.getUseHedgedRead() + "");
+        paramValues.add(sysConfig.getHedgedReadMinDelay() + "ms");
         paramValues.add(sysConfig.getRecordTxn() + "");
         paramValues.add(sysConfig.getTransactionLogBaseDir());
         paramValues.add(sysConfig.getTransactionLogBaseName());
@@ -120,10 +128,18 @@ public final class ShowSysParam {
         paramValues.add(sysConfig.getOtherMemSize() + "M");
         paramValues.add(sysConfig.getOrderMemSize() + "M");
         paramValues.add(sysConfig.getJoinMemSize() + "M");
+        paramValues.add(sysConfig.getOrderByParallelism() + "");
+        paramValues.add(sysConfig.getOrderByMergeFanIn() + "");
+        paramValues.add(sysConfig.getQueryMemoryBudget() + "M");
+        paramValues.add(sysConfig.getQueryMemorySpillPercent() + "%");
+        paramValues.add(sysConfig.getQueryAdmissionTimeout() + "ms");
+        paramValues.add(sysConfig.getMaxConcurrentComplexQuery() + "");
         paramValues.add(sysConfig.getBufferPoolChunkSize() + "B");
         paramValues.add(sysConfig.getBufferPoolPageSize() + "B");
         paramValues.add(sysConfig.getBufferPoolPageNumber() + "");
         paramValues.add(sysConfig.getMappedFileSize() + "");
+        paramValues.add(sysConfig.getSqlPlanCacheSize() + "");
+        paramValues.add(sysConfig.getErParentKeyCacheSize() + "");
         paramValues.add(sysConfig.getUseSqlStat() + "");
         paramValues.add(sysConfig.getSqlRecordCount() + "");
         paramValues.add(sysConfig.getMaxResultSet() + "B");
@@ -137,6 +153,9 @@ public final class ShowSysParam {
         paramValues.add(sysConfig.getBackSocketNoDelay() + "");
         paramValues.add(sysConfig.getViewPersistenceConfBaseDir());
         paramValues.add(sysConfig.getViewPersistenceConfBaseName());
+        paramValues.add(sysConfig.getGlobalCheckChunkSize() + "");
+        paramValues.add(sysConfig.getGlobalCheckChunkInterval() + "ms");
+        paramValues.add(sysConfig.getGlobalCheckStateBaseDir());
         paramValues.add(sysConfig.getJoinQueueSize() + "");
         paramValues.add(sysConfig.getMergeQueueSize() + "");
         paramValues.add(sysConfig.getOrderByQueueSize() + "");
@@ -152,6 +171,9 @@ public final class ShowSysParam {
         paramValues.add(sysConfig.isEnableFlowControl() + "");
         paramValues.add(sysConfig.getFlowControlStartThreshold() + "");
         paramValues.add(sysConfig.getFlowControlStopThreshold() + "");
+        paramValues.add(sysConfig.isEnableFlowControlSpill() + "");
+        paramValues.add(sysConfig.getFlowControlSpillMaxSize() + "M");
+        paramValues.add(sysConfig.isEnablePartialAggregation() + "");
 
 
         for (int i = 0; i < PARAM_NAMES.length; i++) {
@@ -195,6 +217,7 @@ public final class ShowSysParam {
             "useCostTimeStat",
             "maxCostStatSize",
             "costSamplePercent",
+            "metricsPort",
             "charset",
             "maxPacketSize",
             "txIsolation",
@@ -203,9 +226,16 @@ public final class ShowSysParam {
             "checkTableConsistencyPeriod",
             "dataNodeIdleCheckPeriod",
             "dataNodeHeartbeatPeriod",
+            "dataNodeHeartbeatFastPeriod",
             "processorCheckPeriod",
             "idleTimeout",
             "sqlExecuteTimeout",
+            "circuitBreakerErrorPercent",
+            "circuitBreakerLatencyThreshold",
+            "circuitBreakerMinRequests",
+            "circuitBreakerOpenTime",
+            "useHedgedRead",
+            "hedgedReadMinDelay",
             "recordTxn",
             "transactionLogBaseDir",
             "transactionLogBaseName",
@@ -221,10 +251,18 @@ public final class ShowSysParam {
             "otherMemSize",
             "orderMemSize",
             "joinMemSize",
+            "orderByParallelism",
+            "orderByMergeFanIn",
+            "queryMemoryBudget",
+            "queryMemorySpillPercent",
+            "queryAdmissionTimeout",
+            "maxConcurrentComplexQuery",
             "bufferPoolChunkSize",
             "bufferPoolPageSize",
             "bufferPoolPageNumber",
             "mappedFileSize",
+            "sqlPlanCacheSize",
+            "erParentKeyCacheSize",
             "useSqlStat",
             "sqlRecordCount",
             "maxResultSet",
@@ -238,6 +276,9 @@ public final class ShowSysParam {
             "backSocketNoDelay",
             "viewPersistenceConfBaseDir",
             "viewPersistenceConfBaseName",
+            "globalCheckChunkSize",
+            "globalCheckChunkInterval",
+            "globalCheckStateBaseDir",
             "joinQueueSize",
             "mergeQueueSize",
             "orderByQueueSize",
@@ -253,6 +294,9 @@ public final class ShowSysParam {
             "enableFlowControl",
             "flowControlStartThreshold",
             "flowControlStopThreshold",
+            "enableFlowControlSpill",
+            "flowControlSpillMaxSize",
+            "enablePartialAggregation",
     };
 
     private static final String[] PARAM_DESCRIPTION = {
@@ -278,6 +322,7 @@ public final class ShowSysParam {
             "Whether the cost time of query can be track by Btrace.The default value is 0",
             "The max cost total percentage.The default value is 100",
             "The percentage of cost sample.The default value is 1",
+            "The local port of the latency metrics in text format, 0 means not used.The default value is 0",
             "The initially charset of connection. The default is utf8mb4",
             "The maximum size of one packet. The default is 4MB or (the Minimum value of all data source - " + KeyVariables.MARGIN_PACKET_SIZE + ").",
             "The initially isolation level of the front end connection. The default is REPEATABLE_READ",
@@ -286,9 +331,16 @@ public final class ShowSysParam {
             "The period of consistency tableStructure check .The default value is 30*60*1000",
             "The period between the heartbeat jobs for checking the health of all idle connections. The default is 300 seconds",
             "The period between the heartbeat jobs for checking the health of all write/read data sources. The default is 10 seconds",
+            "The period of the heartbeat of the unstable or lagging data source, it is doubled after each healthy heartbeat until dataNodeHeartbeatPeriod. The default is 1000ms",
             "The period between the jobs for cleaning the closed or overtime connections. The default is 1 second",
             "The max allowed time of idle connection. The connection will be closed if it is timed out after last read/write/heartbeat.The default is 30 minutes",
             "The max query executing time.If time out,the connection will be closed. The default is 300 seconds",
+            "The error percent of the queries in the last 10 seconds which opens the circuit breaker of a data source, 0 means off. The default is 0",
+            "The p99 latency of the queries in the last 10 seconds which opens the circuit breaker of a data source, 0 means off. The default is 0ms",
+            "The min count of the queries in the last 10 seconds before the circuit breaker of a data source can be opened. The default is 20",
+            "The time of the circuit breaker being open before a probe query is sent to the data source. The default is 10000ms",
+            "Whether the read only query is sent to another read data source too if it is slower than the p95 latency. The default is 0",
+            "The min delay of the hedged read. The default is 10ms",
             "Whether the transaction be recorded as a file,The default value is 0",
             "The directory of the transaction record file,The default value is ./txlogs",
             "The name of the transaction record file.The default value is server-tx",
@@ -304,10 +356,18 @@ public final class ShowSysParam {
             "The additional size of memory can be used in a complex query.The default size is 4M",
             "The additional size of memory can be used in a complex query order.The default size is 4M",
             "The additional size of memory can be used in a complex query join.The default size is 4M",
+            "The max number of order by runs sorted at the same time by complexExecutor when sorting on disk.The default value is 2",
+            "The max number of sorted runs merged in one pass when sorting on disk.The default value is 16",
+            "The memory can be used by the buffers of all complex queries.The default value is 0, a quarter of the max heap",
+            "The buffers of complex queries spill to disk when the memory used is over the percent of queryMemoryBudget.The default value is 80",
+            "The max time a new complex query waits when queryMemoryBudget is used up, then it is rejected.The default value is 1000ms",
+            "The max number of complex queries of all users running at the same time, the users waiting take turns by their priority.The default value is 0, not limited",
             "The chunk size of memory bufferPool. The min direct memory used for allocating",
             "The page size of memory bufferPool. The max direct memory used for allocating",
             "The page number of memory bufferPool. The All bufferPool size is PageNumber * PageSize",
             "The Memory linked file size,when complex query resultSet is too large the Memory will be turned to file temporary",
+            "The max number of route templates kept by the normalized select sql, 0 means the route plan cache is not used.The default value is 10000",
+            "The max number of data nodes kept by the parent key for the insert of child tables, 0 means the cache is not used.The default value is 10000",
             "Whether the SQL statistics function is enable or not.The default value is 1",
             "The slow SQL statistics limit,if the slow SQL record is large than the size,the record will be clear.The default value is 10",
             "The large resultSet SQL standard.The default value is 512*1024B",
@@ -321,6 +381,9 @@ public final class ShowSysParam {
             "The backend nagle is disabled.The default value is 1",
             "The directory of the view record file,The default value is ./viewConf",
             "The name of the view record file.The default value is viewJson",
+            "The rows of a chunk checked by the CHUNK global table check.The default value is 1000",
+            "The pause between the chunks of the CHUNK global table check.The default value is 100ms",
+            "The directory of the progress files of the CHUNK global table check,The default value is ./globalCheck",
             "Size of join queue,Avoid using too much memory",
             "Size of merge queue,Avoid using too much memory",
             "Size of order by queue,Avoid using too much memory",
@@ -336,6 +399,9 @@ public final class ShowSysParam {
             "Whether use flow control feature",
             "The start threshold of write queue to start the flow control",
             "The recover threshold of write queue to stop the flow control",
+            "Whether the results over the write queue are spilled to a file of the session instead of stopping reading from the backends.The default value is false",
+            "The max size of the spill file of a session, the backends stop reading when it's full.The default value is 1024M",
+            "Whether the aggregates of a single table query are pushed down to the data nodes as partial aggregates and merged without the optimizer.The default value is true",
     };
 
     private static final String[] ISOLATION_LEVELS = {"", "READ_UNCOMMITTED", "READ_COMMITTED", "REPEATABLE_READ", "SERIALIZABLE"};
@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2016-2020 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+package com.actiontech.dble.manager.response;
+
+import com.actiontech.dble.backend.mysql.PacketUtil;
+import com.actiontech.dble.config.Fields;
+import com.actiontech.dble.manager.ManagerConnection;
+import com.actiontech.dble.net.mysql.EOFPacket;
+import com.actiontech.dble.net.mysql.FieldPacket;
+import com.actiontech.dble.net.mysql.ResultSetHeaderPacket;
+import com.actiontech.dble.net.mysql.RowDataPacket;
+import com.actiontech.dble.server.workload.WorkloadGroup;
+import com.actiontech.dble.server.workload.WorkloadManager;
+import com.actiontech.dble.util.IntegerUtil;
+import com.actiontech.dble.util.LongUtil;
+import com.actiontech.dble.util.StringUtil;
+
+import java.nio.ByteBuffer;
+
+/**
+ * ShowWorkload, the limits, running queries and queue of the workload group of every user
+ *
+ * @author ActionTech
+ */
+public final class ShowWorkload {
+    private ShowWorkload() {
+    }
+
+    private static final int FIELD_COUNT = 12;
+    private static final ResultSetHeaderPacket HEADER = PacketUtil.getHeader(FIELD_COUNT);
+    private static final FieldPacket[] FIELDS = new FieldPacket[FIELD_COUNT];
+    private static final EOFPacket EOF = new EOFPacket();
+
+    static {
+        int i = 0;
+        byte packetId = 0;
+        HEADER.setPacketId(++packetId);
+
+        FIELDS[i] = PacketUtil.getField("USER", Fields.FIELD_TYPE_VAR_STRING);
+        FIELDS[i++].setPacketId(++packetId);
+        FIELDS[i] = PacketUtil.getField("PRIORITY", Fields.FIELD_TYPE_LONG);
+        FIELDS[i++].setPacketId(++packetId);
+        FIELDS[i] = PacketUtil.getField("MAX_COMPLEX_QUERY", Fields.FIELD_TYPE_LONG);
+        FIELDS[i++].setPacketId(++packetId);
+        FIELDS[i] = PacketUtil.getField("RUNNING_COMPLEX_QUERY", Fields.FIELD_TYPE_LONG);
+        FIELDS[i++].setPacketId(++packetId);
+        FIELDS[i] = PacketUtil.getField("MAX_BACKEND_CON", Fields.FIELD_TYPE_LONG);
+        FIELDS[i++].setPacketId(++packetId);
+        FIELDS[i] = PacketUtil.getField("USED_BACKEND_CON", Fields.FIELD_TYPE_LONG);
+        FIELDS[i++].setPacketId(++packetId);
+        FIELDS[i] = PacketUtil.getField("QUEUE_TIMEOUT(ms)", Fields.FIELD_TYPE_LONGLONG);
+        FIELDS[i++].setPacketId(++packetId);
+        FIELDS[i] = PacketUtil.getField("QUEUE_DEPTH", Fields.FIELD_TYPE_LONGLONG);
+        FIELDS[i++].setPacketId(++packetId);
+        FIELDS[i] = PacketUtil.getField("QUEUED_COUNT", Fields.FIELD_TYPE_LONGLONG);
+        FIELDS[i++].setPacketId(++packetId);
+        FIELDS[i] = PacketUtil.getField("AVG_WAIT(ms)", Fields.FIELD_TYPE_LONGLONG);
+        FIELDS[i++].setPacketId(++packetId);
+        FIELDS[i] = PacketUtil.getField("MAX_WAIT(ms)", Fields.FIELD_TYPE_LONGLONG);
+        FIELDS[i++].setPacketId(++packetId);
+        FIELDS[i] = PacketUtil.getField("TIMEOUT_COUNT", Fields.FIELD_TYPE_LONGLONG);
+        FIELDS[i].setPacketId(++packetId);
+        EOF.setPacketId(++packetId);
+    }
+
+    public static void execute(ManagerConnection c) {
+        ByteBuffer buffer = c.allocate();
+
+        buffer = HEADER.write(buffer, c, true);
+
+        for (FieldPacket field : FIELDS) {
+            buffer = field.write(buffer, c, true);
+        }
+
+        buffer = EOF.write(buffer, c, true);
+
+        byte packetId = EOF.getPacketId();
+        for (WorkloadGroup group : WorkloadManager.getInstance().getGroups()) {
+            RowDataPacket row = getRow(group, c.getCharset().getResults());
+            row.setPacketId(++packetId);
+            buffer = row.write(buffer, c, true);
+        }
+
+        EOFPacket lastEof = new EOFPacket();
+        lastEof.setPacketId(++packetId);
+        buffer = lastEof.write(buffer, c, true);
+        c.write(buffer);
+    }
+
+    private static RowDataPacket getRow(WorkloadGroup group, String charset) {
+        long[] queueStat = WorkloadManager.getInstance().getQueueStat(group);
+        int[] runningStat = WorkloadManager.getInstance().getRunningStat(group);
+        // the queued queries admitted or timeout
+        long waited = queueStat[1] - queueStat[0];
+        RowDataPacket row = new RowDataPacket(FIELD_COUNT);
+        row.add(StringUtil.encode(group.getUser(), charset));
+        row.add(IntegerUtil.toBytes(group.getPriority()));
+        row.add(IntegerUtil.toBytes(group.getMaxComplexQuery()));
+        row.add(IntegerUtil.toBytes(runningStat[0]));
+        row.add(IntegerUtil.toBytes(group.getMaxBackendCon()));
+        row.add(IntegerUtil.toBytes(runningStat[1]));
+        row.add(LongUtil.toBytes(group.getQueueTimeout()));
+        row.add(LongUtil.toBytes(queueStat[0]));
+        row.add(LongUtil.toBytes(queueStat[1]));
+        row.add(LongUtil.toBytes(waited == 0 ? 0 : queueStat[2] / waited));
+        row.add(LongUtil.toBytes(queueStat[3]));
+        row.add(LongUtil.toBytes(queueStat[4]));
+        return row;
+    }
+}
@@ -37,6 +37,8 @@ import com.actiontech.dble.meta.table.DDLNotifyTableMetaHandler;
 import com.actiontech.dble.meta.table.SchemaCheckMetaHandler;
 import com.actiontech.dble.meta.table.ServerMetaHandler;
 import com.actiontech.dble.plan.node.PlanNode;
+import com.actiontech.dble.route.cache.ParentKeyLocationCache;
+import com.actiontech.dble.route.cache.RoutePlanCache;
 import com.actiontech.dble.server.util.SchemaUtil;
 import com.actiontech.dble.server.util.SchemaUtil.SchemaInfo;
 import com.actiontech.dble.singleton.ClusterGeneralConfig;
@@ -567,6 +569,8 @@ public class ProxyMetaManager {
     }
 
     public boolean updateMetaData(String schema, String tableName, String sql, boolean isSuccess, boolean needNotifyOther, DDLInfo.DDLType ddlType) {
+        RoutePlanCache.getInstance().clearCache();
+        ParentKeyLocationCache.getInstance().clearCache();
         if (ddlType == DDLInfo.DDLType.DROP_TABLE) {
             return dropTable(schema, tableName, sql, isSuccess, needNotifyOther);
         } else if (ddlType == DDLInfo.DDLType.TRUNCATE_TABLE) {
@@ -18,11 +18,11 @@ class AIOReadHandler implements CompletionHandler<Integer, AIOSocketWR> {
                 wr.con.onReadData(i);
                 wr.con.asyncRead();
             } catch (IOException e) {
-                wr.con.close("handle err:" + e);
+                wr.con.closeByIOError("handle err:" + e);
             }
         } else if (i == -1) {
             // System.out.println("read -1 xxxxxxxxx "+con);
-            wr.con.close("client closed");
+            wr.con.closeByIOError("client closed");
         }
         // }
         // });
@@ -30,7 +30,7 @@ class AIOReadHandler implements CompletionHandler<Integer, AIOSocketWR> {
 
     @Override
     public void failed(Throwable exc, AIOSocketWR wr) {
-        wr.con.close(exc.toString());
+        wr.con.closeByIOError(exc.toString());
 
     }
 }
@@ -65,7 +65,7 @@ public class AIOSocketWR extends SocketWR {
 
             }
             // poll again
-            ByteBuffer buffer = con.writeQueue.poll();
+            ByteBuffer buffer = con.pollWriteQueue();
             // more data
             if (buffer != null) {
                 if (buffer.limit() == 0) {
@@ -125,7 +125,7 @@ public class AIOSocketWR extends SocketWR {
             if (AbstractConnection.LOGGER.isDebugEnabled()) {
                 AbstractConnection.LOGGER.debug("caught err:", e);
             }
-            con.close("err:" + e);
+            con.closeByIOError("err:" + e);
             return false;
         }
         return true;
@@ -10,13 +10,17 @@ import com.actiontech.dble.backend.BackendConnection;
 import com.actiontech.dble.backend.mysql.ByteUtil;
 import com.actiontech.dble.backend.mysql.CharsetUtil;
 import com.actiontech.dble.backend.mysql.nio.MySQLConnection;
+import com.actiontech.dble.config.FlowCotrollerConfig;
 import com.actiontech.dble.config.model.SystemConfig;
 import com.actiontech.dble.net.mysql.CharsetNames;
 import com.actiontech.dble.net.mysql.MySQLPacket;
 import com.actiontech.dble.server.NonBlockingSession;
 import com.actiontech.dble.server.ServerConnection;
+import com.actiontech.dble.singleton.WriteQueueFlowController;
 import com.actiontech.dble.util.CompressUtil;
 import com.actiontech.dble.util.TimeUtil;
+import com.actiontech.dble.util.TimingWheel;
+import com.actiontech.dble.util.exception.TmpFileException;
 import com.google.common.base.Strings;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -75,6 +79,9 @@ public abstract class AbstractConnection implements NIOConnection {
     private byte[] rowData;
 
     private volatile boolean flowControlled;
+    private volatile WriteQueueSpill writeSpill;
+    /* the idle, sql timeout and send queue check of the connection in the timing wheel of the processor */
+    private volatile TimingWheel.Timeout timeoutCheck;
 
     public AbstractConnection(NetworkChannel channel) {
         this.channel = channel;
@@ -179,7 +186,22 @@ public abstract class AbstractConnection implements NIOConnection {
     }
 
     public boolean isIdleTimeout() {
-        return TimeUtil.currentTimeMillis() > Math.max(lastWriteTime, lastReadTime) + idleTimeout;
+        return TimeUtil.currentTimeMillis() > getIdleExpireTime();
+    }
+
+    /**
+     * @return the time when the connection is idle timeout if there is no more read or write
+     */
+    public long getIdleExpireTime() {
+        return Math.max(lastWriteTime, lastReadTime) + idleTimeout;
+    }
+
+    TimingWheel.Timeout getTimeoutCheck() {
+        return timeoutCheck;
+    }
+
+    void setTimeoutCheck(TimingWheel.Timeout timeoutCheck) {
+        this.timeoutCheck = timeoutCheck;
     }
 
     public Map<String, String> getUsrVariables() {
@@ -296,6 +318,7 @@ public abstract class AbstractConnection implements NIOConnection {
         }
         if (got < 0) {
             if (this instanceof MySQLConnection) {
+                ((MySQLConnection) this).executeFailed();
                 ((MySQLConnection) this).closeInner("stream closed");
             } else {
                 this.close("stream closed");
@@ -303,6 +326,7 @@ public abstract class AbstractConnection implements NIOConnection {
             return;
         } else if (got == 0 && !this.channel.isOpen()) {
             if (this instanceof MySQLConnection) {
+                ((MySQLConnection) this).executeFailed();
                 ((MySQLConnection) this).closeInner("stream closed");
             } else {
                 this.close("stream closed");
@@ -437,11 +461,8 @@ public abstract class AbstractConnection implements NIOConnection {
             this.cleanup();
             return;
         }
-        if (isSupportCompress()) {
-            ByteBuffer newBuffer = CompressUtil.compressMysqlPacket(buffer, this, compressUnfinishedDataQueue);
-            writeQueue.offer(newBuffer);
-        } else {
-            writeQueue.offer(buffer);
+        if (!offerWriteSpill(buffer)) {
+            offerWriteQueue(buffer);
         }
 
         // if ansyn write finished event got lock before me ,then writing
@@ -449,10 +470,110 @@ public abstract class AbstractConnection implements NIOConnection {
         // so we check again
         try {
             this.socketWR.doNextWriteCheck();
+            if (processor != null && !writeQueue.isEmpty()) {
+                // very important, make sure the left data is sent by the next check
+                processor.scheduleNextCheck(this);
+            }
         } catch (Exception e) {
             LOGGER.info("write err:", e);
-            this.close("write err:" + e);
+            this.closeByIOError("write err:" + e);
+        }
+    }
+
+    void offerWriteQueue(ByteBuffer buffer) {
+        if (isSupportCompress()) {
+            ByteBuffer newBuffer = CompressUtil.compressMysqlPacket(buffer, this, compressUnfinishedDataQueue);
+            writeQueue.offer(newBuffer);
+        } else {
+            writeQueue.offer(buffer);
+        }
+    }
+
+    private boolean offerWriteSpill(ByteBuffer buffer) {
+        WriteQueueSpill spill = writeSpill;
+        // the empty buffer means quit
+        if (spill == null || buffer.limit() == 0) {
+            return false;
+        }
+        try {
+            if (!spill.offer(buffer)) {
+                return false;
+            }
+        } catch (TmpFileException e) {
+            LOGGER.info("write spill err:", e);
+            this.close("write spill err:" + e);
+        }
+        recycle(buffer);
+        return true;
+    }
+
+    /**
+     * poll the write queue, refill it from the spill file if it's empty
+     */
+    ByteBuffer pollWriteQueue() {
+        ByteBuffer buffer = writeQueue.poll();
+        WriteQueueSpill spill = writeSpill;
+        if (buffer != null || spill == null) {
+            return buffer;
+        }
+        try {
+            if (spill.drainTo(this, Math.max(WriteQueueFlowController.getFlowCotrollerConfig().getEnd(), 1))) {
+                return writeQueue.poll();
+            }
+        } catch (TmpFileException e) {
+            LOGGER.info("read spill err:", e);
+            this.close("read spill err:" + e);
+            return null;
+        }
+        synchronized (this) {
+            if (writeSpill == spill) {
+                writeSpill = null;
+                LOGGER.info("stop spilling the write queue " + this);
+            }
         }
+        return null;
+    }
+
+    /**
+     * spill the buffers over the write queue to file instead of stopping reading from the backends
+     *
+     * @return false if enableFlowControlSpill is off or the spill file is full
+     */
+    public synchronized boolean startWriteSpill() {
+        SystemConfig system = DbleServer.getInstance().getConfig().getSystem();
+        if (!system.isEnableFlowControlSpill() || isClosed) {
+            return false;
+        }
+        if (writeSpill != null && !writeSpill.isClosed()) {
+            return !writeSpill.isFull();
+        }
+        try {
+            writeSpill = new WriteQueueSpill(system.getFlowControlSpillMaxSize() * 1024L * 1024L);
+        } catch (TmpFileException e) {
+            LOGGER.info("create spill file err:", e);
+            return false;
+        }
+        LOGGER.info("start spilling the write queue " + this);
+        return true;
+    }
+
+    /**
+     * @return true if the write queue is over flowControlStartThreshold, or the spill file is full when spilling
+     */
+    public boolean isWriteQueueOverflow(FlowCotrollerConfig config) {
+        WriteQueueSpill spill = writeSpill;
+        if (spill != null && !spill.isClosed()) {
+            return spill.isFull();
+        }
+        return writeQueue.size() > config.getStart();
+    }
+
+    /**
+     * @return false if the spill file is still over half of flowControlSpillMaxSize
+     */
+    boolean isWriteSpillRecovered() {
+        WriteQueueSpill spill = writeSpill;
+        return spill == null || spill.isRecovered();
     }
 
     public final boolean registerWrite(ByteBuffer buffer) {
@@ -464,7 +585,7 @@ public abstract class AbstractConnection implements NIOConnection {
             return this.socketWR.registerWrite(buffer);
         } catch (Exception e) {
             LOGGER.info("write err:", e);
-            this.close("write err:" + e);
+            this.closeByIOError("write err:" + e);
             return false;
         }
     }
@@ -491,8 +612,12 @@ public abstract class AbstractConnection implements NIOConnection {
     }
 
     public ByteBuffer writeToBuffer(byte[] src, ByteBuffer buffer) {
-        int offset = 0;
-        int length = src.length;
+        return writeToBuffer(src, 0, buffer);
+    }
+
+    public ByteBuffer writeToBuffer(byte[] src, int srcOffset, ByteBuffer buffer) {
+        int offset = srcOffset;
+        int length = src.length - srcOffset;
         int remaining = buffer.remaining();
         while (length > 0) {
             if (remaining >= length) {
@@ -542,6 +667,13 @@ public abstract class AbstractConnection implements NIOConnection {
 
     public abstract void connectionCount();
 
+    /**
+     * close the connection because of the error of its socket
+     */
+    public void closeByIOError(String reason) {
+        close(reason);
+    }
+
     @Override
     public void close(String reason) {
         if (!isClosed) {
@@ -605,6 +737,10 @@ public abstract class AbstractConnection implements NIOConnection {
         while ((buffer = writeQueue.poll()) != null) {
             recycle(buffer);
         }
+        if (writeSpill != null) {
+            writeSpill.close();
+            writeSpill = null;
+        }
     }
 
     private int getPacketLength(ByteBuffer buffer, int offset) {
@@ -30,6 +30,7 @@ import java.net.InetSocketAddress;
 import java.nio.channels.AsynchronousSocketChannel;
 import java.nio.channels.NetworkChannel;
 import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Queue;
 import java.util.Set;
@@ -48,6 +49,10 @@ public abstract class FrontendConnection extends AbstractConnection {
     private long clientFlags;
 
     protected String executeSql;
+    // the COM_QUERY packet received from the client, the sql decoded from it and the charset decoding it
+    private volatile byte[] queryPacket;
+    private volatile String queryPacketSql;
+    private volatile String queryPacketCharset;
 
     protected FrontendPrivileges privileges;
     protected FrontendQueryHandler queryHandler;
@@ -195,6 +200,22 @@ public abstract class FrontendConnection extends AbstractConnection {
         this.executeSql = executeSql;
     }
 
+    /**
+     * @return the COM_QUERY packet received from the client if the sql is the one decoded from it in the charset,
+     * the sql starts from the 5th byte of the packet. null if it's not.
+     * only the utf8 packet is returned, the bytes which can't be decoded in the other charsets are replaced
+     * in the sql, the sql must be encoded again to be the same as the routed one.
+     */
+    public byte[] getQueryPacket(String sql, String charset) {
+        byte[] packet = queryPacket;
+        String packetSql = queryPacketSql;
+        if (packet == null || packetSql == null || !packetSql.equals(sql) || !charset.equals(queryPacketCharset) ||
+                !StandardCharsets.UTF_8.name().equals(CharsetUtil.getJavaCharset(charset))) {
+            return null;
+        }
+        return packet;
+    }
+
     public byte[] getSeed() {
         return seed;
     }
@@ -317,6 +338,33 @@ public abstract class FrontendConnection extends AbstractConnection {
 
 
     public void query(String sql) {
+        query(sql, null);
+    }
+
+    public void query(byte[] data) {
+        String sql = null;
+        String charset = charsetName.getClient();
+        try {
+            MySQLMessage mm = new MySQLMessage(data);
+            mm.position(5);
+            sql = mm.readString(charset);
+        } catch (UnsupportedEncodingException e) {
+            writeErrMessage(ErrorCode.ER_UNKNOWN_CHARACTER_SET, "Unknown charset '" + charset + "'");
+            return;
+        }
+        if (this instanceof ServerConnection) {
+            SerializableLock.getInstance().lock(this.id);
+        }
+        queryPacketCharset = charset;
+        this.query(sql, data);
+    }
+
+    /**
+     * @param packet the COM_QUERY packet the sql is decoded from, null if the sql is not from the client directly
+     */
+    private void query(String sql, byte[] packet) {
+        queryPacket = null;
+        queryPacketSql = null;
         if (sql == null || sql.length() == 0) {
             writeErrMessage(ErrorCode.ER_NOT_ALLOWED_COMMAND, "Empty SQL");
             return;
@@ -332,6 +380,10 @@ public abstract class FrontendConnection extends AbstractConnection {
         }
         // record SQL
         this.setExecuteSql(sql);
+        if (packet != null) {
+            queryPacketSql = sql;
+            queryPacket = packet;
+        }
 
         if (!privileges.checkFirewallSQLPolicy(user, sql)) {
             writeErrMessage(ErrorCode.ERR_WRONG_USED, "The statement is unsafe SQL, reject for user '" + user + "'");
@@ -348,22 +400,6 @@ public abstract class FrontendConnection extends AbstractConnection {
         }
     }
 
-    public void query(byte[] data) {
-        String sql = null;
-        try {
-            MySQLMessage mm = new MySQLMessage(data);
-            mm.position(5);
-            sql = mm.readString(charsetName.getClient());
-        } catch (UnsupportedEncodingException e) {
-            writeErrMessage(ErrorCode.ER_UNKNOWN_CHARACTER_SET, "Unknown charset '" + charsetName.getClient() + "'");
-            return;
-        }
-        if (this instanceof ServerConnection) {
-            SerializableLock.getInstance().lock(this.id);
-        }
-        this.query(sql);
-    }
-
     public void stmtPrepare(byte[] data) {
         if (prepareHandler != null) {
             MySQLMessage mm = new MySQLMessage(data);
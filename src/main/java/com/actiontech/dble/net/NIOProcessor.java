@@ -15,12 +15,11 @@ import com.actiontech.dble.server.ServerConnection;
 import com.actiontech.dble.singleton.XASessionCheck;
 import com.actiontech.dble.statistic.CommandCount;
 import com.actiontech.dble.util.TimeUtil;
+import com.actiontech.dble.util.TimingWheel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.util.Iterator;
-import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
@@ -45,6 +44,8 @@ public final class NIOProcessor {
     public static final ConcurrentLinkedQueue<BackendConnection> BACKENDS_OLD = new ConcurrentLinkedQueue<>();
 
     private AtomicInteger frontEndsLength = new AtomicInteger(0);
+    private final long checkPeriod;
+    private final TimingWheel timingWheel;
 
     public NIOProcessor(String name, BufferPool bufferPool) throws IOException {
         this.name = name;
@@ -52,6 +53,8 @@ public final class NIOProcessor {
         this.frontends = new ConcurrentHashMap<>();
         this.backends = new ConcurrentHashMap<>();
         this.commands = new CommandCount();
+        this.checkPeriod = DbleServer.getInstance().getConfig().getSystem().getProcessorCheckPeriod();
+        this.timingWheel = new TimingWheel(checkPeriod, TimeUtil.currentTimeMillis());
     }
 
     public String getName() {
@@ -99,6 +102,7 @@ public final class NIOProcessor {
     public void addFrontend(FrontendConnection c) {
         this.frontends.put(c.getId(), c);
         this.frontEndsLength.incrementAndGet();
+        registerCheck(c);
     }
 
     public ConcurrentMap<Long, FrontendConnection> getFrontends() {
@@ -111,55 +115,73 @@ public final class NIOProcessor {
 
     public void addBackend(BackendConnection c) {
         this.backends.put(c.getId(), c);
+        if (c instanceof AbstractConnection) {
+            registerCheck((AbstractConnection) c);
+        }
     }
 
     public ConcurrentMap<Long, BackendConnection> getBackends() {
         return this.backends;
     }
 
-    public void checkBackendCons() {
-        backendCheck();
+    /**
+     * expire the connection checks before now in the timing wheel, instead of scanning all the connections
+     */
+    public void checkConnections() {
+        timingWheel.advance(TimeUtil.currentTimeMillis());
     }
 
-    public void checkFrontCons() {
-        frontendCheck();
+    /**
+     * make the connection checked not later than the deadline
+     */
+    public void scheduleCheck(AbstractConnection c, long deadline) {
+        TimingWheel.Timeout check = c.getTimeoutCheck();
+        if (check != null && deadline < check.getDeadline()) {
+            timingWheel.schedule(check, deadline);
+        }
     }
 
-    private void frontendCheck() {
-        Iterator<Entry<Long, FrontendConnection>> it = frontends.entrySet().iterator();
-        while (it.hasNext()) {
-            FrontendConnection c = it.next().getValue();
+    /**
+     * make the connection checked in the next period
+     */
+    public void scheduleNextCheck(AbstractConnection c) {
+        scheduleCheck(c, TimeUtil.currentTimeMillis() + checkPeriod);
+    }
 
-            // remove empty conn
-            if (c == null) {
-                it.remove();
-                this.frontEndsLength.decrementAndGet();
-                continue;
-            }
+    private void registerCheck(AbstractConnection c) {
+        c.setTimeoutCheck(new ConnectionCheck(c));
+        scheduleNextCheck(c);
+    }
 
-            // clean closed conn or check timeout
-            if (c.isClosed()) {
-                c.cleanup();
-                it.remove();
+    private void frontendCheck(FrontendConnection c) {
+        // clean closed conn or check timeout
+        if (c.isClosed()) {
+            c.cleanup();
+            if (frontends.remove(c.getId(), c)) {
                 this.frontEndsLength.decrementAndGet();
-            } else {
-                // very important ,for some data maybe not sent
-                checkConSendQueue(c);
-                if (c instanceof ServerConnection && c.isIdleTimeout()) {
-                    ServerConnection s = (ServerConnection) c;
-                    String xaStage = s.getSession2().getTransactionManager().getXAStage();
-                    if (xaStage != null) {
-                        if (!xaStage.equals(XAStage.COMMIT_FAIL_STAGE) && !xaStage.equals(XAStage.ROLLBACK_FAIL_STAGE)) {
-                            // Active/IDLE/PREPARED XA FrontendS will be rollbacked
-                            s.close("Idle Timeout");
-                            XASessionCheck.getInstance().addRollbackSession(s.getSession2());
-                        }
-                        continue;
-                    }
+            }
+            return;
+        }
+        // very important ,for some data maybe not sent
+        checkConSendQueue(c);
+        if (c instanceof ServerConnection && c.isIdleTimeout()) {
+            ServerConnection s = (ServerConnection) c;
+            String xaStage = s.getSession2().getTransactionManager().getXAStage();
+            if (xaStage != null) {
+                if (!xaStage.equals(XAStage.COMMIT_FAIL_STAGE) && !xaStage.equals(XAStage.ROLLBACK_FAIL_STAGE)) {
+                    // Active/IDLE/PREPARED XA FrontendS will be rollbacked
+                    s.close("Idle Timeout");
+                    XASessionCheck.getInstance().addRollbackSession(s.getSession2());
+                } else {
+                    scheduleNextCheck(c);
                 }
-                c.idleCheck();
+                return;
             }
         }
+        c.idleCheck();
+        if (!c.isClosed()) {
+            scheduleAfterCheck(c, c.getIdleExpireTime());
+        }
     }
 
     private void checkConSendQueue(AbstractConnection c) {
@@ -169,48 +191,53 @@ public final class NIOProcessor {
         }
     }
 
-    private void backendCheck() {
-        long sqlTimeout = DbleServer.getInstance().getConfig().getSystem().getSqlExecuteTimeout() * 1000L;
-        Iterator<Entry<Long, BackendConnection>> it = backends.entrySet().iterator();
-        while (it.hasNext()) {
-            BackendConnection c = it.next().getValue();
-
-            // remove empty
-            if (c == null) {
-                it.remove();
-                continue;
-            }
-
-            //Active/IDLE/PREPARED XA backends will not be checked
-            if (c instanceof MySQLConnection) {
-                MySQLConnection m = (MySQLConnection) c;
-                if (m.isClosed()) {
-                    it.remove();
-                    continue;
-                }
-                if (m.getXaStatus() != null && m.getXaStatus() != TxState.TX_INITIALIZE_STATE) {
-                    continue;
-                }
+    private void backendCheck(AbstractConnection c) {
+        BackendConnection con = (BackendConnection) c;
+        if (c.isClosed()) {
+            backends.remove(c.getId(), con);
+            return;
+        }
+        //Active/IDLE/PREPARED XA backends will not be checked
+        if (c instanceof MySQLConnection) {
+            MySQLConnection m = (MySQLConnection) c;
+            if (m.getXaStatus() != null && m.getXaStatus() != TxState.TX_INITIALIZE_STATE) {
+                scheduleNextCheck(c);
+                return;
             }
-            // close the conn which executeTimeOut
-            if (!c.isDDL() && c.isBorrowed() && c.isExecuting() && c.getLastTime() < TimeUtil.currentTimeMillis() - sqlTimeout) {
+        }
+        // close the conn which executeTimeOut
+        long deadline = Long.MAX_VALUE;
+        if (!con.isDDL() && con.isBorrowed() && con.isExecuting()) {
+            long sqlTimeout = DbleServer.getInstance().getConfig().getSystem().getSqlExecuteTimeout() * 1000L;
+            if (con.getLastTime() < TimeUtil.currentTimeMillis() - sqlTimeout) {
                 LOGGER.info("found backend connection SQL timeout ,close it " + c);
                 c.close("sql timeout");
+            } else {
+                deadline = con.getLastTime() + sqlTimeout;
             }
+        }
 
-            // clean closed conn or check time out
-            if (c.isClosed()) {
-                it.remove();
-            } else {
-                // very important ,for some data maybe not sent
-                if (c instanceof AbstractConnection) {
-                    checkConSendQueue((AbstractConnection) c);
-                }
-                c.idleCheck();
+        // clean closed conn or check time out
+        if (c.isClosed()) {
+            backends.remove(c.getId(), con);
+        } else {
+            // very important ,for some data maybe not sent
+            checkConSendQueue(c);
+            c.idleCheck();
+            if (!c.isClosed()) {
+                scheduleAfterCheck(c, Math.min(deadline, c.getIdleExpireTime()));
             }
         }
     }
 
+    /**
+     * the next check is not earlier than the next period, and is in the next period if some data is not sent
+     */
+    private void scheduleAfterCheck(AbstractConnection c, long deadline) {
+        long next = TimeUtil.currentTimeMillis() + checkPeriod;
+        scheduleCheck(c, c.writeQueue.isEmpty() ? Math.max(deadline, next) : next);
+    }
+
     public void removeConnection(AbstractConnection con) {
         if (con instanceof BackendConnection) {
             this.backends.remove(con.getId());
@@ -218,7 +245,32 @@ public final class NIOProcessor {
             this.frontends.remove(con.getId());
             this.frontEndsLength.decrementAndGet();
         }
-
+        // drop the check of the connection from the timing wheel soon
+        scheduleNextCheck(con);
     }
 
+    /**
+     * the check of a connection, scheduled again after each check until the connection is closed
+     */
+    private final class ConnectionCheck extends TimingWheel.Timeout {
+        private final AbstractConnection connection;
+
+        private ConnectionCheck(AbstractConnection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        protected void expire() {
+            try {
+                if (connection instanceof BackendConnection) {
+                    backendCheck(connection);
+                } else {
+                    frontendCheck((FrontendConnection) connection);
+                }
+            } catch (Exception e) {
+                LOGGER.info("check connection caught err:" + connection, e);
+                scheduleNextCheck(connection);
+            }
+        }
+    }
 }
@@ -122,7 +122,7 @@ public final class NIOReactor {
                             try {
                                 con.asyncRead();
                             } catch (IOException e) {
-                                con.close("program err:" + e.toString());
+                                con.closeByIOError("program err:" + e.toString());
                                 continue;
                             } catch (Exception e) {
                                 LOGGER.warn("caught err:", e);
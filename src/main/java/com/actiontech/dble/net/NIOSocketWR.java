@@ -80,7 +80,7 @@ public class NIOSocketWR extends SocketWR {
             } else {
                 errMsg = "err:" + e;
             }
-            con.close(errMsg);
+            con.closeByIOError(errMsg);
         } finally {
             writing.set(false);
         }
@@ -100,7 +100,7 @@ public class NIOSocketWR extends SocketWR {
                 AbstractConnection.LOGGER.debug("caught err:", e);
             }
             AbstractConnection.LOGGER.info("GET IOException when registerWrite,may be just a heartbeat from SLB/LVS :" + e.getMessage());
-            con.close("err:" + e);
+            con.closeByIOError("err:" + e);
             return false;
         }
         return true;
@@ -167,7 +167,7 @@ public class NIOSocketWR extends SocketWR {
                 con.recycle(buffer);
             }
         }
-        while ((buffer = con.writeQueue.poll()) != null) {
+        while ((buffer = con.pollWriteQueue()) != null) {
             if (buffer.position() == 5 && bufferIsQuit(buffer)) {
                 quitFlag = true;
             }
@@ -228,7 +228,7 @@ public class NIOSocketWR extends SocketWR {
             } else if ((flowControlCount != -1) &&
                     (flowControlCount <= config.getEnd())) {
                 int currentSize = this.con.writeQueue.size();
-                if (currentSize <= config.getEnd()) {
+                if (currentSize <= config.getEnd() && con.isWriteSpillRecovered()) {
                     con.stopFlowControl();
                     return -1;
                 } else {
@@ -236,7 +236,7 @@ public class NIOSocketWR extends SocketWR {
                 }
             } else if (flowControlCount == -1) {
                 int currentSize = this.con.writeQueue.size();
-                if (currentSize <= config.getEnd()) {
+                if (currentSize <= config.getEnd() && con.isWriteSpillRecovered()) {
                     con.stopFlowControl();
                     return -1;
                 } else {
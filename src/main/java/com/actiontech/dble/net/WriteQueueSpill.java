@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2016-2020 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.net;
+
+import com.actiontech.dble.backend.mysql.store.FileStore;
+
+import java.nio.ByteBuffer;
+
+/**
+ * WriteQueueSpill, the buffers written to a slow client after its write queue is over the
+ * flowControlStartThreshold are appended to a temp file (memory mapped if possible), so the
+ * backends can be read at full speed and their connections are released as early as possible.
+ * <p>
+ * The writer of the connection refills the write queue from the file when the queue is empty,
+ * the spill is closed when all the data in it are drained, and the later buffers go to the write
+ * queue again. The methods are synchronized to keep the order of the buffers.
+ * <p>
+ * The file is rewound when all the data in it are drained, and the data not drained are moved to
+ * the head of the file when the drained part is larger than both them and the max size, so the file
+ * does not grow with the data passing through it.
+ *
+ * @author ActionTech
+ */
+public class WriteQueueSpill {
+    private static final int COMPACT_BUFFER_SIZE = 64 * 1024;
+    private final FileStore file;
+    private final long maxSize;
+    private long writePos;
+    private long readPos;
+    private boolean closed;
+
+    WriteQueueSpill(long maxSize) {
+        this.file = new FileStore("nioMapped:Memory", "rw");
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * append the data of the buffer to the file
+     *
+     * @param buffer the buffer not flipped, like the buffers in the write queue
+     * @return false if the spill is closed, the buffer should go to the write queue
+     */
+    synchronized boolean offer(ByteBuffer buffer) {
+        if (closed) {
+            return false;
+        }
+        buffer.flip();
+        file.seek(writePos);
+        file.write(buffer);
+        writePos = file.getFilePointer();
+        return true;
+    }
+
+    /**
+     * move the data in the file to the write queue of the connection, at most count buffers
+     *
+     * @return false if nothing is moved, the spill is closed then
+     */
+    synchronized boolean drainTo(AbstractConnection con, int count) {
+        if (closed) {
+            return false;
+        }
+        if (readPos >= writePos) {
+            close();
+            return false;
+        }
+        for (int i = 0; i < count && readPos < writePos; i++) {
+            ByteBuffer buffer = con.allocate();
+            file.seek(readPos);
+            file.read(buffer, writePos);
+            readPos = file.getFilePointer();
+            con.offerWriteQueue(buffer);
+        }
+        if (readPos >= writePos) {
+            readPos = 0;
+            writePos = 0;
+            file.truncate(0);
+        } else if (readPos > maxSize && readPos >= writePos - readPos) {
+            compact();
+        }
+        return true;
+    }
+
+    /**
+     * move the data not drained to the head of the file
+     */
+    private void compact() {
+        ByteBuffer buffer = ByteBuffer.allocate(COMPACT_BUFFER_SIZE);
+        long from = readPos;
+        long to = 0;
+        while (from < writePos) {
+            buffer.clear();
+            file.seek(from);
+            file.read(buffer, writePos);
+            from = file.getFilePointer();
+            buffer.flip();
+            file.seek(to);
+            file.write(buffer);
+            to = file.getFilePointer();
+        }
+        readPos = 0;
+        writePos = to;
+        file.truncate(to);
+    }
+
+    synchronized long getFileLength() {
+        return file.length();
+    }
+
+    /**
+     * @return true if the data not drained is over the max size, the backends should stop reading
+     */
+    synchronized boolean isFull() {
+        return !closed && writePos - readPos > maxSize;
+    }
+
+    /**
+     * @return true if the data not drained is under half of the max size, the backends can go on reading
+     */
+    synchronized boolean isRecovered() {
+        return closed || writePos - readPos <= maxSize / 2;
+    }
+
+    synchronized boolean isClosed() {
+        return closed;
+    }
+
+    synchronized void close() {
+        if (!closed) {
+            closed = true;
+            file.closeAndDeleteSilently();
+        }
+    }
+}
@@ -75,6 +75,8 @@ public class CommandPacket extends MySQLPacket {
 
     private byte command;
     private byte[] arg;
+    // the arg starts from here, so that the packet received from the client can be forwarded without copying
+    private int argOffset = 0;
 
     public void read(byte[] data) {
         MySQLMessage mm = new MySQLMessage(data);
@@ -82,6 +84,7 @@ public class CommandPacket extends MySQLPacket {
         packetId = mm.read();
         command = mm.read();
         arg = mm.readBytes();
+        argOffset = 0;
     }
 
 
@@ -89,7 +92,7 @@ public class CommandPacket extends MySQLPacket {
         StreamUtil.writeUB3(out, calcPacketSize());
         StreamUtil.write(out, packetId);
         StreamUtil.write(out, command);
-        out.write(arg);
+        out.write(arg, argOffset, arg.length - argOffset);
     }
 
     @Override
@@ -99,7 +102,7 @@ public class CommandPacket extends MySQLPacket {
             BufferUtil.writeUB3(buffer, calcPacketSize());
             buffer.put(packetId);
             buffer.put(command);
-            buffer = c.writeToBuffer(arg, buffer);
+            buffer = c.writeToBuffer(arg, argOffset, buffer);
             c.write(buffer);
         } catch (java.nio.BufferOverflowException e1) {
             //fixed issues #98 #1072
@@ -107,7 +110,7 @@ public class CommandPacket extends MySQLPacket {
             BufferUtil.writeUB3(buffer, calcPacketSize());
             buffer.put(packetId);
             buffer.put(command);
-            buffer = c.writeToBuffer(arg, buffer);
+            buffer = c.writeToBuffer(arg, argOffset, buffer);
             c.write(buffer);
         }
     }
@@ -136,7 +139,7 @@ public class CommandPacket extends MySQLPacket {
     private int writeBody(ByteBuffer buffer, boolean isFirst, int remain) {
         if (isFirst) {
             buffer.put(command);
-            remain = arg.length;
+            remain = arg.length - argOffset;
         }
         if (remain < MySQLPacket.MAX_PACKET_SIZE) {
             buffer.put(arg, arg.length - remain, remain);
@@ -152,7 +155,7 @@ public class CommandPacket extends MySQLPacket {
 
     @Override
     public int calcPacketSize() {
-        return 1 + arg.length;
+        return 1 + arg.length - argOffset;
     }
 
     @Override
@@ -172,7 +175,16 @@ public class CommandPacket extends MySQLPacket {
         return arg;
     }
 
+    public int getArgOffset() {
+        return argOffset;
+    }
+
     public void setArg(byte[] arg) {
-        this.arg = arg;
+        setArg(arg, 0);
+    }
+
+    public void setArg(byte[] data, int offset) {
+        this.arg = data;
+        this.argOffset = offset;
     }
 }
@@ -34,14 +34,14 @@ public class WriteToBackendTask {
             BufferUtil.writeUB3(buffer, packet.calcPacketSize());
             buffer.put(packet.packetId);
             buffer.put(packet.getCommand());
-            buffer = conn.writeToBuffer(packet.getArg(), buffer);
+            buffer = conn.writeToBuffer(packet.getArg(), packet.getArgOffset(), buffer);
             conn.write(buffer);
         } catch (java.nio.BufferOverflowException e1) {
             buffer = conn.checkWriteBuffer(buffer, MySQLPacket.PACKET_HEADER_SIZE + packet.calcPacketSize(), false);
             BufferUtil.writeUB3(buffer, packet.calcPacketSize());
             buffer.put(packet.packetId);
             buffer.put(packet.getCommand());
-            buffer = conn.writeToBuffer(packet.getArg(), buffer);
+            buffer = conn.writeToBuffer(packet.getArg(), packet.getArgOffset(), buffer);
             conn.write(buffer);
         }
     }
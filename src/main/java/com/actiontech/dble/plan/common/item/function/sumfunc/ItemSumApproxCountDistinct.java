@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2016-2020 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.plan.common.item.function.sumfunc;
+
+import com.actiontech.dble.net.mysql.RowDataPacket;
+import com.actiontech.dble.plan.common.field.Field;
+import com.actiontech.dble.plan.common.item.Item;
+import com.alibaba.druid.sql.ast.SQLExpr;
+import com.alibaba.druid.sql.ast.expr.SQLMethodInvokeExpr;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * APPROX_COUNT_DISTINCT(expr[,expr...]), estimated by a HyperLogLog sketch.
+ * <p>
+ * it can not be pushed down, the values are fetched from the data nodes and
+ * every group keeps one sketch, sketches of the same group are merged by
+ * the trans object so direct group by never keeps the distinct values.
+ *
+ * @author ActionTech
+ */
+public class ItemSumApproxCountDistinct extends ItemSumInt {
+    private HyperLogLog sketch = new HyperLogLog();
+    private boolean cleared = true;
+
+    public ItemSumApproxCountDistinct(List<Item> args, boolean isPushDown, List<Field> fields) {
+        super(args, isPushDown, fields);
+    }
+
+    @Override
+    public SumFuncType sumType() {
+        return SumFuncType.APPROX_COUNT_DISTINCT_FUNC;
+    }
+
+    @Override
+    public Object getTransAggObj() {
+        return sketch;
+    }
+
+    @Override
+    public int getTransSize() {
+        return sketch.byteSize();
+    }
+
+    @Override
+    public void clear() {
+        // the old sketch may still be referred by a row as trans object
+        sketch = new HyperLogLog();
+        cleared = true;
+    }
+
+    @Override
+    public boolean add(RowDataPacket row, Object transObj) {
+        if (transObj != null) {
+            // the trans object of the row being reset is taken over instead of copied
+            if (cleared) {
+                sketch = (HyperLogLog) transObj;
+            } else {
+                sketch.merge((HyperLogLog) transObj);
+            }
+            cleared = false;
+            return false;
+        }
+        cleared = false;
+        long hash = 0;
+        for (Item arg : args) {
+            String value = arg.valStr();
+            if (arg.isNull()) {
+                return false;
+            }
+            hash = HyperLogLog.fmix64(hash * 31 + HyperLogLog.hash64(value.getBytes(StandardCharsets.UTF_8)));
+        }
+        sketch.offerHash(hash);
+        return false;
+    }
+
+    @Override
+    public boolean pushDownAdd(RowDataPacket row) {
+        return add(row, null);
+    }
+
+    @Override
+    public BigInteger valInt() {
+        if (aggr != null)
+            aggr.endup();
+        return BigInteger.valueOf(sketch.cardinality());
+    }
+
+    @Override
+    public String funcName() {
+        return "APPROX_COUNT_DISTINCT";
+    }
+
+    @Override
+    public SQLExpr toExpression() {
+        SQLMethodInvokeExpr method = new SQLMethodInvokeExpr(funcName());
+        for (Item arg : args) {
+            method.addParameter(arg.toExpression());
+        }
+        return method;
+    }
+
+    @Override
+    protected Item cloneStruct(boolean forCalculate, List<Item> calArgs, boolean isPushDown, List<Field> fields) {
+        if (!forCalculate) {
+            List<Item> newArgs = cloneStructList(args);
+            return new ItemSumApproxCountDistinct(newArgs, false, null);
+        } else {
+            return new ItemSumApproxCountDistinct(calArgs, isPushDown, fields);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2016-2020 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.plan.common.item.function.sumfunc;
+
+import com.actiontech.dble.config.ErrorCode;
+import com.actiontech.dble.net.mysql.RowDataPacket;
+import com.actiontech.dble.plan.common.exception.MySQLOutPutException;
+import com.actiontech.dble.plan.common.field.Field;
+import com.actiontech.dble.plan.common.item.Item;
+import com.alibaba.druid.sql.ast.SQLExpr;
+import com.alibaba.druid.sql.ast.expr.SQLMethodInvokeExpr;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * APPROX_PERCENTILE(expr, percentile), percentile is a constant in [0, 1],
+ * estimated by a t-digest sketch which is merged like
+ * ItemSumApproxCountDistinct does.
+ *
+ * @author ActionTech
+ */
+public class ItemSumApproxPercentile extends ItemSumNum {
+    private TDigest sketch = new TDigest();
+    private boolean cleared = true;
+    private double percentile = -1;
+
+    public ItemSumApproxPercentile(List<Item> args, boolean isPushDown, List<Field> fields) {
+        super(args, isPushDown, fields);
+    }
+
+    @Override
+    public void fixLengthAndDec() {
+        maybeNull = nullValue = true;
+        decimals = NOT_FIXED_DEC;
+        maxLength = floatLength(decimals);
+    }
+
+    @Override
+    public SumFuncType sumType() {
+        return SumFuncType.APPROX_PERCENTILE_FUNC;
+    }
+
+    @Override
+    public ItemResult resultType() {
+        return ItemResult.REAL_RESULT;
+    }
+
+    @Override
+    public Object getTransAggObj() {
+        return sketch;
+    }
+
+    @Override
+    public int getTransSize() {
+        return sketch.byteSize();
+    }
+
+    @Override
+    public void clear() {
+        sketch = new TDigest();
+        cleared = true;
+    }
+
+    @Override
+    public boolean add(RowDataPacket row, Object transObj) {
+        if (transObj != null) {
+            if (cleared) {
+                sketch = (TDigest) transObj;
+            } else {
+                sketch.merge((TDigest) transObj);
+            }
+            cleared = false;
+            return false;
+        }
+        cleared = false;
+        double value = args.get(0).valReal().doubleValue();
+        if (!args.get(0).isNullValue()) {
+            sketch.add(value);
+        }
+        return false;
+    }
+
+    @Override
+    public boolean pushDownAdd(RowDataPacket row) {
+        return add(row, null);
+    }
+
+    @Override
+    public BigDecimal valReal() {
+        if (aggr != null)
+            aggr.endup();
+        if (sketch.isEmpty()) {
+            nullValue = true;
+            return BigDecimal.ZERO;
+        }
+        nullValue = false;
+        return BigDecimal.valueOf(sketch.quantile(getPercentile()));
+    }
+
+    private double getPercentile() {
+        if (percentile < 0) {
+            Item arg = args.get(1);
+            BigDecimal p = arg.valReal();
+            if (!arg.basicConstItem() || arg.isNullValue() || p.signum() < 0 || p.compareTo(BigDecimal.ONE) > 0) {
+                throw new MySQLOutPutException(ErrorCode.ER_WRONG_ARGUMENTS, "",
+                        "the percentile of APPROX_PERCENTILE must be a constant between 0 and 1");
+            }
+            percentile = p.doubleValue();
+        }
+        return percentile;
+    }
+
+    @Override
+    public BigDecimal valDecimal() {
+        return valDecimalFromReal();
+    }
+
+    @Override
+    public String funcName() {
+        return "APPROX_PERCENTILE";
+    }
+
+    @Override
+    public SQLExpr toExpression() {
+        SQLMethodInvokeExpr method = new SQLMethodInvokeExpr(funcName());
+        for (Item arg : args) {
+            method.addParameter(arg.toExpression());
+        }
+        return method;
+    }
+
+    @Override
+    protected Item cloneStruct(boolean forCalculate, List<Item> calArgs, boolean isPushDown, List<Field> fields) {
+        if (!forCalculate) {
+            List<Item> newArgs = cloneStructList(args);
+            return new ItemSumApproxPercentile(newArgs, false, null);
+        } else {
+            return new ItemSumApproxPercentile(calArgs, isPushDown, fields);
+        }
+    }
+}
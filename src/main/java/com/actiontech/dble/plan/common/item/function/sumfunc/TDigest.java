@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2016-2020 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.plan.common.item.function.sumfunc;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * merging t-digest, keeps at most about COMPRESSION centroids whatever the
+ * number of values added, centroids near the tails are kept small so that
+ * extreme percentiles stay accurate.
+ * <p>
+ * values are collected into a buffer which is sorted and merged into the
+ * centroids when it is full; merging two digests adds the centroids of the
+ * other one as weighted values.
+ *
+ * @author ActionTech
+ */
+final class TDigest implements Serializable {
+    private static final long serialVersionUID = -2920871290938471066L;
+
+    private static final int COMPRESSION = 200;
+    private static final int BUFFER_SIZE = COMPRESSION * 5;
+
+    private double[] means = new double[0];
+    private double[] weights = new double[0];
+    private int centroidCount = 0;
+    private double[] bufferMeans = new double[16];
+    private double[] bufferWeights = new double[16];
+    private int bufferSize = 0;
+    private double totalWeight = 0;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    void add(double value) {
+        add(value, 1);
+    }
+
+    private void add(double value, double weight) {
+        if (bufferSize == bufferMeans.length) {
+            if (bufferSize >= BUFFER_SIZE) {
+                compress();
+            } else {
+                bufferMeans = Arrays.copyOf(bufferMeans, bufferSize << 1);
+                bufferWeights = Arrays.copyOf(bufferWeights, bufferSize << 1);
+            }
+        }
+        bufferMeans[bufferSize] = value;
+        bufferWeights[bufferSize] = weight;
+        bufferSize++;
+        totalWeight += weight;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    void merge(TDigest other) {
+        other.compress();
+        for (int i = 0; i < other.centroidCount; i++) {
+            add(other.means[i], other.weights[i]);
+        }
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    boolean isEmpty() {
+        return totalWeight == 0;
+    }
+
+    private void compress() {
+        if (bufferSize == 0) {
+            return;
+        }
+        int n = centroidCount + bufferSize;
+        Integer[] order = new Integer[n];
+        double[] allMeans = Arrays.copyOf(means, n);
+        double[] allWeights = Arrays.copyOf(weights, n);
+        System.arraycopy(bufferMeans, 0, allMeans, centroidCount, bufferSize);
+        System.arraycopy(bufferWeights, 0, allWeights, centroidCount, bufferSize);
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        final double[] keys = allMeans;
+        Arrays.sort(order, (o1, o2) -> Double.compare(keys[o1], keys[o2]));
+
+        double[] newMeans = new double[Math.min(n, 2 * COMPRESSION)];
+        double[] newWeights = new double[newMeans.length];
+        int count = 0;
+        double soFar = 0;
+        double curMean = allMeans[order[0]];
+        double curWeight = allWeights[order[0]];
+        for (int i = 1; i < n; i++) {
+            int idx = order[i];
+            double q = (soFar + curWeight + allWeights[idx]) / totalWeight;
+            double limit = 4 * totalWeight * q * (1 - q) / COMPRESSION;
+            if (curWeight + allWeights[idx] <= limit) {
+                curWeight += allWeights[idx];
+                curMean += (allMeans[idx] - curMean) * allWeights[idx] / curWeight;
+            } else {
+                if (count == newMeans.length) {
+                    newMeans = Arrays.copyOf(newMeans, count << 1);
+                    newWeights = Arrays.copyOf(newWeights, count << 1);
+                }
+                newMeans[count] = curMean;
+                newWeights[count] = curWeight;
+                count++;
+                soFar += curWeight;
+                curMean = allMeans[idx];
+                curWeight = allWeights[idx];
+            }
+        }
+        if (count == newMeans.length) {
+            newMeans = Arrays.copyOf(newMeans, count + 1);
+            newWeights = Arrays.copyOf(newWeights, count + 1);
+        }
+        newMeans[count] = curMean;
+        newWeights[count] = curWeight;
+        count++;
+        means = newMeans;
+        weights = newWeights;
+        centroidCount = count;
+        bufferSize = 0;
+    }
+
+    /**
+     * @param q percentile in [0, 1]
+     */
+    double quantile(double q) {
+        compress();
+        if (centroidCount == 0) {
+            return Double.NaN;
+        }
+        if (centroidCount == 1) {
+            return means[0];
+        }
+        double index = q * totalWeight;
+        if (index <= weights[0] / 2) {
+            return interpolate(min, means[0], index / (weights[0] / 2));
+        }
+        double soFar = weights[0] / 2;
+        for (int i = 0; i < centroidCount - 1; i++) {
+            double step = (weights[i] + weights[i + 1]) / 2;
+            if (soFar + step >= index) {
+                return interpolate(means[i], means[i + 1], (index - soFar) / step);
+            }
+            soFar += step;
+        }
+        double last = weights[centroidCount - 1] / 2;
+        return interpolate(means[centroidCount - 1], max, Math.min(1, (index - soFar) / last));
+    }
+
+    private static double interpolate(double from, double to, double fraction) {
+        return from + (to - from) * fraction;
+    }
+
+    /**
+     * expected size in bytes, used as the trans size of group by
+     */
+    int byteSize() {
+        return (centroidCount + bufferSize) * 16 + 32;
+    }
+}
@@ -108,6 +108,13 @@ public class TableNode extends PlanNode {
         this.tableName = tableName;
     }
 
+    /**
+     * @return the meta of the table, null if the node is built from the columns of a view
+     */
+    public StructureMeta.TableMeta getTableMeta() {
+        return tableMeta;
+    }
+
     @Override
     protected void setUpInnerFields() {
         innerFields.clear();
@@ -0,0 +1,570 @@
+/*
+ * Copyright (C) 2016-2020 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.plan.optimizer;
+
+import com.actiontech.dble.meta.protocol.StructureMeta;
+import com.actiontech.dble.plan.Order;
+import com.actiontech.dble.plan.common.item.Item;
+import com.actiontech.dble.plan.common.item.ItemField;
+import com.actiontech.dble.plan.common.item.function.operator.cmpfunc.*;
+import com.actiontech.dble.plan.common.item.function.operator.logic.ItemCondAnd;
+import com.actiontech.dble.plan.common.item.function.sumfunc.ItemSum;
+import com.actiontech.dble.plan.common.item.function.sumfunc.ItemSumApproxCountDistinct;
+import com.actiontech.dble.plan.common.item.function.sumfunc.ItemSumCount;
+import com.actiontech.dble.plan.common.item.subquery.ItemExistsSubQuery;
+import com.actiontech.dble.plan.common.item.subquery.ItemInSubQuery;
+import com.actiontech.dble.plan.common.item.subquery.ItemScalarSubQuery;
+import com.actiontech.dble.plan.common.item.subquery.ItemSubQuery;
+import com.actiontech.dble.plan.common.ptr.LongPtr;
+import com.actiontech.dble.plan.node.JoinNode;
+import com.actiontech.dble.plan.node.PlanNode;
+import com.actiontech.dble.plan.node.QueryNode;
+import com.actiontech.dble.plan.node.TableNode;
+import com.actiontech.dble.plan.util.FilterUtils;
+import com.alibaba.druid.sql.ast.SQLOrderingSpecification;
+
+import java.util.*;
+
+/**
+ * rewrite the correlated sub queries in where into joins, so that they can be
+ * executed by the join handlers instead of being rejected.
+ * <p>
+ * only the sub queries correlated by equations of the outer columns in the
+ * where of the sub query are rewritten:
+ * <pre>
+ * [NOT] EXISTS (select .. from t where t.a = o.a and P)
+ *      semi join:  o join (select distinct t.a from t where P) on o.a = t.a
+ *      anti join:  o not in join (select distinct t.a from t where P) on o.a = t.a
+ * x [NOT] IN (select t.c from t where t.a = o.a and P)
+ *      the same as exists with one more key x = t.c
+ * x > (select max(t.c) from t where t.a = o.a and P)
+ *      o left join (select t.a, max(t.c) from t where P group by t.a) s on o.a = s.a where x > s.max
+ * </pre>
+ * if the keys of the semi join contain the primary key of the only table of
+ * the sub query, the table is joined directly, so that ER and global tables
+ * can be pushed down.
+ * <p>
+ * the join handlers take null as equal to null, the rows of the sub query with
+ * null keys are filtered, they can't be equal to any outer key in sql. The
+ * outer rows with null keys are kept by the anti join as NOT EXISTS does.
+ * x NOT IN is null if x or any value of the sub query is null, it is rewritten
+ * only if both are the columns which can't be null.
+ * <p>
+ * the outer columns must be referred with the table name or alias, the
+ * other sub queries are left as they are.
+ */
+public final class CorrelatedSubQueryProcessor {
+    private CorrelatedSubQueryProcessor() {
+    }
+
+    private static final String AUTOALIAS = "autoalias_correlated";
+    private static final String KEY_NAME = "autokey";
+    private static final String VALUE_NAME = "autovalue";
+
+    public static PlanNode optimize(PlanNode qtn) {
+        return decorrelate(qtn, new LongPtr(0));
+    }
+
+    private static PlanNode decorrelate(PlanNode qtn, LongPtr aliasIndex) {
+        if (qtn.type() != PlanNode.PlanNodeType.JOIN_INNER) {
+            for (int i = 0; i < qtn.getChildren().size(); i++) {
+                PlanNode child = qtn.getChildren().get(i);
+                qtn.getChildren().set(i, decorrelate(child, aliasIndex));
+            }
+        }
+        Item where = qtn.getWhereFilter();
+        if (where == null || !where.isCorrelatedSubQuery()) {
+            return qtn;
+        }
+        List<Item> filters = new ArrayList<>();
+        splitAnd(where, filters);
+        PlanNode result = qtn;
+        for (int i = 0; i < filters.size(); i++) {
+            Item filter = filters.get(i);
+            if (!filter.isCorrelatedSubQuery()) {
+                continue;
+            }
+            if (result == qtn) {
+                // the star of the outer query must not get the columns of the sub queries
+                expandStarColumn(qtn);
+            }
+            Rewritten rewritten = rewrite(result, filter, aliasIndex);
+            if (rewritten != null) {
+                result = rewritten.query;
+                filters.set(i, rewritten.filter);
+            }
+        }
+        if (result == qtn) {
+            return qtn;
+        }
+        boolean stillCorrelated = false;
+        boolean withSubQuery = false;
+        for (Item filter : filters) {
+            if (filter != null) {
+                stillCorrelated = stillCorrelated || filter.isCorrelatedSubQuery();
+                withSubQuery = withSubQuery || filter.isWithSubQuery();
+            }
+        }
+        qtn.query(null);
+        result.query(FilterUtils.and(filters));
+        result.getSubQueries().addAll(qtn.getSubQueries());
+        qtn.getSubQueries().clear();
+        result.setWithSubQuery(withSubQuery || !result.getSubQueries().isEmpty());
+        result.setContainsSubQuery(result.isWithSubQuery());
+        result.setCorrelatedSubQuery(stillCorrelated);
+        qtn.setWithSubQuery(false);
+        qtn.setContainsSubQuery(false);
+        qtn.setCorrelatedSubQuery(false);
+        return result;
+    }
+
+    private static Rewritten rewrite(PlanNode outer, Item filter, LongPtr aliasIndex) {
+        if (filter instanceof ItemExistsSubQuery) {
+            ItemExistsSubQuery exists = (ItemExistsSubQuery) filter;
+            PlanNode sub = decorrelateSubQuery(exists, aliasIndex);
+            if (sub.getLimitFrom() > 0 || sub.getLimitTo() == 0) {
+                return null;
+            }
+            Correlation correlation = getCorrelation(sub, null, null, false);
+            if (correlation == null) {
+                return null;
+            }
+            sub.setLimitFrom(-1);
+            sub.setLimitTo(-1);
+            return exists.isNot() ? antiJoin(outer, correlation, aliasIndex) : semiJoin(outer, correlation, aliasIndex);
+        } else if (filter instanceof ItemInSubQuery) {
+            ItemInSubQuery in = (ItemInSubQuery) filter;
+            PlanNode sub = decorrelateSubQuery(in, aliasIndex);
+            if (in.getLeftOperand().isWithSubQuery() || sub.getColumnsSelected().size() != 1 || sub.getLimitTo() != -1) {
+                return null;
+            }
+            if (in.isNeg() && (!isNotNullColumn(outer, in.getLeftOperand()) || !isNotNullColumn(sub, sub.getColumnsSelected().get(0)))) {
+                return null;
+            }
+            Correlation correlation = getCorrelation(sub, in.getLeftOperand(), sub.getColumnsSelected().get(0), false);
+            if (correlation == null) {
+                return null;
+            }
+            return in.isNeg() ? antiJoin(outer, correlation, aliasIndex) : semiJoin(outer, correlation, aliasIndex);
+        } else if (isComparison(filter)) {
+            return scalarJoin(outer, filter, aliasIndex);
+        }
+        return null;
+    }
+
+    /**
+     * the sub queries in the sub query first, they may be correlated to it
+     */
+    private static PlanNode decorrelateSubQuery(ItemSubQuery subQuery, LongPtr aliasIndex) {
+        PlanNode sub = decorrelate(subQuery.getPlanNode(), aliasIndex);
+        subQuery.setPlanNode(sub);
+        return sub;
+    }
+
+    /**
+     * split the where of the sub query into the equations with the outer columns and the others
+     *
+     * @param aggregate the select of the sub query is an aggregate which is grouped by the keys
+     * @return null if the sub query is correlated in another way
+     */
+    private static Correlation getCorrelation(PlanNode sub, Item outerKey, Item innerKey, boolean aggregate) {
+        if (sub.type() != PlanNode.PlanNodeType.TABLE && sub.type() != PlanNode.PlanNodeType.JOIN) {
+            return null;
+        }
+        if (!sub.getGroupBys().isEmpty() || sub.getHavingFilter() != null || sub.getWhereFilter() == null) {
+            return null;
+        }
+        // the aggregate without group by gets one row even if no row matches, the semi join can't do it
+        if (!aggregate && withSumFunc(sub.getColumnsSelected())) {
+            return null;
+        }
+        Set<String> innerTables = new HashSet<>();
+        collectTableNames(sub, innerTables);
+        Correlation correlation = new Correlation(sub);
+        if (outerKey != null) {
+            if (referOuter(innerKey, innerTables)) {
+                return null;
+            }
+            correlation.outerKeys.add(outerKey);
+            correlation.innerKeys.add(innerKey);
+        }
+        List<Item> filters = new ArrayList<>();
+        splitAnd(sub.getWhereFilter(), filters);
+        List<Item> localFilters = new ArrayList<>();
+        int correlatedCount = 0;
+        for (Item filter : filters) {
+            if (!referOuter(filter, innerTables)) {
+                localFilters.add(filter);
+                continue;
+            }
+            if (!(filter instanceof ItemFuncEqual)) {
+                return null;
+            }
+            Item left = filter.arguments().get(0);
+            Item right = filter.arguments().get(1);
+            if (isOuterField(left, innerTables) && !referOuter(right, innerTables)) {
+                correlation.outerKeys.add(left);
+                correlation.innerKeys.add(right);
+            } else if (isOuterField(right, innerTables) && !referOuter(left, innerTables)) {
+                correlation.outerKeys.add(right);
+                correlation.innerKeys.add(left);
+            } else {
+                return null;
+            }
+            correlatedCount++;
+        }
+        if (correlatedCount == 0) {
+            return null;
+        }
+        for (Item key : correlation.innerKeys) {
+            localFilters.add(new ItemFuncIsnotnull(key.cloneStruct()));
+        }
+        correlation.localFilter = FilterUtils.and(localFilters);
+        // the columns which are not qualified may be the outer ones too, make sure all of them can be found
+        PlanNode test = sub.copy();
+        test.query(correlation.localFilter == null ? null : correlation.localFilter.cloneStruct());
+        List<Item> testSelects = new ArrayList<>();
+        for (Item key : correlation.innerKeys) {
+            testSelects.add(key.cloneStruct());
+        }
+        test.setColumnsSelected(testSelects);
+        try {
+            test.setUpFields();
+        } catch (Exception e) {
+            return null;
+        }
+        return correlation;
+    }
+
+    private static Rewritten semiJoin(PlanNode outer, Correlation correlation, LongPtr aliasIndex) {
+        PlanNode sub = correlation.sub;
+        List<Item> rightKeys = directJoinKeys(outer, correlation);
+        PlanNode right;
+        if (rightKeys != null) {
+            // at most one row for every outer row, join the table directly
+            sub.query(correlation.localFilter);
+            sub.setColumnsSelected(new ArrayList<>(rightKeys));
+            sub.setOrderBys(new LinkedList<Order>());
+            right = sub;
+        } else {
+            String alias = nextAlias(aliasIndex);
+            right = buildDerived(correlation, alias, false);
+            rightKeys = derivedKeys(alias, correlation.innerKeys.size());
+        }
+        JoinNode join = buildJoin(outer, right);
+        List<Item> joinFilters = new ArrayList<>();
+        for (int i = 0; i < rightKeys.size(); i++) {
+            joinFilters.add(FilterUtils.equal(correlation.outerKeys.get(i), rightKeys.get(i)));
+        }
+        return new Rewritten(join, FilterUtils.and(joinFilters));
+    }
+
+    private static Rewritten antiJoin(PlanNode outer, Correlation correlation, LongPtr aliasIndex) {
+        String alias = nextAlias(aliasIndex);
+        PlanNode right = buildDerived(correlation, alias, false);
+        List<Item> rightKeys = derivedKeys(alias, correlation.innerKeys.size());
+        JoinNode join = buildJoin(outer, right);
+        join.setLeftOuterJoin().setNotIn(true);
+        for (int i = 0; i < rightKeys.size(); i++) {
+            join.addJoinFilter(FilterUtils.equal(correlation.outerKeys.get(i), rightKeys.get(i)));
+        }
+        return new Rewritten(join, null);
+    }
+
+    private static Rewritten scalarJoin(PlanNode outer, Item filter, LongPtr aliasIndex) {
+        int index = filter.arguments().get(0) instanceof ItemScalarSubQuery ? 0 : 1;
+        Item other = filter.arguments().get(1 - index);
+        Item scalar = filter.arguments().get(index);
+        if (!(scalar instanceof ItemScalarSubQuery) || other.isWithSubQuery()) {
+            return null;
+        }
+        PlanNode sub = decorrelateSubQuery((ItemScalarSubQuery) scalar, aliasIndex);
+        Item value = sub.getColumnsSelected().get(0);
+        // count gets 0 without rows, but the left join gets null
+        if (!(value instanceof ItemSum) || value instanceof ItemSumCount || value instanceof ItemSumApproxCountDistinct ||
+                sub.getLimitTo() != -1) {
+            return null;
+        }
+        Correlation correlation = getCorrelation(sub, null, null, true);
+        if (correlation == null) {
+            return null;
+        }
+        correlation.value = value;
+        String alias = nextAlias(aliasIndex);
+        PlanNode right = buildDerived(correlation, alias, true);
+        List<Item> rightKeys = derivedKeys(alias, correlation.innerKeys.size());
+        JoinNode join = buildJoin(outer, right);
+        join.setLeftOuterJoin();
+        for (int i = 0; i < rightKeys.size(); i++) {
+            join.addJoinFilter(FilterUtils.equal(correlation.outerKeys.get(i), rightKeys.get(i)));
+        }
+        filter.arguments().set(index, new ItemField(null, alias, VALUE_NAME));
+        // the name is compared as the filter
+        filter.setItemName(null);
+        filter.setWithSubQuery(false);
+        filter.setCorrelatedSubQuery(false);
+        return new Rewritten(join, filter);
+    }
+
+    /**
+     * @return the keys of the table of the sub query if they contain its primary key, else null
+     */
+    private static List<Item> directJoinKeys(PlanNode outer, Correlation correlation) {
+        if (correlation.sub.type() != PlanNode.PlanNodeType.TABLE) {
+            return null;
+        }
+        TableNode table = (TableNode) correlation.sub;
+        StructureMeta.TableMeta tableMeta = table.getTableMeta();
+        if (tableMeta == null || !tableMeta.hasPrimary()) {
+            return null;
+        }
+        String tableName = table.getAlias() == null ? table.getTableName() : table.getAlias();
+        Set<String> outerTables = new HashSet<>();
+        collectTableNames(outer, outerTables);
+        if (outerTables.contains(tableName.toLowerCase())) {
+            return null;
+        }
+        Set<String> keyColumns = new HashSet<>();
+        List<Item> keys = new ArrayList<>();
+        for (Item key : correlation.innerKeys) {
+            if (!(key instanceof ItemField)) {
+                return null;
+            }
+            keyColumns.add(key.getItemName().toLowerCase());
+            keys.add(new ItemField(null, tableName, key.getItemName()));
+        }
+        for (String column : tableMeta.getPrimary().getColumnsList()) {
+            if (!keyColumns.contains(column.toLowerCase())) {
+                return null;
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * select distinct keys from sub where local filters, or select keys, value from sub where local filters group by keys
+     */
+    private static PlanNode buildDerived(Correlation correlation, String alias, boolean aggregate) {
+        PlanNode sub = correlation.sub;
+        List<Item> selects = new ArrayList<>();
+        List<Order> groupBys = new LinkedList<>();
+        for (int i = 0; i < correlation.innerKeys.size(); i++) {
+            Item key = correlation.innerKeys.get(i);
+            if (aggregate) {
+                groupBys.add(new Order(key.cloneStruct(), SQLOrderingSpecification.ASC));
+            }
+            key.setAlias(KEY_NAME + i);
+            selects.add(key);
+        }
+        if (aggregate) {
+            correlation.value.setAlias(VALUE_NAME);
+            selects.add(correlation.value);
+            sub.setGroupBys(groupBys);
+        } else {
+            sub.setDistinct(true);
+        }
+        sub.query(correlation.localFilter);
+        sub.setColumnsSelected(selects);
+        sub.setOrderBys(new LinkedList<Order>());
+        QueryNode derived = new QueryNode(sub);
+        derived.setKeepFieldSchema(true);
+        derived.setAlias(alias);
+        return derived;
+    }
+
+    private static List<Item> derivedKeys(String alias, int count) {
+        List<Item> keys = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            keys.add(new ItemField(null, alias, KEY_NAME + i));
+        }
+        return keys;
+    }
+
+    /**
+     * join the outer query with the sub query, the clauses except from and where move to the join
+     */
+    private static JoinNode buildJoin(PlanNode outer, PlanNode right) {
+        JoinNode join = new JoinNode(outer, right);
+        join.setSql(outer.getSql());
+        outer.setSql(null);
+        join.select(outer.getColumnsSelected());
+        outer.setColumnsSelected(new ArrayList<Item>());
+        join.setDistinct(outer.isDistinct());
+        outer.setDistinct(false);
+        if (!outer.getOrderBys().isEmpty()) {
+            join.setOrderBys(new ArrayList<>(outer.getOrderBys()));
+            outer.getOrderBys().clear();
+        }
+        if (!outer.getGroupBys().isEmpty()) {
+            join.setGroupBys(new ArrayList<>(outer.getGroupBys()));
+            outer.getGroupBys().clear();
+        }
+        join.having(outer.getHavingFilter());
+        outer.having(null);
+        join.setLimitFrom(outer.getLimitFrom());
+        join.setLimitTo(outer.getLimitTo());
+        outer.setLimitFrom(-1);
+        outer.setLimitTo(-1);
+        return join;
+    }
+
+    /**
+     * select * from o where .. -> select o.* from o where .., for the join may add columns
+     */
+    private static void expandStarColumn(PlanNode qtn) {
+        if (qtn.type() == PlanNode.PlanNodeType.JOIN && ((JoinNode) qtn).getUsingFields() != null) {
+            return;
+        }
+        List<Item> selects = new ArrayList<>();
+        for (Item select : qtn.getColumnsSelected()) {
+            if (select.isWild() && select.getTableName() == null) {
+                List<String> tables = new ArrayList<>();
+                collectTableNames(qtn, tables);
+                for (String table : tables) {
+                    selects.add(new ItemField(null, table, "*"));
+                }
+            } else {
+                selects.add(select);
+            }
+        }
+        qtn.setColumnsSelected(selects);
+    }
+
+    private static void collectTableNames(PlanNode node, Collection<String> tables) {
+        if (node.getAlias() != null) {
+            tables.add(tables instanceof Set ? node.getAlias().toLowerCase() : node.getAlias());
+        } else if (node.type() == PlanNode.PlanNodeType.TABLE) {
+            String table = ((TableNode) node).getTableName();
+            tables.add(tables instanceof Set ? table.toLowerCase() : table);
+        } else if (node.type() == PlanNode.PlanNodeType.JOIN) {
+            for (PlanNode child : node.getChildren()) {
+                collectTableNames(child, tables);
+            }
+        }
+    }
+
+    /**
+     * @return true if the item is a column of a table of the node which can't be null
+     */
+    private static boolean isNotNullColumn(PlanNode node, Item item) {
+        if (!(item instanceof ItemField) || item.isWild()) {
+            return false;
+        }
+        List<TableNode> tables = new ArrayList<>();
+        collectNotNullExtendedTables(node, tables);
+        StructureMeta.ColumnMeta column = null;
+        for (TableNode table : tables) {
+            String tableName = table.getAlias() == null ? table.getTableName() : table.getAlias();
+            if (item.getTableName() != null && !item.getTableName().equalsIgnoreCase(tableName)) {
+                continue;
+            }
+            if (table.getTableMeta() == null) {
+                return false;
+            }
+            for (StructureMeta.ColumnMeta columnMeta : table.getTableMeta().getColumnsList()) {
+                if (columnMeta.getName().equalsIgnoreCase(item.getItemName())) {
+                    if (column != null) {
+                        // ambiguous
+                        return false;
+                    }
+                    column = columnMeta;
+                }
+            }
+        }
+        return column != null && !column.getCanNull();
+    }
+
+    /**
+     * the tables whose columns are not made null by the outer joins
+     */
+    private static void collectNotNullExtendedTables(PlanNode node, List<TableNode> tables) {
+        if (node.type() == PlanNode.PlanNodeType.TABLE) {
+            tables.add((TableNode) node);
+        } else if (node.type() == PlanNode.PlanNodeType.JOIN) {
+            JoinNode join = (JoinNode) node;
+            if (join.isInnerJoin() || join.isLeftOuterJoin()) {
+                collectNotNullExtendedTables(join.getLeftNode(), tables);
+            }
+            if (join.isInnerJoin()) {
+                collectNotNullExtendedTables(join.getRightNode(), tables);
+            }
+        }
+    }
+
+    private static boolean isOuterField(Item item, Set<String> innerTables) {
+        return item instanceof ItemField && item.getTableName() != null && !innerTables.contains(item.getTableName().toLowerCase());
+    }
+
+    private static boolean referOuter(Item item, Set<String> innerTables) {
+        if (item == null) {
+            return false;
+        } else if (item instanceof ItemSubQuery) {
+            // can't know what the sub query refers, take it as outer if it's correlated
+            return item.isCorrelatedSubQuery();
+        } else if (item instanceof ItemField) {
+            return isOuterField(item, innerTables);
+        } else if (item.arguments() != null) {
+            for (Item arg : item.arguments()) {
+                if (referOuter(arg, innerTables)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean withSumFunc(List<Item> items) {
+        for (Item item : items) {
+            if (item instanceof ItemSum || (item.arguments() != null && withSumFunc(item.arguments()))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isComparison(Item filter) {
+        return filter instanceof ItemFuncEqual || filter instanceof ItemFuncNe || filter instanceof ItemFuncGt ||
+                filter instanceof ItemFuncGe || filter instanceof ItemFuncLt || filter instanceof ItemFuncLe;
+    }
+
+    private static void splitAnd(Item filter, List<Item> filters) {
+        if (filter instanceof ItemCondAnd) {
+            for (Item arg : filter.arguments()) {
+                splitAnd(arg, filters);
+            }
+        } else {
+            filters.add(filter);
+        }
+    }
+
+    private static String nextAlias(LongPtr aliasIndex) {
+        long index = aliasIndex.get();
+        aliasIndex.set(index + 1);
+        return AUTOALIAS + index;
+    }
+
+    private static class Correlation {
+        private final PlanNode sub;
+        private final List<Item> outerKeys = new ArrayList<>();
+        private final List<Item> innerKeys = new ArrayList<>();
+        private Item localFilter;
+        private Item value;
+
+        Correlation(PlanNode sub) {
+            this.sub = sub;
+        }
+    }
+
+    private static class Rewritten {
+        private final PlanNode query; // the join of the outer query and the sub query
+        private final Item filter; // replaces the sub query in the where, null if the join does all
+
+        Rewritten(PlanNode query, Item filter) {
+            this.query = query;
+            this.filter = filter;
+        }
+    }
+}
@@ -186,6 +186,8 @@ public final class ComplexQueryPlanUtil {
             return "AGGREGATE";
         } else if (handler instanceof DistinctHandler) {
             return "DISTINCT";
+        } else if (handler instanceof UnionDistinctHandler) {
+            return "HASH_DISTINCT";
         } else if (handler instanceof LimitHandler) {
             return "LIMIT";
         } else if (handler instanceof WhereHandler) {
@@ -142,9 +142,50 @@ public final class PlanUtil {
             return true;
         if (sumFunc.hasWithDistinct())
             return true;
+        if (isApproxSum(sumFunc))
+            return true;
         return sumFunc.sumType() == SumFuncType.UDF_SUM_FUNC;
     }
 
+    /**
+     * approximate aggregates are computed by dble only, mysql knows nothing about them
+     */
+    public static boolean isApproxSum(ItemSum sumFunc) {
+        return sumFunc.sumType() == SumFuncType.APPROX_COUNT_DISTINCT_FUNC ||
+                sumFunc.sumType() == SumFuncType.APPROX_PERCENTILE_FUNC;
+    }
+
+    public static boolean existApproxSum(PlanNode node) {
+        for (Item sel : node.getColumnsSelected()) {
+            if (existApproxSum(sel)) {
+                return true;
+            }
+        }
+        for (PlanNode child : node.getChildren()) {
+            if (existApproxSum(child)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean existApproxSum(Item item) {
+        if (item == null) {
+            return false;
+        }
+        if (item.type() == Item.ItemType.SUM_FUNC_ITEM && isApproxSum((ItemSum) item)) {
+            return true;
+        }
+        if (item.isWithSumFunc() && item.arguments() != null) {
+            for (Item arg : item.arguments()) {
+                if (existApproxSum(arg)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
     public static Item pushDownItem(PlanNode node, Item sel) {
         return pushDownItem(node, sel, false);
     }
@@ -670,6 +670,10 @@ public class MySQLItemVisitor extends MySqlASTVisitorAdapter {
             case "BIT_XOR":
                 item = new ItemSumXor(args, false, null);
                 break;
+            case "APPROX_COUNT_DISTINCT":
+            case "APPROX_PERCENTILE":
+                item = createApproxSum(funcName, args);
+                break;
             case "IF":
                 item = new ItemFuncIf(args);
                 break;
@@ -937,4 +941,17 @@ public class MySQLItemVisitor extends MySqlASTVisitorAdapter {
         expr.accept(ov);
         item.setItemName(sb.toString());
     }
+
+    private ItemSum createApproxSum(String funcName, List<Item> args) {
+        if ("APPROX_PERCENTILE".equals(funcName)) {
+            if (args.size() != 2) {
+                throw new MySQLOutPutException(ErrorCode.ER_OPTIMIZER, "", "Incorrect parameter count in the call to function " + funcName);
+            }
+            return new ItemSumApproxPercentile(args, false, null);
+        }
+        if (args.isEmpty()) {
+            throw new MySQLOutPutException(ErrorCode.ER_OPTIMIZER, "", "Incorrect parameter count in the call to function " + funcName);
+        }
+        return new ItemSumApproxCountDistinct(args, false, null);
+    }
 }
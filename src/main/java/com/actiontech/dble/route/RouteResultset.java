@@ -6,9 +6,11 @@
 package com.actiontech.dble.route;
 
 import com.actiontech.dble.config.loader.zkprocess.zookeeper.process.DDLInfo;
+import com.actiontech.dble.sqlengine.mpp.PartialAggregation;
 import com.actiontech.dble.util.FormatUtil;
 import com.actiontech.dble.util.StringUtil;
 import com.alibaba.druid.sql.ast.SQLStatement;
+import com.alibaba.druid.stat.TableStat.Condition;
 
 import java.io.Serializable;
 import java.util.List;
@@ -61,6 +63,15 @@ public final class RouteResultset implements Serializable {
     // if force slave set runOnSlave,default null means not effect
     private Boolean runOnSlave = null;
     private String[] groupByCols;
+    // the aggregates pushed down to the data nodes and merged by the group by columns
+    private PartialAggregation partialAggregation;
+
+    // tables and conditions found by the route parser, kept for sql statistics
+    private transient List<String> statTables;
+    private transient List<Condition> statConditions;
+    private transient String statCurrentTable;
+    // the statement of the client parsed by the route, the sql statistics print it instead of parsing the sql again
+    private transient SQLStatement statStatement;
 
     public String[] getGroupByCols() {
         return groupByCols;
@@ -69,6 +80,47 @@ public final class RouteResultset implements Serializable {
     public void setGroupByCols(String[] groupByCols) {
         this.groupByCols = groupByCols;
     }
+
+    public PartialAggregation getPartialAggregation() {
+        return partialAggregation;
+    }
+
+    public void setPartialAggregation(PartialAggregation partialAggregation) {
+        this.partialAggregation = partialAggregation;
+    }
+
+    public List<String> getStatTables() {
+        return statTables;
+    }
+
+    public void setStatTables(List<String> statTables) {
+        this.statTables = statTables;
+    }
+
+    public List<Condition> getStatConditions() {
+        return statConditions;
+    }
+
+    public void setStatConditions(List<Condition> statConditions) {
+        this.statConditions = statConditions;
+    }
+
+    public String getStatCurrentTable() {
+        return statCurrentTable;
+    }
+
+    public void setStatCurrentTable(String statCurrentTable) {
+        this.statCurrentTable = statCurrentTable;
+    }
+
+    public SQLStatement getStatStatement() {
+        return statStatement;
+    }
+
+    public void setStatStatement(SQLStatement statStatement) {
+        this.statStatement = statStatement;
+    }
+
     public boolean isNeedOptimizer() {
         return needOptimizer;
     }
@@ -163,6 +215,10 @@ public final class RouteResultset implements Serializable {
         return schema != null && table != null && cacheKey != null;
     }
 
+    public String getCacheKey() {
+        return cacheKey;
+    }
+
     public void setCacheKey(String cacheKey) {
         this.cacheKey = cacheKey;
     }
@@ -54,6 +54,7 @@ public final class RouteResultsetNode implements Serializable, Comparable<RouteR
 
     public void setStatement(String statement) {
         this.statement = statement;
+        this.statementHash = statement.hashCode();
     }
 
     public void setCanRunInReadDB(boolean canRunInReadDB) {
@@ -0,0 +1,206 @@
+/*
+ * Copyright (C) 2016-2020 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+package com.actiontech.dble.route.cache;
+
+import com.actiontech.dble.cache.CachePool;
+import com.actiontech.dble.cache.CacheStatic;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ParentKeyLocationCache, the data node of the parent row kept by the join key value,
+ * so that the insert of a child table whose join key is not the sharding column of
+ * the parent needn't query all the data nodes of the root parent again.
+ * <p>
+ * the key contains the generation of the parent table, the generation is increased
+ * when the rows of the parent table are deleted or replaced, the entries of the old
+ * generation are never hit and dropped as the least recently used ones.
+ * A key should be made before the lookup of the data node, so that a location found
+ * while a delete is running is not kept for the new generation.
+ * <p>
+ * the cache is bounded and every segment drops its least recently used entry.
+ * It is cleared by reload and by ddl.
+ *
+ * @author ActionTech
+ */
+public final class ParentKeyLocationCache implements CachePool {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ParentKeyLocationCache.class);
+    private static final ParentKeyLocationCache INSTANCE = new ParentKeyLocationCache();
+    private static final int SEGMENT_COUNT = 16;
+
+    private volatile Segment[] segments = null;
+    private volatile long maxSize = 0;
+    private final ConcurrentMap<String, AtomicLong> generations = new ConcurrentHashMap<>();
+    private final LongAdder accessTimes = new LongAdder();
+    private final LongAdder hitTimes = new LongAdder();
+    private final LongAdder putTimes = new LongAdder();
+    private volatile long lastAccessTime = 0;
+    private volatile long lastPutTime = 0;
+
+    private ParentKeyLocationCache() {
+    }
+
+    public static ParentKeyLocationCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param size the max count of the locations, 0 means the cache is not used
+     */
+    public void init(int size) {
+        if (size <= 0) {
+            segments = null;
+            maxSize = 0;
+            return;
+        }
+        int segmentSize = Math.max(1, size / SEGMENT_COUNT);
+        Segment[] newSegments = new Segment[SEGMENT_COUNT];
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            newSegments[i] = new Segment(segmentSize);
+        }
+        maxSize = (long) segmentSize * SEGMENT_COUNT;
+        segments = newSegments;
+        LOGGER.info("er parent key cache is used, max size is " + maxSize);
+    }
+
+    public boolean isEnabled() {
+        return segments != null;
+    }
+
+    /**
+     * @param parentTable the direct parent table of the child table
+     * @param keyValue    the value of the join key without apostrophe
+     * @return the key of the current generation of the parent table
+     */
+    public String keyOf(String schema, String parentTable, String keyValue) {
+        String table = tableKey(schema, parentTable);
+        AtomicLong generation = generations.get(table);
+        return table + '#' + (generation == null ? 0 : generation.get()) + '#' + keyValue;
+    }
+
+    /**
+     * @return the data node of the key, null if it is not cached
+     */
+    public String getDataNode(String key) {
+        String dataNode = (String) get(key);
+        if (dataNode != null) {
+            hitTimes.increment();
+        }
+        return dataNode;
+    }
+
+    /**
+     * the rows of the table may be moved or removed, all the locations of it are not used any more
+     */
+    public void invalidate(String schema, String table) {
+        if (!isEnabled()) {
+            return;
+        }
+        generations.computeIfAbsent(tableKey(schema, table), k -> new AtomicLong()).incrementAndGet();
+    }
+
+    private static String tableKey(String schema, String table) {
+        return schema.toLowerCase() + '.' + table.toLowerCase();
+    }
+
+    private Segment segmentFor(Segment[] current, Object key) {
+        int h = key.hashCode();
+        h ^= h >>> 16;
+        return current[h & (SEGMENT_COUNT - 1)];
+    }
+
+    @Override
+    public void putIfAbsent(Object key, Object value) {
+        Segment[] current = segments;
+        if (current == null) {
+            return;
+        }
+        Segment segment = segmentFor(current, key);
+        synchronized (segment) {
+            if (segment.containsKey(key)) {
+                return;
+            }
+            segment.put(key, value);
+        }
+        putTimes.increment();
+        lastPutTime = System.currentTimeMillis();
+    }
+
+    @Override
+    public Object get(Object key) {
+        Segment[] current = segments;
+        if (current == null) {
+            return null;
+        }
+        accessTimes.increment();
+        lastAccessTime = System.currentTimeMillis();
+        Segment segment = segmentFor(current, key);
+        synchronized (segment) {
+            return segment.get(key);
+        }
+    }
+
+    @Override
+    public void clearCache() {
+        Segment[] current = segments;
+        if (current == null) {
+            return;
+        }
+        for (Segment segment : current) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    @Override
+    public CacheStatic getCacheStatic() {
+        CacheStatic cacheStatic = new CacheStatic();
+        cacheStatic.setMaxSize(maxSize);
+        long itemSize = 0;
+        Segment[] current = segments;
+        if (current != null) {
+            for (Segment segment : current) {
+                synchronized (segment) {
+                    itemSize += segment.size();
+                }
+            }
+        }
+        cacheStatic.setItemSize(itemSize);
+        cacheStatic.setAccessTimes(accessTimes.sum());
+        cacheStatic.setHitTimes(hitTimes.sum());
+        cacheStatic.setPutTimes(putTimes.sum());
+        cacheStatic.setLastAccessTime(lastAccessTime);
+        cacheStatic.setLastPutTime(lastPutTime);
+        return cacheStatic;
+    }
+
+    @Override
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    private static final class Segment extends LinkedHashMap<Object, Object> {
+        private static final long serialVersionUID = 4172950632284871302L;
+        private final int capacity;
+
+        private Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Object, Object> eldest) {
+            return size() > capacity;
+        }
+    }
+}
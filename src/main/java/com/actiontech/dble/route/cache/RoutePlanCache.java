@@ -0,0 +1,296 @@
+/*
+ * Copyright (C) 2016-2020 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+package com.actiontech.dble.route.cache;
+
+import com.actiontech.dble.DbleServer;
+import com.actiontech.dble.cache.CachePool;
+import com.actiontech.dble.cache.CacheStatic;
+import com.actiontech.dble.config.model.SchemaConfig;
+import com.actiontech.dble.config.model.TableConfig;
+import com.actiontech.dble.route.RouteResultset;
+import com.actiontech.dble.route.RouteResultsetNode;
+import com.actiontech.dble.route.parser.util.SqlFingerprint;
+import com.actiontech.dble.server.parser.ServerParse;
+import com.actiontech.dble.util.StringUtil;
+import com.alibaba.druid.stat.TableStat.Condition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * RoutePlanCache, route templates keyed by schema, user and sql fingerprint.
+ * <p>
+ * only the select of one sharding table which is routed to one data node by
+ * the equal condition of the sharding column is cached. A hit only calls the
+ * partition algorithm with the new sharding value, the sql is neither parsed
+ * nor analyzed again. A template is made from a route done by the parser and
+ * checked against it, so that it gives the same data node for the same sql.
+ * <p>
+ * the cache is bounded and every segment drops its least recently used
+ * template. It is cleared by reload and by ddl.
+ *
+ * @author ActionTech
+ */
+public final class RoutePlanCache implements CachePool {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RoutePlanCache.class);
+    private static final RoutePlanCache INSTANCE = new RoutePlanCache();
+    private static final int SEGMENT_COUNT = 16;
+
+    private volatile Segment[] segments = null;
+    private volatile long maxSize = 0;
+    private final LongAdder accessTimes = new LongAdder();
+    private final LongAdder hitTimes = new LongAdder();
+    private final LongAdder putTimes = new LongAdder();
+    private volatile long lastAccessTime = 0;
+    private volatile long lastPutTime = 0;
+
+    private RoutePlanCache() {
+    }
+
+    public static RoutePlanCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param size the max count of templates, 0 means the cache is not used
+     */
+    public void init(int size) {
+        if (size <= 0) {
+            segments = null;
+            maxSize = 0;
+            return;
+        }
+        int segmentSize = Math.max(1, size / SEGMENT_COUNT);
+        Segment[] newSegments = new Segment[SEGMENT_COUNT];
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            newSegments[i] = new Segment(segmentSize);
+        }
+        maxSize = (long) segmentSize * SEGMENT_COUNT;
+        segments = newSegments;
+        LOGGER.info("route plan cache is used, max size is " + maxSize);
+    }
+
+    public boolean isEnabled() {
+        return segments != null;
+    }
+
+    /**
+     * @return the route of the template, null if it is not cached or the template can't route the sql
+     */
+    public RouteResultset route(String key, SqlFingerprint fingerprint, String stmt, int sqlType) {
+        RoutePlanTemplate template = (RoutePlanTemplate) get(key);
+        if (template == null) {
+            return null;
+        }
+        try {
+            RouteResultset rrs = template.route(stmt, sqlType, fingerprint.getParams());
+            if (rrs != null) {
+                hitTimes.increment();
+            }
+            return rrs;
+        } catch (RuntimeException e) {
+            // the parser will report the error of the value
+            return null;
+        }
+    }
+
+    /**
+     * keep the template of the route if the route only depends on the sharding value
+     */
+    public void tryCache(String key, SqlFingerprint fingerprint, String stmt, RouteResultset rrs) {
+        if (!isEnabled() || rrs == null) {
+            return;
+        }
+        try {
+            RoutePlanTemplate template = buildTemplate(fingerprint, stmt, rrs);
+            if (template != null) {
+                putIfAbsent(key, template);
+            }
+        } catch (RuntimeException e) {
+            LOGGER.debug("route of sql [" + stmt + "] is not cached", e);
+        }
+    }
+
+    private static RoutePlanTemplate buildTemplate(SqlFingerprint fingerprint, String stmt, RouteResultset rrs) {
+        RouteResultsetNode[] nodes = rrs.getNodes();
+        if (fingerprint.hasDisjunction() || rrs.getSqlType() != ServerParse.SELECT || rrs.isNeedOptimizer() ||
+                rrs.isGlobalTable() || rrs.getCanRunInReadDB() != null || rrs.getRunOnSlave() != null ||
+                nodes == null || nodes.length != 1 || !stmt.equals(rrs.getStatement()) ||
+                !stmt.equals(nodes[0].getStatement()) || rrs.getStatTables() == null || rrs.getStatTables().size() != 1) {
+            return null;
+        }
+        TableConfig tc = getShardingTable(rrs);
+        if (tc == null) {
+            return null;
+        }
+        Object value = getShardingValue(rrs.getStatConditions(), tc.getPartitionColumn());
+        if (value == null) {
+            return null;
+        }
+        int shardingParam = indexOfParam(fingerprint.getParams(), value.toString());
+        if (shardingParam < 0) {
+            return null;
+        }
+        RoutePlanTemplate template = new RoutePlanTemplate(tc, shardingParam, rrs);
+        if (!nodes[0].getName().equals(template.calculate(value.toString()))) {
+            return null;
+        }
+        return template;
+    }
+
+    private static TableConfig getShardingTable(RouteResultset rrs) {
+        if (rrs.getSchema() == null || rrs.getTable() == null) {
+            return null;
+        }
+        SchemaConfig schema = DbleServer.getInstance().getConfig().getSchemas().get(rrs.getSchema());
+        if (schema == null) {
+            return null;
+        }
+        TableConfig tc = schema.getTables().get(rrs.getTable());
+        if (tc == null || tc.isGlobalTable() || tc.getParentTC() != null || tc.getPartitionColumn() == null ||
+                tc.getRule() == null) {
+            return null;
+        }
+        return tc;
+    }
+
+    /**
+     * @return the only value of the sharding column, null if there are more conditions of it
+     */
+    private static Object getShardingValue(List<Condition> conditions, String partitionColumn) {
+        if (conditions == null) {
+            return null;
+        }
+        Object value = null;
+        for (Condition condition : conditions) {
+            String column = StringUtil.removeBackQuote(condition.getColumn().getName());
+            if (!column.equalsIgnoreCase(partitionColumn)) {
+                continue;
+            }
+            String operator = condition.getOperator();
+            if (value != null || condition.getValues().size() != 1 ||
+                    !("=".equals(operator) || "in".equalsIgnoreCase(operator))) {
+                return null;
+            }
+            value = condition.getValues().get(0);
+            if (value == null) {
+                return null;
+            }
+        }
+        return value;
+    }
+
+    /**
+     * @return the index of the only param equals to the value, -1 if not found or not only
+     */
+    private static int indexOfParam(List<String> params, String value) {
+        int index = -1;
+        for (int i = 0; i < params.size(); i++) {
+            if (value.equals(params.get(i))) {
+                if (index >= 0) {
+                    return -1;
+                }
+                index = i;
+            }
+        }
+        return index;
+    }
+
+    private Segment segmentFor(Segment[] current, Object key) {
+        int h = key.hashCode();
+        h ^= h >>> 16;
+        return current[h & (SEGMENT_COUNT - 1)];
+    }
+
+    @Override
+    public void putIfAbsent(Object key, Object value) {
+        Segment[] current = segments;
+        if (current == null) {
+            return;
+        }
+        Segment segment = segmentFor(current, key);
+        synchronized (segment) {
+            if (segment.containsKey(key)) {
+                return;
+            }
+            segment.put(key, value);
+        }
+        putTimes.increment();
+        lastPutTime = System.currentTimeMillis();
+    }
+
+    @Override
+    public Object get(Object key) {
+        Segment[] current = segments;
+        if (current == null) {
+            return null;
+        }
+        accessTimes.increment();
+        lastAccessTime = System.currentTimeMillis();
+        Segment segment = segmentFor(current, key);
+        synchronized (segment) {
+            return segment.get(key);
+        }
+    }
+
+    @Override
+    public void clearCache() {
+        Segment[] current = segments;
+        if (current == null) {
+            return;
+        }
+        for (Segment segment : current) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    @Override
+    public CacheStatic getCacheStatic() {
+        CacheStatic cacheStatic = new CacheStatic();
+        cacheStatic.setMaxSize(maxSize);
+        long itemSize = 0;
+        Segment[] current = segments;
+        if (current != null) {
+            for (Segment segment : current) {
+                synchronized (segment) {
+                    itemSize += segment.size();
+                }
+            }
+        }
+        cacheStatic.setItemSize(itemSize);
+        cacheStatic.setAccessTimes(accessTimes.sum());
+        cacheStatic.setHitTimes(hitTimes.sum());
+        cacheStatic.setPutTimes(putTimes.sum());
+        cacheStatic.setLastAccessTime(lastAccessTime);
+        cacheStatic.setLastPutTime(lastPutTime);
+        return cacheStatic;
+    }
+
+    @Override
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    private static final class Segment extends LinkedHashMap<Object, Object> {
+        private static final long serialVersionUID = -2412436384290226617L;
+        private final int capacity;
+
+        private Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Object, Object> eldest) {
+            return size() > capacity;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2016-2020 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+package com.actiontech.dble.route.cache;
+
+import com.actiontech.dble.config.model.TableConfig;
+import com.actiontech.dble.route.RouteResultset;
+import com.actiontech.dble.route.RouteResultsetNode;
+import com.alibaba.druid.sql.ast.SQLStatement;
+
+import java.util.List;
+
+/**
+ * what is left of a route after the literals are taken out: the sharding
+ * table and the position of the sharding value in the parameters of the
+ * fingerprint. Everything else of the route does not depend on the literals.
+ *
+ * @author ActionTech
+ */
+final class RoutePlanTemplate {
+    private final TableConfig tableConfig;
+    private final int shardingParam;
+    private final String schema;
+    private final String table;
+    private final String tableAlias;
+    private final String cacheKey;
+    private final boolean cacheAble;
+    private final List<String> statTables;
+    // only printed as parameterized sql, which is the same for all the sqls of the fingerprint
+    private final SQLStatement statStatement;
+
+    RoutePlanTemplate(TableConfig tableConfig, int shardingParam, RouteResultset rrs) {
+        this.tableConfig = tableConfig;
+        this.shardingParam = shardingParam;
+        this.schema = rrs.getSchema();
+        this.table = rrs.getTable();
+        this.tableAlias = rrs.getTableAlias();
+        this.cacheKey = rrs.getCacheKey();
+        this.cacheAble = rrs.isCacheAble();
+        this.statTables = rrs.getStatTables();
+        this.statStatement = rrs.getStatStatement();
+    }
+
+    /**
+     * @return the data node of the sharding value, null if it can't be found
+     */
+    String calculate(String value) {
+        Integer nodeIndex = tableConfig.getRule().getRuleAlgorithm().calculate(value);
+        if (nodeIndex == null || nodeIndex < 0 || nodeIndex >= tableConfig.getDataNodes().size()) {
+            return null;
+        }
+        return tableConfig.getDataNodes().get(nodeIndex);
+    }
+
+    RouteResultset route(String stmt, int sqlType, List<String> params) {
+        String value = params.get(shardingParam);
+        if (value == null) {
+            return null;
+        }
+        String dataNode = calculate(value);
+        if (dataNode == null) {
+            return null;
+        }
+        RouteResultset rrs = new RouteResultset(stmt, sqlType);
+        rrs.setSchema(schema);
+        rrs.setTable(table);
+        rrs.setTableAlias(tableAlias);
+        rrs.setCacheKey(cacheKey);
+        rrs.setCacheAble(cacheAble);
+        rrs.setStatTables(statTables);
+        rrs.setStatStatement(statStatement);
+        rrs.setNodes(new RouteResultsetNode[]{new RouteResultsetNode(dataNode, sqlType, stmt)});
+        rrs.setFinishedRoute(true);
+        return rrs;
+    }
+}
@@ -5,6 +5,7 @@
 
 package com.actiontech.dble.route.impl;
 
+import com.actiontech.dble.backend.datasource.check.GlobalTableChangeTracker;
 import com.actiontech.dble.cache.LayerCachePool;
 import com.actiontech.dble.config.model.SchemaConfig;
 import com.actiontech.dble.route.RouteResultset;
@@ -13,6 +14,7 @@ import com.actiontech.dble.route.parser.druid.DruidParserFactory;
 import com.actiontech.dble.route.parser.druid.ServerSchemaStatVisitor;
 import com.actiontech.dble.route.util.RouterUtil;
 import com.actiontech.dble.server.ServerConnection;
+import com.actiontech.dble.server.parser.ServerParse;
 import com.alibaba.druid.sql.ast.SQLStatement;
 import com.alibaba.druid.sql.dialect.mysql.parser.MySqlStatementParser;
 import com.alibaba.druid.sql.parser.SQLStatementParser;
@@ -76,6 +78,14 @@ public class DefaultRouteStrategy extends AbstractRouteStrategy {
     public RouteResultset routeNormalSqlWithAST(SchemaConfig schema,
                                                 String originSql, RouteResultset rrs,
                                                 LayerCachePool cachePool, ServerConnection sc, boolean isExplain) throws SQLException {
+        if (rrs.getSqlType() == ServerParse.INSERT && !isExplain && !sc.getSession2().getIsMultiStatement().get()) {
+            // the inserts of the sharding tables with plain values needn't the ast
+            RouteResultset fastRrs = FastInsertRouter.route(schema, originSql, rrs, sc);
+            if (fastRrs != null) {
+                sc.getSession2().endParse();
+                return fastRrs;
+            }
+        }
         SQLStatement statement = parserSQL(originSql, sc);
         if (sc.getSession2().getIsMultiStatement().get()) {
             originSql = statement.toString();
@@ -83,6 +93,7 @@ public class DefaultRouteStrategy extends AbstractRouteStrategy {
             rrs.setSrcStatement(originSql);
         }
         sc.getSession2().endParse();
+        GlobalTableChangeTracker.getInstance().onWrite(schema == null ? null : schema.getName(), statement);
         DruidParser druidParser = DruidParserFactory.create(statement, rrs.getSqlType());
         return RouterUtil.routeFromParser(druidParser, schema, rrs, statement, originSql, cachePool, new ServerSchemaStatVisitor(), sc, null, isExplain);
 
@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2016-2020 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.route.impl;
+
+import com.actiontech.dble.DbleServer;
+import com.actiontech.dble.config.ServerPrivileges;
+import com.actiontech.dble.config.ServerPrivileges.CheckType;
+import com.actiontech.dble.config.model.SchemaConfig;
+import com.actiontech.dble.config.model.TableConfig;
+import com.actiontech.dble.config.model.UserConfig;
+import com.actiontech.dble.meta.protocol.StructureMeta;
+import com.actiontech.dble.route.RouteResultset;
+import com.actiontech.dble.route.RouteResultsetNode;
+import com.actiontech.dble.route.function.AbstractPartitionAlgorithm;
+import com.actiontech.dble.route.parser.util.InsertValuesTokenizer;
+import com.actiontech.dble.route.util.RouterUtil;
+import com.actiontech.dble.server.ServerConnection;
+import com.actiontech.dble.singleton.ProxyMeta;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigInteger;
+import java.sql.SQLNonTransientException;
+import java.util.*;
+
+/**
+ * routes INSERT ... VALUES of a sharding table without the ast of druid, the tuples are found by
+ * InsertValuesTokenizer and copied to the statements of their data nodes as they are.
+ * <p>
+ * only the sharding table without parent table and auto increment column is routed here, and the values
+ * of the sharding column must be integers or quoted strings. null is returned for the others and for
+ * anything might be an error, such as ON DUPLICATE KEY UPDATE, so that the parser routes them and reports the errors.
+ *
+ * @author ActionTech
+ */
+public final class FastInsertRouter {
+    private static final Logger LOGGER = LoggerFactory.getLogger(FastInsertRouter.class);
+
+    private FastInsertRouter() {
+    }
+
+    /**
+     * @return null if the statement should be routed by the parser
+     */
+    public static RouteResultset route(SchemaConfig schema, String stmt, RouteResultset rrs, ServerConnection sc) {
+        try {
+            return doRoute(schema, stmt, rrs, sc);
+        } catch (SQLNonTransientException e) {
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("insert is routed by parser, because " + e.getMessage());
+            }
+            return null;
+        }
+    }
+
+    private static RouteResultset doRoute(SchemaConfig schema, String stmt, RouteResultset rrs, ServerConnection sc)
+            throws SQLNonTransientException {
+        InsertValuesTokenizer tokenizer = new InsertValuesTokenizer(stmt);
+        String schemaName = tokenizer.getSchema() != null ? tokenizer.getSchema() : (schema == null ? null : schema.getName());
+        String tableName = tokenizer.getTable();
+        if (schemaName == null) {
+            return null;
+        }
+        if (DbleServer.getInstance().getSystemVariables().isLowerCaseTableNames()) {
+            schemaName = schemaName.toLowerCase();
+            tableName = tableName.toLowerCase();
+        }
+        TableConfig tc = getShardingTable(schemaName, tableName, sc);
+        if (tc == null) {
+            return null;
+        }
+        List<String> columns = getColumns(tokenizer, schemaName, tableName);
+        if (columns == null) {
+            return null;
+        }
+        int columnCount = columns.size();
+        int shardingIndex = -1;
+        for (int i = 0; i < columnCount && shardingIndex < 0; i++) {
+            if (tc.getPartitionColumn().equalsIgnoreCase(columns.get(i))) {
+                shardingIndex = i;
+            }
+        }
+        if (shardingIndex < 0) {
+            return null;
+        }
+
+        tokenizer.setWantedColumns(shardingIndex);
+        AbstractPartitionAlgorithm algorithm = tc.getRule().getRuleAlgorithm();
+        Map<Integer, StringBuilder> nodeValues = new LinkedHashMap<>();
+        String header = null;
+        while (tokenizer.nextTuple()) {
+            if (tokenizer.getValueCount() != columnCount) {
+                return null;
+            }
+            Integer nodeIndex = calculate(algorithm, getShardingValue(stmt, tokenizer));
+            if (nodeIndex == null || nodeIndex < 0 || nodeIndex >= tc.getDataNodes().size()) {
+                return null;
+            }
+            StringBuilder values = nodeValues.get(nodeIndex);
+            if (values == null) {
+                if (header == null) {
+                    header = RouterUtil.removeSchema(stmt.substring(0, tokenizer.getValuesStart()), schemaName);
+                }
+                values = new StringBuilder(header);
+                nodeValues.put(nodeIndex, values);
+            } else {
+                values.append(',');
+            }
+            values.append(stmt, tokenizer.getTupleStart(), tokenizer.getTupleEnd());
+        }
+        if (nodeValues.isEmpty()) {
+            return null;
+        }
+
+        RouteResultsetNode[] nodes = new RouteResultsetNode[nodeValues.size()];
+        if (nodes.length == 1) {
+            String dataNode = tc.getDataNodes().get(nodeValues.keySet().iterator().next());
+            nodes[0] = new RouteResultsetNode(dataNode, rrs.getSqlType(), RouterUtil.removeSchema(stmt, schemaName));
+        } else {
+            int count = 0;
+            for (Map.Entry<Integer, StringBuilder> entry : nodeValues.entrySet()) {
+                nodes[count++] = new RouteResultsetNode(tc.getDataNodes().get(entry.getKey()), rrs.getSqlType(), entry.getValue().toString());
+            }
+        }
+        rrs.setNodes(nodes);
+        rrs.setFinishedRoute(true);
+        rrs.setStatTables(Collections.singletonList(tokenizer.getTable()));
+        rrs.setStatConditions(new ArrayList<>());
+        rrs.setStatCurrentTable(tokenizer.getTable());
+        return rrs;
+    }
+
+    private static TableConfig getShardingTable(String schemaName, String tableName, ServerConnection sc) throws SQLNonTransientException {
+        SchemaConfig schemaConfig = DbleServer.getInstance().getConfig().getSchemas().get(schemaName);
+        UserConfig userConfig = DbleServer.getInstance().getConfig().getUsers().get(sc.getUser());
+        if (schemaConfig == null || userConfig == null || !userConfig.getSchemas().contains(schemaName)) {
+            return null;
+        }
+        TableConfig tc = schemaConfig.getTables().get(tableName);
+        if (tc == null || tc.isGlobalTable() || tc.getParentTC() != null || tc.isAutoIncrement() ||
+                tc.getPartitionColumn() == null || tc.getRule() == null || RouterUtil.isNoSharding(schemaConfig, tableName) != null ||
+                !ServerPrivileges.checkPrivilege(sc, schemaName, tableName, CheckType.INSERT)) {
+            return null;
+        }
+        return tc;
+    }
+
+    /**
+     * @return the columns of the statement or of the table, null if the table meta is not found
+     */
+    private static List<String> getColumns(InsertValuesTokenizer tokenizer, String schemaName, String tableName) throws SQLNonTransientException {
+        if (!tokenizer.getColumns().isEmpty()) {
+            return tokenizer.getColumns();
+        }
+        StructureMeta.TableMeta meta = ProxyMeta.getInstance().getTmManager().getSyncTableMeta(schemaName, tableName);
+        if (meta == null) {
+            return null;
+        }
+        List<String> columns = new ArrayList<>(meta.getColumnsCount());
+        for (StructureMeta.ColumnMeta column : meta.getColumnsList()) {
+            columns.add(column.getName());
+        }
+        return columns;
+    }
+
+    /**
+     * @return the sharding value as the parser gives, null if it is not an integer or a quoted string
+     */
+    private static String getShardingValue(String stmt, InsertValuesTokenizer tokenizer) {
+        int start = tokenizer.getValueStart(0);
+        int end = tokenizer.getValueEnd(0);
+        char first = stmt.charAt(start);
+        if (first == '\'') {
+            return tokenizer.getValue(0);
+        }
+        int i = first == '-' ? start + 1 : start;
+        if (i == end) {
+            return null;
+        }
+        for (; i < end; i++) {
+            if (!Character.isDigit(stmt.charAt(i))) {
+                return null;
+            }
+        }
+        // the same as the integer of the parser, such as 007 to 7
+        return new BigInteger(stmt.substring(start, end)).toString();
+    }
+
+    private static Integer calculate(AbstractPartitionAlgorithm algorithm, String shardingValue) {
+        if (shardingValue == null) {
+            return null;
+        }
+        try {
+            return algorithm.calculate(shardingValue);
+        } catch (RuntimeException e) {
+            // the parser will report it
+            return null;
+        }
+    }
+}
@@ -74,6 +74,9 @@ public final class ManagerParseShow {
     public static final int SHOW_USER_PRIVILEGE = 66;
     public static final int SHOW_QUESTIONS = 67;
     public static final int DATADISTRIBUTION_WHERE = 68;
+    public static final int LATENCY = 69;
+    public static final int MEMORY = 70;
+    public static final int WORKLOAD = 71;
     public static final Pattern PATTERN_FOR_TABLE_INFO = Pattern.compile("^\\s*schema\\s*=\\s*" +
             "(('|\")((?!`)((?!\\2).))+\\2|[a-zA-Z_0-9\\-]+)" +
             "\\s+and\\s+table\\s*=\\s*" +
@@ -178,6 +181,12 @@ public final class ManagerParseShow {
                 case 'H':
                 case 'h':
                     return show2HCheck(stmt, offset);
+                case 'L':
+                case 'l':
+                    return show2LCheck(stmt, offset);
+                case 'M':
+                case 'm':
+                    return show2MCheck(stmt, offset);
                 case 'P':
                 case 'p':
                     return show2PCheck(stmt, offset);
@@ -724,6 +733,45 @@ public final class ManagerParseShow {
         return OTHER;
     }
 
+    // SHOW @@LATENCY
+    private static int show2LCheck(String stmt, int offset) {
+        if (stmt.length() > offset + "ATENCY".length()) {
+            char c1 = stmt.charAt(++offset);
+            char c2 = stmt.charAt(++offset);
+            char c3 = stmt.charAt(++offset);
+            char c4 = stmt.charAt(++offset);
+            char c5 = stmt.charAt(++offset);
+            char c6 = stmt.charAt(++offset);
+            if ((c1 == 'A' || c1 == 'a') && (c2 == 'T' || c2 == 't') && (c3 == 'E' || c3 == 'e') &&
+                    (c4 == 'N' || c4 == 'n') && (c5 == 'C' || c5 == 'c') && (c6 == 'Y' || c6 == 'y')) {
+                if (ParseUtil.isErrorTail(++offset, stmt)) {
+                    return OTHER;
+                }
+                return LATENCY;
+            }
+        }
+        return OTHER;
+    }
+
+    // SHOW @@MEMORY
+    private static int show2MCheck(String stmt, int offset) {
+        if (stmt.length() > offset + "EMORY".length()) {
+            char c1 = stmt.charAt(++offset);
+            char c2 = stmt.charAt(++offset);
+            char c3 = stmt.charAt(++offset);
+            char c4 = stmt.charAt(++offset);
+            char c5 = stmt.charAt(++offset);
+            if ((c1 == 'E' || c1 == 'e') && (c2 == 'M' || c2 == 'm') && (c3 == 'O' || c3 == 'o') &&
+                    (c4 == 'R' || c4 == 'r') && (c5 == 'Y' || c5 == 'y')) {
+                if (ParseUtil.isErrorTail(++offset, stmt)) {
+                    return OTHER;
+                }
+                return MEMORY;
+            }
+        }
+        return OTHER;
+    }
+
     // SHOW @@P
     private static int show2PCheck(String stmt, int offset) {
         if (stmt.length() > ++offset) {
@@ -1091,8 +1139,47 @@ public final class ManagerParseShow {
         return OTHER;
     }
 
-    // SHOW @@White  ip white list
+    // SHOW @@W
     private static int show2WCheck(String stmt, int offset) {
+        if (stmt.length() > offset + 1) {
+            switch (stmt.charAt(offset + 1)) {
+                case 'H':
+                case 'h':
+                    return show2WhiteCheck(stmt, offset);
+                case 'O':
+                case 'o':
+                    return show2WorkloadCheck(stmt, offset);
+                default:
+                    return OTHER;
+            }
+        }
+        return OTHER;
+    }
+
+    // SHOW @@WORKLOAD
+    private static int show2WorkloadCheck(String stmt, int offset) {
+        if (stmt.length() > offset + "ORKLOAD".length()) {
+            char c1 = stmt.charAt(++offset);
+            char c2 = stmt.charAt(++offset);
+            char c3 = stmt.charAt(++offset);
+            char c4 = stmt.charAt(++offset);
+            char c5 = stmt.charAt(++offset);
+            char c6 = stmt.charAt(++offset);
+            char c7 = stmt.charAt(++offset);
+            if ((c1 == 'O' || c1 == 'o') && (c2 == 'R' || c2 == 'r') && (c3 == 'K' || c3 == 'k') &&
+                    (c4 == 'L' || c4 == 'l') && (c5 == 'O' || c5 == 'o') && (c6 == 'A' || c6 == 'a') &&
+                    (c7 == 'D' || c7 == 'd')) {
+                if (ParseUtil.isErrorTail(++offset, stmt)) {
+                    return OTHER;
+                }
+                return WORKLOAD;
+            }
+        }
+        return OTHER;
+    }
+
+    // SHOW @@White  ip white list
+    private static int show2WhiteCheck(String stmt, int offset) {
         if (stmt.length() > offset + "HITE".length()) {
             char c1 = stmt.charAt(++offset);
             char c2 = stmt.charAt(++offset);
@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2016-2020 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.route.parser.druid;
+
+import com.alibaba.druid.sql.ast.SQLStatement;
+import com.alibaba.druid.sql.ast.expr.SQLMethodInvokeExpr;
+import com.alibaba.druid.sql.ast.statement.SQLSelectStatement;
+import com.alibaba.druid.sql.dialect.mysql.ast.statement.MySqlSelectQueryBlock;
+import com.alibaba.druid.sql.dialect.mysql.parser.MySqlStatementParser;
+import com.alibaba.druid.sql.dialect.mysql.visitor.MySqlASTVisitorAdapter;
+
+import java.util.List;
+
+/**
+ * ReadOnlyStatementVisitor, finds out whether a select changes nothing on the data node.
+ * <p>
+ * a locking read (FOR UPDATE, LOCK IN SHARE MODE) holds locks until the transaction ends,
+ * and a function call may be a stored function which writes, so neither of them is read only.
+ * Aggregate functions are not function calls here.
+ *
+ * @author ActionTech
+ */
+public class ReadOnlyStatementVisitor extends MySqlASTVisitorAdapter {
+    private boolean readOnly = true;
+
+    /**
+     * @return false if the sql is not one select, or it can't be parsed
+     */
+    public static boolean isReadOnlySelect(String sql) {
+        List<SQLStatement> statements;
+        try {
+            statements = new MySqlStatementParser(sql).parseStatementList();
+        } catch (RuntimeException e) {
+            return false;
+        }
+        if (statements.size() != 1 || !(statements.get(0) instanceof SQLSelectStatement)) {
+            return false;
+        }
+        ReadOnlyStatementVisitor visitor = new ReadOnlyStatementVisitor();
+        statements.get(0).accept(visitor);
+        return visitor.readOnly;
+    }
+
+    @Override
+    public boolean visit(MySqlSelectQueryBlock x) {
+        if (x.isForUpdate() || x.isLockInShareMode()) {
+            readOnly = false;
+        }
+        return readOnly;
+    }
+
+    @Override
+    public boolean visit(SQLMethodInvokeExpr x) {
+        readOnly = false;
+        return false;
+    }
+}
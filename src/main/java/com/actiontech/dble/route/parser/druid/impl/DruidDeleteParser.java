@@ -72,6 +72,9 @@ public class DruidDeleteParser extends DefaultDruidParser {
                 }
             }
             String tableName = schemaInfo.getTable();
+            if (!isExplain && schema.isLocatedParent(tableName)) {
+                sc.getSession2().markParentTableChanged(schema.getName(), tableName);
+            }
             String noShardingNode = RouterUtil.isNoSharding(schema, tableName);
             if (noShardingNode != null) {
                 RouterUtil.routeToSingleNode(rrs, noShardingNode);
@@ -5,28 +5,43 @@
 
 package com.actiontech.dble.route.parser.druid.impl;
 
+import com.actiontech.dble.DbleServer;
+import com.actiontech.dble.backend.mysql.nio.handler.FetchStoreNodeOfChildTableHandler;
+import com.actiontech.dble.config.ErrorCode;
 import com.actiontech.dble.config.model.TableConfig;
 import com.actiontech.dble.singleton.ProxyMeta;
 import com.actiontech.dble.meta.protocol.StructureMeta;
+import com.actiontech.dble.net.ConnectionException;
 import com.actiontech.dble.route.RouteResultset;
+import com.actiontech.dble.route.RouteResultsetNode;
+import com.actiontech.dble.route.cache.ParentKeyLocationCache;
 import com.actiontech.dble.route.util.RouterUtil;
+import com.actiontech.dble.server.NonBlockingSession;
+import com.actiontech.dble.server.ServerConnection;
+import com.actiontech.dble.server.handler.ExplainHandler;
 import com.actiontech.dble.sqlengine.SQLJob;
 import com.actiontech.dble.sqlengine.mpp.ColumnRoutePair;
 import com.actiontech.dble.util.StringUtil;
 import com.alibaba.druid.sql.ast.SQLExpr;
+import com.alibaba.druid.sql.ast.SQLStatement;
 import com.alibaba.druid.sql.ast.expr.SQLCharExpr;
 import com.alibaba.druid.sql.ast.expr.SQLIntegerExpr;
 import com.alibaba.druid.sql.ast.expr.SQLNullExpr;
+import com.alibaba.druid.sql.ast.statement.SQLInsertStatement.ValuesClause;
 
 import java.sql.SQLNonTransientException;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
+import java.util.*;
 
 import static com.actiontech.dble.server.util.SchemaUtil.SchemaInfo;
 
 abstract class DruidInsertReplaceParser extends DefaultDruidParser {
-    protected static RouteResultset routeByERParentKey(RouteResultset rrs, TableConfig tc, String joinKeyVal, SchemaInfo schemaInfo)
+    /* the max count of the join keys looked up by one query */
+    private static final int MAX_LOCATE_KEYS = 1000;
+
+    /**
+     * @return the data node calculated by the partition rule of the parent, null if the join key is not the sharding column of the root
+     */
+    private static String getDataNodeByERParentKey(TableConfig tc, String joinKeyVal, SchemaInfo schemaInfo)
             throws SQLNonTransientException {
         if (tc.getDirectRouteTC() != null) {
             Set<ColumnRoutePair> parentColVal = new HashSet<>(1);
@@ -39,13 +54,146 @@ abstract class DruidInsertReplaceParser extends DefaultDruidParser {
             }
             String dn = dataNodeSet.iterator().next();
             if (SQLJob.LOGGER.isDebugEnabled()) {
-                SQLJob.LOGGER.debug("found partion node (using parent partition rule directly) for child table to insert  " + dn + " sql :" + rrs.getStatement());
+                SQLJob.LOGGER.debug("found partion node (using parent partition rule directly) for child table to insert  " + dn + " key :" + joinKeyVal);
+            }
+            return dn;
+        }
+        return null;
+    }
+
+    /**
+     * route the rows of the child table by the data nodes of their parent rows, the rows of a data node
+     * are sent by one statement. If the data node of a join key can't be calculated by the partition rule
+     * or found in ParentKeyLocationCache, the data nodes of the root parent are queried in ComplexQueryExecutor
+     * and the keys unknown are queried together.
+     *
+     * @param valuesList the values of stmt, it is changed for every data node
+     */
+    protected void routeChildTable(SchemaInfo schemaInfo, final RouteResultset rrs, final SQLStatement stmt,
+                                   final List<ValuesClause> valuesList, int joinKeyIndex, final ServerConnection sc,
+                                   final boolean isExplain) throws SQLNonTransientException {
+        final String schema = schemaInfo.getSchema();
+        final TableConfig tc = schemaInfo.getSchemaConfig().getTables().get(schemaInfo.getTable());
+        rrs.setStatement(RouterUtil.removeSchema(statementToString(stmt), schema));
+        ParentKeyLocationCache cache = ParentKeyLocationCache.getInstance();
+        final Map<String, List<ValuesClause>> nodeValues = new LinkedHashMap<>();
+        // join key value in sql -> rows, the data node of the key is unknown
+        final Map<String, List<ValuesClause>> keyValues = new LinkedHashMap<>();
+        final Map<String, String> cacheKeys = new HashMap<>();
+        for (ValuesClause valuesClause : valuesList) {
+            if (joinKeyIndex >= valuesClause.getValues().size()) {
+                throw new SQLNonTransientException("bad insert sql, joinKey:" + tc.getJoinKey() + " not provided," + valuesClause);
+            }
+            String joinKeyVal = valuesClause.getValues().get(joinKeyIndex).toString();
+            String realVal = StringUtil.removeApostrophe(joinKeyVal);
+            String dn = getDataNodeByERParentKey(tc, realVal, schemaInfo);
+            if (dn == null) {
+                String cacheKey = cache.keyOf(schema, tc.getParentTC().getName(), realVal);
+                dn = cache.getDataNode(cacheKey);
+                if (dn == null) {
+                    cacheKeys.put(joinKeyVal, cacheKey);
+                    keyValues.computeIfAbsent(joinKeyVal, k -> new ArrayList<>()).add(valuesClause);
+                    continue;
+                }
+            }
+            nodeValues.computeIfAbsent(dn, k -> new ArrayList<>()).add(valuesClause);
+        }
+        if (keyValues.isEmpty()) {
+            routeToChildNodes(rrs, stmt, valuesList, nodeValues, schema);
+            rrs.setFinishedRoute(true);
+            return;
+        }
+        rrs.setFinishedExecute(true);
+        DbleServer.getInstance().getComplexQueryExecutor().execute(new Runnable() {
+            //get child result will be blocked, so use ComplexQueryExecutor
+            @Override
+            public void run() {
+                try {
+                    String notFound = fetchChildNodes(tc, keyValues, cacheKeys, nodeValues, sc.getSession2());
+                    if (notFound != null) {
+                        sc.writeErrMessage(ErrorCode.ER_UNKNOWN_ERROR, "can't find (root) parent sharding node of key " + notFound +
+                                " for sql:" + rrs.getStatement());
+                        return;
+                    }
+                    routeToChildNodes(rrs, stmt, valuesList, nodeValues, schema);
+                    if (isExplain) {
+                        ExplainHandler.writeOutHeadAndEof(sc, rrs);
+                    } else {
+                        sc.getSession2().execute(rrs);
+                    }
+                } catch (ConnectionException e) {
+                    sc.setTxInterrupt(e.toString());
+                    sc.writeErrMessage(ErrorCode.ER_UNKNOWN_ERROR, e.toString());
+                }
+            }
+        });
+    }
+
+    /**
+     * @return the join key value whose data node is not found, null if all are found
+     */
+    private String fetchChildNodes(TableConfig tc, Map<String, List<ValuesClause>> keyValues, Map<String, String> cacheKeys,
+                                   Map<String, List<ValuesClause>> nodeValues, NonBlockingSession session) throws ConnectionException {
+        ArrayList<String> rootDataNodes = tc.getRootParent().getDataNodes();
+        Map<String, String> keyDataNodes = new HashMap<>();
+        if (keyValues.size() > 1) {
+            List<String> keys = new ArrayList<>(keyValues.keySet());
+            for (int i = 0; i < keys.size(); i += MAX_LOCATE_KEYS) {
+                List<String> batch = keys.subList(i, Math.min(i + MAX_LOCATE_KEYS, keys.size()));
+                String findRootTBSql = tc.getLocateRTableKeysSql() + String.join(",", batch) + ")";
+                if (LOGGER.isDebugEnabled()) {
+                    LOGGER.debug("to find root parent's nodes sql :" + findRootTBSql);
+                }
+                Map<String, String> found = new FetchStoreNodeOfChildTableHandler(findRootTBSql, session, true).executeForKeys(rootDataNodes);
+                for (String joinKeyVal : batch) {
+                    String dn = found.get(StringUtil.removeApostrophe(joinKeyVal));
+                    if (dn != null) {
+                        keyDataNodes.put(joinKeyVal, dn);
+                    }
+                }
             }
-            return RouterUtil.routeToSingleNode(rrs, dn);
+        }
+        for (Map.Entry<String, List<ValuesClause>> entry : keyValues.entrySet()) {
+            String joinKeyVal = entry.getKey();
+            String dn = keyDataNodes.get(joinKeyVal);
+            if (dn == null) {
+                // only one key, or the value returned differs from the one in sql, such as 1.0 and 1
+                String findRootTBSql = tc.getLocateRTableKeySql() + joinKeyVal;
+                if (LOGGER.isDebugEnabled()) {
+                    LOGGER.debug("to find root parent's node sql :" + findRootTBSql);
+                }
+                dn = new FetchStoreNodeOfChildTableHandler(findRootTBSql, session).execute(rootDataNodes);
+                if (dn == null) {
+                    return joinKeyVal;
+                }
+            }
+            ParentKeyLocationCache.getInstance().putIfAbsent(cacheKeys.get(joinKeyVal), dn);
+            nodeValues.computeIfAbsent(dn, k -> new ArrayList<>()).addAll(entry.getValue());
         }
         return null;
     }
 
+    private void routeToChildNodes(RouteResultset rrs, SQLStatement stmt, List<ValuesClause> valuesList,
+                                   Map<String, List<ValuesClause>> nodeValues, String schema) {
+        if (nodeValues.size() == 1) {
+            String dn = nodeValues.keySet().iterator().next();
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("found partition node for child table to insert " + dn + " sql :" + rrs.getStatement());
+            }
+            RouterUtil.routeToSingleNode(rrs, dn);
+            return;
+        }
+        RouteResultsetNode[] nodes = new RouteResultsetNode[nodeValues.size()];
+        int count = 0;
+        for (Map.Entry<String, List<ValuesClause>> entry : nodeValues.entrySet()) {
+            valuesList.clear();
+            valuesList.addAll(entry.getValue());
+            nodes[count++] = new RouteResultsetNode(entry.getKey(), rrs.getSqlType(),
+                    RouterUtil.removeSchema(statementToString(stmt), schema));
+        }
+        rrs.setNodes(nodes);
+    }
+
 
     /**
      * check if the column is not null and the
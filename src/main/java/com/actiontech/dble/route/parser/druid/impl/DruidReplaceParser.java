@@ -5,15 +5,11 @@
 
 package com.actiontech.dble.route.parser.druid.impl;
 
-import com.actiontech.dble.DbleServer;
-import com.actiontech.dble.backend.mysql.nio.handler.FetchStoreNodeOfChildTableHandler;
-import com.actiontech.dble.config.ErrorCode;
 import com.actiontech.dble.config.ServerPrivileges;
 import com.actiontech.dble.config.model.SchemaConfig;
 import com.actiontech.dble.config.model.TableConfig;
 import com.actiontech.dble.singleton.ProxyMeta;
 import com.actiontech.dble.meta.protocol.StructureMeta;
-import com.actiontech.dble.net.ConnectionException;
 import com.actiontech.dble.plan.common.ptr.StringPtr;
 import com.actiontech.dble.route.RouteResultset;
 import com.actiontech.dble.route.RouteResultsetNode;
@@ -21,7 +17,6 @@ import com.actiontech.dble.route.function.AbstractPartitionAlgorithm;
 import com.actiontech.dble.route.parser.druid.ServerSchemaStatVisitor;
 import com.actiontech.dble.route.util.RouterUtil;
 import com.actiontech.dble.server.ServerConnection;
-import com.actiontech.dble.server.handler.ExplainHandler;
 import com.actiontech.dble.server.util.SchemaUtil;
 import com.actiontech.dble.server.util.SchemaUtil.SchemaInfo;
 import com.actiontech.dble.singleton.SequenceManager;
@@ -77,6 +72,10 @@ public class DruidReplaceParser extends DruidInsertReplaceParser {
         //check the config of target table
         TableConfig tc = schema.getTables().get(tableName);
         checkTableExists(tc, schema.getName(), tableName, ServerPrivileges.CheckType.INSERT);
+        if (!isExplain && schema.isLocatedParent(tableName)) {
+            // the replaced parent rows may be moved to other data nodes
+            sc.getSession2().markParentTableChanged(schema.getName(), tableName);
+        }
 
         //if the target table is global table than
         if (tc.isGlobalTable()) {
@@ -281,61 +280,11 @@ public class DruidReplaceParser extends DruidInsertReplaceParser {
     }
 
 
-    private void parserChildTable(SchemaInfo schemaInfo, final RouteResultset rrs, SQLReplaceStatement replace, final ServerConnection sc, boolean isExplain) throws SQLNonTransientException {
-        final SchemaConfig schema = schemaInfo.getSchemaConfig();
-        String tableName = schemaInfo.getTable();
-        final TableConfig tc = schema.getTables().get(tableName);
-        //check if the childtable replace with the multi
-        if (isMultiReplace(replace)) {
-            String msg = "ChildTable multi insert not provided";
-            LOGGER.info(msg);
-            throw new SQLNonTransientException(msg);
-        }
+    private void parserChildTable(SchemaInfo schemaInfo, RouteResultset rrs, SQLReplaceStatement replace, ServerConnection sc, boolean isExplain) throws SQLNonTransientException {
+        TableConfig tc = schemaInfo.getSchemaConfig().getTables().get(schemaInfo.getTable());
         //find the value of child table join key
-        String joinKey = tc.getJoinKey();
-        int joinKeyIndex = getJoinKeyIndex(schemaInfo, replace, joinKey);
-        final String joinKeyVal = replace.getValuesList().get(0).getValues().get(joinKeyIndex).toString();
-        String realVal = StringUtil.removeApostrophe(joinKeyVal);
-        final String sql = RouterUtil.removeSchema(statementToString(replace), schemaInfo.getSchema());
-        rrs.setStatement(sql);
-        // try to route by ER parent partition key
-        RouteResultset theRrs = routeByERParentKey(rrs, tc, realVal, schemaInfo);
-        if (theRrs != null) {
-            rrs.setFinishedRoute(true);
-        } else {
-            rrs.setFinishedExecute(true);
-            DbleServer.getInstance().getComplexQueryExecutor().execute(new Runnable() {
-                //get child result will be blocked, so use ComplexQueryExecutor
-                @Override
-                public void run() {
-                    // route by sql query root parent's data node
-                    String findRootTBSql = tc.getLocateRTableKeySql() + joinKeyVal;
-                    if (LOGGER.isDebugEnabled()) {
-                        LOGGER.debug("to find root parent's node sql :" + findRootTBSql);
-                    }
-                    FetchStoreNodeOfChildTableHandler fetchHandler = new FetchStoreNodeOfChildTableHandler(findRootTBSql, sc.getSession2());
-                    try {
-                        String dn = fetchHandler.execute(schema.getName(), tc.getRootParent().getDataNodes());
-                        if (dn == null) {
-                            sc.writeErrMessage(ErrorCode.ER_UNKNOWN_ERROR, "can't find (root) parent sharding node for sql:" + sql);
-                            return;
-                        }
-                        if (LOGGER.isDebugEnabled()) {
-                            LOGGER.debug("found partition node for child table to insert " + dn + " sql :" + sql);
-                        }
-                        RouterUtil.routeToSingleNode(rrs, dn);
-                        if (isExplain) {
-                            ExplainHandler.writeOutHeadAndEof(sc, rrs);
-                        } else {
-                            sc.getSession2().execute(rrs);
-                        }
-                    } catch (ConnectionException e) {
-                        sc.setTxInterrupt(e.toString());
-                        sc.writeErrMessage(ErrorCode.ER_UNKNOWN_ERROR, e.toString());
-                    }
-                }
-            });
-        }
+        int joinKeyIndex = getJoinKeyIndex(schemaInfo, replace, tc.getJoinKey());
+        routeChildTable(schemaInfo, rrs, replace, replace.getValuesList(), joinKeyIndex, sc, isExplain);
     }
 
     private boolean isMultiReplace(SQLReplaceStatement insertStmt) {
@@ -44,6 +44,8 @@ import java.util.*;
 
 public class DruidSelectParser extends DefaultDruidParser {
     private static HashSet<String> aggregateSet = new HashSet<>(16, 1);
+    /* aggregate functions computed by dble only, mysql does not know them */
+    private static final Set<String> APPROX_AGGREGATES = new HashSet<>(Arrays.asList("APPROX_COUNT_DISTINCT", "APPROX_PERCENTILE"));
 
     static {
         //https://dev.mysql.com/doc/refman/5.7/en/group-by-functions.html
@@ -52,6 +54,7 @@ public class DruidSelectParser extends DefaultDruidParser {
         //SQLMethodInvokeExpr but is Aggregate (GROUP BY) Functions
         aggregateSet.addAll(Arrays.asList("BIT_AND", "BIT_OR", "BIT_XOR", "STD", "STDDEV_POP", "STDDEV_SAMP",
                 "VARIANCE", "VAR_POP", "VAR_SAMP"));
+        aggregateSet.addAll(APPROX_AGGREGATES);
     }
 
 
@@ -94,13 +97,13 @@ public class DruidSelectParser extends DefaultDruidParser {
                     super.visitorParse(schema, rrs, stmt, visitor, sc, isExplain);
                     //check to route for complex
                     if (ProxyMeta.getInstance().getTmManager().getSyncView(schemaInfo.getSchemaConfig().getName(), schemaInfo.getTable()) != null ||
-                            hasInnerFuncSelect(visitor.getFunctions())) {
+                            hasInnerFuncSelect(visitor.getFunctions()) || hasApproxAggregate(visitor.getFunctions())) {
                         rrs.setNeedOptimizer(true);
                         rrs.setSqlStatement(selectStmt);
                         return schemaInfo.getSchemaConfig();
                     }
                     if (visitor.getSubQueryList().size() > 0) {
-                        return executeComplexSQL(schemaName, schema, rrs, selectStmt, sc, visitor.getSelectTableList().size());
+                        return executeComplexSQL(schemaName, schema, rrs, selectStmt, sc, visitor);
                     }
 
                     //route for single table
@@ -112,11 +115,11 @@ public class DruidSelectParser extends DefaultDruidParser {
                     mysqlFrom instanceof SQLJoinTableSource ||
                     mysqlFrom instanceof SQLUnionQueryTableSource) {
                 super.visitorParse(schema, rrs, stmt, visitor, sc, isExplain);
-                return executeComplexSQL(schemaName, schema, rrs, selectStmt, sc, visitor.getSelectTableList().size());
+                return executeComplexSQL(schemaName, schema, rrs, selectStmt, sc, visitor);
             }
         } else if (sqlSelectQuery instanceof SQLUnionQuery) {
             super.visitorParse(schema, rrs, stmt, visitor, sc, isExplain);
-            return executeComplexSQL(schemaName, schema, rrs, selectStmt, sc, visitor.getSelectTableList().size());
+            return executeComplexSQL(schemaName, schema, rrs, selectStmt, sc, visitor);
         }
         return schema;
     }
@@ -177,6 +180,10 @@ public class DruidSelectParser extends DefaultDruidParser {
                 i++;
             }
             rrs.setNodes(nodes);
+            if (rrs.getPartialAggregation() != null) {
+                // the nodes are routed before the sql is changed to the partial aggregates
+                rrs.changeNodeSqlAfterAddLimit(rrs.getStatement(), 0, -1);
+            }
             rrs.setFinishedRoute(true);
         }
     }
@@ -199,7 +206,7 @@ public class DruidSelectParser extends DefaultDruidParser {
                                 SQLSelectStatement selectStmt) throws SQLException {
         super.visitorParse(schema, rrs, selectStmt, visitor, sc, isExplain);
         if (visitor.getSubQueryList().size() > 0) {
-            executeComplexSQL(schema.getName(), schema, rrs, selectStmt, sc, visitor.getSelectTableList().size());
+            executeComplexSQL(schema.getName(), schema, rrs, selectStmt, sc, visitor);
             return;
         }
         RouterUtil.routeNoNameTableToSingleNode(rrs, schema);
@@ -217,6 +224,17 @@ public class DruidSelectParser extends DefaultDruidParser {
         return false;
     }
 
+    private boolean hasApproxAggregate(List<SQLMethodInvokeExpr> funcList) {
+        if (funcList != null) {
+            for (SQLMethodInvokeExpr expr : funcList) {
+                if (APPROX_AGGREGATES.contains(expr.getMethodName().toUpperCase())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
     private SchemaConfig tryRouteToOneNode(SchemaConfig schema, RouteResultset rrs, ServerConnection sc, SQLSelectStatement selectStmt, int tableSize) throws SQLException {
         Set<String> schemaList = new HashSet<>();
         String dataNode = RouterUtil.tryRouteTablesToOneNode(sc.getUser(), rrs, schema, ctx, schemaList, tableSize, true);
@@ -400,6 +418,9 @@ public class DruidSelectParser extends DefaultDruidParser {
         boolean isDistinct = (mysqlSelectQuery.getDistionOption() == SQLSetQuantifier.DISTINCT) || (mysqlSelectQuery.getDistionOption() == SQLSetQuantifier.DISTINCTROW);
         parseAggExprCommon(schema, rrs, mysqlSelectQuery, aliaColumns, tc, isDistinct);
         if (rrs.isNeedOptimizer()) {
+            if (tryPartialAggregation(schema, stmt, rrs, mysqlSelectQuery, tc)) {
+                return;
+            }
             tryAddLimit(schema, tc, mysqlSelectQuery, rrs);
             rrs.setSqlStatement(stmt);
             return;
@@ -407,6 +428,7 @@ public class DruidSelectParser extends DefaultDruidParser {
 
         // distinct change to group by
         if (isDistinct) {
+            keepStatStatement(rrs, stmt);
             mysqlSelectQuery.setDistionOption(0);
             SQLSelectGroupByClause groupBy = new SQLSelectGroupByClause();
             for (String fieldName : aliaColumns.keySet()) {
@@ -427,6 +449,36 @@ public class DruidSelectParser extends DefaultDruidParser {
         }
     }
 
+    /**
+     * push down the aggregates as partial aggregates and merge them by the group by columns,
+     * the optimizer is not needed if all the aggregates can be merged
+     */
+    private boolean tryPartialAggregation(SchemaConfig schema, SQLStatement stmt, RouteResultset rrs,
+                                          MySqlSelectQueryBlock mysqlSelectQuery, TableConfig tc) {
+        if (!DbleServer.getInstance().getConfig().getSystem().isEnablePartialAggregation()) {
+            return false;
+        }
+        PartialAggregationRewriter rewriter = new PartialAggregationRewriter(mysqlSelectQuery, expr -> isSumFuncOrSubQuery(schema.getName(), expr));
+        if (!rewriter.check()) {
+            return false;
+        }
+        tryAddLimit(schema, tc, mysqlSelectQuery, rrs);
+        SQLLimit limit = mysqlSelectQuery.getLimit();
+        if (limit != null) {
+            if (limit.getOffset() != null) {
+                rrs.setLimitStart(((SQLIntegerExpr) limit.getOffset()).getNumber().intValue());
+            }
+            rrs.setLimitSize(((SQLIntegerExpr) limit.getRowCount()).getNumber().intValue());
+        }
+        keepStatStatement(rrs, stmt);
+        rewriter.rewrite();
+        rrs.setNeedOptimizer(false);
+        rrs.setPartialAggregation(rewriter.getPartialAggregation());
+        rrs.setGroupByCols(rewriter.getSortColumns());
+        rrs.setStatement(RouterUtil.removeSchema(statementToString(stmt), schema.getName()));
+        return true;
+    }
+
     private String getAliaColumn(Map<String, String> aliaColumns, String column) {
         String alia = aliaColumns.get(column);
         if (alia == null) {
@@ -490,8 +542,15 @@ public class DruidSelectParser extends DefaultDruidParser {
         return groupByCols;
     }
 
-    private SchemaConfig executeComplexSQL(String schemaName, SchemaConfig schema, RouteResultset rrs, SQLSelectStatement selectStmt, ServerConnection sc, int tableSize)
-            throws SQLException {
+    private SchemaConfig executeComplexSQL(String schemaName, SchemaConfig schema, RouteResultset rrs, SQLSelectStatement selectStmt, ServerConnection sc,
+                                           ServerSchemaStatVisitor visitor) throws SQLException {
+        if (hasApproxAggregate(visitor.getFunctions())) {
+            // even a query of one node can not be sent as it is
+            rrs.setNeedOptimizer(true);
+            rrs.setSqlStatement(selectStmt);
+            return schema;
+        }
+        int tableSize = visitor.getSelectTableList().size();
         StringPtr noShardingNode = new StringPtr(null);
         Set<String> schemas = new HashSet<>();
         if (SchemaUtil.isNoSharding(sc, selectStmt.getSelect().getQuery(), selectStmt, selectStmt, schemaName, schemas, noShardingNode)) {
@@ -513,6 +572,9 @@ public class DruidSelectParser extends DefaultDruidParser {
             throws SQLException {
         if (rrs.isFinishedExecute() || rrs.isNeedOptimizer()) {
             return;
+        } else if (rrs.getPartialAggregation() != null) {
+            // the limit is for the merged rows, the partial rows can not be limited
+            return;
         }
         rrs.copyLimitToNodes();
         SQLSelectStatement selectStmt = (SQLSelectStatement) stmt;
@@ -528,6 +590,7 @@ public class DruidSelectParser extends DefaultDruidParser {
             if (isNeedAddLimit) {
                 SQLLimit limit = new SQLLimit();
                 limit.setRowCount(new SQLIntegerExpr(limitSize));
+                keepStatStatement(rrs, stmt);
                 mysqlSelectQuery.setLimit(limit);
                 rrs.setLimitSize(limitSize);
                 String sql = getSql(rrs, stmt, isNeedAddLimit, sqlSchema.getName());
@@ -562,6 +625,7 @@ public class DruidSelectParser extends DefaultDruidParser {
                         }
                     }
 
+                    keepStatStatement(rrs, stmt);
                     mysqlSelectQuery.setLimit(changedLimit);
                     String sql = getSql(rrs, stmt, isNeedAddLimit, sqlSchema.getName());
                     rrs.changeNodeSqlAfterAddLimit(sql, 0, limitStart + limitSize);
@@ -681,9 +745,31 @@ public class DruidSelectParser extends DefaultDruidParser {
         }
         SQLLimit limit = new SQLLimit();
         limit.setRowCount(new SQLIntegerExpr(schema.getDefaultMaxLimit()));
+        keepStatStatement(rrs, mysqlSelectQuery);
         mysqlSelectQuery.setLimit(limit);
     }
 
+    /**
+     * the sql statistics print the statement of the client, copy it before it's changed by the route
+     */
+    private static void keepStatStatement(RouteResultset rrs, SQLObject changed) {
+        SQLStatement statStatement = rrs.getStatStatement();
+        SQLObject top = changed;
+        while (top != null && top != statStatement) {
+            top = top.getParent();
+        }
+        if (top == null) {
+            // a copy is kept already
+            return;
+        }
+        try {
+            rrs.setStatStatement((SQLStatement) statStatement.clone());
+        } catch (UnsupportedOperationException e) {
+            // parsed by the stat thread
+            rrs.setStatStatement(null);
+        }
+    }
+
     /**
      * @param schema
      * @param rrs
@@ -0,0 +1,347 @@
+/*
+ * Copyright (C) 2016-2020 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.route.parser.druid.impl;
+
+import com.actiontech.dble.plan.common.item.function.ItemFuncKeyWord;
+import com.actiontech.dble.sqlengine.mpp.PartialAggregate;
+import com.actiontech.dble.sqlengine.mpp.PartialAggregation;
+import com.actiontech.dble.util.StringUtil;
+import com.alibaba.druid.sql.ast.SQLExpr;
+import com.alibaba.druid.sql.ast.SQLLimit;
+import com.alibaba.druid.sql.ast.SQLName;
+import com.alibaba.druid.sql.ast.SQLOrderBy;
+import com.alibaba.druid.sql.ast.SQLOrderingSpecification;
+import com.alibaba.druid.sql.ast.SQLSetQuantifier;
+import com.alibaba.druid.sql.ast.expr.*;
+import com.alibaba.druid.sql.ast.statement.SQLSelectGroupByClause;
+import com.alibaba.druid.sql.ast.statement.SQLSelectItem;
+import com.alibaba.druid.sql.dialect.mysql.ast.expr.MySqlOrderingExpr;
+import com.alibaba.druid.sql.dialect.mysql.ast.statement.MySqlSelectQueryBlock;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * rewrite a single table query of several data nodes to the partial aggregates grouped and ordered
+ * by the group by columns, so that the rows can be merged by MultiNodeSelectHandler instead of the optimizer.
+ * <p>
+ * eg: select name, avg(age), count(distinct dept) from t group by name
+ * =&gt; select name as _dble_g0, dept as _dble_d, name as _dble_p0, sum(age) as _dble_p1, count(age) as _dble_p2
+ * from t group by name, dept order by name, dept
+ *
+ * @author ActionTech
+ */
+final class PartialAggregationRewriter {
+    private static final String GROUP_ALIAS = "_dble_g";
+    private static final String DISTINCT_ALIAS = "_dble_d";
+    private static final String PARTIAL_ALIAS = "_dble_p";
+
+    private final MySqlSelectQueryBlock query;
+    /* the expression contains aggregates or sub queries */
+    private final Predicate<SQLExpr> complexExpr;
+    private final List<SQLExpr> groupExprs = new ArrayList<>();
+    private final List<SQLExpr> partialExprs = new ArrayList<>();
+    private final List<PartialAggregate> columns = new ArrayList<>();
+    private SQLExpr distinctExpr;
+    private boolean hasAggregate = false;
+
+    PartialAggregationRewriter(MySqlSelectQueryBlock query, Predicate<SQLExpr> complexExpr) {
+        this.query = query;
+        this.complexExpr = complexExpr;
+    }
+
+    /**
+     * check the query without changing it
+     *
+     * @return true if all the aggregates of the query can be pushed down as partial aggregates
+     */
+    boolean check() {
+        if (query.getDistionOption() == SQLSetQuantifier.DISTINCT || query.getDistionOption() == SQLSetQuantifier.DISTINCTROW ||
+                query.isForUpdate() || query.isLockInShareMode() || query.getOrderBy() != null) {
+            return false;
+        }
+        SQLLimit limit = query.getLimit();
+        if (limit != null && (!(limit.getRowCount() instanceof SQLIntegerExpr) ||
+                (limit.getOffset() != null && !(limit.getOffset() instanceof SQLIntegerExpr)))) {
+            return false;
+        }
+        if (!checkGroupBy() || !checkDistinct()) {
+            return false;
+        }
+        for (SQLSelectItem item : query.getSelectList()) {
+            if (!checkSelectItem(item)) {
+                return false;
+            }
+        }
+        return hasAggregate || groupExprs.size() > 0;
+    }
+
+    /**
+     * change the select list, group by, order by and limit of the query to the partial aggregates,
+     * must be called after check() returns true
+     */
+    void rewrite() {
+        List<SQLSelectItem> selectList = query.getSelectList();
+        selectList.clear();
+        SQLSelectGroupByClause groupBy = new SQLSelectGroupByClause();
+        SQLOrderBy orderBy = new SQLOrderBy();
+        for (int i = 0; i < groupExprs.size(); i++) {
+            SQLExpr expr = groupExprs.get(i);
+            selectList.add(new SQLSelectItem(expr, GROUP_ALIAS + i));
+            groupBy.addItem(expr);
+            orderBy.addItem(expr, SQLOrderingSpecification.ASC);
+        }
+        if (distinctExpr != null) {
+            selectList.add(new SQLSelectItem(distinctExpr, DISTINCT_ALIAS));
+            groupBy.addItem(distinctExpr);
+            orderBy.addItem(distinctExpr, SQLOrderingSpecification.ASC);
+        }
+        for (int i = 0; i < partialExprs.size(); i++) {
+            selectList.add(new SQLSelectItem(partialExprs.get(i), PARTIAL_ALIAS + i));
+        }
+        boolean grouped = groupBy.getItems().size() > 0;
+        query.setGroupBy(grouped ? groupBy : null);
+        query.setOrderBy(grouped ? orderBy : null);
+        // the limit is for the merged rows
+        query.setLimit(null);
+    }
+
+    /**
+     * @return the aliases of the columns the partial rows are ordered by
+     */
+    String[] getSortColumns() {
+        List<String> sortColumns = new ArrayList<>();
+        for (int i = 0; i < groupExprs.size(); i++) {
+            sortColumns.add(GROUP_ALIAS + i);
+        }
+        if (distinctExpr != null) {
+            sortColumns.add(DISTINCT_ALIAS);
+        }
+        return sortColumns.toArray(new String[sortColumns.size()]);
+    }
+
+    PartialAggregation getPartialAggregation() {
+        return new PartialAggregation(groupExprs.size(), distinctExpr != null, columns);
+    }
+
+    private boolean checkGroupBy() {
+        SQLSelectGroupByClause groupBy = query.getGroupBy();
+        if (groupBy == null) {
+            return true;
+        }
+        if (groupBy.getHaving() != null || groupBy.isWithRollUp() || groupBy.isWithCube()) {
+            return false;
+        }
+        for (SQLExpr item : groupBy.getItems()) {
+            SQLExpr expr = item;
+            if (item instanceof MySqlOrderingExpr) {
+                if (((MySqlOrderingExpr) item).getType() == SQLOrderingSpecification.DESC) {
+                    return false;
+                }
+                expr = ((MySqlOrderingExpr) item).getExpr();
+            }
+            // group by position or alias of the select list
+            if (expr instanceof SQLIntegerExpr || isSelectAlias(expr) || complexExpr.test(expr)) {
+                return false;
+            }
+            groupExprs.add(expr);
+        }
+        return true;
+    }
+
+    private boolean isSelectAlias(SQLExpr expr) {
+        if (!(expr instanceof SQLIdentifierExpr)) {
+            return false;
+        }
+        String name = StringUtil.removeBackQuote(((SQLIdentifierExpr) expr).getName());
+        for (SQLSelectItem item : query.getSelectList()) {
+            if (item.getAlias() != null && StringUtil.removeBackQuote(item.getAlias()).equalsIgnoreCase(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * the distinct aggregates must have the same argument, which is the distinct column
+     */
+    private boolean checkDistinct() {
+        for (SQLSelectItem item : query.getSelectList()) {
+            if (!(item.getExpr() instanceof SQLAggregateExpr)) {
+                continue;
+            }
+            SQLAggregateExpr aggregate = (SQLAggregateExpr) item.getExpr();
+            if (aggregate.getOption() != SQLAggregateOption.DISTINCT || isMinOrMax(aggregate.getMethodName())) {
+                continue;
+            }
+            if (aggregate.getArguments().size() != 1) {
+                return false;
+            }
+            SQLExpr argument = aggregate.getArguments().get(0);
+            if (distinctExpr == null) {
+                distinctExpr = argument;
+            } else if (!distinctExpr.toString().equals(argument.toString())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean checkSelectItem(SQLSelectItem item) {
+        SQLExpr expr = item.getExpr();
+        if (expr instanceof SQLAllColumnExpr || expr instanceof SQLQueryExpr ||
+                (expr instanceof SQLPropertyExpr && "*".equals(((SQLPropertyExpr) expr).getName()))) {
+            return false;
+        }
+        String name = getColumnName(item);
+        if (expr instanceof SQLAggregateExpr) {
+            return checkAggregate(name, (SQLAggregateExpr) expr);
+        } else if (expr instanceof SQLMethodInvokeExpr && getVariance(((SQLMethodInvokeExpr) expr).getMethodName()) != null) {
+            SQLMethodInvokeExpr method = (SQLMethodInvokeExpr) expr;
+            return method.getParameters().size() == 1 && !complexExpr.test(method.getParameters().get(0)) &&
+                    addVariance(name, method.getMethodName(), method.getParameters().get(0));
+        } else if (complexExpr.test(expr)) {
+            return false;
+        }
+        addPartial(new PartialAggregate(name, PartialAggregate.Type.ANY, nextIndex()), expr);
+        return true;
+    }
+
+    private boolean checkAggregate(String name, SQLAggregateExpr aggregate) {
+        if (aggregate.getOver() != null || aggregate.getWithinGroup() != null || aggregate.getKeep() != null) {
+            return false;
+        }
+        List<SQLExpr> arguments = aggregate.getArguments();
+        for (SQLExpr argument : arguments) {
+            if (!(argument instanceof SQLAllColumnExpr) && complexExpr.test(argument)) {
+                return false;
+            }
+        }
+        String method = aggregate.getMethodName().toUpperCase();
+        if ("GROUP_CONCAT".equals(method)) {
+            return addGroupConcat(name, aggregate);
+        } else if (arguments.size() != 1) {
+            return false;
+        }
+        hasAggregate = true;
+        SQLExpr argument = arguments.get(0);
+        boolean distinct = aggregate.getOption() == SQLAggregateOption.DISTINCT;
+        switch (method) {
+            case "COUNT":
+                return addSimple(name, distinct ? PartialAggregate.Type.COUNT_DISTINCT : PartialAggregate.Type.COUNT, aggregate);
+            case "SUM":
+                return addSimple(name, distinct ? PartialAggregate.Type.SUM_DISTINCT : PartialAggregate.Type.SUM, aggregate);
+            case "MIN":
+                return addSimple(name, PartialAggregate.Type.MIN, aggregate);
+            case "MAX":
+                return addSimple(name, PartialAggregate.Type.MAX, aggregate);
+            case "AVG":
+                if (distinct) {
+                    columns.add(new PartialAggregate(name, PartialAggregate.Type.AVG_DISTINCT, groupExprs.size()));
+                    return true;
+                }
+                addPartial(new PartialAggregate(name, PartialAggregate.Type.AVG, nextIndex()), newAggregate("SUM", argument));
+                partialExprs.add(newAggregate("COUNT", argument));
+                return true;
+            default:
+                return !distinct && addVariance(name, method, argument);
+        }
+    }
+
+    private boolean addSimple(String name, PartialAggregate.Type type, SQLAggregateExpr aggregate) {
+        if (type == PartialAggregate.Type.COUNT_DISTINCT || type == PartialAggregate.Type.SUM_DISTINCT) {
+            // computed from the distinct column
+            columns.add(new PartialAggregate(name, type, groupExprs.size()));
+        } else {
+            addPartial(new PartialAggregate(name, type, nextIndex()), aggregate);
+        }
+        return true;
+    }
+
+    private boolean addGroupConcat(String name, SQLAggregateExpr aggregate) {
+        if (aggregate.getOption() == SQLAggregateOption.DISTINCT || aggregate.getAttribute(ItemFuncKeyWord.ORDER_BY) != null) {
+            return false;
+        }
+        hasAggregate = true;
+        PartialAggregate column = new PartialAggregate(name, PartialAggregate.Type.GROUP_CONCAT, nextIndex());
+        Object separator = aggregate.getAttribute(ItemFuncKeyWord.SEPARATOR);
+        if (separator instanceof SQLCharExpr) {
+            column.setSeparator(((SQLCharExpr) separator).getText());
+        }
+        addPartial(column, aggregate);
+        return true;
+    }
+
+    /**
+     * the same as the pushdown of ItemSumVariance: COUNT(x), SUM(x), VAR_POP(x)
+     */
+    private boolean addVariance(String name, String method, SQLExpr argument) {
+        String variance = getVariance(method);
+        if (variance == null) {
+            return false;
+        }
+        hasAggregate = true;
+        PartialAggregate column = new PartialAggregate(name, PartialAggregate.Type.VARIANCE, nextIndex());
+        column.setSqrt(variance.startsWith("STD"));
+        column.setSample(variance.endsWith("_SAMP"));
+        addPartial(column, newAggregate("COUNT", argument));
+        partialExprs.add(newAggregate("SUM", argument));
+        partialExprs.add(newAggregate("VAR_POP", argument));
+        return true;
+    }
+
+    private void addPartial(PartialAggregate column, SQLExpr partial) {
+        columns.add(column);
+        partialExprs.add(partial);
+    }
+
+    private int nextIndex() {
+        return groupExprs.size() + (distinctExpr == null ? 0 : 1) + partialExprs.size();
+    }
+
+    private static SQLAggregateExpr newAggregate(String method, SQLExpr argument) {
+        SQLAggregateExpr aggregate = new SQLAggregateExpr(method);
+        aggregate.addArgument(argument);
+        return aggregate;
+    }
+
+    private static boolean isMinOrMax(String method) {
+        return "MIN".equalsIgnoreCase(method) || "MAX".equalsIgnoreCase(method);
+    }
+
+    /**
+     * @return the name of the variance function in the upper case, null if it is not a variance function
+     */
+    private static String getVariance(String method) {
+        String upper = method.toUpperCase();
+        switch (upper) {
+            case "STD":
+            case "STDDEV":
+                return "STDDEV_POP";
+            case "VARIANCE":
+                return "VAR_POP";
+            case "STDDEV_POP":
+            case "STDDEV_SAMP":
+            case "VAR_POP":
+            case "VAR_SAMP":
+                return upper;
+            default:
+                return null;
+        }
+    }
+
+    private static String getColumnName(SQLSelectItem item) {
+        if (item.getAlias() != null) {
+            return StringUtil.removeBackQuote(item.getAlias());
+        }
+        SQLExpr expr = item.getExpr();
+        if (expr instanceof SQLName) {
+            return StringUtil.removeBackQuote(((SQLName) expr).getSimpleName());
+        }
+        return expr.toString();
+    }
+}
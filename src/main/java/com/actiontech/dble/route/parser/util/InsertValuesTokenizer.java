@@ -0,0 +1,366 @@
+/*
+ * Copyright (C) 2016-2020 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.route.parser.util;
+
+import java.sql.SQLSyntaxErrorException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * a hand written tokenizer for the multi-row INSERT, INSERT [IGNORE] INTO [`s`.]`t` [(`c1`,`c2`)] VALUES (...),(...),
+ * it only finds out the bounds of the tuples and of the wanted columns instead of parsing the whole statement.
+ * Anything else, such as ON DUPLICATE KEY UPDATE after the values, is reported as a syntax error.
+ *
+ * @author ActionTech
+ */
+public final class InsertValuesTokenizer {
+
+    private final String stmt;
+    private final int length;
+    private String schema;
+    private String table;
+    private final List<String> columns = new ArrayList<>();
+    private int valuesStart;
+    private int pos;
+
+    private int[] wanted = new int[0];
+    private int[] valueStarts = new int[0];
+    private int[] valueEnds = new int[0];
+    private int tupleStart;
+    private int tupleEnd;
+    private int valueCount;
+
+    public InsertValuesTokenizer(String stmt) throws SQLSyntaxErrorException {
+        this.stmt = stmt;
+        this.length = stmt.length();
+        parseHeader();
+    }
+
+    /**
+     * the bounds of the wanted columns are kept for every tuple, -1 is ignored
+     */
+    public void setWantedColumns(int... indexes) {
+        this.wanted = indexes;
+        this.valueStarts = new int[indexes.length];
+        this.valueEnds = new int[indexes.length];
+    }
+
+    /**
+     * @return false if there is no more tuple
+     */
+    public boolean nextTuple() throws SQLSyntaxErrorException {
+        skipBlank();
+        if (pos < length && stmt.charAt(pos) == ',') {
+            pos++;
+            skipBlank();
+        }
+        if (pos >= length) {
+            return false;
+        }
+        if (stmt.charAt(pos) != '(') {
+            throw new SQLSyntaxErrorException("unexpected character '" + stmt.charAt(pos) + "' at " + pos + " of insert values.");
+        }
+        tupleStart = pos++;
+        for (int i = 0; i < valueStarts.length; i++) {
+            valueStarts[i] = -1;
+            valueEnds[i] = -1;
+        }
+        int column = 0;
+        while (true) {
+            skipBlank();
+            int start = pos;
+            int end = skipValue();
+            for (int i = 0; i < wanted.length; i++) {
+                if (wanted[i] == column) {
+                    valueStarts[i] = start;
+                    valueEnds[i] = end;
+                }
+            }
+            if (pos >= length) {
+                throw new SQLSyntaxErrorException("the tuple at " + tupleStart + " of insert values is not closed.");
+            }
+            if (stmt.charAt(pos++) == ')') {
+                break;
+            }
+            column++;
+        }
+        tupleEnd = pos;
+        valueCount = column + 1;
+        for (int i = 0; i < wanted.length; i++) {
+            if (wanted[i] >= 0 && valueStarts[i] < 0) {
+                throw new SQLSyntaxErrorException("the tuple at " + tupleStart + " of insert values has no column " + wanted[i] + ".");
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the schema before the table without back quote, null if the table is not qualified
+     */
+    public String getSchema() {
+        return schema;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    /**
+     * @return the columns in the insert without back quote, empty if the columns are omitted
+     */
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    /**
+     * @return the position after the keyword VALUES
+     */
+    public int getValuesStart() {
+        return valuesStart;
+    }
+
+    /**
+     * @return the position of '(' of the current tuple
+     */
+    public int getTupleStart() {
+        return tupleStart;
+    }
+
+    /**
+     * @return the position after ')' of the current tuple
+     */
+    public int getTupleEnd() {
+        return tupleEnd;
+    }
+
+    /**
+     * @return the count of the values of the current tuple
+     */
+    public int getValueCount() {
+        return valueCount;
+    }
+
+    public int getValueStart(int i) {
+        return valueStarts[i];
+    }
+
+    public int getValueEnd(int i) {
+        return valueEnds[i];
+    }
+
+    /**
+     * @return the value of the i-th wanted column, unquoted and unescaped, null for NULL
+     */
+    public String getValue(int i) {
+        int start = valueStarts[i];
+        int end = valueEnds[i];
+        if (end - start == 4 && stmt.regionMatches(true, start, "NULL", 0, 4)) {
+            return null;
+        }
+        char quote = stmt.charAt(start);
+        if (end - start >= 2 && (quote == '\'' || quote == '"') && stmt.charAt(end - 1) == quote) {
+            return unescape(start + 1, end - 1, quote);
+        }
+        return stmt.substring(start, end);
+    }
+
+    private void parseHeader() throws SQLSyntaxErrorException {
+        skipBlank();
+        expectKeyword("INSERT");
+        skipBlank();
+        if (matchKeyword("IGNORE")) {
+            skipBlank();
+        }
+        expectKeyword("INTO");
+        skipBlank();
+        table = readIdentifier();
+        skipBlank();
+        if (pos < length && stmt.charAt(pos) == '.') {
+            pos++;
+            skipBlank();
+            schema = table;
+            table = readIdentifier();
+            skipBlank();
+        }
+        if (pos < length && stmt.charAt(pos) == '(') {
+            pos++;
+            while (true) {
+                skipBlank();
+                columns.add(readIdentifier());
+                skipBlank();
+                if (pos >= length) {
+                    throw new SQLSyntaxErrorException("the columns of insert are not closed.");
+                }
+                if (stmt.charAt(pos++) == ')') {
+                    break;
+                }
+            }
+            skipBlank();
+        }
+        if (!matchKeyword("VALUES") && !matchKeyword("VALUE")) {
+            throw new SQLSyntaxErrorException("only INSERT ... VALUES is supported.");
+        }
+        valuesStart = pos;
+    }
+
+    private String readIdentifier() throws SQLSyntaxErrorException {
+        if (pos < length && stmt.charAt(pos) == '`') {
+            StringBuilder sb = new StringBuilder();
+            pos++;
+            while (pos < length) {
+                char c = stmt.charAt(pos++);
+                if (c == '`') {
+                    if (pos < length && stmt.charAt(pos) == '`') {
+                        sb.append(c);
+                        pos++;
+                        continue;
+                    }
+                    return sb.toString();
+                }
+                sb.append(c);
+            }
+            throw new SQLSyntaxErrorException("the identifier of insert is not closed.");
+        }
+        int start = pos;
+        while (pos < length) {
+            char c = stmt.charAt(pos);
+            if (!Character.isLetterOrDigit(c) && c != '_' && c != '$') {
+                break;
+            }
+            pos++;
+        }
+        if (start == pos) {
+            throw new SQLSyntaxErrorException("an identifier is expected at " + pos + " of insert.");
+        }
+        return stmt.substring(start, pos);
+    }
+
+    /**
+     * skip a value until ',' or ')' out of the quotes and the parentheses
+     *
+     * @return the end of the value with the trailing blanks trimmed
+     */
+    private int skipValue() throws SQLSyntaxErrorException {
+        int depth = 0;
+        int end = pos;
+        while (pos < length) {
+            char c = stmt.charAt(pos);
+            if (c == '\'' || c == '"') {
+                skipQuoted(c);
+                end = pos;
+                continue;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                if (depth == 0) {
+                    return end;
+                }
+                depth--;
+            } else if (c == ',' && depth == 0) {
+                return end;
+            }
+            pos++;
+            if (!Character.isWhitespace(c)) {
+                end = pos;
+            }
+        }
+        return end;
+    }
+
+    private void skipQuoted(char quote) throws SQLSyntaxErrorException {
+        pos++;
+        while (pos < length) {
+            char c = stmt.charAt(pos++);
+            if (c == '\\') {
+                pos++;
+            } else if (c == quote) {
+                if (pos < length && stmt.charAt(pos) == quote) {
+                    pos++;
+                } else {
+                    return;
+                }
+            }
+        }
+        throw new SQLSyntaxErrorException("the string at " + pos + " of insert values is not closed.");
+    }
+
+    private String unescape(int start, int end, char quote) {
+        int backslash = stmt.indexOf('\\', start);
+        int quoteAt = stmt.indexOf(quote, start);
+        if ((backslash < 0 || backslash >= end) && (quoteAt < 0 || quoteAt >= end)) {
+            return stmt.substring(start, end);
+        }
+        StringBuilder sb = new StringBuilder(end - start);
+        for (int i = start; i < end; i++) {
+            char c = stmt.charAt(i);
+            if (c == quote) {
+                // doubled quote
+                i++;
+            } else if (c == '\\' && i + 1 < end) {
+                c = unescapeChar(stmt.charAt(++i), sb);
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    private static char unescapeChar(char c, StringBuilder sb) {
+        switch (c) {
+            case '0':
+                return '\0';
+            case 'b':
+                return '\b';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 't':
+                return '\t';
+            case 'Z':
+                return '\032';
+            case '%':
+            case '_':
+                // kept as \% and \_ by mysql
+                sb.append('\\');
+                return c;
+            default:
+                return c;
+        }
+    }
+
+    private void skipBlank() {
+        while (pos < length) {
+            char c = stmt.charAt(pos);
+            if (Character.isWhitespace(c)) {
+                pos++;
+            } else if (c == '/' && pos + 1 < length && stmt.charAt(pos + 1) == '*') {
+                int end = stmt.indexOf("*/", pos + 2);
+                pos = end < 0 ? length : end + 2;
+            } else if (c == '-' && stmt.startsWith("-- ", pos) || c == '#') {
+                int end = stmt.indexOf('\n', pos);
+                pos = end < 0 ? length : end + 1;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private boolean matchKeyword(String keyword) {
+        int end = pos + keyword.length();
+        if (stmt.regionMatches(true, pos, keyword, 0, keyword.length()) &&
+                (end >= length || !Character.isLetterOrDigit(stmt.charAt(end)))) {
+            pos = end;
+            return true;
+        }
+        return false;
+    }
+
+    private void expectKeyword(String keyword) throws SQLSyntaxErrorException {
+        if (!matchKeyword(keyword)) {
+            throw new SQLSyntaxErrorException(keyword + " is expected at " + pos + " of insert.");
+        }
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright (C) 2016-2020 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+package com.actiontech.dble.route.parser.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * SqlFingerprint, the sql text with every literal replaced by a placeholder.
+ * <p>
+ * numbers become ? and quoted strings become '?', the literals are kept in
+ * order as the parameters. Comments, identifiers and keywords are kept as is
+ * and runs of white space become one space, so two statements with the same
+ * fingerprint only differ in their literals.
+ * <p>
+ * a string with escaped chars is kept as a null parameter, it is not decoded
+ * here.
+ *
+ * @author ActionTech
+ */
+public final class SqlFingerprint {
+    private final String text;
+    private final List<String> params;
+    private final boolean disjunction;
+
+    private SqlFingerprint(String text, List<String> params, boolean disjunction) {
+        this.text = text;
+        this.params = params;
+        this.disjunction = disjunction;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public List<String> getParams() {
+        return params;
+    }
+
+    /**
+     * @return whether there is OR, XOR or || out of the literals and comments
+     */
+    public boolean hasDisjunction() {
+        return disjunction;
+    }
+
+    public static SqlFingerprint of(String sql) {
+        return new Tokenizer(sql).tokenize();
+    }
+
+    private static final class Tokenizer {
+        private final String sql;
+        private final StringBuilder text;
+        private final List<String> params = new ArrayList<>();
+        private boolean disjunction = false;
+        private int pos = 0;
+
+        private Tokenizer(String sql) {
+            this.sql = sql;
+            this.text = new StringBuilder(sql.length());
+        }
+
+        private SqlFingerprint tokenize() {
+            int len = sql.length();
+            while (pos < len) {
+                char c = sql.charAt(pos);
+                if (ParseUtil.isSpace(c)) {
+                    skipSpace();
+                } else if (c == '\'' || c == '"') {
+                    string(c);
+                } else if (c == '`') {
+                    pos = copyQuoted(pos, '`');
+                } else if (c == '#' || (c == '-' && isDoubleDash())) {
+                    lineComment();
+                } else if (c == '/' && startsWith("/*")) {
+                    blockComment();
+                } else if (c == '|' && startsWith("||")) {
+                    disjunction = true;
+                    text.append("||");
+                    pos += 2;
+                } else if (Character.isDigit(c) && !isIdentifierChar(lastChar())) {
+                    number();
+                } else if (isIdentifierChar(c)) {
+                    word();
+                } else {
+                    text.append(c);
+                    pos++;
+                }
+            }
+            return new SqlFingerprint(text.toString(), params, disjunction);
+        }
+
+        private void skipSpace() {
+            while (pos < sql.length() && ParseUtil.isSpace(sql.charAt(pos))) {
+                pos++;
+            }
+            if (text.length() > 0 && pos < sql.length()) {
+                text.append(' ');
+            }
+        }
+
+        private void string(char quote) {
+            if (isIdentifierChar(lastChar())) {
+                // charset introducer or x'', b'', n'': kept as is
+                pos = copyQuoted(pos, quote);
+                return;
+            }
+            int start = pos + 1;
+            boolean escaped = false;
+            int i = start;
+            for (; i < sql.length(); i++) {
+                char c = sql.charAt(i);
+                if (c == '\\') {
+                    escaped = true;
+                    i++;
+                } else if (c == quote) {
+                    if (i + 1 < sql.length() && sql.charAt(i + 1) == quote) {
+                        escaped = true;
+                        i++;
+                    } else {
+                        break;
+                    }
+                }
+            }
+            if (i >= sql.length()) {
+                // not closed, let the parser report it
+                text.append(sql, pos, sql.length());
+                pos = sql.length();
+                return;
+            }
+            params.add(escaped ? null : sql.substring(start, i));
+            text.append("'?'");
+            pos = i + 1;
+        }
+
+        private void number() {
+            int start = pos;
+            int i = skipDigits(pos);
+            if (i < sql.length() && sql.charAt(i) == '.') {
+                i = skipDigits(i + 1);
+            }
+            if (i < sql.length() && isIdentifierChar(sql.charAt(i))) {
+                // 1e5, 0x1f or an identifier starting with digits
+                word();
+                return;
+            }
+            params.add(sql.substring(start, i));
+            text.append('?');
+            pos = i;
+        }
+
+        private void word() {
+            int start = pos;
+            while (pos < sql.length() && isIdentifierChar(sql.charAt(pos))) {
+                pos++;
+            }
+            int wordLen = pos - start;
+            if ((wordLen == 2 && sql.regionMatches(true, start, "OR", 0, 2)) ||
+                    (wordLen == 3 && sql.regionMatches(true, start, "XOR", 0, 3))) {
+                disjunction = true;
+            }
+            text.append(sql, start, pos);
+        }
+
+        private void lineComment() {
+            int end = sql.indexOf('\n', pos);
+            end = end < 0 ? sql.length() : end + 1;
+            text.append(sql, pos, end);
+            pos = end;
+        }
+
+        private void blockComment() {
+            int end = sql.indexOf("*/", pos + 2);
+            end = end < 0 ? sql.length() : end + 2;
+            text.append(sql, pos, end);
+            pos = end;
+        }
+
+        private int copyQuoted(int from, char quote) {
+            int end = sql.length();
+            for (int i = from + 1; i < sql.length(); i++) {
+                char c = sql.charAt(i);
+                if (c == '\\' && quote != '`') {
+                    i++;
+                } else if (c == quote) {
+                    if (i + 1 < sql.length() && sql.charAt(i + 1) == quote) {
+                        i++;
+                    } else {
+                        end = i + 1;
+                        break;
+                    }
+                }
+            }
+            text.append(sql, from, end);
+            return end;
+        }
+
+        private int skipDigits(int from) {
+            int i = from;
+            while (i < sql.length() && Character.isDigit(sql.charAt(i))) {
+                i++;
+            }
+            return i;
+        }
+
+        private boolean startsWith(String prefix) {
+            return sql.startsWith(prefix, pos);
+        }
+
+        private boolean isDoubleDash() {
+            return pos + 2 < sql.length() && sql.charAt(pos + 1) == '-' && ParseUtil.isSpace(sql.charAt(pos + 2));
+        }
+
+        private char lastChar() {
+            return text.length() == 0 ? ' ' : text.charAt(text.length() - 1);
+        }
+
+        private static boolean isIdentifierChar(char c) {
+            return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+        }
+    }
+}
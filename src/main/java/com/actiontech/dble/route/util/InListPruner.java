@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2016-2020 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.route.util;
+
+import com.actiontech.dble.config.model.SchemaConfig;
+import com.actiontech.dble.config.model.TableConfig;
+import com.actiontech.dble.route.RouteResultset;
+import com.actiontech.dble.route.RouteResultsetNode;
+import com.actiontech.dble.route.function.AbstractPartitionAlgorithm;
+import com.actiontech.dble.util.StringUtil;
+import com.alibaba.druid.sql.ast.SQLExpr;
+import com.alibaba.druid.sql.ast.SQLStatement;
+import com.alibaba.druid.sql.ast.expr.*;
+import com.alibaba.druid.sql.ast.statement.SQLDeleteStatement;
+import com.alibaba.druid.sql.ast.statement.SQLSelectQuery;
+import com.alibaba.druid.sql.ast.statement.SQLSelectStatement;
+import com.alibaba.druid.sql.ast.statement.SQLUpdateStatement;
+import com.alibaba.druid.sql.dialect.mysql.ast.statement.MySqlSelectQueryBlock;
+import com.alibaba.druid.sql.dialect.mysql.visitor.MySqlOutputVisitor;
+
+import java.util.*;
+
+/**
+ * split the IN list of the sharding column by the data nodes, so that every data node of a single table
+ * statement gets the values of its own only and the data nodes without any value are not used.
+ * <p>
+ * eg: delete from t where id in (1,2,3,4) and status=0, with 2 data nodes by id mod 2
+ * =&gt; dn1: delete from t where id in (2,4) and status=0, dn2: delete from t where id in (1,3) and status=0
+ * <p>
+ * only the IN list at the top AND level of the where is split, and all its values must be literals.
+ * The statement is kept as it is if any value can't be calculated, the route reports it.
+ *
+ * @author ActionTech
+ */
+public final class InListPruner {
+
+    private InListPruner() {
+    }
+
+    /**
+     * rewrite the statements of the nodes of rrs, the statement is not changed after it
+     */
+    public static void prune(SchemaConfig schema, RouteResultset rrs, SQLStatement statement, List<String> tables) {
+        RouteResultsetNode[] nodes = rrs.getNodes();
+        if (schema == null || nodes == null || nodes.length <= 1 || rrs.isNeedOptimizer() || tables == null || tables.size() != 1) {
+            return;
+        }
+        TableConfig tc = schema.getTables().get(tables.get(0));
+        if (tc == null || tc.isGlobalTable() || tc.getPartitionColumn() == null || tc.getRule() == null) {
+            return;
+        }
+        SQLExpr where = getWhere(statement);
+        SQLInListExpr inList = where == null ? null : findInList(where, tc.getPartitionColumn());
+        if (inList == null) {
+            return;
+        }
+        Map<String, List<SQLExpr>> nodeValues = splitValues(tc, inList.getTargetList());
+        if (nodeValues == null) {
+            return;
+        }
+
+        List<SQLExpr> values = inList.getTargetList();
+        List<RouteResultsetNode> prunedNodes = new ArrayList<>(nodes.length);
+        try {
+            for (RouteResultsetNode node : nodes) {
+                List<SQLExpr> nodeValue = nodeValues.get(node.getName());
+                if (nodeValue == null) {
+                    continue;
+                }
+                inList.setTargetList(nodeValue);
+                node.setStatement(RouterUtil.removeSchema(statementToString(statement), schema.getName()));
+                prunedNodes.add(node);
+            }
+        } finally {
+            inList.setTargetList(values);
+        }
+        if (prunedNodes.isEmpty()) {
+            return;
+        }
+        rrs.setNodes(prunedNodes.toArray(new RouteResultsetNode[prunedNodes.size()]));
+    }
+
+    private static SQLExpr getWhere(SQLStatement statement) {
+        if (statement instanceof SQLSelectStatement) {
+            SQLSelectQuery query = ((SQLSelectStatement) statement).getSelect().getQuery();
+            return query instanceof MySqlSelectQueryBlock ? ((MySqlSelectQueryBlock) query).getWhere() : null;
+        } else if (statement instanceof SQLUpdateStatement) {
+            return ((SQLUpdateStatement) statement).getWhere();
+        } else if (statement instanceof SQLDeleteStatement) {
+            return ((SQLDeleteStatement) statement).getWhere();
+        }
+        return null;
+    }
+
+    /**
+     * @return the IN list of the column which must be true for the where, null if not found
+     */
+    private static SQLInListExpr findInList(SQLExpr expr, String column) {
+        if (expr instanceof SQLBinaryOpExpr && ((SQLBinaryOpExpr) expr).getOperator() == SQLBinaryOperator.BooleanAnd) {
+            SQLInListExpr inList = findInList(((SQLBinaryOpExpr) expr).getLeft(), column);
+            return inList != null ? inList : findInList(((SQLBinaryOpExpr) expr).getRight(), column);
+        } else if (expr instanceof SQLInListExpr) {
+            SQLInListExpr inList = (SQLInListExpr) expr;
+            String name;
+            if (inList.getExpr() instanceof SQLIdentifierExpr) {
+                name = ((SQLIdentifierExpr) inList.getExpr()).getName();
+            } else if (inList.getExpr() instanceof SQLPropertyExpr) {
+                name = ((SQLPropertyExpr) inList.getExpr()).getName();
+            } else {
+                return null;
+            }
+            if (!inList.isNot() && inList.getTargetList().size() > 1 && column.equalsIgnoreCase(StringUtil.removeBackQuote(name))) {
+                return inList;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the values of every data node, null if any of the values can't be calculated
+     */
+    private static Map<String, List<SQLExpr>> splitValues(TableConfig tc, List<SQLExpr> values) {
+        AbstractPartitionAlgorithm algorithm = tc.getRule().getRuleAlgorithm();
+        Map<String, List<SQLExpr>> nodeValues = new HashMap<>();
+        for (SQLExpr value : values) {
+            if (!(value instanceof SQLCharExpr || value instanceof SQLIntegerExpr || value instanceof SQLNumberExpr)) {
+                return null;
+            }
+            Integer nodeIndex;
+            try {
+                // the same value as ColumnRoutePair of the route
+                nodeIndex = algorithm.calculate(((SQLValuableExpr) value).getValue().toString());
+            } catch (RuntimeException e) {
+                return null;
+            }
+            if (nodeIndex == null || nodeIndex < 0 || nodeIndex >= tc.getDataNodes().size()) {
+                return null;
+            }
+            nodeValues.computeIfAbsent(tc.getDataNodes().get(nodeIndex), k -> new ArrayList<>()).add(value);
+        }
+        return nodeValues;
+    }
+
+    private static String statementToString(SQLStatement statement) {
+        StringBuilder buf = new StringBuilder();
+        MySqlOutputVisitor visitor = new MySqlOutputVisitor(buf);
+        visitor.setShardingSupport(false);
+        statement.accept(visitor);
+        return buf.toString();
+    }
+}
@@ -33,6 +33,8 @@ import com.actiontech.dble.sqlengine.mpp.LoadData;
 import com.actiontech.dble.util.StringUtil;
 import com.alibaba.druid.sql.ast.SQLExpr;
 import com.alibaba.druid.sql.ast.SQLStatement;
+import com.alibaba.druid.sql.ast.statement.SQLInsertStatement;
+import com.alibaba.druid.sql.ast.statement.SQLReplaceStatement;
 import com.alibaba.druid.sql.ast.statement.SQLSelectStatement;
 import com.alibaba.druid.wall.spi.WallVisitorUtils;
 import org.slf4j.Logger;
@@ -166,14 +168,68 @@ public final class RouterUtil {
     }
 
 
+    /**
+     * keep the statement for sql statistics before the parser changes it, the select parser copies it if it changes the statement.
+     * insert and replace are not kept, the fast insert route has no statement and druid prints the columns of the parsed
+     * statement differently from the sql, both routes are parameterized from the sql to give the same statistics
+     */
+    private static void setStatStatement(RouteResultset rrs, SQLStatement statement) {
+        if (!(statement instanceof SQLInsertStatement) && !(statement instanceof SQLReplaceStatement)) {
+            rrs.setStatStatement(statement);
+        }
+    }
+
+    /**
+     * keep what the parser found for sql statistics, so that they need not parse the sql again
+     */
+    private static void setStatInfo(RouteResultset rrs, SQLStatement statement, ServerSchemaStatVisitor visitor) {
+        rrs.setStatTables(getStatTables(statement, visitor));
+        rrs.setStatConditions(visitor.getConditions());
+        rrs.setStatCurrentTable(visitor.getCurrentTable());
+    }
+
+    /**
+     * the tables for sql statistics, the first one is the master table
+     */
+    public static List<String> getStatTables(SQLStatement statement, ServerSchemaStatVisitor visitor) {
+        List<String> tables = new ArrayList<>(2);
+        if (statement instanceof SQLInsertStatement) {
+            tables.add(getStatTableName(((SQLInsertStatement) statement).getTableName().getSimpleName()));
+        } else if (statement instanceof SQLReplaceStatement) {
+            tables.add(getStatTableName(((SQLReplaceStatement) statement).getTableName().getSimpleName()));
+        }
+        for (String table : visitor.getAliasMap().values()) {
+            if (table == null || "subquery".equalsIgnoreCase(table)) {
+                continue;
+            }
+            table = getStatTableName(table);
+            if (!tables.contains(table)) {
+                tables.add(table);
+            }
+        }
+        return tables;
+    }
+
+    private static String getStatTableName(String table) {
+        table = table.replace("`", "");
+        int dotIdx = table.indexOf('.');
+        if (dotIdx > 0) {
+            table = table.substring(dotIdx + 1).trim();
+        }
+        return table;
+    }
+
     public static RouteResultset routeFromParser(DruidParser druidParser, SchemaConfig schema, RouteResultset rrs, SQLStatement statement,
                                                  String originSql, LayerCachePool cachePool, ServerSchemaStatVisitor visitor,
                                                  ServerConnection sc, PlanNode node, boolean isExplain) throws SQLException {
+        setStatStatement(rrs, statement);
         schema = druidParser.parser(schema, rrs, statement, originSql, cachePool, visitor, sc, isExplain);
+        setStatInfo(rrs, statement, visitor);
         if (rrs.isFinishedExecute()) {
             return null;
         }
         if (rrs.isFinishedRoute()) {
+            InListPruner.prune(schema, rrs, statement, druidParser.getCtx().getTables());
             return rrs;
         }
 
@@ -214,7 +270,7 @@ public final class RouterUtil {
             i++;
         }
         rrs.setNodes(nodes);
-
+        InListPruner.prune(schema, rrs, statement, ctx.getTables());
 
         return rrs;
     }
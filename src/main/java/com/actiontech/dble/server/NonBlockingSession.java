@@ -23,6 +23,8 @@ import com.actiontech.dble.btrace.provider.CostTimeProvider;
 import com.actiontech.dble.config.ErrorCode;
 import com.actiontech.dble.config.ServerConfig;
 import com.actiontech.dble.config.loader.zkprocess.zookeeper.process.DDLInfo;
+import com.actiontech.dble.config.model.SchemaConfig;
+import com.actiontech.dble.config.model.TableConfig;
 import com.actiontech.dble.net.handler.BackEndDataCleaner;
 import com.actiontech.dble.net.handler.FrontendCommandHandler;
 import com.actiontech.dble.net.mysql.EOFPacket;
@@ -31,18 +33,27 @@ import com.actiontech.dble.net.mysql.OkPacket;
 import com.actiontech.dble.net.mysql.StatusFlags;
 import com.actiontech.dble.plan.common.exception.MySQLOutPutException;
 import com.actiontech.dble.plan.node.PlanNode;
+import com.actiontech.dble.plan.node.TableNode;
+import com.actiontech.dble.plan.optimizer.CorrelatedSubQueryProcessor;
 import com.actiontech.dble.plan.optimizer.MyOptimizer;
 import com.actiontech.dble.plan.util.PlanUtil;
 import com.actiontech.dble.plan.visitor.MySQLPlanNodeVisitor;
 import com.actiontech.dble.route.RouteResultset;
 import com.actiontech.dble.route.RouteResultsetNode;
+import com.actiontech.dble.route.cache.ParentKeyLocationCache;
+import com.actiontech.dble.route.parser.druid.ReadOnlyStatementVisitor;
+import com.actiontech.dble.route.parser.util.Pair;
 import com.actiontech.dble.route.parser.util.ParseUtil;
 import com.actiontech.dble.server.parser.ServerParse;
 import com.actiontech.dble.server.status.SlowQueryLog;
 import com.actiontech.dble.server.trace.TraceRecord;
 import com.actiontech.dble.server.trace.TraceResult;
+import com.actiontech.dble.server.workload.WorkloadManager;
+import com.actiontech.dble.server.workload.WorkloadTicket;
 import com.actiontech.dble.singleton.PauseDatanodeManager;
 import com.actiontech.dble.singleton.ProxyMeta;
+import com.actiontech.dble.singleton.QueryMemoryGovernor;
+import com.actiontech.dble.statistic.latency.QueryLatency;
 import com.actiontech.dble.statistic.stat.QueryTimeCost;
 import com.actiontech.dble.statistic.stat.QueryTimeCostContainer;
 import com.alibaba.druid.sql.ast.statement.SQLSelectStatement;
@@ -79,6 +90,10 @@ public class NonBlockingSession implements Session {
     private final ConcurrentMap<RouteResultsetNode, BackendConnection> target;
     private final AtomicLong queriesCounter = new AtomicLong(0);
     private final AtomicLong transactionsCounter = new AtomicLong(0);
+    /* the data nodes executed in the current transaction, true if only SELECT and SHOW are executed on it */
+    private final ConcurrentMap<String, Boolean> readOnlyNodes = new ConcurrentHashMap<>();
+    /* the er parent tables deleted or replaced in the current transaction, see ParentKeyLocationCache */
+    private final Set<Pair<String, String>> changedParentTables = ConcurrentHashMap.newKeySet();
 
     private SavePointHandler savePointHandler;
     // cancel status  0 - CANCEL_STATUS_INIT 1 - CANCEL_STATUS_COMMITTING  2 - CANCEL_STATUS_CANCELING
@@ -99,6 +114,7 @@ public class NonBlockingSession implements Session {
     private MemSizeController orderBufferMC;
     private MemSizeController otherBufferMC;
     private QueryTimeCost queryTimeCost;
+    private final QueryLatency queryLatency = new QueryLatency();
     private CostTimeProvider provider;
     private ComplexQueryProvider xprovider;
     private volatile boolean timeCost = false;
@@ -115,15 +131,22 @@ public class NonBlockingSession implements Session {
 
     private volatile long rowCountCurrentSQL = -1;
     private volatile long rowCountLastSQL = 0;
+    /* the slots of the workload group taken by the current query, null if not admitted or not limited */
+    private volatile WorkloadTicket workloadTicket;
+    /* the query is admitted from the queue of QueryMemoryGovernor and executed again */
+    private volatile boolean memoryAdmitted = false;
 
     private final HashSet<BackendConnection> flowControlledBackendConnections = new HashSet<>();
 
     public NonBlockingSession(ServerConnection source) {
         this.source = source;
         this.target = new ConcurrentHashMap<>(2, 1f);
-        this.joinBufferMC = new MemSizeController(1024L * 1024L * DbleServer.getInstance().getConfig().getSystem().getJoinMemSize());
-        this.orderBufferMC = new MemSizeController(1024L * 1024L * DbleServer.getInstance().getConfig().getSystem().getOrderMemSize());
-        this.otherBufferMC = new MemSizeController(1024L * 1024L * DbleServer.getInstance().getConfig().getSystem().getOtherMemSize());
+        this.joinBufferMC = new MemSizeController(1024L * 1024L * DbleServer.getInstance().getConfig().getSystem().getJoinMemSize(),
+                QueryMemoryGovernor.getInstance());
+        this.orderBufferMC = new MemSizeController(1024L * 1024L * DbleServer.getInstance().getConfig().getSystem().getOrderMemSize(),
+                QueryMemoryGovernor.getInstance());
+        this.otherBufferMC = new MemSizeController(1024L * 1024L * DbleServer.getInstance().getConfig().getSystem().getOtherMemSize(),
+                QueryMemoryGovernor.getInstance());
         this.transactionManager = new TransactionHandlerManager(this);
         if (DbleServer.getInstance().getConfig().getSystem().getUseSerializableMode() == 1) {
             transactionManager.setXaTxEnabled(true, source);
@@ -141,10 +164,12 @@ public class NonBlockingSession implements Session {
 
     void setRequestTime() {
         sessionStage = SessionStage.Read_SQL;
-        long requestTime = 0;
-
+        // the last query has ended
+        releaseWorkload();
+        releaseQueryMemory();
+        long requestTime = System.nanoTime();
+        queryLatency.start(requestTime);
         if (traceEnable || SlowQueryLog.getInstance().isEnableSlowLog()) {
-            requestTime = System.nanoTime();
             traceResult.setVeryStartPrepare(requestTime);
             traceResult.setRequestStartPrepare(new TraceRecord(requestTime));
         }
@@ -163,9 +188,6 @@ public class NonBlockingSession implements Session {
         provider = new CostTimeProvider();
         xprovider = new ComplexQueryProvider();
         provider.beginRequest(source.getId());
-        if (requestTime == 0) {
-            requestTime = System.nanoTime();
-        }
         if (LOGGER.isDebugEnabled()) {
             LOGGER.debug("frontend connection setRequestTime:" + requestTime);
         }
@@ -174,8 +196,10 @@ public class NonBlockingSession implements Session {
 
     void startProcess() {
         sessionStage = SessionStage.Parse_SQL;
+        long parseStart = System.nanoTime();
+        queryLatency.startParse(parseStart);
         if (traceEnable || SlowQueryLog.getInstance().isEnableSlowLog()) {
-            traceResult.setParseStartPrepare(new TraceRecord(System.nanoTime()));
+            traceResult.setParseStartPrepare(new TraceRecord(parseStart));
         }
         if (!timeCost) {
             return;
@@ -185,9 +209,11 @@ public class NonBlockingSession implements Session {
 
     public void endParse() {
         sessionStage = SessionStage.Route_Calculation;
+        long parseEnd = System.nanoTime();
+        queryLatency.endParse(parseEnd);
         if (traceEnable || SlowQueryLog.getInstance().isEnableSlowLog()) {
             traceResult.ready();
-            traceResult.setRouteStart(new TraceRecord(System.nanoTime()));
+            traceResult.setRouteStart(new TraceRecord(parseEnd));
         }
         if (!timeCost) {
             return;
@@ -198,8 +224,10 @@ public class NonBlockingSession implements Session {
 
     void endRoute(RouteResultset rrs) {
         sessionStage = SessionStage.Prepare_to_Push;
+        long routeEnd = System.nanoTime();
+        queryLatency.endRoute(routeEnd);
         if (traceEnable || SlowQueryLog.getInstance().isEnableSlowLog()) {
-            traceResult.setPreExecuteStart(new TraceRecord(System.nanoTime()));
+            traceResult.setPreExecuteStart(new TraceRecord(routeEnd));
         }
         if (!timeCost) {
             return;
@@ -250,6 +278,7 @@ public class NonBlockingSession implements Session {
     }
 
     public void setBackendRequestTime(long backendID) {
+        queryLatency.backendRequest();
         if (!timeCost) {
             return;
         }
@@ -266,6 +295,7 @@ public class NonBlockingSession implements Session {
 
     public void setBackendResponseTime(MySQLConnection conn) {
         sessionStage = SessionStage.Fetching_Result;
+        queryLatency.backendResponse();
         long responseTime = 0;
         if (traceEnable || SlowQueryLog.getInstance().isEnableSlowLog()) {
             RouteResultsetNode node = (RouteResultsetNode) conn.getAttachment();
@@ -322,6 +352,10 @@ public class NonBlockingSession implements Session {
 
     public void setResponseTime(boolean isSuccess) {
         sessionStage = SessionStage.Finished;
+        releaseWorkload();
+        releaseQueryMemory();
+        invalidateChangedParentTables(source.isAutocommit() && !source.isTxStart());
+        queryLatency.finish(source.getUser(), source.getSchema());
         long responseTime = 0;
         if (traceEnable || SlowQueryLog.getInstance().isEnableSlowLog()) {
             responseTime = System.nanoTime();
@@ -350,6 +384,8 @@ public class NonBlockingSession implements Session {
 
     public void setBackendResponseEndTime(MySQLConnection conn) {
         sessionStage = SessionStage.First_Node_Fetched_Result;
+        Object attachment = conn.getAttachment();
+        queryLatency.backendEnd(attachment instanceof RouteResultsetNode ? ((RouteResultsetNode) attachment).getName() : null);
         if (traceEnable || SlowQueryLog.getInstance().isEnableSlowLog()) {
             RouteResultsetNode node = (RouteResultsetNode) conn.getAttachment();
             ResponseHandler responseHandler = conn.getRespHandler();
@@ -430,6 +466,56 @@ public class NonBlockingSession implements Session {
         return this.target;
     }
 
+    /**
+     * called before the statement is sent to the backend connection of the data node
+     */
+    public void markExecutedNode(RouteResultsetNode rrn) {
+        if (Boolean.FALSE.equals(readOnlyNodes.get(rrn.getName()))) {
+            return;
+        }
+        readOnlyNodes.merge(rrn.getName(), isReadOnlyStatement(rrn), Boolean::logicalAnd);
+    }
+
+    /**
+     * only SHOW and the select without locks and function calls are read only,
+     * the select is parsed again in the xa transaction only
+     */
+    private boolean isReadOnlyStatement(RouteResultsetNode rrn) {
+        if (rrn.isModifySQL() || getSessionXaID() == null) {
+            return false;
+        }
+        return rrn.getSqlType() == ServerParse.SHOW || ReadOnlyStatementVisitor.isReadOnlySelect(rrn.getStatement());
+    }
+
+    /**
+     * a read only participant of the xa transaction needs neither prepare nor the recovery log,
+     * the data node never executed in this session is not treated as read only
+     */
+    public boolean isReadOnlyTarget(RouteResultsetNode rrn) {
+        return Boolean.TRUE.equals(readOnlyNodes.get(rrn.getName()));
+    }
+
+    /**
+     * the locations of the parent rows are invalidated when the statement is routed and again when
+     * it is done, the locations found by other sessions in between are not kept then
+     */
+    public void markParentTableChanged(String schema, String table) {
+        ParentKeyLocationCache.getInstance().invalidate(schema, table);
+        changedParentTables.add(new Pair<>(schema, table));
+    }
+
+    private void invalidateChangedParentTables(boolean isTxEnd) {
+        if (changedParentTables.isEmpty()) {
+            return;
+        }
+        for (Pair<String, String> table : changedParentTables) {
+            ParentKeyLocationCache.getInstance().invalidate(table.getKey(), table.getValue());
+        }
+        if (isTxEnd) {
+            changedParentTables.clear();
+        }
+    }
+
     public boolean isNeedWaitFinished() {
         return needWaitFinished;
     }
@@ -486,6 +572,9 @@ public class NonBlockingSession implements Session {
             return;
         }
 
+        if (workloadTicket == null && !WorkloadManager.getInstance().admit(this, rrs, false, countNewBackendCon(nodes))) {
+            return;
+        }
         setRouteResultToTrace(rrs.getNodes());
         if (nodes.length == 1) {
             executeForSingleNode(rrs);
@@ -494,6 +583,36 @@ public class NonBlockingSession implements Session {
         }
     }
 
+    /**
+     * the connections of the transaction are not counted again
+     */
+    private int countNewBackendCon(RouteResultsetNode[] nodes) {
+        int count = 0;
+        for (RouteResultsetNode node : nodes) {
+            if (!target.containsKey(node)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * the data nodes of the tables, the complex query may use a connection for every one of them
+     */
+    private int countBackendCon(PlanNode node) {
+        Set<String> dataNodes = new HashSet<>();
+        for (TableNode table : node.getReferedTableNodes()) {
+            SchemaConfig schemaConfig = DbleServer.getInstance().getConfig().getSchemas().get(table.getSchema());
+            TableConfig tableConfig = schemaConfig == null ? null : schemaConfig.getTables().get(table.getTableName());
+            if (table.getNoshardNode() != null) {
+                dataNodes.addAll(table.getNoshardNode());
+            } else if (tableConfig != null) {
+                dataNodes.addAll(tableConfig.getDataNodes());
+            }
+        }
+        return Math.max(dataNodes.size(), 1);
+    }
+
     public void setRouteResultToTrace(RouteResultsetNode[] nodes) {
         if (SlowQueryLog.getInstance().isEnableSlowLog()) {
             traceResult.setDataNodes(nodes);
@@ -601,26 +720,38 @@ public class NonBlockingSession implements Session {
     private void executeMultiResultSet(PlanNode node) {
         init();
         HandlerBuilder builder = new HandlerBuilder(node, this);
-        try {
-            BaseHandlerBuilder baseBuilder = builder.build();
-            if (traceEnable || SlowQueryLog.getInstance().isEnableSlowLog()) {
-                traceResult.setBuilder(baseBuilder);
-            }
-            discard = true;
-        } catch (SQLSyntaxErrorException e) {
+        builder.build();
+    }
+
+    /**
+     * called by HandlerBuilder after the handlers of the complex query are started
+     */
+    public void onMultiResultSetStarted(BaseHandlerBuilder baseBuilder) {
+        if (traceEnable || SlowQueryLog.getInstance().isEnableSlowLog()) {
+            traceResult.setBuilder(baseBuilder);
+        }
+        discard = true;
+    }
+
+    /**
+     * called by HandlerBuilder if the handlers of the complex query can't be built or started
+     */
+    public void onMultiResultSetError(PlanNode node, Exception e) {
+        if (e instanceof SQLSyntaxErrorException) {
             LOGGER.info(String.valueOf(source) + " execute plan is : " + node, e);
             source.writeErrMessage(ErrorCode.ER_YES, "optimizer build error");
-        } catch (NoSuchElementException e) {
+        } else if (e instanceof NoSuchElementException) {
             LOGGER.info(String.valueOf(source) + " execute plan is : " + node, e);
             this.closeAndClearResources("Exception");
             source.writeErrMessage(ErrorCode.ER_NO_VALID_CONNECTION, "no valid connection");
-        } catch (MySQLOutPutException e) {
+        } else if (e instanceof MySQLOutPutException) {
             if (LOGGER.isInfoEnabled()) {
                 LOGGER.info(String.valueOf(source) + " execute plan is : " + node, e);
             }
+            MySQLOutPutException outPutException = (MySQLOutPutException) e;
             this.closeAndClearResources("Exception");
-            source.writeErrMessage(e.getSqlState(), e.getMessage(), e.getErrorCode());
-        } catch (Exception e) {
+            source.writeErrMessage(outPutException.getSqlState(), outPutException.getMessage(), outPutException.getErrorCode());
+        } else {
             LOGGER.info(String.valueOf(source) + " execute plan is : " + node, e);
             this.closeAndClearResources("Exception");
             source.writeErrMessage(ErrorCode.ER_HANDLE_DATA, e.toString());
@@ -631,7 +762,7 @@ public class NonBlockingSession implements Session {
         SQLSelectStatement ast = (SQLSelectStatement) rrs.getSqlStatement();
         MySQLPlanNodeVisitor visitor = new MySQLPlanNodeVisitor(this.getSource().getSchema(), this.getSource().getCharset().getResultsIndex(), ProxyMeta.getInstance().getTmManager(), false, this.getSource().getUsrVariables());
         visitor.visit(ast);
-        PlanNode node = visitor.getTableNode();
+        PlanNode node = CorrelatedSubQueryProcessor.optimize(visitor.getTableNode());
         if (node.isCorrelatedSubQuery()) {
             throw new MySQLOutPutException(ErrorCode.ER_UNKNOWN_ERROR, "", "Correlated Sub Queries is not supported ");
         }
@@ -647,14 +778,18 @@ public class NonBlockingSession implements Session {
                 return;
             }
         }
+        if (workloadTicket == null && !WorkloadManager.getInstance().admit(this, rrs, true, countBackendCon(node))) {
+            return;
+        }
+        if (!memoryAdmitted && !QueryMemoryGovernor.getInstance().admit(this, rrs)) {
+            return;
+        }
+        memoryAdmitted = false;
         setPreExecuteEnd(true);
         if (PlanUtil.containsSubQuery(node)) {
             setSubQuery();
-            final PlanNode finalNode = node;
-            //sub Query build will be blocked, so use ComplexQueryExecutor
-            DbleServer.getInstance().getComplexQueryExecutor().execute(() -> {
-                executeMultiResultSet(finalNode);
-            });
+            // the sub queries are started by the build, and it is continued after they are finished
+            executeMultiResultSet(node);
         } else {
             if (!visitor.isContainSchema()) {
                 node.setAst(ast);
@@ -759,6 +894,8 @@ public class NonBlockingSession implements Session {
      * {@link ServerConnection#isClosed()} must be true before invoking this
      */
     public void terminate() {
+        releaseWorkload();
+        releaseQueryMemory();
         // XA MUST BE FINISHED
         if ((source.isTxStart() && transactionManager.getXAStage() != null) ||
                 needWaitFinished) {
@@ -774,6 +911,7 @@ public class NonBlockingSession implements Session {
      * Only used when kill @@connection is Issued
      */
     void initiativeTerminate() {
+        releaseQueryMemory();
         for (BackendConnection node : target.values()) {
             node.closeWithoutRsp("client closed ");
         }
@@ -781,6 +919,7 @@ public class NonBlockingSession implements Session {
     }
 
     public void closeAndClearResources(String reason) {
+        releaseQueryMemory();
         // XA MUST BE FINISHED
         if (source.isTxStart() && transactionManager.getXAStage() != null) {
             return;
@@ -792,6 +931,7 @@ public class NonBlockingSession implements Session {
     }
 
     public void forceClose(String reason) {
+        releaseQueryMemory();
         for (BackendConnection node : target.values()) {
             node.closeWithoutRsp(reason);
         }
@@ -949,6 +1089,8 @@ public class NonBlockingSession implements Session {
             this.releaseConnections(needClosed);
         }
         needWaitFinished = false;
+        readOnlyNodes.clear();
+        invalidateChangedParentTables(true);
         source.setTxStart(false);
         source.getAndIncrementXid();
     }
@@ -1124,6 +1266,35 @@ public class NonBlockingSession implements Session {
     }
 
 
+    public void setWorkloadTicket(WorkloadTicket workloadTicket) {
+        this.workloadTicket = workloadTicket;
+    }
+
+    public void setMemoryAdmitted(boolean memoryAdmitted) {
+        this.memoryAdmitted = memoryAdmitted;
+    }
+
+    /**
+     * give back the memory of QueryMemoryGovernor which is not released by the buffers of the query,
+     * such as the query is killed or the session is closed
+     */
+    public void releaseQueryMemory() {
+        joinBufferMC.releaseReserved();
+        orderBufferMC.releaseReserved();
+        otherBufferMC.releaseReserved();
+    }
+
+    /**
+     * release the slots of the workload group taken by the query
+     */
+    public void releaseWorkload() {
+        WorkloadTicket ticket = workloadTicket;
+        if (ticket != null) {
+            workloadTicket = null;
+            ticket.release();
+        }
+    }
+
     public MemSizeController getJoinBufferMC() {
         return joinBufferMC;
     }
@@ -1226,6 +1397,10 @@ public class NonBlockingSession implements Session {
     }
 
     public void startFlowControl(BackendConnection backendConnection) {
+        // the backend goes on reading, the results are spilled to file until it's full
+        if (source.startWriteSpill()) {
+            return;
+        }
         LOGGER.info("Session start flow control " + this.getSource());
         synchronized (flowControlledBackendConnections) {
             source.setFlowControlled(true);
@@ -7,6 +7,7 @@ package com.actiontech.dble.server;
 
 import com.actiontech.dble.DbleServer;
 import com.actiontech.dble.backend.BackendConnection;
+import com.actiontech.dble.backend.ConMap;
 import com.actiontech.dble.backend.mysql.nio.handler.transaction.savepoint.SavePointHandler;
 import com.actiontech.dble.config.ErrorCode;
 import com.actiontech.dble.config.ServerConfig;
@@ -100,12 +101,11 @@ public class ServerConnection extends FrontendConnection {
     }
 
     @Override
-    public boolean isIdleTimeout() {
+    public long getIdleExpireTime() {
         if (isAuthenticated) {
-            return super.isIdleTimeout();
+            return super.getIdleExpireTime();
         } else {
-            return TimeUtil.currentTimeMillis() > Math.max(lastWriteTime,
-                    lastReadTime) + AUTH_TIMEOUT;
+            return Math.max(lastWriteTime, lastReadTime) + AUTH_TIMEOUT;
         }
     }
 
@@ -117,6 +117,13 @@ public class ServerConnection extends FrontendConnection {
         this.txIsolation = txIsolation;
     }
 
+    /**
+     * @return the session state which a backend connection needs to execute without sync sql
+     */
+    public int getBackendStateHash(boolean expectAutocommit) {
+        return ConMap.getStateHash(charsetName, txIsolation, expectAutocommit, usrVariables, sysVariables);
+    }
+
     public boolean isAutocommit() {
         return autocommit;
     }
@@ -620,6 +627,13 @@ public class ServerConnection extends FrontendConnection {
         }
     }
 
+    @Override
+    protected void writeErrMessage(byte id, int vendorCode, String sqlState, String msg) {
+        session.releaseWorkload();
+        session.releaseQueryMemory();
+        super.writeErrMessage(id, vendorCode, sqlState, msg);
+    }
+
     @Override
     public void write(byte[] data) {
         SerializableLock.getInstance().unLock(this.id);
@@ -19,7 +19,9 @@ import com.actiontech.dble.net.mysql.EOFPacket;
 import com.actiontech.dble.net.mysql.FieldPacket;
 import com.actiontech.dble.net.mysql.ResultSetHeaderPacket;
 import com.actiontech.dble.net.mysql.RowDataPacket;
+import com.actiontech.dble.plan.common.exception.MySQLOutPutException;
 import com.actiontech.dble.plan.node.PlanNode;
+import com.actiontech.dble.plan.optimizer.CorrelatedSubQueryProcessor;
 import com.actiontech.dble.plan.optimizer.MyOptimizer;
 import com.actiontech.dble.plan.util.ComplexQueryPlanUtil;
 import com.actiontech.dble.plan.util.PlanUtil;
@@ -83,7 +85,10 @@ public final class ExplainHandler {
         SQLSelectStatement ast = (SQLSelectStatement) rrs.getSqlStatement();
         MySQLPlanNodeVisitor visitor = new MySQLPlanNodeVisitor(c.getSchema(), c.getCharset().getResultsIndex(), ProxyMeta.getInstance().getTmManager(), false, c.getUsrVariables());
         visitor.visit(ast);
-        PlanNode node = visitor.getTableNode();
+        PlanNode node = CorrelatedSubQueryProcessor.optimize(visitor.getTableNode());
+        if (node.isCorrelatedSubQuery()) {
+            throw new MySQLOutPutException(ErrorCode.ER_UNKNOWN_ERROR, "", "Correlated Sub Queries is not supported ");
+        }
         node.setSql(rrs.getStatement());
         node.setUpFields();
         PlanUtil.checkTablesPrivilege(c, node, ast);
@@ -6,6 +6,7 @@
 package com.actiontech.dble.server.handler;
 
 import com.actiontech.dble.DbleServer;
+import com.actiontech.dble.backend.datasource.check.GlobalTableChangeTracker;
 import com.actiontech.dble.backend.mysql.CharsetUtil;
 import com.actiontech.dble.cache.LayerCachePool;
 import com.actiontech.dble.config.ErrorCode;
@@ -334,6 +335,7 @@ public final class ServerLoadDataInfileHandler implements LoadDataInfileHandler
             }
             rrs.setGlobalTable(true);
             rrs.setNodes(rrsNodes);
+            GlobalTableChangeTracker.getInstance().markAll(schema.getName(), tableName);
             return rrs;
         } else {
             DruidShardingParseInfo ctx = new DruidShardingParseInfo();
@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2016-2020 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.server.workload;
+
+import com.actiontech.dble.config.model.UserConfig;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * WorkloadGroup, the limits of a user and the queries of it running and waiting.
+ * The counters are guarded by the lock of WorkloadManager.
+ *
+ * @author ActionTech
+ */
+public class WorkloadGroup {
+    private final String user;
+    private volatile int maxComplexQuery;
+    private volatile int maxBackendCon;
+    private volatile int priority;
+    private volatile long queueTimeout;
+
+    int runningComplexQuery;
+    int usedBackendCon;
+    /* the virtual time of the stride scheduling, the group with the smallest pass runs first */
+    long pass;
+    final Deque<WorkloadManager.Request> queue = new ArrayDeque<>();
+
+    long queuedCount;
+    long totalWaitTime;
+    long maxWaitTime;
+    long timeoutCount;
+
+    WorkloadGroup(String user) {
+        this.user = user;
+    }
+
+    void setLimits(UserConfig userConfig) {
+        this.maxComplexQuery = userConfig.getMaxComplexQuery();
+        this.maxBackendCon = userConfig.getMaxBackendCon();
+        this.priority = userConfig.getPriority();
+        this.queueTimeout = userConfig.getQueueTimeout();
+    }
+
+    /**
+     * @return false if none of the limits is set, the queries of the user needn't be admitted
+     */
+    boolean isLimited() {
+        return maxComplexQuery > 0 || maxBackendCon > 0;
+    }
+
+    boolean canRun(boolean complex, int backendCon) {
+        if (complex && maxComplexQuery > 0 && runningComplexQuery >= maxComplexQuery) {
+            return false;
+        }
+        // a query needs more connections than maxBackendCon can run alone
+        return maxBackendCon == 0 || usedBackendCon == 0 || usedBackendCon + backendCon <= maxBackendCon;
+    }
+
+    void recordWait(long waitTime) {
+        totalWaitTime += waitTime;
+        maxWaitTime = Math.max(maxWaitTime, waitTime);
+    }
+
+    public String getUser() {
+        return user;
+    }
+
+    public int getMaxComplexQuery() {
+        return maxComplexQuery;
+    }
+
+    public int getMaxBackendCon() {
+        return maxBackendCon;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    public long getQueueTimeout() {
+        return queueTimeout;
+    }
+}
@@ -0,0 +1,250 @@
+/*
+ * Copyright (C) 2016-2020 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.server.workload;
+
+import com.actiontech.dble.DbleServer;
+import com.actiontech.dble.config.ErrorCode;
+import com.actiontech.dble.config.model.UserConfig;
+import com.actiontech.dble.route.RouteResultset;
+import com.actiontech.dble.server.NonBlockingSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * WorkloadManager, the concurrent complex queries and backend connections of every user.
+ * <p>
+ * a query over the limits of its user, or over maxConcurrentComplexQuery of the server, waits in
+ * the queue of the user. When the slots are released, the users take turns by their priorities
+ * (stride scheduling) and the queries of a user are admitted in order. The admitted query is
+ * executed again by the session, the query waits longer than queueTimeout is rejected.
+ *
+ * @author ActionTech
+ */
+public final class WorkloadManager {
+    private static final Logger LOGGER = LoggerFactory.getLogger(WorkloadManager.class);
+    private static final WorkloadManager INSTANCE = new WorkloadManager();
+    private static final long STRIDE = 1L << 20;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<String, WorkloadGroup> groups = new ConcurrentHashMap<>();
+    private volatile int maxComplexQuery;
+    private int runningComplexQuery;
+    private long virtualTime;
+
+    private WorkloadManager() {
+    }
+
+    public static WorkloadManager getInstance() {
+        return INSTANCE;
+    }
+
+    public void initForLatest(Map<String, UserConfig> userConfigMap, int maxConcurrentComplexQuery) {
+        List<Request> admitted;
+        lock.lock();
+        try {
+            this.maxComplexQuery = maxConcurrentComplexQuery;
+            for (UserConfig userConfig : userConfigMap.values()) {
+                if (!userConfig.isManager()) {
+                    groups.computeIfAbsent(userConfig.getName(), WorkloadGroup::new).setLimits(userConfig);
+                }
+            }
+            // the limits may be raised
+            admitted = dispatch();
+        } finally {
+            lock.unlock();
+        }
+        execute(admitted);
+    }
+
+    /**
+     * admit the query before it is executed
+     *
+     * @return true if the query can be executed now, false if it waits in the queue, the session
+     * will execute the query again after it's admitted or write the error when it's timeout
+     */
+    public boolean admit(NonBlockingSession session, RouteResultset rrs, boolean complex, int backendCon) {
+        WorkloadGroup group = groups.get(session.getSource().getUser());
+        if (group == null || (!group.isLimited() && (!complex || maxComplexQuery == 0))) {
+            return true;
+        }
+        lock.lock();
+        try {
+            // without the limit of connections, the simple queries needn't wait behind the complex ones
+            boolean noWaiting = group.queue.isEmpty() || (!complex && group.getMaxBackendCon() == 0);
+            if (noWaiting && canRun(group, complex, backendCon)) {
+                session.setWorkloadTicket(take(group, complex, backendCon));
+                return true;
+            }
+            if (group.queue.isEmpty()) {
+                // the idle time doesn't count
+                group.pass = Math.max(group.pass, virtualTime);
+            }
+            group.queue.add(new Request(session, rrs, complex, backendCon));
+            group.queuedCount++;
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void release(WorkloadTicket ticket) {
+        List<Request> admitted;
+        lock.lock();
+        try {
+            WorkloadGroup group = ticket.getGroup();
+            if (ticket.isComplex()) {
+                group.runningComplexQuery--;
+                runningComplexQuery--;
+            }
+            group.usedBackendCon -= ticket.getBackendCon();
+            admitted = dispatch();
+        } finally {
+            lock.unlock();
+        }
+        execute(admitted);
+    }
+
+    /**
+     * reject the queries waiting longer than the queueTimeout of their users
+     */
+    public void checkQueueTimeout() {
+        List<Request> timeout = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        lock.lock();
+        try {
+            for (WorkloadGroup group : groups.values()) {
+                for (Iterator<Request> it = group.queue.iterator(); it.hasNext(); ) {
+                    Request request = it.next();
+                    if (now - request.enqueueTime >= group.getQueueTimeout()) {
+                        it.remove();
+                        group.timeoutCount++;
+                        group.recordWait(now - request.enqueueTime);
+                        timeout.add(request);
+                    }
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        for (Request request : timeout) {
+            request.session.getSource().writeErrMessage(ErrorCode.ER_OUT_OF_RESOURCES,
+                    "The query waited for the workload slots of user '" + request.session.getSource().getUser() + "' too long");
+        }
+    }
+
+    public Collection<WorkloadGroup> getGroups() {
+        return groups.values();
+    }
+
+    /**
+     * @return the queue depth, queued count, total and max wait time and timeout count of the group
+     */
+    public long[] getQueueStat(WorkloadGroup group) {
+        lock.lock();
+        try {
+            return new long[]{group.queue.size(), group.queuedCount, group.totalWaitTime, group.maxWaitTime, group.timeoutCount};
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the running complex queries and used backend connections of the group
+     */
+    public int[] getRunningStat(WorkloadGroup group) {
+        lock.lock();
+        try {
+            return new int[]{group.runningComplexQuery, group.usedBackendCon};
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean canRun(WorkloadGroup group, boolean complex, int backendCon) {
+        if (complex && maxComplexQuery > 0 && runningComplexQuery >= maxComplexQuery) {
+            return false;
+        }
+        return group.canRun(complex, backendCon);
+    }
+
+    private WorkloadTicket take(WorkloadGroup group, boolean complex, int backendCon) {
+        if (complex) {
+            group.runningComplexQuery++;
+            runningComplexQuery++;
+        }
+        group.usedBackendCon += backendCon;
+        virtualTime = Math.max(virtualTime, group.pass);
+        group.pass += STRIDE / Math.max(group.getPriority(), 1);
+        return new WorkloadTicket(group, complex, backendCon);
+    }
+
+    /**
+     * admit the waiting queries can run now, the group with the smallest pass first
+     */
+    private List<Request> dispatch() {
+        List<Request> admitted = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        for (; ; ) {
+            WorkloadGroup next = null;
+            for (WorkloadGroup group : groups.values()) {
+                Request head = group.queue.peek();
+                if (head != null && canRun(group, head.complex, head.backendCon) && (next == null || group.pass < next.pass)) {
+                    next = group;
+                }
+            }
+            if (next == null) {
+                return admitted;
+            }
+            Request request = next.queue.poll();
+            next.recordWait(now - request.enqueueTime);
+            request.ticket = take(next, request.complex, request.backendCon);
+            admitted.add(request);
+        }
+    }
+
+    private void execute(List<Request> admitted) {
+        for (Request request : admitted) {
+            NonBlockingSession session = request.session;
+            if (session.getSource().isClosed()) {
+                request.ticket.release();
+                continue;
+            }
+            session.setWorkloadTicket(request.ticket);
+            DbleServer.getInstance().getBusinessExecutor().execute(() -> {
+                try {
+                    session.execute(request.rrs);
+                } catch (Exception e) {
+                    LOGGER.info("execute the admitted query error", e);
+                    session.getSource().writeErrMessage(ErrorCode.ER_HANDLE_DATA, e.toString());
+                }
+            });
+        }
+    }
+
+    static final class Request {
+        private final NonBlockingSession session;
+        private final RouteResultset rrs;
+        private final boolean complex;
+        private final int backendCon;
+        private final long enqueueTime = System.currentTimeMillis();
+        private WorkloadTicket ticket;
+
+        Request(NonBlockingSession session, RouteResultset rrs, boolean complex, int backendCon) {
+            this.session = session;
+            this.rrs = rrs;
+            this.complex = complex;
+            this.backendCon = backendCon;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2016-2020 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.server.workload;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * WorkloadTicket, the slots taken by an admitted query, released once when the query ends
+ *
+ * @author ActionTech
+ */
+public class WorkloadTicket {
+    private final WorkloadGroup group;
+    private final boolean complex;
+    private final int backendCon;
+    private final AtomicBoolean released = new AtomicBoolean(false);
+
+    WorkloadTicket(WorkloadGroup group, boolean complex, int backendCon) {
+        this.group = group;
+        this.complex = complex;
+        this.backendCon = backendCon;
+    }
+
+    public void release() {
+        if (released.compareAndSet(false, true)) {
+            WorkloadManager.getInstance().release(this);
+        }
+    }
+
+    WorkloadGroup getGroup() {
+        return group;
+    }
+
+    boolean isComplex() {
+        return complex;
+    }
+
+    int getBackendCon() {
+        return backendCon;
+    }
+}
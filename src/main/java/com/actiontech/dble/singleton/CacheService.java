@@ -13,6 +13,8 @@ import com.actiontech.dble.cache.impl.EnchachePooFactory;
 import com.actiontech.dble.cache.impl.LevelDBCachePooFactory;
 import com.actiontech.dble.cache.impl.MapDBCachePooFactory;
 import com.actiontech.dble.cache.impl.RocksDBCachePoolFactory;
+import com.actiontech.dble.route.cache.ParentKeyLocationCache;
+import com.actiontech.dble.route.cache.RoutePlanCache;
 import com.actiontech.dble.util.ResourceUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -229,6 +231,8 @@ public final class CacheService {
         for (CachePool pool : allPools.values()) {
             pool.clearCache();
         }
+        RoutePlanCache.getInstance().clearCache();
+        ParentKeyLocationCache.getInstance().clearCache();
     }
 
     public void reloadCache(boolean isLowerCaseTableNames) {
@@ -0,0 +1,243 @@
+/*
+ * Copyright (C) 2016-2020 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.singleton;
+
+import com.actiontech.dble.config.ErrorCode;
+import com.actiontech.dble.config.model.SystemConfig;
+import com.actiontech.dble.route.RouteResultset;
+import com.actiontech.dble.server.NonBlockingSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * the memory used by the result buffers of all complex queries in the process.
+ * <p>
+ * the MemSizeController of every session reserves memory from here, so that the buffers
+ * spill to disk earlier when the memory used is over the spill threshold. A new complex
+ * query waits in the queue when the budget is used up, it's executed again by the session
+ * after the memory is released by the others, or rejected after queryAdmissionTimeout.
+ */
+public final class QueryMemoryGovernor {
+    private static final Logger LOGGER = LoggerFactory.getLogger(QueryMemoryGovernor.class);
+    private static final QueryMemoryGovernor INSTANCE = new QueryMemoryGovernor();
+
+    /* 0 means not limited */
+    private volatile long budget;
+    private volatile long spillThreshold;
+    private volatile long admissionTimeout;
+    private volatile Executor executor;
+
+    private final AtomicLong used = new AtomicLong();
+    private final AtomicLong peak = new AtomicLong();
+    private final AtomicLong earlySpillCount = new AtomicLong();
+    private final AtomicLong admittedCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicInteger waitingCount = new AtomicInteger();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ArrayDeque<Request> queue = new ArrayDeque<>();
+
+    QueryMemoryGovernor() {
+    }
+
+    public static QueryMemoryGovernor getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param queryExecutor executes the queries admitted from the queue
+     */
+    public void init(SystemConfig system, Executor queryExecutor) {
+        long size = 1024L * 1024L * system.getQueryMemoryBudget();
+        if (size == 0) {
+            size = Runtime.getRuntime().maxMemory() / 4;
+        }
+        this.spillThreshold = size / 100 * system.getQueryMemorySpillPercent();
+        this.admissionTimeout = system.getQueryAdmissionTimeout();
+        this.executor = queryExecutor;
+        this.budget = size;
+    }
+
+    /**
+     * reserve memory for the result buffer
+     *
+     * @return false if the memory used is over the spill threshold, the buffer should spill to disk
+     */
+    public boolean reserve(long increment) {
+        long current = used.addAndGet(increment);
+        for (; ; ) {
+            long max = peak.get();
+            if (current <= max || peak.compareAndSet(max, current)) {
+                break;
+            }
+        }
+        if (budget > 0 && current > spillThreshold) {
+            earlySpillCount.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    public void release(long decrement) {
+        long current = used.addAndGet(-decrement);
+        if (waitingCount.get() > 0 && current < budget) {
+            execute(dispatch());
+        }
+    }
+
+    /**
+     * the admission of a new complex query
+     *
+     * @return true if the query can be executed now, false if it waits in the queue or is rejected,
+     * the session will execute the query again after it's admitted or write the error
+     */
+    public boolean admit(NonBlockingSession session, RouteResultset rrs) {
+        if (budget <= 0 || used.get() < budget) {
+            admittedCount.incrementAndGet();
+            return true;
+        }
+        if (admissionTimeout == 0) {
+            reject(session);
+            return false;
+        }
+        lock.lock();
+        try {
+            queue.add(new Request(session, rrs));
+            waitingCount.incrementAndGet();
+        } finally {
+            lock.unlock();
+        }
+        // the memory may be released before the query is queued
+        if (used.get() < budget) {
+            execute(dispatch());
+        }
+        return false;
+    }
+
+    /**
+     * reject the queries waiting longer than queryAdmissionTimeout
+     */
+    public void checkQueueTimeout() {
+        checkQueueTimeout(System.currentTimeMillis());
+    }
+
+    void checkQueueTimeout(long now) {
+        List<Request> timeout = new ArrayList<>();
+        lock.lock();
+        try {
+            for (Iterator<Request> it = queue.iterator(); it.hasNext(); ) {
+                Request request = it.next();
+                if (now - request.enqueueTime >= admissionTimeout) {
+                    it.remove();
+                    waitingCount.decrementAndGet();
+                    timeout.add(request);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        for (Request request : timeout) {
+            reject(request.session);
+        }
+    }
+
+    /**
+     * admit the waiting queries while the budget is not used up
+     */
+    private List<Request> dispatch() {
+        List<Request> admitted = new ArrayList<>();
+        lock.lock();
+        try {
+            while (!queue.isEmpty() && used.get() < budget) {
+                admitted.add(queue.poll());
+                waitingCount.decrementAndGet();
+            }
+        } finally {
+            lock.unlock();
+        }
+        return admitted;
+    }
+
+    private void execute(List<Request> admitted) {
+        for (Request request : admitted) {
+            final NonBlockingSession session = request.session;
+            if (session.getSource().isClosed()) {
+                continue;
+            }
+            admittedCount.incrementAndGet();
+            session.setMemoryAdmitted(true);
+            final RouteResultset rrs = request.rrs;
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        session.execute(rrs);
+                    } catch (Exception e) {
+                        LOGGER.info("execute the admitted query error", e);
+                        session.getSource().writeErrMessage(ErrorCode.ER_HANDLE_DATA, e.toString());
+                    }
+                }
+            });
+        }
+    }
+
+    private void reject(NonBlockingSession session) {
+        rejectedCount.incrementAndGet();
+        session.getSource().writeErrMessage(ErrorCode.ER_OUT_OF_RESOURCES,
+                "The memory of complex queries is used up, please try again later");
+    }
+
+    public long getBudget() {
+        return budget;
+    }
+
+    public long getSpillThreshold() {
+        return spillThreshold;
+    }
+
+    public long getUsed() {
+        return used.get();
+    }
+
+    public long getPeak() {
+        return peak.get();
+    }
+
+    public long getEarlySpillCount() {
+        return earlySpillCount.get();
+    }
+
+    public long getAdmittedCount() {
+        return admittedCount.get();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    public int getWaitingCount() {
+        return waitingCount.get();
+    }
+
+    private static final class Request {
+        private final NonBlockingSession session;
+        private final RouteResultset rrs;
+        private final long enqueueTime = System.currentTimeMillis();
+
+        Request(NonBlockingSession session, RouteResultset rrs) {
+            this.session = session;
+            this.rrs = rrs;
+        }
+    }
+}
@@ -8,12 +8,15 @@ package com.actiontech.dble.singleton;
 import com.actiontech.dble.route.RouteResultset;
 import com.actiontech.dble.config.Versions;
 import com.actiontech.dble.config.model.SchemaConfig;
+import com.actiontech.dble.route.cache.RoutePlanCache;
 import com.actiontech.dble.route.factory.RouteStrategyFactory;
 import com.actiontech.dble.route.handler.HintHandler;
 import com.actiontech.dble.route.handler.HintHandlerFactory;
 import com.actiontech.dble.route.handler.HintSQLHandler;
+import com.actiontech.dble.route.parser.util.SqlFingerprint;
 import com.actiontech.dble.server.ServerConnection;
 import com.actiontech.dble.server.parser.ServerParse;
+import com.actiontech.dble.statistic.stat.QueryConditionAnalyzer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -56,45 +59,22 @@ public final class RouteService {
         /*!dble: sql = select name from aa */
         /*!dble: schema = test */
         int hintLength = RouteService.isHintSql(stmt);
+        SqlFingerprint fingerprint = null;
+        String planKey = null;
+        if (hintLength == -1 && isPlanCacheAble(sqlType, sc, isExplain)) {
+            stmt = stmt.trim();
+            fingerprint = SqlFingerprint.of(stmt);
+            planKey = (schema == null ? "NULL" : schema.getName()) + "_" + sc.getUser() + "_" + fingerprint.getText();
+            rrs = RoutePlanCache.getInstance().route(planKey, fingerprint, stmt, sqlType);
+            if (rrs != null) {
+                sc.getSession2().endParse();
+                return rrs;
+            }
+        }
         if (hintLength != -1) {
             int endPos = stmt.indexOf("*/");
             if (endPos > 0) {
-                // router by hint of !dble:
-                String hint = stmt.substring(hintLength, endPos).trim();
-
-                String hintSplit = "=";
-                int firstSplitPos = hint.indexOf(hintSplit);
-                if (firstSplitPos > 0) {
-                    Map hintMap = parseKeyValue(hint);
-                    String hintType = (String) hintMap.get(HINT_TYPE);
-                    String hintSql = (String) hintMap.get(hintType);
-                    if (hintSql.length() == 0) {
-                        String msg = "comment in sql must meet :/*!" + Versions.ANNOTATION_NAME + "type=value*/ or /*#" + Versions.ANNOTATION_NAME + "type=value*/ or /*" + Versions.ANNOTATION_NAME + "type=value*/: " + stmt;
-                        LOGGER.info(msg);
-                        throw new SQLSyntaxErrorException(msg);
-                    }
-                    String realSQL = stmt.substring(endPos + "*/".length()).trim();
-
-                    HintHandler hintHandler = HintHandlerFactory.getHintHandler(hintType);
-                    if (hintHandler != null) {
-                        if (hintHandler instanceof HintSQLHandler) {
-                            int hintSqlType = ServerParse.parse(hintSql) & 0xff;
-                            rrs = hintHandler.route(schema, sqlType, realSQL, sc, CacheService.getTableId2DataNodeCache(), hintSql, hintSqlType, hintMap);
-                            // HintSQLHandler will always send to master
-                            rrs.setRunOnSlave(false);
-                        } else {
-                            rrs = hintHandler.route(schema, sqlType, realSQL, sc, CacheService.getTableId2DataNodeCache(), hintSql, sqlType, hintMap);
-                        }
-                    } else {
-                        String msg = "Not supported hint sql type : " + hintType;
-                        LOGGER.info(msg);
-                        throw new SQLSyntaxErrorException(msg);
-                    }
-                } else { //fixed by runfriends@126.com
-                    String msg = "comment in sql must meet :/*!" + Versions.ANNOTATION_NAME + "type=value*/ or /*#" + Versions.ANNOTATION_NAME + "type=value*/ or /*" + Versions.ANNOTATION_NAME + "type=value*/: " + stmt;
-                    LOGGER.info(msg);
-                    throw new SQLSyntaxErrorException(msg);
-                }
+                rrs = routeByHint(schema, sqlType, stmt, sc, hintLength, endPos);
             } else {
                 stmt = stmt.trim();
                 rrs = RouteStrategyFactory.getRouteStrategy().route(schema, sqlType, stmt, sc, CacheService.getTableId2DataNodeCache(), isExplain);
@@ -108,9 +88,63 @@ public final class RouteService {
                 sc.getSession2().getRemingSql() == null) {
             CacheService.getSqlRouteCache().putIfAbsent(cacheKey, rrs);
         }
+        if (fingerprint != null) {
+            RoutePlanCache.getInstance().tryCache(planKey, fingerprint, stmt, rrs);
+        }
         return rrs;
     }
 
+    private RouteResultset routeByHint(SchemaConfig schema, int sqlType, String stmt, ServerConnection sc,
+                                       int hintLength, int endPos) throws SQLException {
+        RouteResultset rrs;
+        // router by hint of !dble:
+        String hint = stmt.substring(hintLength, endPos).trim();
+
+        String hintSplit = "=";
+        int firstSplitPos = hint.indexOf(hintSplit);
+        if (firstSplitPos > 0) {
+            Map hintMap = parseKeyValue(hint);
+            String hintType = (String) hintMap.get(HINT_TYPE);
+            String hintSql = (String) hintMap.get(hintType);
+            if (hintSql.length() == 0) {
+                String msg = "comment in sql must meet :/*!" + Versions.ANNOTATION_NAME + "type=value*/ or /*#" + Versions.ANNOTATION_NAME + "type=value*/ or /*" + Versions.ANNOTATION_NAME + "type=value*/: " + stmt;
+                LOGGER.info(msg);
+                throw new SQLSyntaxErrorException(msg);
+            }
+            String realSQL = stmt.substring(endPos + "*/".length()).trim();
+
+            HintHandler hintHandler = HintHandlerFactory.getHintHandler(hintType);
+            if (hintHandler != null) {
+                if (hintHandler instanceof HintSQLHandler) {
+                    int hintSqlType = ServerParse.parse(hintSql) & 0xff;
+                    rrs = hintHandler.route(schema, sqlType, realSQL, sc, CacheService.getTableId2DataNodeCache(), hintSql, hintSqlType, hintMap);
+                    // HintSQLHandler will always send to master
+                    rrs.setRunOnSlave(false);
+                } else {
+                    rrs = hintHandler.route(schema, sqlType, realSQL, sc, CacheService.getTableId2DataNodeCache(), hintSql, sqlType, hintMap);
+                }
+            } else {
+                String msg = "Not supported hint sql type : " + hintType;
+                LOGGER.info(msg);
+                throw new SQLSyntaxErrorException(msg);
+            }
+        } else { //fixed by runfriends@126.com
+            String msg = "comment in sql must meet :/*!" + Versions.ANNOTATION_NAME + "type=value*/ or /*#" + Versions.ANNOTATION_NAME + "type=value*/ or /*" + Versions.ANNOTATION_NAME + "type=value*/: " + stmt;
+            LOGGER.info(msg);
+            throw new SQLSyntaxErrorException(msg);
+        }
+        return rrs;
+    }
+
+    /**
+     * the route of a select with literals only, see RoutePlanCache
+     */
+    private static boolean isPlanCacheAble(int sqlType, ServerConnection sc, boolean isExplain) {
+        return sqlType == ServerParse.SELECT && !isExplain && RoutePlanCache.getInstance().isEnabled() &&
+                !sc.getSession2().getIsMultiStatement().get() && sc.getSession2().getRemingSql() == null &&
+                !QueryConditionAnalyzer.getInstance().isEnabled();
+    }
+
     private static int isHintSql(String sql) {
         char[] annotation = Versions.ANNOTATION_NAME.toCharArray();
         int j = 0;
@@ -7,6 +7,7 @@ import com.actiontech.dble.backend.mysql.xa.XAStateLog;
 import com.actiontech.dble.buffer.BufferPool;
 import com.actiontech.dble.config.model.SystemConfig;
 import com.actiontech.dble.net.NIOProcessor;
+import com.actiontech.dble.server.workload.WorkloadManager;
 import com.actiontech.dble.statistic.stat.SqlResultSizeRecorder;
 import com.actiontech.dble.statistic.stat.ThreadWorkUsage;
 import com.actiontech.dble.statistic.stat.UserStat;
@@ -18,8 +19,8 @@ import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 import static com.actiontech.dble.server.NonBlockingSession.LOGGER;
@@ -34,17 +35,23 @@ public final class Scheduler {
     private static final long DDL_EXECUTE_CHECK_PERIOD = 60L;
     private static final long DEFAULT_OLD_CONNECTION_CLEAR_PERIOD = 5 * 1000L;
     private static final long DEFAULT_SQL_STAT_RECYCLE_PERIOD = 5 * 1000L;
+    private static final long WORKLOAD_QUEUE_CHECK_PERIOD = 100L;
     private ExecutorService timerExecutor;
+    private ScheduledThreadPoolExecutor scheduler;
 
     public void init(SystemConfig system, ExecutorService executor) {
         this.timerExecutor = executor;
-        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("TimerScheduler-%d").build());
+        this.scheduler = new ScheduledThreadPoolExecutor(1, new ThreadFactoryBuilder().setNameFormat("TimerScheduler-%d").build());
+        // the delayed tasks are cancelled mostly, such as hedged read
+        scheduler.setRemoveOnCancelPolicy(true);
         long dataNodeIdleCheckPeriod = system.getDataNodeIdleCheckPeriod();
         scheduler.scheduleAtFixedRate(updateTime(), 0L, TIME_UPDATE_PERIOD, TimeUnit.MILLISECONDS);
         scheduler.scheduleWithFixedDelay(DbleServer.getInstance().processorCheck(), 0L, system.getProcessorCheckPeriod(), TimeUnit.MILLISECONDS);
         scheduler.scheduleAtFixedRate(dataNodeConHeartBeatCheck(dataNodeIdleCheckPeriod), 0L, dataNodeIdleCheckPeriod, TimeUnit.MILLISECONDS);
         //dataHost heartBeat  will be influence by dataHostWithoutWR
-        scheduler.scheduleAtFixedRate(dataSourceHeartbeat(), 0L, system.getDataNodeHeartbeatPeriod(), TimeUnit.MILLISECONDS);
+        // every data source decides whether its heartbeat is due by its own period
+        long heartbeatTick = Math.min(system.getDataNodeHeartbeatFastPeriod(), system.getDataNodeHeartbeatPeriod());
+        scheduler.scheduleAtFixedRate(dataSourceHeartbeat(), 0L, heartbeatTick, TimeUnit.MILLISECONDS);
         scheduler.scheduleAtFixedRate(dataSourceOldConsClear(), 0L, DEFAULT_OLD_CONNECTION_CLEAR_PERIOD, TimeUnit.MILLISECONDS);
         scheduler.scheduleWithFixedDelay(xaSessionCheck(), 0L, system.getXaSessionCheckPeriod(), TimeUnit.MILLISECONDS);
         scheduler.scheduleWithFixedDelay(xaLogClean(), 0L, system.getXaLogCleanPeriod(), TimeUnit.MILLISECONDS);
@@ -54,9 +61,40 @@ public final class Scheduler {
             scheduler.scheduleWithFixedDelay(recycleSqlStat(), 0L, DEFAULT_SQL_STAT_RECYCLE_PERIOD, TimeUnit.MILLISECONDS);
         }
         scheduler.scheduleAtFixedRate(threadStatRenew(), 0L, 1, TimeUnit.SECONDS);
+        scheduler.scheduleWithFixedDelay(workloadQueueCheck(), 0L, WORKLOAD_QUEUE_CHECK_PERIOD, TimeUnit.MILLISECONDS);
         scheduler.scheduleAtFixedRate(printLongTimeDDL(), 0L, DDL_EXECUTE_CHECK_PERIOD, TimeUnit.SECONDS);
     }
 
+    /**
+     * run the task by the timer executor after the delay
+     */
+    public ScheduledFuture<?> schedule(final Runnable task, long delayMillis) {
+        return scheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                timerExecutor.execute(task);
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private Runnable workloadQueueCheck() {
+        return new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    WorkloadManager.getInstance().checkQueueTimeout();
+                } catch (Exception e) {
+                    LOGGER.info("check the queue of workload error", e);
+                }
+                try {
+                    QueryMemoryGovernor.getInstance().checkQueueTimeout();
+                } catch (Exception e) {
+                    LOGGER.info("check the queue of query memory error", e);
+                }
+            }
+        };
+    }
+
     private Runnable printLongTimeDDL() {
         return new Runnable() {
             @Override
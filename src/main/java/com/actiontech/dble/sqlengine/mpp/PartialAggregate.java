@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2016-2020 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.sqlengine.mpp;
+
+import java.io.Serializable;
+
+/**
+ * PartialAggregate, a column of the result merged from the partial aggregates of the data nodes.
+ * index is the first column of its partial aggregates in the rows of the data nodes:
+ * <ul>
+ * <li>ANY, COUNT, SUM, MIN, MAX, GROUP_CONCAT: the same function or expression</li>
+ * <li>AVG: SUM(x), COUNT(x)</li>
+ * <li>VARIANCE: COUNT(x), SUM(x), VAR_POP(x)</li>
+ * <li>COUNT_DISTINCT, SUM_DISTINCT, AVG_DISTINCT: x, the distinct column after the group by columns</li>
+ * </ul>
+ *
+ * @author ActionTech
+ */
+public class PartialAggregate implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private final String name;
+    private final Type type;
+    private final int index;
+    /* VARIANCE only */
+    private boolean sample;
+    private boolean sqrt;
+    /* GROUP_CONCAT only */
+    private String separator = ",";
+
+    public PartialAggregate(String name, Type type, int index) {
+        this.name = name;
+        this.type = type;
+        this.index = index;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public boolean isSample() {
+        return sample;
+    }
+
+    public void setSample(boolean sample) {
+        this.sample = sample;
+    }
+
+    public boolean isSqrt() {
+        return sqrt;
+    }
+
+    public void setSqrt(boolean sqrt) {
+        this.sqrt = sqrt;
+    }
+
+    public String getSeparator() {
+        return separator;
+    }
+
+    public void setSeparator(String separator) {
+        this.separator = separator;
+    }
+
+    public enum Type {
+        ANY, COUNT, SUM, MIN, MAX, AVG, VARIANCE, GROUP_CONCAT, COUNT_DISTINCT, SUM_DISTINCT, AVG_DISTINCT
+    }
+}
@@ -0,0 +1,359 @@
+/*
+ * Copyright (C) 2016-2020 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.sqlengine.mpp;
+
+import com.actiontech.dble.backend.mysql.PacketUtil;
+import com.actiontech.dble.backend.mysql.nio.handler.util.HandlerTool;
+import com.actiontech.dble.config.Fields;
+import com.actiontech.dble.net.mysql.FieldPacket;
+import com.actiontech.dble.net.mysql.RowDataPacket;
+import com.actiontech.dble.plan.common.field.Field;
+import com.actiontech.dble.plan.common.item.Item;
+import com.actiontech.dble.util.LongUtil;
+import com.actiontech.dble.util.StringUtil;
+
+import java.io.ByteArrayOutputStream;
+import java.io.UnsupportedEncodingException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * PartialAggregateMerger, aggregates the partial rows ordered by the group by columns again.
+ * The rows of a group must be adjacent, the merged row of a group is returned when the next group
+ * begins or all the rows are added.
+ *
+ * @author ActionTech
+ */
+public class PartialAggregateMerger {
+    private static final int NOT_FIXED_DEC = 31;
+
+    private final PartialAggregation aggregation;
+    private final List<Field> fields;
+    private final List<FieldPacket> fieldPackets = new ArrayList<>();
+    private final List<Accumulator> accumulators = new ArrayList<>();
+    private RowDataPacket groupRow;
+    private byte[] lastDistinct;
+    private boolean returned = false;
+
+    public PartialAggregateMerger(PartialAggregation aggregation, List<FieldPacket> partialFields, String charset) {
+        this.aggregation = aggregation;
+        this.fields = HandlerTool.createFields(partialFields);
+        for (PartialAggregate column : aggregation.getColumns()) {
+            Field field = fields.get(column.getIndex());
+            accumulators.add(new Accumulator(column, field));
+            fieldPackets.add(createFieldPacket(column, field, partialFields.get(column.getIndex()), charset));
+        }
+    }
+
+    /**
+     * @return the field packets of the merged rows
+     */
+    public List<FieldPacket> getFieldPackets() {
+        return fieldPackets;
+    }
+
+    /**
+     * @return the merged row of the last group if the row begins a new group, otherwise null
+     */
+    public RowDataPacket add(RowDataPacket row) {
+        RowDataPacket merged = null;
+        if (groupRow != null && !isSameGroup(groupRow, row)) {
+            merged = finish();
+        }
+        if (groupRow == null) {
+            groupRow = row;
+            clear();
+        }
+        boolean newDistinct = false;
+        if (aggregation.isDistinct()) {
+            byte[] value = row.getValue(aggregation.getGroupCount());
+            // the values of the distinct column are ordered in the group
+            if (value != null && (lastDistinct == null || fields.get(aggregation.getGroupCount()).compare(lastDistinct, value) != 0)) {
+                newDistinct = true;
+                lastDistinct = value;
+            }
+        }
+        for (Accumulator accumulator : accumulators) {
+            accumulator.add(row, newDistinct);
+        }
+        return merged;
+    }
+
+    /**
+     * @return the merged row of the last group, null if there is no row
+     */
+    public RowDataPacket finish() {
+        if (groupRow == null) {
+            if (aggregation.getGroupCount() > 0 || returned) {
+                return null;
+            }
+            // the aggregates without group by return a row even if there is no row, eg: count(distinct x) of an empty table
+            clear();
+        }
+        returned = true;
+        RowDataPacket row = new RowDataPacket(accumulators.size());
+        for (Accumulator accumulator : accumulators) {
+            row.add(accumulator.result());
+        }
+        groupRow = null;
+        return row;
+    }
+
+    private void clear() {
+        lastDistinct = null;
+        for (Accumulator accumulator : accumulators) {
+            accumulator.clear();
+        }
+    }
+
+    private boolean isSameGroup(RowDataPacket row1, RowDataPacket row2) {
+        for (int i = 0; i < aggregation.getGroupCount(); i++) {
+            if (fields.get(i).compare(row1.getValue(i), row2.getValue(i)) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static FieldPacket createFieldPacket(PartialAggregate column, Field field, FieldPacket partial, String charset) {
+        FieldPacket packet;
+        boolean real = isReal(field);
+        switch (column.getType()) {
+            case COUNT_DISTINCT:
+                packet = PacketUtil.getField(column.getName(), Fields.FIELD_TYPE_LONGLONG);
+                packet.setLength(21);
+                break;
+            case SUM_DISTINCT:
+                packet = PacketUtil.getField(column.getName(), real ? Fields.FIELD_TYPE_DOUBLE : Fields.FIELD_TYPE_NEW_DECIMAL);
+                packet.setDecimals(real ? (byte) NOT_FIXED_DEC : (byte) field.getDecimals());
+                packet.setLength(67);
+                break;
+            case AVG:
+            case AVG_DISTINCT:
+                packet = PacketUtil.getField(column.getName(), real ? Fields.FIELD_TYPE_DOUBLE : Fields.FIELD_TYPE_NEW_DECIMAL);
+                packet.setDecimals(real ? (byte) NOT_FIXED_DEC : (byte) Math.min(field.getDecimals() + 4, NOT_FIXED_DEC - 1));
+                packet.setLength(67);
+                break;
+            case VARIANCE:
+                packet = PacketUtil.getField(column.getName(), Fields.FIELD_TYPE_DOUBLE);
+                packet.setDecimals((byte) NOT_FIXED_DEC);
+                packet.setLength(23);
+                break;
+            default:
+                // the same type as the partial one
+                packet = partial;
+                break;
+        }
+        packet.setName(StringUtil.encode(column.getName(), charset));
+        return packet;
+    }
+
+    private static boolean isReal(Field field) {
+        return field.numericContextResultType() == Item.ItemResult.REAL_RESULT;
+    }
+
+    private static BigDecimal toDecimal(byte[] value) {
+        return new BigDecimal(new String(value));
+    }
+
+    private static long toLong(byte[] value) {
+        return value == null ? 0 : Long.parseLong(new String(value));
+    }
+
+    private static double toDouble(byte[] value) {
+        return value == null ? 0.0 : Double.parseDouble(new String(value));
+    }
+
+    private static byte[] encodeSeparator(String separator, String javaCharset) {
+        if (javaCharset == null) {
+            return separator.getBytes();
+        }
+        try {
+            return separator.getBytes(javaCharset);
+        } catch (UnsupportedEncodingException e) {
+            return separator.getBytes();
+        }
+    }
+
+    /**
+     * the aggregate of a column in a group
+     */
+    private static final class Accumulator {
+        private final PartialAggregate column;
+        private final Field field;
+        private final boolean real;
+        private final int index;
+        private final byte[] separator;
+
+        private boolean seen;
+        private byte[] value;
+        private long count;
+        private BigDecimal sum;
+        private double varianceSum;
+        private double squareSum;
+        private final ByteArrayOutputStream concat = new ByteArrayOutputStream();
+
+        private Accumulator(PartialAggregate column, Field field) {
+            this.column = column;
+            this.field = field;
+            this.real = isReal(field);
+            this.index = column.getIndex();
+            this.separator = encodeSeparator(column.getSeparator(), field.getJavaCharsetName());
+        }
+
+        private void clear() {
+            seen = false;
+            value = null;
+            count = 0;
+            sum = null;
+            varianceSum = 0.0;
+            squareSum = 0.0;
+            concat.reset();
+        }
+
+        private void add(RowDataPacket row, boolean newDistinct) {
+            byte[] v = row.getValue(index);
+            switch (column.getType()) {
+                case ANY:
+                    if (!seen) {
+                        seen = true;
+                        value = v;
+                    }
+                    break;
+                case COUNT:
+                    count += toLong(v);
+                    break;
+                case SUM:
+                    addSum(v);
+                    break;
+                case MIN:
+                case MAX:
+                    addMinMax(v);
+                    break;
+                case AVG:
+                    addSum(v);
+                    count += toLong(row.getValue(index + 1));
+                    break;
+                case VARIANCE:
+                    addVariance(row);
+                    break;
+                case GROUP_CONCAT:
+                    addConcat(v);
+                    break;
+                default:
+                    // the distinct aggregates, the distinct column is not an aggregate and may be any type
+                    if (newDistinct) {
+                        field.setPtr(v);
+                        BigDecimal decimal = field.valDecimal();
+                        sum = sum == null ? decimal : sum.add(decimal);
+                        count++;
+                    }
+                    break;
+            }
+        }
+
+        private void addSum(byte[] v) {
+            if (v != null) {
+                sum = sum == null ? toDecimal(v) : sum.add(toDecimal(v));
+            }
+        }
+
+        private void addMinMax(byte[] v) {
+            if (v == null) {
+                return;
+            }
+            if (value == null) {
+                value = v;
+            } else {
+                int cmp = field.compare(v, value);
+                if (column.getType() == PartialAggregate.Type.MIN ? cmp < 0 : cmp > 0) {
+                    value = v;
+                }
+            }
+        }
+
+        // the same as the pushdown of ItemSumVariance, push down v[0]:count,v[1]:sum,v[2]:variance(Partial)
+        private void addVariance(RowDataPacket row) {
+            long partCount = toLong(row.getValue(index));
+            if (partCount != 0) {
+                double partSum = toDouble(row.getValue(index + 1));
+                double partVariance = toDouble(row.getValue(index + 2));
+                count += partCount;
+                squareSum += partVariance * partCount + partSum * partSum / partCount;
+                varianceSum += partSum;
+            }
+        }
+
+        private void addConcat(byte[] v) {
+            if (v == null) {
+                return;
+            }
+            if (seen) {
+                concat.write(separator, 0, separator.length);
+            }
+            seen = true;
+            concat.write(v, 0, v.length);
+        }
+
+        private byte[] result() {
+            switch (column.getType()) {
+                case ANY:
+                case MIN:
+                case MAX:
+                    return value;
+                case COUNT:
+                case COUNT_DISTINCT:
+                    return LongUtil.toBytes(count);
+                case SUM:
+                case SUM_DISTINCT:
+                    return sum == null ? null : toBytes(sum);
+                case AVG:
+                case AVG_DISTINCT:
+                    return avg();
+                case VARIANCE:
+                    return variance();
+                default:
+                    return seen ? concat.toByteArray() : null;
+            }
+        }
+
+        private byte[] avg() {
+            if (count == 0 || sum == null) {
+                return null;
+            }
+            if (real) {
+                return toBytes(BigDecimal.valueOf(sum.doubleValue() / count));
+            }
+            return sum.divide(new BigDecimal(count), Math.min(field.getDecimals() + 4, NOT_FIXED_DEC - 1), RoundingMode.HALF_UP).toPlainString().getBytes();
+        }
+
+        private byte[] variance() {
+            int sample = column.isSample() ? 1 : 0;
+            if (count <= sample) {
+                return null;
+            }
+            double result = 0.0;
+            if (count > 1) {
+                double s = squareSum - varianceSum * varianceSum / count;
+                // may be a little negative because of the error of double
+                result = Math.max(s, 0.0) / (count - sample);
+            }
+            if (column.isSqrt()) {
+                result = Math.sqrt(result);
+            }
+            return BigDecimal.valueOf(result).toString().getBytes();
+        }
+
+        private byte[] toBytes(BigDecimal decimal) {
+            if (real) {
+                return BigDecimal.valueOf(decimal.doubleValue()).toString().getBytes();
+            }
+            return decimal.toPlainString().getBytes();
+        }
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2016-2020 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.sqlengine.mpp;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * PartialAggregation, the aggregates of a query on several data nodes are pushed down as partial
+ * aggregates, grouped and ordered by the group by columns (and the argument of the distinct
+ * aggregates) which are the first columns of the rows. The ordered rows of the data nodes are
+ * merged, and the adjacent rows of the same group are aggregated again.
+ *
+ * @author ActionTech
+ */
+public class PartialAggregation implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private final int groupCount;
+    private final boolean distinct;
+    private final List<PartialAggregate> columns;
+
+    public PartialAggregation(int groupCount, boolean distinct, List<PartialAggregate> columns) {
+        this.groupCount = groupCount;
+        this.distinct = distinct;
+        this.columns = columns;
+    }
+
+    /**
+     * @return the count of the group by columns at the beginning of the rows
+     */
+    public int getGroupCount() {
+        return groupCount;
+    }
+
+    /**
+     * @return true if the column after the group by columns is the argument of the distinct aggregates
+     */
+    public boolean isDistinct() {
+        return distinct;
+    }
+
+    public List<PartialAggregate> getColumns() {
+        return columns;
+    }
+}
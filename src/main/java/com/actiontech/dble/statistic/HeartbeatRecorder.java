@@ -23,19 +23,16 @@ public class HeartbeatRecorder {
     private static final long AVG1_TIME = 60 * 1000L;
     private static final long AVG2_TIME = 10 * 60 * 1000L;
     private static final long AVG3_TIME = 30 * 60 * 1000L;
-    private static final long SWAP_TIME = 24 * 60 * 60 * 1000L;
 
     private long avg1;
     private long avg2;
     private long avg3;
     private final Queue<Record> records;
-    private final Queue<Record> recordsAll;
 
     private static final Logger LOGGER = LoggerFactory.getLogger(HeartbeatRecorder.class);
 
     public HeartbeatRecorder() {
         this.records = new ConcurrentLinkedQueue<>();
-        this.recordsAll = new ConcurrentLinkedQueue<>();
     }
 
     public String get() {
@@ -46,7 +43,6 @@ public class HeartbeatRecorder {
         try {
             long time = TimeUtil.currentTimeMillis();
             if (value < 0) {
-                recordsAll.offer(new Record(0, time));
                 return;
             }
             remove(time);
@@ -60,7 +56,6 @@ public class HeartbeatRecorder {
                 records.poll();
             }
             records.offer(new Record(value, time));
-            recordsAll.offer(new Record(value, time));
             calculate(time);
         } catch (Exception e) {
             LOGGER.info("record HeartbeatRecorder error ", e);
@@ -80,16 +75,6 @@ public class HeartbeatRecorder {
                 break;
             }
         }
-
-        final Queue<Record> recordsAllQueue = this.recordsAll;
-        while (recordsAllQueue.size() > 0) {
-            Record record = recordsAllQueue.peek();
-            if (time >= record.time + SWAP_TIME) {
-                recordsAllQueue.poll();
-            } else {
-                break;
-            }
-        }
     }
 
     private void calculate(long time) {
@@ -121,10 +106,6 @@ public class HeartbeatRecorder {
         }
     }
 
-    public Queue<Record> getRecordsAll() {
-        return this.recordsAll;
-    }
-
     /**
      * @author mycat
      */
@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2016-2020 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.statistic;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * the time series of the heartbeats of a data source: the round trip time and Seconds_Behind_Master.
+ * <p>
+ * the latest heartbeats are kept in a ring of primitive arrays, the oldest one is overwritten when it is full.
+ * A failed heartbeat is kept with rtt -1, an unknown Seconds_Behind_Master is -1.
+ *
+ * @author ActionTech
+ */
+public final class HeartbeatSeries {
+    /* the rtt which is RTT_SPIKE_TIMES of the average and RTT_SPIKE_MIN_MILLIS more at least is a spike */
+    private static final int RTT_SPIKE_TIMES = 3;
+    private static final long RTT_SPIKE_MIN_MILLIS = 10;
+
+    private final long[] times;
+    private final int[] rtts;
+    private final int[] lags;
+    private int next = 0;
+    private int size = 0;
+
+    public HeartbeatSeries(int capacity) {
+        this.times = new long[capacity];
+        this.rtts = new int[capacity];
+        this.lags = new int[capacity];
+    }
+
+    /**
+     * @param rtt the round trip time(ms), -1 means failed
+     * @param lag Seconds_Behind_Master, -1 means unknown
+     */
+    public synchronized void record(long time, long rtt, int lag) {
+        times[next] = time;
+        rtts[next] = rtt < 0 ? -1 : (int) Math.min(rtt, Integer.MAX_VALUE);
+        lags[next] = lag;
+        next = (next + 1) % times.length;
+        if (size < times.length) {
+            size++;
+        }
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @return the heartbeats from the oldest to the latest
+     */
+    public synchronized List<Point> getPoints() {
+        List<Point> points = new ArrayList<>(size);
+        for (int i = size; i > 0; i--) {
+            int index = index(i);
+            points.add(new Point(times[index], rtts[index], lags[index]));
+        }
+        return points;
+    }
+
+    /**
+     * unstable means one of the latest count heartbeats failed, or the rtt of the latest one is a spike
+     */
+    public synchronized boolean isUnstable(int count) {
+        int n = Math.min(count, size);
+        long sum = 0;
+        for (int i = 1; i <= n; i++) {
+            int rtt = rtts[index(i)];
+            if (rtt < 0) {
+                return true;
+            }
+            if (i > 1) {
+                sum += rtt;
+            }
+        }
+        if (n < 2) {
+            return false;
+        }
+        long avg = sum / (n - 1);
+        long latest = rtts[index(1)];
+        return latest > avg * RTT_SPIKE_TIMES && latest > avg + RTT_SPIKE_MIN_MILLIS;
+    }
+
+    /**
+     * @return true if the slave of the latest succeeded heartbeat is behind the master
+     */
+    public synchronized boolean isLagging() {
+        for (int i = 1; i <= size; i++) {
+            int index = index(i);
+            if (rtts[index] >= 0) {
+                return lags[index] > 0;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return true if Seconds_Behind_Master of the latest count succeeded heartbeats are known and below the threshold,
+     * false if there is no succeeded heartbeat
+     */
+    public synchronized boolean isLagBelow(int threshold, int count) {
+        int found = 0;
+        for (int i = 1; i <= size && found < count; i++) {
+            int index = index(i);
+            if (rtts[index] < 0) {
+                continue;
+            }
+            if (lags[index] < 0 || lags[index] >= threshold) {
+                return false;
+            }
+            found++;
+        }
+        return found > 0;
+    }
+
+    /**
+     * @param i 1 means the latest
+     */
+    private int index(int i) {
+        return (next - i + times.length) % times.length;
+    }
+
+    /**
+     * a heartbeat in the series
+     */
+    public static final class Point {
+        private final long time;
+        private final int rtt;
+        private final int lag;
+
+        private Point(long time, int rtt, int lag) {
+            this.time = time;
+            this.rtt = rtt;
+            this.lag = lag;
+        }
+
+        public long getTime() {
+            return time;
+        }
+
+        public int getRtt() {
+            return rtt;
+        }
+
+        public int getLag() {
+            return lag;
+        }
+    }
+}
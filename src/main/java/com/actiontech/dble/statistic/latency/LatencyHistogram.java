@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2016-2020 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+package com.actiontech.dble.statistic.latency;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * LatencyHistogram, a log-linear histogram of microseconds like HdrHistogram.
+ * <p>
+ * every power of 2 is split into 8 linear buckets, so a value is kept with
+ * an error of at most 12.5%. The counters are striped like LongAdder, a thread
+ * records into the stripe of its id, so the threads rarely write the same
+ * counters. The stripes are fixed by the count of processors and created when
+ * they are used first, they don't grow with the threads. A snapshot sums the
+ * counters of all the stripes.
+ *
+ * @author ActionTech
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    /* about 12 days */
+    static final long MAX_VALUE = (1L << 40) - 1;
+    public static final int BUCKET_COUNT = bucketIndex(MAX_VALUE) + 1;
+    private static final int SUM_INDEX = BUCKET_COUNT;
+    private static final int MAX_INDEX = BUCKET_COUNT + 1;
+
+    /* power of 2 */
+    static final int STRIPE_COUNT = Math.min(64, Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() * 2 - 1)) << 1);
+
+    private final AtomicReferenceArray<AtomicLongArray> stripes = new AtomicReferenceArray<>(STRIPE_COUNT);
+
+    public void record(long micros) {
+        long value = micros < 0 ? 0 : Math.min(micros, MAX_VALUE);
+        AtomicLongArray recorder = stripe((int) Thread.currentThread().getId() & (STRIPE_COUNT - 1));
+        recorder.incrementAndGet(bucketIndex(value));
+        recorder.addAndGet(SUM_INDEX, value);
+        long max;
+        while (value > (max = recorder.get(MAX_INDEX)) && !recorder.compareAndSet(MAX_INDEX, max, value)) {
+            // retry
+        }
+    }
+
+    private AtomicLongArray stripe(int index) {
+        AtomicLongArray recorder = stripes.get(index);
+        if (recorder == null) {
+            stripes.compareAndSet(index, null, new AtomicLongArray(BUCKET_COUNT + 2));
+            recorder = stripes.get(index);
+        }
+        return recorder;
+    }
+
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKET_COUNT];
+        long count = 0;
+        long sum = 0;
+        long max = 0;
+        for (int s = 0; s < STRIPE_COUNT; s++) {
+            AtomicLongArray recorder = stripes.get(s);
+            if (recorder == null) {
+                continue;
+            }
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                long c = recorder.get(i);
+                counts[i] += c;
+                count += c;
+            }
+            sum += recorder.get(SUM_INDEX);
+            max = Math.max(max, recorder.get(MAX_INDEX));
+        }
+        return new Snapshot(counts, count, sum, max);
+    }
+
+    public static int bucketIndex(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    /**
+     * @return the max value which is counted in the bucket
+     */
+    public static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long lower = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+        return lower + (1L << shift) - 1;
+    }
+
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        private Snapshot(long[] counts, long count, long sum, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getSum() {
+            return sum;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        public long getMean() {
+            return count == 0 ? 0 : sum / count;
+        }
+
+        /**
+         * @param quantile between 0 and 1
+         * @return the highest value of the bucket where the quantile falls in
+         */
+        public long getValueAt(double quantile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(quantile * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(bucketUpperBound(i), max);
+                }
+            }
+            return max;
+        }
+    }
+}
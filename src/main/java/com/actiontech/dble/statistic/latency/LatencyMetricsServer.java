@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2016-2020 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+package com.actiontech.dble.statistic.latency;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * LatencyMetricsServer, serves the latency histograms in the prometheus text
+ * format on the loopback address, for a local agent to scrape.
+ *
+ * @author ActionTech
+ */
+public final class LatencyMetricsServer {
+    private static final Logger LOGGER = LoggerFactory.getLogger(LatencyMetricsServer.class);
+    private static final String METRIC_NAME = "dble_latency_microseconds";
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private LatencyMetricsServer() {
+    }
+
+    public static void start(int port) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/metrics", LatencyMetricsServer::handle);
+        // the default executor handles the requests in the dispatcher thread, it is enough for scraping
+        server.setExecutor(null);
+        server.start();
+        LOGGER.info("latency metrics is listening on " + server.getAddress());
+    }
+
+    private static void handle(HttpExchange exchange) throws IOException {
+        try {
+            byte[] body = format(LatencyStat.getInstance().getEntries()).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    static String format(List<LatencyStat.Entry> entries) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("# HELP ").append(METRIC_NAME).append(" The latency of the stages of query in microseconds.\n");
+        sb.append("# TYPE ").append(METRIC_NAME).append(" summary\n");
+        for (LatencyStat.Entry entry : entries) {
+            LatencyHistogram.Snapshot snapshot = entry.getSnapshot();
+            String labels = "type=\"" + escape(entry.getType()) + "\",name=\"" + escape(entry.getName()) +
+                    "\",stage=\"" + entry.getStage().getLabel() + "\"";
+            for (double quantile : QUANTILES) {
+                sb.append(METRIC_NAME).append('{').append(labels).append(",quantile=\"").append(quantile).append("\"} ").
+                        append(snapshot.getValueAt(quantile)).append('\n');
+            }
+            sb.append(METRIC_NAME).append("_sum{").append(labels).append("} ").append(snapshot.getSum()).append('\n');
+            sb.append(METRIC_NAME).append("_count{").append(labels).append("} ").append(snapshot.getCount()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright (C) 2016-2020 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+package com.actiontech.dble.statistic.latency;
+
+/**
+ * the stages of a request, see QueryLatency for where every stage begins and ends
+ *
+ * @author ActionTech
+ */
+public enum LatencyStage {
+    PARSE("parse"),
+    ROUTE("route"),
+    BACKEND_ACQUIRE("backend_acquire"),
+    FIRST_ROW("first_row"),
+    LAST_ROW("last_row"),
+    WRITE_OUT("write_out"),
+    TOTAL("total");
+
+    private final String label;
+
+    LatencyStage(String label) {
+        this.label = label;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2016-2020 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+package com.actiontech.dble.statistic.latency;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * LatencyStat, the latency histograms of every stage, kept for all requests
+ * and by user, by schema and by data node.
+ * <p>
+ * a data node only has the LAST_ROW stage, which is the time from the
+ * request is sent to the backend until the data node returns the last row.
+ *
+ * @author ActionTech
+ */
+public final class LatencyStat {
+    public static final String TYPE_ALL = "all";
+    public static final String TYPE_USER = "user";
+    public static final String TYPE_SCHEMA = "schema";
+    public static final String TYPE_DATA_NODE = "datanode";
+    private static final String NULL_NAME = "NULL";
+    private static final LatencyStat INSTANCE = new LatencyStat();
+
+    private final LatencyHistogram[] all = newHistograms();
+    private final ConcurrentMap<String, LatencyHistogram[]> users = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LatencyHistogram[]> schemas = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LatencyHistogram> dataNodes = new ConcurrentHashMap<>();
+
+    private LatencyStat() {
+    }
+
+    public static LatencyStat getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param stageMicros cost of every stage in microseconds by the ordinal of LatencyStage, -1 means not happened
+     */
+    public void record(String user, String schema, long[] stageMicros) {
+        LatencyHistogram[] userHistograms = getHistograms(users, user == null ? NULL_NAME : user);
+        LatencyHistogram[] schemaHistograms = getHistograms(schemas, schema == null ? NULL_NAME : schema);
+        for (int i = 0; i < stageMicros.length; i++) {
+            long micros = stageMicros[i];
+            if (micros < 0) {
+                continue;
+            }
+            all[i].record(micros);
+            userHistograms[i].record(micros);
+            schemaHistograms[i].record(micros);
+        }
+    }
+
+    public void recordDataNode(String dataNode, long micros) {
+        LatencyHistogram histogram = dataNodes.get(dataNode);
+        if (histogram == null) {
+            histogram = dataNodes.computeIfAbsent(dataNode, k -> new LatencyHistogram());
+        }
+        histogram.record(micros);
+    }
+
+    /**
+     * @return the snapshots which have any value, ordered by type, name and stage
+     */
+    public List<Entry> getEntries() {
+        List<Entry> entries = new ArrayList<>();
+        addEntries(entries, TYPE_ALL, TYPE_ALL, all);
+        for (Map.Entry<String, LatencyHistogram[]> user : new TreeMap<>(users).entrySet()) {
+            addEntries(entries, TYPE_USER, user.getKey(), user.getValue());
+        }
+        for (Map.Entry<String, LatencyHistogram[]> schema : new TreeMap<>(schemas).entrySet()) {
+            addEntries(entries, TYPE_SCHEMA, schema.getKey(), schema.getValue());
+        }
+        for (Map.Entry<String, LatencyHistogram> dataNode : new TreeMap<>(dataNodes).entrySet()) {
+            LatencyHistogram.Snapshot snapshot = dataNode.getValue().snapshot();
+            if (snapshot.getCount() > 0) {
+                entries.add(new Entry(TYPE_DATA_NODE, dataNode.getKey(), LatencyStage.LAST_ROW, snapshot));
+            }
+        }
+        return entries;
+    }
+
+    private static void addEntries(List<Entry> entries, String type, String name, LatencyHistogram[] histograms) {
+        for (LatencyStage stage : LatencyStage.values()) {
+            LatencyHistogram.Snapshot snapshot = histograms[stage.ordinal()].snapshot();
+            if (snapshot.getCount() > 0) {
+                entries.add(new Entry(type, name, stage, snapshot));
+            }
+        }
+    }
+
+    private static LatencyHistogram[] getHistograms(ConcurrentMap<String, LatencyHistogram[]> map, String key) {
+        LatencyHistogram[] histograms = map.get(key);
+        if (histograms == null) {
+            histograms = map.computeIfAbsent(key, k -> newHistograms());
+        }
+        return histograms;
+    }
+
+    private static LatencyHistogram[] newHistograms() {
+        LatencyHistogram[] histograms = new LatencyHistogram[LatencyStage.values().length];
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+        return histograms;
+    }
+
+    public static final class Entry {
+        private final String type;
+        private final String name;
+        private final LatencyStage stage;
+        private final LatencyHistogram.Snapshot snapshot;
+
+        private Entry(String type, String name, LatencyStage stage, LatencyHistogram.Snapshot snapshot) {
+            this.type = type;
+            this.name = name;
+            this.stage = stage;
+            this.snapshot = snapshot;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public LatencyStage getStage() {
+            return stage;
+        }
+
+        public LatencyHistogram.Snapshot getSnapshot() {
+            return snapshot;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2016-2020 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+package com.actiontech.dble.statistic.latency;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * QueryLatency, the time points of the request being executed by a session.
+ * <p>
+ * the stages are:
+ * PARSE from the start of process to the end of parse,
+ * ROUTE from the end of parse to the end of route,
+ * BACKEND_ACQUIRE from the end of route to the first request sent to a backend connection,
+ * FIRST_ROW from the first backend request to the first backend response,
+ * LAST_ROW from the first backend request to the last backend eof,
+ * WRITE_OUT from the last backend eof to the response to client,
+ * TOTAL from the request received to the response to client.
+ * <p>
+ * the backend points are set by the threads of backend connections at the
+ * same time, so they are only set once or only go forward.
+ *
+ * @author ActionTech
+ */
+public final class QueryLatency {
+    private volatile long requestTime = 0;
+    private volatile long parseStart = 0;
+    private volatile long parseEnd = 0;
+    private volatile long routeEnd = 0;
+    private final AtomicLong backendRequest = new AtomicLong();
+    private final AtomicLong backendResponse = new AtomicLong();
+    private final AtomicLong backendEnd = new AtomicLong();
+
+    public void start(long now) {
+        requestTime = now;
+        parseStart = 0;
+        parseEnd = 0;
+        routeEnd = 0;
+        backendRequest.set(0);
+        backendResponse.set(0);
+        backendEnd.set(0);
+    }
+
+    public void startParse(long now) {
+        parseStart = now;
+    }
+
+    public void endParse(long now) {
+        parseEnd = now;
+    }
+
+    public void endRoute(long now) {
+        routeEnd = now;
+    }
+
+    public void backendRequest() {
+        if (backendRequest.get() == 0) {
+            backendRequest.compareAndSet(0, System.nanoTime());
+        }
+    }
+
+    /**
+     * called by every packet from backend, only the first one is kept
+     */
+    public void backendResponse() {
+        if (backendResponse.get() == 0 && requestTime != 0) {
+            backendResponse.compareAndSet(0, System.nanoTime());
+        }
+    }
+
+    public void backendEnd(String dataNode) {
+        long now = System.nanoTime();
+        long current;
+        do {
+            current = backendEnd.get();
+        } while (current < now && !backendEnd.compareAndSet(current, now));
+        long request = backendRequest.get();
+        if (request != 0 && dataNode != null) {
+            LatencyStat.getInstance().recordDataNode(dataNode, (now - request) / 1000);
+        }
+    }
+
+    /**
+     * record the request into LatencyStat, a request is recorded once
+     */
+    public void finish(String user, String schema) {
+        long start = requestTime;
+        if (start == 0) {
+            return;
+        }
+        requestTime = 0;
+        final long now = System.nanoTime();
+        final long request = backendRequest.get();
+        final long end = backendEnd.get();
+        long[] stageMicros = new long[LatencyStage.values().length];
+        stageMicros[LatencyStage.PARSE.ordinal()] = cost(parseStart, parseEnd);
+        stageMicros[LatencyStage.ROUTE.ordinal()] = cost(parseEnd, routeEnd);
+        stageMicros[LatencyStage.BACKEND_ACQUIRE.ordinal()] = cost(routeEnd, request);
+        stageMicros[LatencyStage.FIRST_ROW.ordinal()] = cost(request, backendResponse.get());
+        stageMicros[LatencyStage.LAST_ROW.ordinal()] = cost(request, end);
+        stageMicros[LatencyStage.WRITE_OUT.ordinal()] = cost(end, now);
+        stageMicros[LatencyStage.TOTAL.ordinal()] = cost(start, now);
+        LatencyStat.getInstance().record(user, schema, stageMicros);
+    }
+
+    private static long cost(long from, long to) {
+        if (from == 0 || to == 0 || to < from) {
+            return -1;
+        }
+        return (to - from) / 1000;
+    }
+}
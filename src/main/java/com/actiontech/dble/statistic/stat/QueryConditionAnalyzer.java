@@ -5,10 +5,7 @@
 
 package com.actiontech.dble.statistic.stat;
 
-import com.actiontech.dble.route.parser.druid.ServerSchemaStatVisitor;
 import com.actiontech.dble.server.parser.ServerParse;
-import com.alibaba.druid.sql.ast.SQLStatement;
-import com.alibaba.druid.sql.dialect.mysql.parser.MySqlStatementParser;
 import com.alibaba.druid.stat.TableStat.Condition;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -50,8 +47,6 @@ public final class QueryConditionAnalyzer implements QueryResultListener {
 
     private ReentrantLock lock = new ReentrantLock();
 
-    private SQLParser sqlParser = new SQLParser();
-
     private static final QueryConditionAnalyzer INSTANCE = new QueryConditionAnalyzer();
 
     private QueryConditionAnalyzer() {
@@ -65,9 +60,8 @@ public final class QueryConditionAnalyzer implements QueryResultListener {
     @Override
     public void onQueryResult(QueryResult queryResult) {
         int sqlType = queryResult.getSqlType();
-        String sql = queryResult.getSql();
         if (sqlType == ServerParse.SELECT) {
-            List<Object> values = sqlParser.parseConditionValues(sql, this.tableName, this.columnName);
+            List<Object> values = parseConditionValues(queryResult, this.tableName, this.columnName);
             if (values != null) {
                 if (this.map.size() < MAX_QUERY_MAP_SIZE) {
                     for (Object value : values) {
@@ -120,6 +114,13 @@ public final class QueryConditionAnalyzer implements QueryResultListener {
         return isOk;
     }
 
+    /**
+     * the conditions of the sql are needed only when a column is set by cf
+     */
+    public boolean isEnabled() {
+        return this.tableName != null;
+    }
+
     public String getKey() {
         return this.tableName + "." + this.columnName;
     }
@@ -129,65 +130,44 @@ public final class QueryConditionAnalyzer implements QueryResultListener {
         return list;
     }
 
-
-    class SQLParser {
-
-        /**
-         * fixName :schema and `
-         *
-         * @param table
-         * @return
-         */
-        private String fixName(String table) {
-            if (table != null) {
-                table = table.replace("`", "");
-                int dotIdx = table.indexOf(".");
-                if (dotIdx > 0) {
-                    table = table.substring(1 + dotIdx).trim();
-                }
+    /**
+     * fixName :schema and `
+     *
+     * @param name
+     * @return
+     */
+    private String fixName(String name) {
+        if (name != null) {
+            name = name.replace("`", "");
+            int dotIdx = name.indexOf(".");
+            if (dotIdx > 0) {
+                name = name.substring(1 + dotIdx).trim();
             }
-            return table;
         }
+        return name;
+    }
 
-        /**
-         * parseConditionValues
-         *
-         * @param sql
-         * @param table
-         * @param column
-         * @return
-         */
-        public List<Object> parseConditionValues(String sql, String table, String column) {
-
-            List<Object> values = null;
-
-            if (sql != null && table != null && QueryConditionAnalyzer.this.columnName != null) {
-
-                values = new ArrayList<>();
-
-                MySqlStatementParser parser = new MySqlStatementParser(sql);
-                SQLStatement stmt = parser.parseStatement();
-
-                ServerSchemaStatVisitor visitor = new ServerSchemaStatVisitor();
-                stmt.accept(visitor);
-
-                String currentTable = visitor.getCurrentTable();
-                if (table.equalsIgnoreCase(currentTable)) {
-
-                    List<Condition> conditions = visitor.getConditions();
-                    for (Condition condition : conditions) {
-
-                        String ccN = condition.getColumn().getName();
-                        ccN = fixName(ccN);
-
-                        if (column.equalsIgnoreCase(ccN)) {
-                            List<Object> ccVL = condition.getValues();
-                            values.addAll(ccVL);
-                        }
+    /**
+     * parseConditionValues, the conditions are found by the route parser or parsed by the stat thread
+     *
+     * @param queryResult
+     * @param table
+     * @param column
+     * @return
+     */
+    private List<Object> parseConditionValues(QueryResult queryResult, String table, String column) {
+        List<Object> values = null;
+        if (table != null && column != null) {
+            values = new ArrayList<>();
+            if (table.equalsIgnoreCase(queryResult.getCurrentTable())) {
+                for (Condition condition : queryResult.getConditions()) {
+                    String ccN = fixName(condition.getColumn().getName());
+                    if (column.equalsIgnoreCase(ccN)) {
+                        values.addAll(condition.getValues());
                     }
                 }
             }
-            return values;
         }
+        return values;
     }
 }
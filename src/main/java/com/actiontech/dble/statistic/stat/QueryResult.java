@@ -5,7 +5,18 @@
 
 package com.actiontech.dble.statistic.stat;
 
+import com.actiontech.dble.route.RouteResultset;
+import com.actiontech.dble.route.parser.druid.ServerSchemaStatVisitor;
 import com.actiontech.dble.route.util.RouterUtil;
+import com.alibaba.druid.sql.ast.SQLStatement;
+import com.alibaba.druid.sql.dialect.mysql.parser.MySqlStatementParser;
+import com.alibaba.druid.sql.visitor.ParameterizedOutputVisitorUtils;
+import com.alibaba.druid.stat.TableStat.Condition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.List;
 
 /**
  * QueryResult
@@ -13,10 +24,17 @@ import com.actiontech.dble.route.util.RouterUtil;
  * @author zhuam
  */
 public class QueryResult {
+    private static final Logger LOGGER = LoggerFactory.getLogger(QueryResult.class);
 
     private String user;
     private int sqlType;
     private String sql;
+    private boolean sqlFixed = false;
+    private String parameterizedSql;
+    private SQLStatement statStatement;
+    private List<String> tables;
+    private List<Condition> conditions;
+    private String currentTable;
     private long sqlRows;
     private long netInBytes;
     private long netOutBytes;
@@ -26,13 +44,27 @@ public class QueryResult {
 
     public QueryResult(String user, int sqlType, String sql, long sqlRows,
                        long netInBytes, long netOutBytes, long startTime, long endTime, long resultSize) {
+        this(user, sqlType, sql, null, sqlRows, netInBytes, netOutBytes, startTime, endTime, resultSize);
+    }
+
+    /**
+     * @param rrs the tables and conditions found by the route parser are taken from it,
+     *            the stat thread parses the sql if the route did not parse it
+     */
+    public QueryResult(String user, int sqlType, String sql, RouteResultset rrs, long sqlRows,
+                       long netInBytes, long netOutBytes, long startTime, long endTime, long resultSize) {
         super();
         this.user = user;
         this.sqlType = sqlType;
-        if (sql.length() > 1024) {
-            sql = sql.substring(0, 1024) + "...";
+        this.sql = sql;
+        if (rrs != null) {
+            this.statStatement = rrs.getStatStatement();
+            if (rrs.getStatTables() != null) {
+                this.tables = rrs.getStatTables();
+                this.conditions = rrs.getStatConditions() == null ? Collections.<Condition>emptyList() : rrs.getStatConditions();
+                this.currentTable = rrs.getStatCurrentTable();
+            }
         }
-        this.sql = RouterUtil.getFixedSql(sql);
         this.sqlRows = sqlRows;
         this.netInBytes = netInBytes;
         this.netOutBytes = netOutBytes;
@@ -49,10 +81,82 @@ public class QueryResult {
         return sqlType;
     }
 
+    /**
+     * the sql is cut and fixed here by the stat thread, not by the query thread
+     */
     public String getSql() {
+        if (!sqlFixed) {
+            if (sql.length() > 1024) {
+                sql = sql.substring(0, 1024) + "...";
+            }
+            sql = RouterUtil.getFixedSql(sql);
+            sqlFixed = true;
+        }
         return sql;
     }
 
+    /**
+     * the parameterized sql is printed from the statement of the route by the stat thread once,
+     * and shared by all the statistics of the query. The sql is parsed only if the route has no statement
+     */
+    public String getParameterizedSql() {
+        if (parameterizedSql == null) {
+            if (statStatement != null) {
+                try {
+                    parameterizedSql = ParameterizedOutputVisitorUtils.parameterize(Collections.singletonList(statStatement), "mysql");
+                } catch (Exception e) {
+                    LOGGER.debug("parameterize the statement of sql [" + getSql() + "] failed", e);
+                }
+                statStatement = null;
+            }
+            if (parameterizedSql == null) {
+                parameterizedSql = ParameterizedOutputVisitorUtils.parameterize(getSql(), "mysql");
+            }
+            parameterizedSql = parameterizedSql.replace("\n", " ");
+        }
+        return parameterizedSql;
+    }
+
+    /**
+     * @return the tables, the first one is the master table
+     */
+    public List<String> getTables() {
+        parseSql();
+        return tables;
+    }
+
+    public List<Condition> getConditions() {
+        parseSql();
+        return conditions;
+    }
+
+    public String getCurrentTable() {
+        parseSql();
+        return currentTable;
+    }
+
+    /**
+     * parse the sql by the stat thread if the route did not give the tables and conditions,
+     * such as the show statements and the sqls routed by hints
+     */
+    private synchronized void parseSql() {
+        if (tables != null) {
+            return;
+        }
+        tables = Collections.emptyList();
+        conditions = Collections.emptyList();
+        try {
+            SQLStatement statement = new MySqlStatementParser(getSql()).parseStatement();
+            ServerSchemaStatVisitor visitor = new ServerSchemaStatVisitor();
+            statement.accept(visitor);
+            tables = RouterUtil.getStatTables(statement, visitor);
+            conditions = visitor.getConditions();
+            currentTable = visitor.getCurrentTable();
+        } catch (Exception e) {
+            LOGGER.info("parse sql for statistics error:" + e.toString());
+        }
+    }
+
     public long getSqlRows() {
         return sqlRows;
     }
@@ -5,15 +5,20 @@
 
 package com.actiontech.dble.statistic.stat;
 
-import com.actiontech.dble.DbleServer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * QueryResultDispatcher
+ * <p>
+ * query threads only put the QueryResult into a lock-free ring buffer, one
+ * stat thread takes them out by batches and calls the listeners. If the
+ * ring buffer is full the result is dropped and counted instead of blocking
+ * the query.
  *
  * @author zhuam
  */
@@ -22,9 +27,13 @@ public final class QueryResultDispatcher {
     }
 
     private static final Logger LOGGER = LoggerFactory.getLogger(QueryResultDispatcher.class);
+    private static final int RING_SIZE = 1 << 16;
+    private static final int BATCH_SIZE = 256;
 
     private static List<QueryResultListener> listeners = new CopyOnWriteArrayList<>();
 
+    private static final QueryResultRing RING = new QueryResultRing(RING_SIZE);
+
     // load in int
     static {
         listeners.add(UserStatAnalyzer.getInstance());
@@ -32,6 +41,20 @@ public final class QueryResultDispatcher {
         listeners.add(QueryConditionAnalyzer.getInstance());
     }
 
+    /**
+     * start the stat thread, only when useSqlStat is on
+     */
+    public static void start() {
+        Thread statThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                consume();
+            }
+        }, "QueryResultDispatcher");
+        statThread.setDaemon(true);
+        statThread.start();
+    }
+
     public static void addListener(QueryResultListener listener) {
         if (listener == null) {
             throw new NullPointerException();
@@ -48,19 +71,44 @@ public final class QueryResultDispatcher {
     }
 
     public static void dispatchQuery(final QueryResult queryResult) {
-        DbleServer.getInstance().getComplexQueryExecutor().execute(new Runnable() {
+        if (!RING.offer(queryResult) && LOGGER.isDebugEnabled()) {
+            LOGGER.debug("the stat thread falls behind, the query result is dropped, dropped count:" + RING.getDroppedCount());
+        }
+    }
 
-            public void run() {
+    /**
+     * @return count of query results dropped because the stat thread fell behind
+     */
+    public static long getDroppedCount() {
+        return RING.getDroppedCount();
+    }
 
-                for (QueryResultListener listener : listeners) {
-                    try {
-                        listener.onQueryResult(queryResult);
-                    } catch (Exception e) {
-                        LOGGER.info("error:", e);
-                    }
+    private static void consume() {
+        List<QueryResult> batch = new ArrayList<>(BATCH_SIZE);
+        for (; ; ) {
+            if (RING.drainTo(batch, BATCH_SIZE) == 0) {
+                RING.await();
+                if (Thread.interrupted()) {
+                    LOGGER.info("the stat thread is interrupted");
+                    return;
                 }
+                continue;
+            }
+            for (QueryResult result : batch) {
+                notifyListeners(result);
             }
-        });
+            batch.clear();
+        }
+    }
+
+    private static void notifyListeners(QueryResult queryResult) {
+        for (QueryResultListener listener : listeners) {
+            try {
+                listener.onQueryResult(queryResult);
+            } catch (Exception e) {
+                LOGGER.info("error:", e);
+            }
+        }
     }
 
 }
@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2016-2020 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.statistic.stat;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * QueryResultRing, a bounded lock-free ring of many producers and one consumer.
+ * <p>
+ * the producers claim a slot by CAS and never wait, the result is dropped and
+ * counted if the ring is full. The consumer parks when the ring is empty and
+ * is unparked by the next producer.
+ */
+final class QueryResultRing {
+    private final int capacity;
+    private final int mask;
+    private final AtomicReferenceArray<QueryResult> slots;
+    private final AtomicLong producerSeq = new AtomicLong();
+    /* written by the consumer only */
+    private volatile long consumerSeq = 0;
+    /* the consumer parked, null if it's not */
+    private volatile Thread waiter;
+    private final LongAdder dropped = new LongAdder();
+
+    /**
+     * @param capacity power of 2
+     */
+    QueryResultRing(int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("the capacity must be power of 2");
+        }
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.slots = new AtomicReferenceArray<>(capacity);
+    }
+
+    /**
+     * @return false if the ring is full and the result is dropped
+     */
+    boolean offer(QueryResult queryResult) {
+        for (; ; ) {
+            long seq = producerSeq.get();
+            if (seq - consumerSeq >= capacity) {
+                dropped.increment();
+                return false;
+            }
+            if (producerSeq.compareAndSet(seq, seq + 1)) {
+                // the volatile write is seen by the consumer before it parks or the waiter is seen here
+                slots.set((int) seq & mask, queryResult);
+                Thread consumer = waiter;
+                if (consumer != null) {
+                    LockSupport.unpark(consumer);
+                }
+                return true;
+            }
+        }
+    }
+
+    /**
+     * called by the consumer only
+     *
+     * @return count of the results moved into the batch
+     */
+    int drainTo(List<QueryResult> batch, int maxCount) {
+        long seq = consumerSeq;
+        int count = 0;
+        while (count < maxCount) {
+            int index = (int) seq & mask;
+            QueryResult queryResult = slots.get(index);
+            if (queryResult == null) {
+                // empty, or the slot is claimed but not filled yet
+                break;
+            }
+            slots.lazySet(index, null);
+            batch.add(queryResult);
+            seq++;
+            count++;
+        }
+        consumerSeq = seq;
+        return count;
+    }
+
+    /**
+     * called by the consumer only, park until a result is offered or the thread is interrupted
+     */
+    void await() {
+        waiter = Thread.currentThread();
+        if (slots.get((int) consumerSeq & mask) == null) {
+            LockSupport.park(this);
+        }
+        waiter = null;
+    }
+
+    /**
+     * @return count of the results dropped because the ring is full
+     */
+    long getDroppedCount() {
+        return dropped.sum();
+    }
+}
@@ -18,9 +18,15 @@ public class SqlResultSizeRecorder {
     private ConcurrentMap<String, SqlResultSet> sqlResultSetMap = new ConcurrentHashMap<>();
 
     public void addSql(String sql, long resultSetSize) {
-        SqlResultSet sqlResultSet;
         SqlParser sqlParserHigh = new SqlParser();
-        sql = sqlParserHigh.mergeSql(sql);
+        addParameterizedSql(sqlParserHigh.mergeSql(sql), resultSetSize);
+    }
+
+    /**
+     * @param sql the sql already parameterized, see QueryResult.getParameterizedSql
+     */
+    public void addParameterizedSql(String sql, long resultSetSize) {
+        SqlResultSet sqlResultSet;
         sqlResultSet = this.sqlResultSetMap.putIfAbsent(sql, new SqlResultSet(sql, resultSetSize));
         if (sqlResultSet != null) {
             sqlResultSet.count();
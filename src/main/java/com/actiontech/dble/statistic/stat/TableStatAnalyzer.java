@@ -6,16 +6,6 @@
 package com.actiontech.dble.statistic.stat;
 
 import com.actiontech.dble.server.parser.ServerParse;
-import com.actiontech.dble.util.StringUtil;
-import com.alibaba.druid.sql.ast.SQLStatement;
-import com.alibaba.druid.sql.ast.statement.*;
-import com.alibaba.druid.sql.dialect.mysql.visitor.MySqlASTVisitorAdapter;
-import com.alibaba.druid.sql.parser.SQLParserUtils;
-import com.alibaba.druid.sql.parser.SQLStatementParser;
-import com.alibaba.druid.sql.visitor.SQLASTVisitorAdapter;
-import com.alibaba.druid.util.JdbcConstants;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
@@ -28,14 +18,9 @@ import java.util.concurrent.locks.ReentrantLock;
  */
 public final class TableStatAnalyzer implements QueryResultListener {
 
-    private static final Logger LOGGER = LoggerFactory.getLogger(TableStatAnalyzer.class);
-
     private Map<String, TableStat> tableStatMap = new ConcurrentHashMap<>();
     private ReentrantLock lock = new ReentrantLock();
 
-    //PARSER SQL TO GET NAME
-    private SQLParser sqlParser = new SQLParser();
-
     private static final TableStatAnalyzer INSTANCE = new TableStatAnalyzer();
 
     private TableStatAnalyzer() {
@@ -60,7 +45,8 @@ public final class TableStatAnalyzer implements QueryResultListener {
                 String masterTable = null;
                 List<String> relationTables = new ArrayList<>();
 
-                List<String> tables = sqlParser.parseTableNames(sql);
+                // tables are found by the route parser already
+                List<String> tables = queryResult.getTables();
                 for (int i = 0; i < tables.size(); i++) {
                     String table = tables.get(i);
                     if (i == 0) {
@@ -119,86 +105,4 @@ public final class TableStatAnalyzer implements QueryResultListener {
         tableStatMap.clear();
     }
 
-
-    /**
-     * PARSER table name
-     */
-    private static class SQLParser {
-
-        private SQLStatement parseStmt(String sql) {
-            SQLStatementParser statParser = SQLParserUtils.createSQLStatementParser(sql, "mysql");
-            SQLStatement stmt = statParser.parseStatement();
-            return stmt;
-        }
-
-        /**
-         * fix SCHEMA,`
-         *
-         * @param tableName
-         * @return
-         */
-        private String fixName(String tableName) {
-            if (tableName != null) {
-                tableName = tableName.replace("`", "");
-                int dotIdx = tableName.indexOf(".");
-                if (dotIdx > 0) {
-                    tableName = tableName.substring(1 + dotIdx).trim();
-                }
-            }
-            return tableName;
-        }
-
-        /**
-         * PARSER SQL table name
-         */
-        public List<String> parseTableNames(String sql) {
-            final List<String> tables = new ArrayList<>();
-            try {
-
-                SQLStatement stmt = parseStmt(sql);
-                if (stmt instanceof SQLReplaceStatement) {
-                    String table = ((SQLReplaceStatement) stmt).getTableName().getSimpleName();
-                    tables.add(fixName(table));
-
-                } else if (stmt instanceof SQLInsertStatement) {
-                    String table = ((SQLInsertStatement) stmt).getTableName().getSimpleName();
-                    tables.add(fixName(table));
-
-                } else if (stmt instanceof SQLUpdateStatement) {
-                    String table = ((SQLUpdateStatement) stmt).getTableName().getSimpleName();
-                    tables.add(fixName(table));
-
-                } else if (stmt instanceof SQLDeleteStatement) {
-                    String table = ((SQLDeleteStatement) stmt).getTableName().getSimpleName();
-                    tables.add(fixName(table));
-
-                } else if (stmt instanceof SQLSelectStatement) {
-
-                    //TODO: modify by owenludong
-                    String dbType = stmt.getDbType();
-                    if (!StringUtil.isEmpty(dbType) && JdbcConstants.MYSQL.equals(dbType)) {
-                        stmt.accept(new MySqlASTVisitorAdapter() {
-                            public boolean visit(SQLExprTableSource x) {
-                                tables.add(fixName(x.toString()));
-                                return super.visit(x);
-                            }
-                        });
-
-                    } else {
-                        stmt.accept(new SQLASTVisitorAdapter() {
-                            public boolean visit(SQLExprTableSource x) {
-                                tables.add(fixName(x.toString()));
-                                return super.visit(x);
-                            }
-                        });
-                    }
-                }
-            } catch (Exception e) {
-                LOGGER.info("TableStatAnalyzer err:" + e.toString());
-            }
-
-            return tables;
-        }
-    }
-
 }
@@ -23,7 +23,13 @@ public class UserSqlHighStat {
     private SqlParser sqlParser = new SqlParser();
 
     public void addSql(String sql, long executeTime, long startTime, long endTime) {
-        String newSql = this.sqlParser.mergeSql(sql);
+        addParameterizedSql(this.sqlParser.mergeSql(sql), executeTime, startTime, endTime);
+    }
+
+    /**
+     * @param newSql the sql already parameterized, see QueryResult.getParameterizedSql
+     */
+    public void addParameterizedSql(String newSql, long executeTime, long startTime, long endTime) {
         SqlFrequency frequency = this.sqlFrequencyMap.get(newSql);
         if (frequency == null) {
             if (lock.tryLock()) {
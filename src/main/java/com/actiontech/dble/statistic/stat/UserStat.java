@@ -133,9 +133,10 @@ public class UserStat {
     /**
      * @param sqlType
      * @param sql
+     * @param parameterizedSql the parameterized sql, shared by the high frequency and the big result statistics
      * @param startTime
      */
-    public void update(int sqlType, String sql, long sqlRows,
+    public void update(int sqlType, String sql, String parameterizedSql, long sqlRows,
                        long netInBytes, long netOutBytes, long startTime, long endTime, long resultSetSize) {
 
         //-----------------------------------------------------
@@ -171,7 +172,7 @@ public class UserStat {
         this.sqlLastStat.add(sql, executeTime, startTime, endTime);
 
         //sqlHighStat
-        this.sqlHighStat.addSql(sql, executeTime, startTime, endTime);
+        this.sqlHighStat.addParameterizedSql(parameterizedSql, executeTime, startTime, endTime);
 
         //sqlLargeStat large than 10000 rows
         if (sqlType == ServerParse.SELECT && sqlRows > 10000) {
@@ -180,7 +181,7 @@ public class UserStat {
 
         //big size sql
         if (resultSetSize >= DbleServer.getInstance().getConfig().getSystem().getMaxResultSet()) {
-            this.sqlResultSizeRecorder.addSql(sql, resultSetSize);
+            this.sqlResultSizeRecorder.addParameterizedSql(parameterizedSql, resultSetSize);
         }
 
         //after
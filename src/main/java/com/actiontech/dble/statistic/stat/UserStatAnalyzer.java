@@ -50,7 +50,7 @@ public final class UserStatAnalyzer implements QueryResultListener {
                 if (userStat == null) {
                     userStat = newUserStat;
                 }
-                userStat.update(sqlType, sql, sqlRows, netInBytes, netOutBytes, startTime, endTime, resultSetSize);
+                userStat.update(sqlType, sql, query.getParameterizedSql(), sqlRows, netInBytes, netOutBytes, startTime, endTime, resultSetSize);
                 break;
             default:
                 break;
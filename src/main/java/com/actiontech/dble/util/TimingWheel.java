@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2016-2020 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * hierarchical timing wheel, every level has 512 slots and a slot of a level covers the whole
+ * lower level. The timeouts of the higher levels are cascaded to the lower levels when their slots
+ * come, so both scheduling and expiring cost O(1) no matter how many timeouts are waiting.
+ * <p>
+ * schedule() can be called by any thread, the timeouts are moved into the slots by advance(), which
+ * is called periodically by one thread at a time and calls expire() of the timeouts before now.
+ *
+ * @author ActionTech
+ */
+public final class TimingWheel {
+    private static final int WHEEL_BITS = 9;
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+    private static final int LEVELS = 4;
+    /* the farthest tick can be kept, the later timeouts are kept at the farthest tick and placed again then */
+    private static final long MAX_TICKS = (1L << (WHEEL_BITS * LEVELS)) - 1;
+
+    private final long tickMillis;
+    private final Timeout[][] slots = new Timeout[LEVELS][WHEEL_SIZE];
+    private final Queue<Timeout> pending = new ConcurrentLinkedQueue<>();
+    private long currentTick;
+    private int size = 0;
+
+    public TimingWheel(long tickMillis, long now) {
+        this.tickMillis = tickMillis;
+        this.currentTick = now / tickMillis;
+    }
+
+    /**
+     * make the timeout expire not later than the deadline, a later deadline than the scheduled one is ignored
+     */
+    public void schedule(Timeout timeout, long deadline) {
+        long current;
+        do {
+            current = timeout.deadline.get();
+            if (deadline >= current) {
+                return;
+            }
+        } while (!timeout.deadline.compareAndSet(current, deadline));
+        if (timeout.queued.compareAndSet(false, true)) {
+            pending.offer(timeout);
+        }
+    }
+
+    /**
+     * expire the timeouts before now, the deadline of an expired timeout is reset so that it can be scheduled again
+     *
+     * @return the count of the expired timeouts
+     */
+    public synchronized int advance(long now) {
+        List<Timeout> expired = new ArrayList<>();
+        Timeout timeout;
+        while ((timeout = pending.poll()) != null) {
+            timeout.queued.set(false);
+            unlink(timeout);
+            place(timeout, expired);
+        }
+        long targetTick = now / tickMillis;
+        while (currentTick < targetTick) {
+            currentTick++;
+            for (int level = LEVELS - 1; level > 0; level--) {
+                if ((currentTick & ((1L << (WHEEL_BITS * level)) - 1)) == 0) {
+                    cascade(level, expired);
+                }
+            }
+            int slot = (int) (currentTick & WHEEL_MASK);
+            while ((timeout = slots[0][slot]) != null) {
+                unlink(timeout);
+                expired.add(timeout);
+            }
+        }
+        for (Timeout t : expired) {
+            t.deadline.set(Long.MAX_VALUE);
+            t.expire();
+        }
+        return expired.size();
+    }
+
+    /**
+     * @return the count of the timeouts in the slots, the timeouts scheduled after the last advance() are not included
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    private void cascade(int level, List<Timeout> expired) {
+        int slot = (int) ((currentTick >>> (WHEEL_BITS * level)) & WHEEL_MASK);
+        Timeout timeout;
+        while ((timeout = slots[level][slot]) != null) {
+            unlink(timeout);
+            place(timeout, expired);
+        }
+    }
+
+    private void place(Timeout timeout, List<Timeout> expired) {
+        long deadline = timeout.deadline.get();
+        if (deadline == Long.MAX_VALUE) {
+            // expired and not scheduled again
+            return;
+        }
+        // round up, never expire before the deadline
+        long tick = deadline / tickMillis + (deadline % tickMillis == 0 ? 0 : 1);
+        long delta = tick - currentTick;
+        if (delta <= 0) {
+            expired.add(timeout);
+            return;
+        } else if (delta > MAX_TICKS) {
+            tick = currentTick + MAX_TICKS;
+            delta = MAX_TICKS;
+        }
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= (1L << (WHEEL_BITS * (level + 1)))) {
+            level++;
+        }
+        int slot = (int) ((tick >>> (WHEEL_BITS * level)) & WHEEL_MASK);
+        Timeout head = slots[level][slot];
+        timeout.next = head;
+        if (head != null) {
+            head.prev = timeout;
+        }
+        slots[level][slot] = timeout;
+        timeout.level = level;
+        timeout.slot = slot;
+        size++;
+    }
+
+    private void unlink(Timeout timeout) {
+        if (timeout.level < 0) {
+            return;
+        }
+        if (timeout.prev == null) {
+            slots[timeout.level][timeout.slot] = timeout.next;
+        } else {
+            timeout.prev.next = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.prev = timeout.prev;
+        }
+        timeout.prev = null;
+        timeout.next = null;
+        timeout.level = -1;
+        size--;
+    }
+
+    /**
+     * a timeout which can be scheduled again and again, it is in at most one slot at a time
+     */
+    public abstract static class Timeout {
+        private final AtomicLong deadline = new AtomicLong(Long.MAX_VALUE);
+        private final AtomicBoolean queued = new AtomicBoolean(false);
+        /* the following are only accessed by advance() */
+        private Timeout prev;
+        private Timeout next;
+        private int level = -1;
+        private int slot;
+
+        /**
+         * @return the scheduled deadline, Long.MAX_VALUE if it is not scheduled
+         */
+        public long getDeadline() {
+            return deadline.get();
+        }
+
+        /**
+         * called by advance() when the deadline comes, schedule it again to keep it
+         */
+        protected abstract void expire();
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2016-2020 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble;
+
+import com.actiontech.dble.buffer.DirectByteBufferPool;
+import com.actiontech.dble.config.ServerConfig;
+import com.actiontech.dble.singleton.BufferPoolManager;
+import org.junit.rules.ExternalResource;
+import org.mockito.internal.util.reflection.Whitebox;
+
+/**
+ * sets a new ServerConfig to DbleServer for the tests which read the config without starting the server,
+ * the former config is restored after the test class. The global buffer pool is set too if it's needed.
+ * <p>
+ * usage: {@code @ClassRule public static final ServerConfigResource SERVER_CONFIG = new ServerConfigResource();}
+ */
+public class ServerConfigResource extends ExternalResource {
+    private final boolean withBufferPool;
+    private Object formerConfig;
+    private Object formerBufferPool;
+
+    public ServerConfigResource() {
+        this(false);
+    }
+
+    public ServerConfigResource(boolean withBufferPool) {
+        this.withBufferPool = withBufferPool;
+    }
+
+    @Override
+    protected void before() {
+        formerConfig = Whitebox.getInternalState(DbleServer.getInstance(), "config");
+        Whitebox.setInternalState(DbleServer.getInstance(), "config", new ServerConfig());
+        if (withBufferPool) {
+            formerBufferPool = Whitebox.getInternalState(BufferPoolManager.getInstance(), "bufferPool");
+            Whitebox.setInternalState(BufferPoolManager.getInstance(), "bufferPool", new DirectByteBufferPool(1024 * 1024, (short) 256, (short) 4));
+        }
+    }
+
+    @Override
+    protected void after() {
+        Whitebox.setInternalState(DbleServer.getInstance(), "config", formerConfig);
+        formerConfig = null;
+        if (withBufferPool) {
+            Whitebox.setInternalState(BufferPoolManager.getInstance(), "bufferPool", formerBufferPool);
+            formerBufferPool = null;
+        }
+    }
+}
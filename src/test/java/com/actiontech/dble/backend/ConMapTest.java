@@ -0,0 +1,33 @@
+/*
+ * Copyright (C) 2016-2020 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+package com.actiontech.dble.backend;
+
+import com.actiontech.dble.config.Isolations;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class ConMapTest {
+
+    @Test
+    public void testStateHash() {
+        Map<String, String> sys1 = new LinkedHashMap<>();
+        sys1.put("sql_mode", "ANSI");
+        sys1.put("time_zone", "'+08:00'");
+        Map<String, String> sys2 = new LinkedHashMap<>();
+        sys2.put("time_zone", "'+08:00'");
+        sys2.put("sql_mode", "ansi");
+        Map<String, String> usr = new LinkedHashMap<>();
+        int hash = ConMap.getStateHash(null, Isolations.REPEATABLE_READ, true, usr, sys1);
+        // order and case of values are not compared
+        Assert.assertEquals(hash, ConMap.getStateHash(null, Isolations.REPEATABLE_READ, true, usr, sys2));
+        Assert.assertNotEquals(hash, ConMap.getStateHash(null, Isolations.READ_COMMITTED, true, usr, sys1));
+        Assert.assertNotEquals(hash, ConMap.getStateHash(null, Isolations.REPEATABLE_READ, false, usr, sys1));
+        Assert.assertNotEquals(hash, ConMap.getStateHash(null, Isolations.REPEATABLE_READ, true, sys1, usr));
+        Assert.assertNotEquals(0, ConMap.getStateHash(null, 0, true, null, null));
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2016-2020 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.backend.datasource;
+
+import com.actiontech.dble.DbleServer;
+import com.actiontech.dble.ServerConfigResource;
+import com.actiontech.dble.config.model.SystemConfig;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+public class CircuitBreakerTest {
+
+    // the thresholds are read from the server config
+    @ClassRule
+    public static final ServerConfigResource SERVER_CONFIG = new ServerConfigResource();
+
+    @Before
+    public void setUp() {
+        // the error percent is off by default
+        DbleServer.getInstance().getConfig().getSystem().setCircuitBreakerErrorPercent(50);
+    }
+
+    @Test
+    public void testErrorPercentOff() {
+        SystemConfig system = DbleServer.getInstance().getConfig().getSystem();
+        system.setCircuitBreakerErrorPercent(0);
+        CircuitBreaker breaker = new CircuitBreaker("test");
+        long now = 50000L;
+        for (int i = 0; i < system.getCircuitBreakerMinRequests() * 2; i++) {
+            breaker.onFailure(now, now);
+        }
+        Assert.assertTrue(breaker.isClosed());
+    }
+
+    @Test
+    public void testErrorPercent() {
+        SystemConfig system = DbleServer.getInstance().getConfig().getSystem();
+        CircuitBreaker breaker = new CircuitBreaker("test");
+        long now = 100000L;
+        for (int i = 0; i < system.getCircuitBreakerMinRequests() - 1; i++) {
+            breaker.onFailure(now, now);
+        }
+        // too few queries
+        Assert.assertTrue(breaker.isClosed());
+        breaker.onResponse(now, 1000, now);
+        Assert.assertFalse(breaker.isClosed());
+        Assert.assertFalse(breaker.allowRequest(now + 1));
+
+        // only one probe is allowed after the open time
+        long probeTime = now + system.getCircuitBreakerOpenTime();
+        Assert.assertTrue(breaker.allowRequest(probeTime));
+        Assert.assertFalse(breaker.allowRequest(probeTime));
+        // the result of the query started before the probe is ignored
+        breaker.onFailure(now, probeTime + 1);
+        Assert.assertFalse(breaker.allowRequest(probeTime + 1));
+        breaker.onResponse(probeTime, 1000, probeTime + 2);
+        Assert.assertTrue(breaker.isClosed());
+        // the counts before are cleared when closed
+        breaker.onFailure(probeTime + 3, probeTime + 3);
+        Assert.assertTrue(breaker.isClosed());
+    }
+
+    @Test
+    public void testFailedProbe() {
+        SystemConfig system = DbleServer.getInstance().getConfig().getSystem();
+        CircuitBreaker breaker = new CircuitBreaker("test");
+        long now = 200000L;
+        for (int i = 0; i < system.getCircuitBreakerMinRequests(); i++) {
+            breaker.onFailure(now, now);
+        }
+        Assert.assertFalse(breaker.isClosed());
+        long probeTime = now + system.getCircuitBreakerOpenTime();
+        Assert.assertTrue(breaker.allowRequest(probeTime));
+        breaker.onFailure(probeTime, probeTime + 1);
+        Assert.assertFalse(breaker.allowRequest(probeTime + 2));
+        Assert.assertTrue(breaker.allowRequest(probeTime + 1 + system.getCircuitBreakerOpenTime()));
+    }
+
+    @Test
+    public void testP95Latency() {
+        SystemConfig system = DbleServer.getInstance().getConfig().getSystem();
+        CircuitBreaker breaker = new CircuitBreaker("test");
+        long now = 300000L;
+        Assert.assertEquals(-1, breaker.getP95Latency(now));
+        for (int i = 0; i < system.getCircuitBreakerMinRequests() * 10; i++) {
+            breaker.onResponse(now, i % 20 == 0 ? 100000 : 1000, now);
+        }
+        long p95 = breaker.getP95Latency(now + 1000);
+        Assert.assertTrue(p95 >= 1000 && p95 < 1200);
+        Assert.assertTrue(breaker.isClosed());
+        // out of the window
+        Assert.assertEquals(-1, breaker.getP95Latency(now + 20000));
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2016-2020 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+package com.actiontech.dble.backend.datasource.check;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ChunkCheckStateTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testResume() {
+        String dir = folder.getRoot().getPath();
+        ChunkCheckState state = ChunkCheckState.load(dir, "testdb", "g1", "id");
+        state.startFull();
+        state.chunkDone(ChunkCheckState.NO_LOWER, 100, true);
+        state.chunkDone(100, 200, false);
+        state.save();
+
+        // restarted
+        state = ChunkCheckState.load(dir, "testdb", "g1", "id");
+        Assert.assertTrue(state.isRunning());
+        Assert.assertEquals(200, state.getNext());
+        state.chunkDone(200, ChunkCheckState.NO_UPPER, true);
+        state.finish(0);
+        state.save();
+
+        state = ChunkCheckState.load(dir, "testdb", "g1", "id");
+        Assert.assertFalse(state.isRunning());
+        Assert.assertEquals(3, state.getChunkCount());
+        Assert.assertEquals(0, state.getChunkOfKey(-5));
+        Assert.assertEquals(0, state.getChunkOfKey(100));
+        Assert.assertEquals(1, state.getChunkOfKey(101));
+        Assert.assertEquals(2, state.getChunkOfKey(GlobalTableChangeTracker.TAIL_KEY));
+        Assert.assertEquals(1, state.getChunkOfLower(state.getDivergent().first()));
+        Assert.assertEquals(200, state.getUpper(1));
+
+        // another primary key, the chunks are useless
+        Assert.assertEquals(1, ChunkCheckState.load(dir, "testdb", "g1", "code").getChunkCount());
+    }
+
+    @Test
+    public void testSql() {
+        Assert.assertEquals("SELECT `id` AS bound FROM `g1` WHERE `id` > 100 ORDER BY `id` LIMIT 999, 1",
+                ChunkChecksumChecker.getBoundSql("g1", "id", 100, 1000));
+        Assert.assertEquals(" WHERE `id` <= 100", ChunkChecksumChecker.getRangeCondition("id", ChunkCheckState.NO_LOWER, 100));
+        Assert.assertEquals("", ChunkChecksumChecker.getRangeCondition("id", ChunkCheckState.NO_LOWER, ChunkCheckState.NO_UPPER));
+    }
+}
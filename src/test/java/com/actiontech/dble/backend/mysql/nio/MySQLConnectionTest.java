@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2016-2020 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.backend.mysql.nio;
+
+import com.actiontech.dble.DbleServer;
+import com.actiontech.dble.ServerConfigResource;
+import com.actiontech.dble.backend.ConMap;
+import com.actiontech.dble.net.handler.FrontendPrivileges;
+import com.actiontech.dble.net.handler.FrontendQueryHandler;
+import com.actiontech.dble.net.mysql.CharsetNames;
+import com.actiontech.dble.net.mysql.MySQLPacket;
+import com.actiontech.dble.route.RouteResultsetNode;
+import com.actiontech.dble.server.NonBlockingSession;
+import com.actiontech.dble.server.ServerConnection;
+import com.actiontech.dble.server.parser.ServerParse;
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.internal.util.reflection.Whitebox;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+
+public class MySQLConnectionTest {
+
+    // the connection reads the system config
+    @ClassRule
+    public static final ServerConfigResource SERVER_CONFIG = new ServerConfigResource();
+
+    @Test
+    public void testStateHashUpdated() {
+        MySQLConnection conn = new MySQLConnection(null, false, true, true);
+        int initHash = conn.getStateHash();
+        Assert.assertEquals(currentStateHash(conn), initHash);
+
+        CharsetNames charset = new CharsetNames();
+        charset.setNames("latin1", "latin1_swedish_ci");
+        conn.setCharsetName(charset);
+        Assert.assertNotEquals(initHash, conn.getStateHash());
+        Assert.assertEquals(currentStateHash(conn), conn.getStateHash());
+
+        conn.resetContextStatus();
+        Assert.assertEquals(currentStateHash(conn), conn.getStateHash());
+        conn.initCharacterSet("gbk");
+        Assert.assertEquals(currentStateHash(conn), conn.getStateHash());
+    }
+
+    @Test
+    public void testForwardQueryPacket() throws Exception {
+        WrittenConnection conn = new WrittenConnection();
+        byte[] packet = queryPacket("select 1;", "UTF-8");
+        ServerConnection sc = frontConnection(conn.getCharset(), packet);
+        conn.execute(new RouteResultsetNode("dn1", ServerParse.SELECT, "select 1"), sc, conn.isAutocommit());
+        // the bytes of the client are sent as they are
+        Assert.assertArrayEquals(Arrays.copyOfRange(packet, MySQLPacket.PACKET_HEADER_SIZE + 1, packet.length), conn.getQuery());
+    }
+
+    @Test
+    public void testSyncBeforeQueryPacket() throws Exception {
+        WrittenConnection conn = new WrittenConnection();
+        ServerConnection sc = frontConnection(conn.getCharset(), queryPacket("select '中';", "UTF-8"));
+        conn.execute(new RouteResultsetNode("dn1", ServerParse.SELECT, "select '中'"), sc, !conn.isAutocommit());
+        String query = new String(conn.getQuery(), "UTF-8");
+        Assert.assertEquals("SET autocommit=" + (conn.isAutocommit() ? 0 : 1) + ";select '中';", query);
+    }
+
+    @Test
+    public void testRewrittenStatement() throws Exception {
+        WrittenConnection conn = new WrittenConnection();
+        ServerConnection sc = frontConnection(conn.getCharset(), queryPacket("select * from t;", "UTF-8"));
+        conn.execute(new RouteResultsetNode("dn1", ServerParse.SELECT, "SELECT * FROM t LIMIT 100"), sc, conn.isAutocommit());
+        // the statement of the route is encoded
+        Assert.assertEquals("SELECT * FROM t LIMIT 100", new String(conn.getQuery(), "UTF-8"));
+    }
+
+    @Test
+    public void testNotUtf8QueryPacket() throws Exception {
+        WrittenConnection conn = new WrittenConnection();
+        CharsetNames charset = new CharsetNames();
+        charset.setNames("gbk", "gbk_chinese_ci");
+        conn.setCharsetName(charset);
+        // 0x81 0x20 is not a gbk char, it's replaced in the decoded sql
+        byte[] sqlBytes = {'s', 'e', 'l', 'e', 'c', 't', ' ', '\'', (byte) 0x81, ' ', '\''};
+        byte[] packet = new byte[MySQLPacket.PACKET_HEADER_SIZE + 1 + sqlBytes.length];
+        packet[MySQLPacket.PACKET_HEADER_SIZE] = MySQLPacket.COM_QUERY;
+        System.arraycopy(sqlBytes, 0, packet, MySQLPacket.PACKET_HEADER_SIZE + 1, sqlBytes.length);
+        ServerConnection sc = frontConnection(charset, packet);
+        String sql = sc.getExecuteSql();
+        conn.execute(new RouteResultsetNode("dn1", ServerParse.SELECT, sql), sc, conn.isAutocommit());
+        // the backend gets the sql which is routed
+        Assert.assertArrayEquals(sql.getBytes("GBK"), conn.getQuery());
+        Assert.assertFalse(Arrays.equals(sqlBytes, conn.getQuery()));
+    }
+
+    /**
+     * the front connection which has received the COM_QUERY packet
+     */
+    private static ServerConnection frontConnection(CharsetNames charset, byte[] packet) {
+        ServerConnection sc = new ServerConnection();
+        FrontendPrivileges privileges = Mockito.mock(FrontendPrivileges.class);
+        Mockito.when(privileges.checkFirewallSQLPolicy((String) Mockito.anyObject(), (String) Mockito.anyObject())).thenReturn(true);
+        sc.setPrivileges(privileges);
+        sc.setQueryHandler(Mockito.mock(FrontendQueryHandler.class));
+        sc.setCharsetName(charset);
+        // the variables are created by the constructor with the channel only
+        Whitebox.setInternalState(sc, "usrVariables", new LinkedHashMap<String, String>());
+        Whitebox.setInternalState(sc, "sysVariables", new LinkedHashMap<String, String>());
+        sc.setTxIsolation(DbleServer.getInstance().getConfig().getSystem().getTxIsolation());
+        sc.query(packet);
+        return sc;
+    }
+
+    private static byte[] queryPacket(String sql, String javaCharset) throws Exception {
+        byte[] sqlBytes = sql.getBytes(javaCharset);
+        byte[] packet = new byte[MySQLPacket.PACKET_HEADER_SIZE + 1 + sqlBytes.length];
+        packet[MySQLPacket.PACKET_HEADER_SIZE] = MySQLPacket.COM_QUERY;
+        System.arraycopy(sqlBytes, 0, packet, MySQLPacket.PACKET_HEADER_SIZE + 1, sqlBytes.length);
+        return packet;
+    }
+
+    private static int currentStateHash(MySQLConnection conn) {
+        return ConMap.getStateHash(conn.getCharset(), conn.getTxIsolation(), conn.isAutocommit(), conn.getUsrVariables(), conn.getSysVariables());
+    }
+
+    /**
+     * the packets are written to a byte array instead of the socket
+     */
+    private static final class WrittenConnection extends MySQLConnection {
+        private final ByteArrayOutputStream written = new ByteArrayOutputStream();
+
+        WrittenConnection() {
+            super(null, false, true, true);
+            setSession(Mockito.mock(NonBlockingSession.class));
+        }
+
+        /**
+         * @return the sql of the COM_QUERY packet which is written
+         */
+        byte[] getQuery() {
+            byte[] packet = written.toByteArray();
+            Assert.assertEquals(MySQLPacket.COM_QUERY, packet[MySQLPacket.PACKET_HEADER_SIZE]);
+            return Arrays.copyOfRange(packet, MySQLPacket.PACKET_HEADER_SIZE + 1, packet.length);
+        }
+
+        @Override
+        public ByteBuffer allocate() {
+            return ByteBuffer.allocate(1024);
+        }
+
+        @Override
+        public void write(ByteBuffer buffer) {
+            buffer.flip();
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            written.write(bytes, 0, bytes.length);
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2016-2020 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.backend.mysql.nio.handler;
+
+import com.actiontech.dble.backend.BackendConnection;
+import com.actiontech.dble.backend.mysql.nio.MySQLConnection;
+import com.actiontech.dble.backend.mysql.nio.MySQLDataSource;
+import com.actiontech.dble.net.mysql.CharsetNames;
+import com.actiontech.dble.route.RouteResultsetNode;
+import com.actiontech.dble.server.NonBlockingSession;
+import com.actiontech.dble.server.ServerConnection;
+import com.actiontech.dble.server.parser.ServerParse;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+public class HedgedReadTest {
+    private static final long LOSER_THREAD_ID = 42L;
+
+    private final RouteResultsetNode node = new RouteResultsetNode("dn1", ServerParse.SELECT, "select 1");
+    private NonBlockingSession session;
+    private HedgedRead hedgedRead;
+    private BackendConnection primary;
+    private MySQLConnection hedge;
+    private MySQLDataSource hedgePool;
+
+    @Before
+    public void setUp() {
+        session = Mockito.mock(NonBlockingSession.class);
+        Mockito.when(session.getSource()).thenReturn(Mockito.mock(ServerConnection.class));
+        hedgedRead = new HedgedRead(Mockito.mock(SingleNodeHandler.class), node, session, null, 0);
+        primary = Mockito.mock(BackendConnection.class);
+        hedge = Mockito.mock(MySQLConnection.class);
+        hedgePool = Mockito.mock(MySQLDataSource.class);
+        Mockito.when(hedge.getPool()).thenReturn(hedgePool);
+        Mockito.when(hedge.getThreadId()).thenReturn(LOSER_THREAD_ID);
+        hedgedRead.primaryAcquired(primary);
+    }
+
+    @Test
+    public void testPrimaryWins() throws Exception {
+        hedgedRead.hedgeAcquired(hedge);
+        Mockito.verify(hedge).execute(node, session.getSource(), true);
+
+        Assert.assertTrue(hedgedRead.accept(primary));
+        Assert.assertTrue(hedgedRead.accept(primary));
+        Assert.assertFalse(hedgedRead.accept(hedge));
+        // the killed query is not counted by the circuit breaker
+        Mockito.verify(hedge).cancelExecute();
+
+        MySQLConnection killer = Mockito.mock(MySQLConnection.class);
+        ResponseHandler killHandler = captureKillHandler();
+        killHandler.connectionAcquired(killer);
+        Mockito.verify(killer).sendQueryCmd(Mockito.eq("KILL QUERY " + LOSER_THREAD_ID), (CharsetNames) Mockito.anyObject());
+
+        // the loser is released after both its query and the kill query are finished
+        hedgedRead.loserFinished(hedge);
+        Mockito.verify(hedge, Mockito.never()).release();
+        killHandler.okResponse(new byte[0], killer);
+        Mockito.verify(killer).release();
+        Mockito.verify(hedge).release();
+        Mockito.verify(hedge, Mockito.never()).close(Mockito.anyString());
+    }
+
+    @Test
+    public void testKillFinishedFirst() throws Exception {
+        hedgedRead.hedgeAcquired(hedge);
+        Assert.assertTrue(hedgedRead.accept(primary));
+
+        MySQLConnection killer = Mockito.mock(MySQLConnection.class);
+        ResponseHandler killHandler = captureKillHandler();
+        killHandler.connectionAcquired(killer);
+        killHandler.okResponse(new byte[0], killer);
+        Mockito.verify(hedge, Mockito.never()).release();
+
+        // the responses of other connections are not the end of the loser
+        hedgedRead.loserFinished(primary);
+        Mockito.verify(hedge, Mockito.never()).release();
+        hedgedRead.loserFinished(hedge);
+        Mockito.verify(hedge).release();
+    }
+
+    @Test
+    public void testKillFailed() throws Exception {
+        hedgedRead.hedgeAcquired(hedge);
+        Assert.assertTrue(hedgedRead.accept(primary));
+
+        MySQLConnection killer = Mockito.mock(MySQLConnection.class);
+        ResponseHandler killHandler = captureKillHandler();
+        killHandler.connectionAcquired(killer);
+        killHandler.connectionClose(killer, "test");
+        Mockito.verify(hedge).close(Mockito.anyString());
+
+        Mockito.when(hedge.isClosed()).thenReturn(true);
+        hedgedRead.loserFinished(hedge);
+        Mockito.verify(hedge, Mockito.never()).release();
+    }
+
+    @Test
+    public void testHedgeAfterWinner() {
+        Assert.assertTrue(hedgedRead.accept(primary));
+        // there is nothing to kill
+        Mockito.verifyZeroInteractions(hedgePool);
+
+        hedgedRead.hedgeAcquired(hedge);
+        Mockito.verify(hedge).release();
+        Mockito.verify(hedge, Mockito.never()).execute(node, session.getSource(), true);
+        Assert.assertFalse(hedgedRead.accept(hedge));
+    }
+
+    @Test
+    public void testHedgeFailed() {
+        hedgedRead.hedgeAcquired(hedge);
+        // the failure of the hedge doesn't win, the primary is still running the query
+        Assert.assertFalse(hedgedRead.fail(hedge));
+        Assert.assertFalse(hedgedRead.fail(hedge));
+        Assert.assertTrue(hedgedRead.accept(primary));
+        // the failed hedge is not killed
+        Mockito.verifyZeroInteractions(hedgePool);
+        Mockito.verify(hedge, Mockito.never()).cancelExecute();
+    }
+
+    @Test
+    public void testPrimaryFailed() {
+        hedgedRead.hedgeAcquired(hedge);
+        Assert.assertFalse(hedgedRead.fail(primary));
+        // the results of the failed primary are ignored
+        Assert.assertFalse(hedgedRead.accept(primary));
+        Assert.assertTrue(hedgedRead.accept(hedge));
+        Mockito.verify(session).bindConnection(node, hedge);
+        // the failed primary is not killed
+        Mockito.verifyZeroInteractions(primary);
+    }
+
+    @Test
+    public void testBothFailed() {
+        hedgedRead.hedgeAcquired(hedge);
+        Assert.assertFalse(hedgedRead.fail(primary));
+        // the last failure is reported
+        Assert.assertTrue(hedgedRead.fail(hedge));
+        Assert.assertTrue(hedgedRead.fail(hedge));
+        Assert.assertFalse(hedgedRead.accept(primary));
+    }
+
+    @Test
+    public void testFailedBeforeHedge() {
+        // no hedge is running the query
+        Assert.assertTrue(hedgedRead.fail(primary));
+        hedgedRead.hedgeAcquired(hedge);
+        Mockito.verify(hedge).release();
+        Mockito.verify(hedge, Mockito.never()).execute(node, session.getSource(), true);
+    }
+
+    @Test
+    public void testUnknownConnection() {
+        // responses before the query is sent are not from the primary or the hedge
+        Assert.assertTrue(hedgedRead.accept(null));
+        Assert.assertTrue(hedgedRead.accept(Mockito.mock(BackendConnection.class)));
+        Assert.assertTrue(hedgedRead.fail(Mockito.mock(BackendConnection.class)));
+        Assert.assertTrue(hedgedRead.accept(primary));
+    }
+
+    private ResponseHandler captureKillHandler() throws Exception {
+        ArgumentCaptor<ResponseHandler> captor = ArgumentCaptor.forClass(ResponseHandler.class);
+        Mockito.verify(hedgePool).getConnection((String) Mockito.anyObject(), Mockito.eq(true), captor.capture(), Mockito.isNull(), Mockito.eq(false));
+        return captor.getValue();
+    }
+}
@@ -0,0 +1,317 @@
+/*
+ * Copyright (C) 2016-2020 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.backend.mysql.nio.handler.builder;
+
+import com.actiontech.dble.DbleServer;
+import com.actiontech.dble.plan.common.exception.MySQLOutPutException;
+import com.actiontech.dble.plan.common.item.subquery.ItemSubQuery;
+import com.actiontech.dble.plan.node.PlanNode;
+import com.actiontech.dble.plan.node.TableNode;
+import com.actiontech.dble.route.RouteResultsetNode;
+import com.actiontech.dble.server.NonBlockingSession;
+import com.actiontech.dble.server.parser.ServerParse;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.internal.util.reflection.Whitebox;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * the builds of the nodes are scripted, the sub queries are started the same way as
+ * BaseHandlerBuilder.handleAsyncSubQuery and run by the test instead of the complex query executor
+ */
+public class HandlerBuilderTest {
+
+    private final QueuedExecutor executor = new QueuedExecutor();
+    private Object formerExecutor;
+    private ScriptedHandlerBuilder hBuilder;
+    private PlanNode outerNode;
+    private PlanNode subNode;
+    private ItemSubQuery subQuery;
+    private BaseHandlerBuilder outerBuilder;
+    private BaseHandlerBuilder subBuilder;
+    private final AtomicReference<BaseHandlerBuilder> built = new AtomicReference<>();
+    private final AtomicReference<Exception> error = new AtomicReference<>();
+
+    @Before
+    public void setUp() {
+        formerExecutor = Whitebox.getInternalState(DbleServer.getInstance(), "complexQueryExecutor");
+        Whitebox.setInternalState(DbleServer.getInstance(), "complexQueryExecutor", executor);
+        outerNode = Mockito.mock(TableNode.class);
+        subNode = Mockito.mock(TableNode.class);
+        subQuery = Mockito.mock(ItemSubQuery.class);
+        Mockito.when(subQuery.getPlanNode()).thenReturn(subNode);
+        outerBuilder = Mockito.mock(BaseHandlerBuilder.class);
+        subBuilder = Mockito.mock(BaseHandlerBuilder.class);
+        hBuilder = new ScriptedHandlerBuilder(outerNode, Mockito.mock(NonBlockingSession.class));
+    }
+
+    @After
+    public void tearDown() {
+        Whitebox.setInternalState(DbleServer.getInstance(), "complexQueryExecutor", formerExecutor);
+    }
+
+    @Test
+    public void testResumeAfterSubQuery() throws Exception {
+        final List<RouteResultsetNode> outerRrss = Collections.synchronizedList(new ArrayList<RouteResultsetNode>());
+        hBuilder.script(outerNode, () -> {
+            RouteResultsetNode rrs = new RouteResultsetNode("dn1", ServerParse.SELECT, "select 1");
+            outerRrss.add(rrs);
+            hBuilder.checkRRSs(new RouteResultsetNode[]{rrs});
+            startSubQuery();
+            return outerBuilder;
+        });
+        hBuilder.script(subNode, () -> {
+            hBuilder.checkRRSs(new RouteResultsetNode[]{new RouteResultsetNode("dn2", ServerParse.SELECT, "select 2")});
+            return subBuilder;
+        });
+
+        hBuilder.buildStage(outerNode, callBack());
+        // the thread is not blocked by the sub query
+        Assert.assertNull(built.get());
+        Assert.assertEquals(1, hBuilder.attempts(outerNode));
+
+        executor.runPending();
+        Assert.assertSame(outerBuilder, built.get());
+        Assert.assertNull(error.get());
+        // the sub query is executed once only and the outer node is built again
+        Assert.assertEquals(1, hBuilder.attempts(subNode));
+        Assert.assertEquals(2, hBuilder.attempts(outerNode));
+        Assert.assertSame(subBuilder, hBuilder.getFinishedSubQuery(subQuery));
+        // the rrs node checked by the suspended build is checked again as a new one
+        Assert.assertEquals(2, outerRrss.size());
+        Assert.assertEquals(0, outerRrss.get(1).getMultiplexNum().get());
+    }
+
+    @Test
+    public void testSubQueryFailedWhileSuspended() throws Exception {
+        hBuilder.script(outerNode, () -> {
+            startSubQuery();
+            return outerBuilder;
+        });
+        hBuilder.script(subNode, () -> {
+            throw new RuntimeException("sub query error");
+        });
+
+        hBuilder.buildStage(outerNode, callBack());
+        Assert.assertNull(error.get());
+        executor.runPending();
+        // the outer node is not built again
+        Assert.assertNull(built.get());
+        Assert.assertTrue(error.get() instanceof MySQLOutPutException);
+        Assert.assertEquals("sub query error", error.get().getMessage());
+        Assert.assertEquals(1, hBuilder.attempts(outerNode));
+        Assert.assertNull(hBuilder.getFinishedSubQuery(subQuery));
+    }
+
+    @Test
+    public void testNestedSubQuery() throws Exception {
+        final PlanNode innerNode = Mockito.mock(TableNode.class);
+        final ItemSubQuery innerQuery = Mockito.mock(ItemSubQuery.class);
+        Mockito.when(innerQuery.getPlanNode()).thenReturn(innerNode);
+        hBuilder.script(outerNode, () -> {
+            startSubQuery();
+            return outerBuilder;
+        });
+        // the sub query is suspended by its own sub query
+        hBuilder.script(subNode, () -> {
+            hBuilder.startSubQuery(innerQuery);
+            return subBuilder;
+        });
+        hBuilder.script(innerNode, () -> Mockito.mock(BaseHandlerBuilder.class));
+
+        hBuilder.buildStage(outerNode, callBack());
+        executor.runPending();
+        Assert.assertSame(outerBuilder, built.get());
+        Assert.assertEquals(2, hBuilder.attempts(subNode));
+        Assert.assertEquals(1, hBuilder.attempts(innerNode));
+    }
+
+    @Test
+    public void testBuildWaitingSubQuery() throws Exception {
+        hBuilder.script(outerNode, () -> {
+            startSubQuery();
+            return outerBuilder;
+        });
+        hBuilder.script(subNode, () -> subBuilder);
+
+        final AtomicReference<BaseHandlerBuilder> result = new AtomicReference<>();
+        Thread thread = new Thread(() -> {
+            try {
+                result.set(hBuilder.buildWaitingSubQuery(outerNode));
+            } catch (Exception e) {
+                error.set(e);
+            }
+        });
+        thread.start();
+        // the sub query is started by the waiting thread
+        executor.runNext();
+        thread.join(TimeUnit.SECONDS.toMillis(10));
+        Assert.assertFalse(thread.isAlive());
+        Assert.assertSame(outerBuilder, result.get());
+        Assert.assertNull(error.get());
+        Assert.assertEquals(2, hBuilder.attempts(outerNode));
+    }
+
+    @Test
+    public void testBuildWaitingSubQueryFailed() throws Exception {
+        hBuilder.script(outerNode, () -> {
+            startSubQuery();
+            return outerBuilder;
+        });
+        hBuilder.script(subNode, () -> {
+            throw new RuntimeException("sub query error");
+        });
+
+        Thread thread = new Thread(() -> {
+            try {
+                hBuilder.buildWaitingSubQuery(outerNode);
+            } catch (Exception e) {
+                error.set(e);
+            }
+        });
+        thread.start();
+        executor.runNext();
+        thread.join(TimeUnit.SECONDS.toMillis(10));
+        Assert.assertFalse(thread.isAlive());
+        Assert.assertTrue(error.get() instanceof MySQLOutPutException);
+        Assert.assertEquals("sub query error", error.get().getMessage());
+        Assert.assertEquals(1, hBuilder.attempts(outerNode));
+    }
+
+    private void startSubQuery() {
+        hBuilder.startSubQuery(subQuery);
+    }
+
+    private HandlerBuilder.BuildCallBack callBack() {
+        return new HandlerBuilder.BuildCallBack() {
+            @Override
+            public void onBuilt(BaseHandlerBuilder builder) {
+                built.set(builder);
+            }
+
+            @Override
+            public void onError(Exception e) {
+                error.set(e);
+            }
+        };
+    }
+
+    private interface Build {
+        BaseHandlerBuilder build();
+    }
+
+    private static final class ScriptedHandlerBuilder extends HandlerBuilder {
+        private final Map<PlanNode, Build> builds = Collections.synchronizedMap(new IdentityHashMap<PlanNode, Build>());
+        private final Map<PlanNode, AtomicInteger> attempts = Collections.synchronizedMap(new IdentityHashMap<PlanNode, AtomicInteger>());
+
+        ScriptedHandlerBuilder(PlanNode node, NonBlockingSession session) {
+            super(node, session);
+        }
+
+        void script(PlanNode planNode, Build build) {
+            builds.put(planNode, build);
+            attempts.put(planNode, new AtomicInteger());
+        }
+
+        int attempts(PlanNode planNode) {
+            return attempts.get(planNode).get();
+        }
+
+        @Override
+        public BaseHandlerBuilder getBuilder(NonBlockingSession nonBlockingSession, PlanNode planNode, boolean isExplain) {
+            attempts.get(planNode).incrementAndGet();
+            return builds.get(planNode).build();
+        }
+
+        /**
+         * the same as handleAsyncSubQuery, the sub query is built by the executor and the build is suspended
+         */
+        void startSubQuery(final ItemSubQuery itemSubQuery) {
+            if (getFinishedSubQuery(itemSubQuery) != null) {
+                return;
+            }
+            final SubQueryWaiter waiter = new SubQueryWaiter(1);
+            final BuildCallBack subQueryStarter = new BuildCallBack() {
+                @Override
+                public void onBuilt(BaseHandlerBuilder builder) {
+                    subQueryFinished(itemSubQuery, builder);
+                    waiter.subQueryFinished();
+                }
+
+                @Override
+                public void onError(Exception e) {
+                    waiter.addError(SubQueryWaiter.createErrorPacket(e));
+                    waiter.subQueryFinished();
+                }
+            };
+            DbleServer.getInstance().getComplexQueryExecutor().execute(() -> buildStage(itemSubQuery.getPlanNode(), subQueryStarter));
+            throw new SubQueryPendingException(waiter);
+        }
+    }
+
+    /**
+     * the tasks are run by the test one by one
+     */
+    private static final class QueuedExecutor extends AbstractExecutorService {
+        private final BlockingQueue<Runnable> tasks = new LinkedBlockingQueue<>();
+
+        void runPending() {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                task.run();
+            }
+        }
+
+        void runNext() throws InterruptedException {
+            Runnable task = tasks.poll(10, TimeUnit.SECONDS);
+            Assert.assertNotNull(task);
+            task.run();
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            tasks.add(command);
+        }
+
+        @Override
+        public void shutdown() {
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return false;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return false;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2016-2020 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.backend.mysql.nio.handler.builder;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SubQueryWaiterTest {
+
+    @Test
+    public void testContinuation() {
+        final AtomicInteger called = new AtomicInteger();
+        SubQueryWaiter waiter = new SubQueryWaiter(2);
+        waiter.onFinished(called::incrementAndGet);
+        waiter.subQueryFinished();
+        Assert.assertEquals(0, called.get());
+        waiter.subQueryFinished();
+        Assert.assertEquals(1, called.get());
+        Assert.assertNull(waiter.getError());
+    }
+
+    @Test
+    public void testFinishedBeforeContinuation() throws InterruptedException {
+        final AtomicInteger called = new AtomicInteger();
+        SubQueryWaiter waiter = new SubQueryWaiter(1);
+        waiter.addError(SubQueryWaiter.createErrorPacket(new RuntimeException("sub query error")));
+        waiter.subQueryFinished();
+        waiter.await();
+        waiter.onFinished(called::incrementAndGet);
+        Assert.assertEquals(1, called.get());
+        Assert.assertEquals("sub query error", waiter.getError().getMessage());
+    }
+}
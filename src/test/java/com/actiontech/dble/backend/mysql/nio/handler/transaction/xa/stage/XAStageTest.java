@@ -0,0 +1,188 @@
+/*
+ * Copyright (C) 2016-2020 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.backend.mysql.nio.handler.transaction.xa.stage;
+
+import com.actiontech.dble.DbleServer;
+import com.actiontech.dble.ServerConfigResource;
+import com.actiontech.dble.backend.mysql.nio.MySQLConnection;
+import com.actiontech.dble.backend.mysql.nio.handler.transaction.TransactionStage;
+import com.actiontech.dble.backend.mysql.nio.handler.transaction.xa.handler.AbstractXAHandler;
+import com.actiontech.dble.backend.mysql.xa.CoordinatorLogEntry;
+import com.actiontech.dble.backend.mysql.xa.ParticipantLogEntry;
+import com.actiontech.dble.backend.mysql.xa.TxState;
+import com.actiontech.dble.backend.mysql.xa.XAStateLog;
+import com.actiontech.dble.config.ErrorCode;
+import com.actiontech.dble.config.model.SystemConfig;
+import com.actiontech.dble.route.RouteResultsetNode;
+import com.actiontech.dble.server.NonBlockingSession;
+import com.actiontech.dble.server.ServerConnection;
+import com.actiontech.dble.server.parser.ServerParse;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class XAStageTest {
+    private static final String XA_ID = "'Dble_Server.test.1'";
+
+    // the recovery log reads the server config
+    @ClassRule
+    public static final ServerConfigResource SERVER_CONFIG = new ServerConfigResource();
+
+    private NonBlockingSession session;
+    private AbstractXAHandler handler;
+    private CoordinatorLogEntry logEntry;
+    private final Map<RouteResultsetNode, MySQLConnection> targets = new LinkedHashMap<>();
+
+    @BeforeClass
+    public static void initConfig() {
+        SystemConfig system = DbleServer.getInstance().getConfig().getSystem();
+        // no checkpoint is written to the disk
+        system.setUsePerformanceMode(1);
+        system.setXaRecoveryLogBaseDir(System.getProperty("java.io.tmpdir") + File.separatorChar + "dble_xa_stage_test" + File.separatorChar);
+    }
+
+    @Before
+    public void setUp() {
+        logEntry = new CoordinatorLogEntry(XA_ID, new ParticipantLogEntry[0], TxState.TX_STARTED_STATE);
+        XAStateLog.flushMemoryRepository(XA_ID, logEntry);
+        session = Mockito.mock(NonBlockingSession.class);
+        handler = Mockito.mock(AbstractXAHandler.class);
+        targets.clear();
+        Mockito.when(session.getSource()).thenReturn(Mockito.mock(ServerConnection.class));
+        Mockito.when(session.getSessionXaID()).thenReturn(XA_ID);
+        Mockito.when(session.getTargetKeys()).thenReturn(targets.keySet());
+    }
+
+    @Test
+    public void testOnePhaseCommitOfOnlyParticipant() {
+        MySQLConnection conn = addTarget("dn1", false);
+        XAEndStage endStage = new XAEndStage(session, handler, false);
+        endStage.onEnterStage();
+        // XA COMMIT ONE PHASE is pipelined after XA END
+        Mockito.verify(conn).execCmd("XA END 'dn1';XA COMMIT 'dn1' ONE PHASE");
+
+        endStage.onConnectionOk(conn);
+        Mockito.verify(conn).setXaStatus(TxState.TX_COMMITTED_STATE);
+        Assert.assertNull(endStage.next(false, null, null));
+        Assert.assertEquals(TxState.TX_COMMITTED_STATE, logEntry.getTxState());
+    }
+
+    @Test
+    public void testOnlyParticipantLostWhenOnePhase() {
+        MySQLConnection conn = addTarget("dn1", false);
+        XAEndStage endStage = new XAEndStage(session, handler, false);
+        endStage.onEnterStage();
+        endStage.onConnectionClose(conn);
+        // the branch may have been committed, it is not reported as rolled back
+        Mockito.verify(conn).setXaStatus(TxState.TX_COMMIT_FAILED_STATE);
+        Mockito.verify(conn, Mockito.never()).close();
+        TransactionStage next = endStage.next(true, "closed", new byte[0]);
+        Assert.assertTrue(next instanceof XACommitFailStage);
+        Assert.assertTrue(((XACommitFailStage) next).isOnePhase());
+    }
+
+    @Test
+    public void testReadOnlyParticipants() {
+        MySQLConnection writer = addTarget("dn1", false);
+        MySQLConnection reader = addTarget("dn2", true);
+        XAEndStage endStage = new XAEndStage(session, handler, false);
+        endStage.onEnterStage();
+        // the writer is only ended, the read only participant is committed directly
+        Mockito.verify(writer).execCmd("XA END 'dn1'");
+        Mockito.verify(reader).execCmd("XA END 'dn2';XA COMMIT 'dn2' ONE PHASE");
+
+        endStage.onConnectionOk(writer);
+        endStage.onConnectionOk(reader);
+        Mockito.verify(writer).setXaStatus(TxState.TX_ENDED_STATE);
+        Mockito.verify(reader).setXaStatus(TxState.TX_INITIALIZE_STATE);
+        TransactionStage next = endStage.next(false, null, null);
+        Assert.assertTrue(next instanceof XACommitStage);
+        Assert.assertTrue(((XACommitStage) next).isOnePhase());
+
+        // the read only participant has been committed
+        XACommitStage commitStage = (XACommitStage) next;
+        Mockito.when(writer.getXaStatus()).thenReturn(TxState.TX_ENDED_STATE);
+        Mockito.when(reader.getXaStatus()).thenReturn(TxState.TX_INITIALIZE_STATE);
+        commitStage.onEnterStage();
+        Mockito.verify(writer).execCmd("XA COMMIT 'dn1' ONE PHASE");
+        Mockito.verify(handler).fakedResponse(reader, null);
+        Assert.assertEquals(TxState.TX_COMMITTING_STATE, logEntry.getTxState());
+    }
+
+    @Test
+    public void testOnePhaseCommitLost() {
+        MySQLConnection writer = addTarget("dn1", false);
+        addTarget("dn2", true);
+        XACommitStage commitStage = new XACommitStage(session, handler, true);
+        commitStage.onConnectionClose(writer);
+        Mockito.verify(writer).setXaStatus(TxState.TX_COMMIT_FAILED_STATE);
+        // retried by the commit fail stage instead of rolled back
+        Assert.assertTrue(commitStage.next(true, "closed", new byte[0]) instanceof XACommitFailStage);
+    }
+
+    @Test
+    public void testOnePhaseCommitError() {
+        MySQLConnection writer = addTarget("dn1", false);
+        addTarget("dn2", true);
+        XACommitStage commitStage = new XACommitStage(session, handler, true);
+        commitStage.onConnectionError(writer, ErrorCode.ER_XA_RBROLLBACK);
+        // the error is the answer of the data source, nothing is committed
+        Mockito.verify(writer).close();
+        Mockito.verify(writer).setXaStatus(TxState.TX_CONN_QUIT);
+        Assert.assertTrue(commitStage.next(true, "error", new byte[0]) instanceof XARollbackStage);
+    }
+
+    @Test
+    public void testPipelinedPrepare() {
+        MySQLConnection writer1 = addTarget("dn1", false);
+        MySQLConnection writer2 = addTarget("dn2", false);
+        MySQLConnection reader = addTarget("dn3", true);
+        XAEndStage endStage = new XAEndStage(session, handler, false);
+        endStage.onEnterStage();
+        Mockito.verify(writer1).execCmd("XA END 'dn1';XA PREPARE 'dn1'");
+        Mockito.verify(writer2).execCmd("XA END 'dn2';XA PREPARE 'dn2'");
+        Mockito.verify(reader).execCmd("XA END 'dn3';XA COMMIT 'dn3' ONE PHASE");
+        Assert.assertEquals(TxState.TX_PREPARING_STATE, logEntry.getTxState());
+
+        endStage.onConnectionOk(writer1);
+        endStage.onConnectionOk(reader);
+        Mockito.verify(writer1).setXaStatus(TxState.TX_PREPARED_STATE);
+        // XA PREPARE may have been executed before the conn is lost
+        endStage.onConnectionClose(writer2);
+        Mockito.verify(writer2).setXaStatus(TxState.TX_PREPARE_UNCONNECT_STATE);
+        Assert.assertTrue(endStage.next(true, "closed", new byte[0]) instanceof XARollbackStage);
+    }
+
+    @Test
+    public void testPipelinedPrepareCommitted() {
+        addTarget("dn1", false);
+        addTarget("dn2", false);
+        XAEndStage endStage = new XAEndStage(session, handler, false);
+        endStage.onEnterStage();
+        TransactionStage next = endStage.next(false, null, null);
+        Assert.assertTrue(next instanceof XACommitStage);
+        Assert.assertFalse(((XACommitStage) next).isOnePhase());
+    }
+
+    private MySQLConnection addTarget(String name, boolean readOnly) {
+        RouteResultsetNode rrn = new RouteResultsetNode(name, ServerParse.INSERT, "insert into t values(1)");
+        MySQLConnection conn = Mockito.mock(MySQLConnection.class);
+        Mockito.when(conn.getAttachment()).thenReturn(rrn);
+        Mockito.when(conn.getConnXID(XA_ID, 0L)).thenReturn("'" + name + "'");
+        targets.put(rrn, conn);
+        Mockito.when(session.getTarget(rrn)).thenReturn(conn);
+        Mockito.when(session.isReadOnlyTarget(rrn)).thenReturn(readOnly);
+        Mockito.when(session.getTargetCount()).thenReturn(targets.size());
+        return conn;
+    }
+}
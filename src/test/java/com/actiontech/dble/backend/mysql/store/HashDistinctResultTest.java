@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2016-2020 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.backend.mysql.store;
+
+import com.actiontech.dble.ServerConfigResource;
+import com.actiontech.dble.backend.mysql.nio.handler.util.HandlerTool;
+import com.actiontech.dble.backend.mysql.nio.handler.util.RowDataComparator;
+import com.actiontech.dble.backend.mysql.store.memalloc.MemSizeController;
+import com.actiontech.dble.net.mysql.FieldPacket;
+import com.actiontech.dble.net.mysql.RowDataPacket;
+import com.actiontech.dble.plan.common.field.Field;
+import com.actiontech.dble.plan.common.item.FieldTypes;
+import com.actiontech.dble.plan.common.item.Item;
+import com.actiontech.dble.plan.common.item.ItemField;
+import com.actiontech.dble.singleton.BufferPoolManager;
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.mockito.internal.util.reflection.Whitebox;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class HashDistinctResultTest {
+
+    // FileStore reads mappedFileSize from the server config, rows are written as packets by the global pool
+    @ClassRule
+    public static final ServerConfigResource SERVER_CONFIG = new ServerConfigResource(true);
+
+    @Test
+    public void testDistinctWithSpill() {
+        List<Field> fields = makeFields(makeField("id", FieldTypes.MYSQL_TYPE_LONG), makeField("name", FieldTypes.MYSQL_TYPE_VAR_STRING));
+        HashDistinctResult result = new HashDistinctResult(BufferPoolManager.getBufferPool(), 2, fields, makeComparator(fields), null);
+        result.setMaxMemory(16 * 1024);
+        Random random = new Random(7);
+        Set<String> expected = new HashSet<>();
+        List<String> sent = new ArrayList<>();
+        try {
+            for (int i = 0; i < 20000; i++) {
+                int id = random.nextInt(3000);
+                String name = random.nextBoolean() ? "name" + id % 5 : "NAME" + id % 5;
+                RowDataPacket row = new RowDataPacket(2);
+                row.add(String.valueOf(id).getBytes());
+                row.add(name.getBytes());
+                expected.add(id + "," + name.toUpperCase());
+                if (result.add(row)) {
+                    sent.add(key(row));
+                }
+            }
+            // spilled, some rows are not sent yet
+            Assert.assertTrue(sent.size() < expected.size());
+            result.done(row -> sent.add(key(row)));
+        } finally {
+            result.close();
+        }
+        Assert.assertEquals(expected.size(), sent.size());
+        Assert.assertEquals(expected, new HashSet<>(sent));
+    }
+
+    @Test
+    public void testDistinctWithSharedController() {
+        List<Field> fields = makeFields(makeField("id", FieldTypes.MYSQL_TYPE_LONG), makeField("name", FieldTypes.MYSQL_TYPE_VAR_STRING));
+        // the controller of the session, the other handlers hold a part of it
+        MemSizeController bufferMC = new MemSizeController(64 * 1024);
+        bufferMC.addSize(32 * 1024);
+        HashDistinctResult result = new HashDistinctResult(BufferPoolManager.getBufferPool(), 2, fields, makeComparator(fields), bufferMC);
+        Random random = new Random(11);
+        Set<String> expected = new HashSet<>();
+        List<String> sent = new ArrayList<>();
+        try {
+            for (int i = 0; i < 20000; i++) {
+                int id = random.nextInt(5000);
+                RowDataPacket row = new RowDataPacket(2);
+                row.add(String.valueOf(id).getBytes());
+                row.add(("name" + id).getBytes());
+                expected.add(id + ",NAME" + id);
+                if (result.add(row)) {
+                    sent.add(key(row));
+                }
+            }
+            Assert.assertTrue(sent.size() < expected.size());
+            result.done(row -> sent.add(key(row)));
+        } finally {
+            result.close();
+        }
+        // every row is sent once
+        Assert.assertEquals(expected.size(), sent.size());
+        Assert.assertEquals(expected, new HashSet<>(sent));
+        Assert.assertEquals(32 * 1024, ((AtomicLong) Whitebox.getInternalState(bufferMC, "size")).get());
+    }
+
+    @Test
+    public void testDistinctTemporal() {
+        List<Field> fields = makeFields(makeField("created", FieldTypes.MYSQL_TYPE_DATETIME), makeField("elapsed", FieldTypes.MYSQL_TYPE_TIME));
+        HashDistinctResult result = new HashDistinctResult(BufferPoolManager.getBufferPool(), 2, fields, makeComparator(fields), null);
+        int sent = 0;
+        Set<Long> hashes = new HashSet<>();
+        try {
+            for (int i = 0; i < 3000; i++) {
+                int second = i % 300;
+                // the same time in different formats
+                String fraction = i % 600 < 300 ? "" : ".000";
+                RowDataPacket row = new RowDataPacket(2);
+                row.add(String.format("2020-01-01 10:%02d:%02d%s", second / 60, second % 60, fraction).getBytes());
+                row.add(String.format("00:%02d:%02d%s", second / 60, second % 60, fraction).getBytes());
+                hashes.add(result.hash(row));
+                if (result.add(row)) {
+                    sent++;
+                }
+            }
+            result.done(row -> Assert.fail("no row is spilled"));
+        } finally {
+            result.close();
+        }
+        Assert.assertEquals(300, sent);
+        // the values are hashed, not put in the same chain
+        Assert.assertEquals(300, hashes.size());
+    }
+
+    private static List<Field> makeFields(FieldPacket... fps) {
+        return HandlerTool.createFields(Arrays.asList(fps));
+    }
+
+    private static RowDataComparator makeComparator(List<Field> fields) {
+        List<Item> items = new ArrayList<>();
+        for (Field field : fields) {
+            items.add(new ItemField(null, "t", field.getName()));
+        }
+        return new RowDataComparator(fields, HandlerTool.makeOrder(items));
+    }
+
+    private static String key(RowDataPacket row) {
+        return new String(row.getValue(0)) + "," + new String(row.getValue(1)).toUpperCase();
+    }
+
+    private static FieldPacket makeField(String name, FieldTypes type) {
+        FieldPacket fp = new FieldPacket();
+        fp.setName(name.getBytes());
+        fp.setTable("t".getBytes());
+        fp.setType(type.numberValue());
+        fp.setCharsetIndex(33);
+        return fp;
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2016-2020 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.backend.mysql.store.diskbuffer;
+
+import com.actiontech.dble.ServerConfigResource;
+import com.actiontech.dble.backend.mysql.store.FileStore;
+import com.actiontech.dble.buffer.DirectByteBufferPool;
+import com.actiontech.dble.net.mysql.RowDataPacket;
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ColumnarBlockCodecTest {
+
+    // FileStore reads mappedFileSize from the server config
+    @ClassRule
+    public static final ServerConfigResource SERVER_CONFIG = new ServerConfigResource();
+
+    private static List<byte[][]> makeRows(int count) {
+        List<byte[][]> rows = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            rows.add(new byte[][]{String.valueOf(i).getBytes(), i % 5 == 0 ? null : ("dept" + i % 3).getBytes(), new byte[0]});
+        }
+        return rows;
+    }
+
+    @Test
+    public void testEncodeDecode() {
+        List<byte[][]> rows = makeRows(100);
+        byte[][][] columns = new byte[3][100][];
+        for (int i = 0; i < rows.size(); i++) {
+            for (int j = 0; j < 3; j++) {
+                columns[j][i] = rows.get(i)[j];
+            }
+        }
+        ColumnarBlockCodec.Encoder encoder = new ColumnarBlockCodec.Encoder();
+        int length = encoder.encode(columns, rows.size());
+        ByteBuffer block = ByteBuffer.wrap(encoder.buffer(), 0, length);
+        Assert.assertEquals(length - ColumnarBlockCodec.HEADER_SIZE, ColumnarBlockCodec.readHeader(block));
+        int rowCount = ColumnarBlockCodec.readRowCount(block);
+        Assert.assertEquals(100, rowCount);
+        byte[][][] decoded = ColumnarBlockCodec.decode(block, rowCount, 3);
+        for (int i = 0; i < rowCount; i++) {
+            for (int j = 0; j < 3; j++) {
+                Assert.assertArrayEquals(rows.get(i)[j], decoded[j][i]);
+            }
+        }
+        // the values of the dictionary are shared
+        Assert.assertSame(decoded[1][1], decoded[1][4]);
+    }
+
+    @Test
+    public void testTape() {
+        DirectByteBufferPool pool = new DirectByteBufferPool(1024 * 1024, (short) 256, (short) 4);
+        List<byte[][]> rows = makeRows(1000);
+        FileStore file = new FileStore("nioMapped:Memory", "rw");
+        try {
+            ColumnarBlockCodec.Encoder encoder = new ColumnarBlockCodec.Encoder();
+            byte[][][] columns = new byte[3][ColumnarBlockCodec.BLOCK_ROWS][];
+            int n = 0;
+            for (byte[][] row : rows) {
+                for (int j = 0; j < 3; j++) {
+                    columns[j][n] = row[j];
+                }
+                if (++n == ColumnarBlockCodec.BLOCK_ROWS) {
+                    file.write(encoder.buffer(), 0, encoder.encode(columns, n));
+                    n = 0;
+                }
+            }
+            file.write(encoder.buffer(), 0, encoder.encode(columns, n));
+
+            ResultDiskBuffer.BlockDiskTape tape = new ResultDiskBuffer.BlockDiskTape(pool, file, 3);
+            tape.start = 0;
+            tape.end = file.getFilePointer();
+            for (int times = 0; times < 2; times++) {
+                tape.rewind();
+                for (byte[][] row : rows) {
+                    Assert.assertFalse(tape.isEnd());
+                    RowDataPacket packet = tape.nextRow();
+                    for (int j = 0; j < 3; j++) {
+                        Assert.assertArrayEquals(row[j], packet.getValue(j));
+                    }
+                }
+                Assert.assertTrue(tape.isEnd());
+                Assert.assertNull(tape.nextRow());
+            }
+        } finally {
+            file.closeAndDeleteSilently();
+        }
+    }
+}
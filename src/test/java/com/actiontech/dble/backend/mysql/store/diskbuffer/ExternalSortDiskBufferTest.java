@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2016-2020 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.backend.mysql.store.diskbuffer;
+
+import com.actiontech.dble.ServerConfigResource;
+import com.actiontech.dble.backend.mysql.store.memalloc.MemSizeController;
+import com.actiontech.dble.buffer.DirectByteBufferPool;
+import com.actiontech.dble.net.mysql.RowDataPacket;
+import com.actiontech.dble.plan.common.field.FieldUtil;
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.mockito.internal.util.reflection.Whitebox;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ExternalSortDiskBufferTest {
+
+    private static final Comparator<RowDataPacket> CMP = new Comparator<RowDataPacket>() {
+        @Override
+        public int compare(RowDataPacket o1, RowDataPacket o2) {
+            return FieldUtil.compareIntUsingStringBytes(o1.getValue(0), o2.getValue(0));
+        }
+    };
+
+    // FileStore reads mappedFileSize from the server config
+    @ClassRule
+    public static final ServerConfigResource SERVER_CONFIG = new ServerConfigResource();
+
+    @Test
+    public void testSortWithMergePasses() {
+        Random random = new Random(7);
+        List<RowDataPacket> expected = new ArrayList<>();
+        ExecutorService executor = Executors.newCachedThreadPool();
+        ExternalSortDiskBuffer buffer = new ExternalSortDiskBuffer(new DirectByteBufferPool(1024 * 1024, (short) 256, (short) 4),
+                3, CMP, () -> CMP, 3, 2, executor);
+        try {
+            addRuns(buffer, random, expected);
+            buffer.done();
+            assertSorted(buffer, expected);
+        } finally {
+            buffer.close();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testMergedRunsReclaimed() {
+        Random random = new Random(11);
+        List<RowDataPacket> expected = new ArrayList<>();
+        ExternalSortDiskBuffer buffer = new ExternalSortDiskBuffer(new DirectByteBufferPool(1024 * 1024, (short) 256, (short) 4),
+                3, CMP, () -> CMP, 1, 2, null);
+        try {
+            addRuns(buffer, random, expected);
+            long runsLength = buffer.file.length();
+            buffer.done();
+            // 3 merge passes, only the runs of the last one are kept
+            Assert.assertEquals(2, buffer.tapeCount());
+            Assert.assertTrue(buffer.file.length() < runsLength * 2);
+            assertSorted(buffer, expected);
+        } finally {
+            buffer.close();
+        }
+    }
+
+    @Test
+    public void testRunComparatorAndMemory() {
+        Random random = new Random(13);
+        List<RowDataPacket> expected = new ArrayList<>();
+        MemSizeController mc = new MemSizeController(1024L * 1024L * 1024L);
+        AtomicInteger comparators = new AtomicInteger();
+        ExecutorService executor = Executors.newCachedThreadPool();
+        ExternalSortDiskBuffer buffer = new ExternalSortDiskBuffer(new DirectByteBufferPool(1024 * 1024, (short) 256, (short) 4),
+                3, CMP, () -> {
+                    comparators.incrementAndGet();
+                    return new SingleThreadComparator();
+                }, 3, 2, executor);
+        try {
+            for (int run = 0; run < 9; run++) {
+                List<RowDataPacket> rows = newRun(random);
+                expected.addAll(rows);
+                mc.addSize(1000);
+                buffer.addRows(rows, mc, 1000);
+            }
+            buffer.done();
+            // every run is sorted by its own comparator, and its memory is given back when it's written
+            Assert.assertEquals(9, comparators.get());
+            Assert.assertEquals(0, ((AtomicLong) Whitebox.getInternalState(mc, "size")).get());
+            assertSorted(buffer, expected);
+        } finally {
+            buffer.close();
+            executor.shutdown();
+        }
+    }
+
+    private static void addRuns(ExternalSortDiskBuffer buffer, Random random, List<RowDataPacket> expected) {
+        for (int run = 0; run < 9; run++) {
+            List<RowDataPacket> rows = newRun(random);
+            expected.addAll(rows);
+            buffer.addRows(rows);
+        }
+    }
+
+    private static List<RowDataPacket> newRun(Random random) {
+        List<RowDataPacket> rows = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            RowDataPacket row = new RowDataPacket(3);
+            row.add(String.valueOf(random.nextInt(5000)).getBytes());
+            row.add(i % 7 == 0 ? null : ("name" + random.nextInt(100)).getBytes());
+            row.add(new byte[0]);
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    private static void assertSorted(ExternalSortDiskBuffer buffer, List<RowDataPacket> expected) {
+        Collections.sort(expected, CMP);
+        for (int times = 0; times < 2; times++) {
+            buffer.reset();
+            RowDataPacket last = null;
+            int count = 0;
+            RowDataPacket row;
+            while ((row = buffer.next()) != null) {
+                if (last != null) {
+                    Assert.assertTrue(CMP.compare(last, row) <= 0);
+                }
+                Assert.assertArrayEquals(expected.get(count).getValue(0), row.getValue(0));
+                Assert.assertEquals(0, row.getValue(2).length);
+                last = row;
+                count++;
+            }
+            Assert.assertEquals(expected.size(), count);
+        }
+    }
+
+    @Test
+    public void testCodecRoundTrip() {
+        SortedRunCodec.Encoder encoder = new SortedRunCodec.Encoder(16);
+        RowDataPacket first = new RowDataPacket(2);
+        first.add("abcdef".getBytes());
+        first.add(null);
+        RowDataPacket second = new RowDataPacket(2);
+        second.add("abcxyz".getBytes());
+        second.add(new byte[300]);
+        encoder.append(first);
+        int firstSize = encoder.size();
+        encoder.append(second);
+        // second row only stores the bytes after the shared "abc" prefix
+        Assert.assertTrue(encoder.size() - firstSize < 3 + 300 + 8);
+
+        byte[] row = new byte[]{7, 'a', 'b', 'c', 'd', 'e', 'f', 0};
+        RowDataPacket decoded = SortedRunCodec.decodeRow(row, row.length, 2);
+        Assert.assertArrayEquals("abcdef".getBytes(), decoded.getValue(0));
+        Assert.assertNull(decoded.getValue(1));
+    }
+
+    /**
+     * fails if it's used by more than one thread, like RowDataComparator which keeps the row compared
+     */
+    private static class SingleThreadComparator implements Comparator<RowDataPacket> {
+        private Thread owner;
+
+        @Override
+        public int compare(RowDataPacket o1, RowDataPacket o2) {
+            if (owner == null) {
+                owner = Thread.currentThread();
+            }
+            Assert.assertSame(owner, Thread.currentThread());
+            return CMP.compare(o1, o2);
+        }
+    }
+}
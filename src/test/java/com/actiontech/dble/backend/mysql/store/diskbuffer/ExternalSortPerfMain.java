@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2016-2020 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.backend.mysql.store.diskbuffer;
+
+import com.actiontech.dble.DbleServer;
+import com.actiontech.dble.buffer.DirectByteBufferPool;
+import com.actiontech.dble.config.ServerConfig;
+import com.actiontech.dble.net.mysql.RowDataPacket;
+import com.actiontech.dble.plan.common.field.FieldUtil;
+import org.mockito.internal.util.reflection.Whitebox;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * sorts rows through ExternalSortDiskBuffer as an order by spilling to disk does.
+ * <p>
+ * args: [rows, default 50000000] [rows per run, default 100000] [parallelism, default 4] [fanIn, default 16]
+ */
+public class ExternalSortPerfMain {
+
+    private static final Comparator<RowDataPacket> CMP = new Comparator<RowDataPacket>() {
+        @Override
+        public int compare(RowDataPacket o1, RowDataPacket o2) {
+            return FieldUtil.compareIntUsingStringBytes(o1.getValue(0), o2.getValue(0));
+        }
+    };
+
+    public static void main(String[] args) {
+        long total = args.length > 0 ? Long.parseLong(args[0]) : 50000000L;
+        int runRows = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+        int parallelism = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+        int fanIn = args.length > 3 ? Integer.parseInt(args[3]) : 16;
+        Whitebox.setInternalState(DbleServer.getInstance(), "config", new ServerConfig());
+
+        ExecutorService executor = Executors.newCachedThreadPool();
+        ExternalSortDiskBuffer buffer = new ExternalSortDiskBuffer(new DirectByteBufferPool(1024 * 1024, (short) 256, (short) 4),
+                3, CMP, () -> CMP, parallelism, fanIn, executor);
+        Random random = new Random();
+        byte[] tag = "reporting-row".getBytes();
+        long start = System.currentTimeMillis();
+        try {
+            List<RowDataPacket> rows = new ArrayList<>(runRows);
+            for (long i = 0; i < total; i++) {
+                RowDataPacket row = new RowDataPacket(3);
+                row.add(String.valueOf(random.nextInt(Integer.MAX_VALUE)).getBytes());
+                row.add(String.valueOf(i).getBytes());
+                row.add(tag);
+                rows.add(row);
+                if (rows.size() == runRows) {
+                    buffer.addRows(rows);
+                    rows.clear();
+                }
+            }
+            if (!rows.isEmpty()) {
+                buffer.addRows(rows);
+            }
+            long runEnd = System.currentTimeMillis();
+            buffer.done();
+            long mergeEnd = System.currentTimeMillis();
+            buffer.reset();
+            long count = 0;
+            while (buffer.next() != null) {
+                count++;
+            }
+            long end = System.currentTimeMillis();
+            System.out.println("rows:" + count + ", runs:" + buffer.tapeCount() + ", parallelism:" + parallelism + ", fanIn:" + fanIn);
+            System.out.println("run generation:" + (runEnd - start) + "ms, merge passes:" + (mergeEnd - runEnd) +
+                    "ms, final merge:" + (end - mergeEnd) + "ms, total:" + (end - start) + "ms");
+        } finally {
+            buffer.close();
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright (C) 2016-2020 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.manager.dump;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+public class DumpFileReaderTest {
+
+    @Test
+    public void testReadStatements() throws InterruptedException {
+        String dump = "-- it's a comment;\nCREATE TABLE `a;b` (id int);\n/*!40101 SET x=1; */;\nINSERT INTO t VALUES ('x;y\\';'),(2);\n";
+        byte[] bytes = dump.getBytes(StandardCharsets.UTF_8);
+        BlockingQueue<String> queue = new ArrayBlockingQueue<>(10);
+        // split across the chunks at every position
+        for (int split = 0; split <= bytes.length; split++) {
+            DumpFileReader reader = new DumpFileReader(queue);
+            reader.readStatements(ByteBuffer.wrap(Arrays.copyOfRange(bytes, 0, split)));
+            reader.readStatements(ByteBuffer.wrap(Arrays.copyOfRange(bytes, split, bytes.length)));
+            List<String> stmts = new ArrayList<>();
+            queue.drainTo(stmts);
+            Assert.assertEquals(Arrays.asList("-- it's a comment;\nCREATE TABLE `a;b` (id int)", "\n/*!40101 SET x=1; */",
+                    "\nINSERT INTO t VALUES ('x;y\\';'),(2)"), stmts);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2016-2020 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.manager.dump.handler;
+
+import com.actiontech.dble.ServerConfigResource;
+import com.actiontech.dble.manager.dump.DumpFileConfig;
+import com.actiontech.dble.manager.dump.DumpFileContext;
+import com.actiontech.dble.manager.dump.DumpFileRouter;
+import com.actiontech.dble.manager.dump.DumpFileWriter;
+import com.actiontech.dble.manager.dump.ErrorMsg;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class InsertRouteTaskTest {
+    private static final String HEADER = "INSERT INTO `offer` VALUES";
+
+    // the schemas of src/test/resources/schema.xml
+    @ClassRule
+    public static final ServerConfigResource SERVER_CONFIG = new ServerConfigResource();
+
+    private DumpFileWriter writer;
+    private DumpFileRouter router;
+    private DumpFileContext context;
+
+    @Before
+    public void setUp() {
+        writer = Mockito.mock(DumpFileWriter.class);
+        router = new DumpFileRouter(1, 4);
+        context = new DumpFileContext(writer, router, new DumpFileConfig());
+        context.setSchema("mysqldb");
+        context.setTable("offer");
+        context.setPartitionColumnIndex(0);
+    }
+
+    @After
+    public void tearDown() {
+        router.stop();
+    }
+
+    @Test
+    public void testRoute() throws Exception {
+        submit("INSERT INTO `offer` VALUES (1,'a'),(3000000,'b'),(2,'c')");
+        router.await();
+        Mockito.verify(writer).write("dn1", HEADER + "(1,'a'),(2,'c')", true, true);
+        Mockito.verify(writer).write("dn2", HEADER + "(3000000,'b')", true, true);
+        Assert.assertTrue(context.getErrors().isEmpty());
+        Assert.assertEquals(3, router.getRows());
+    }
+
+    @Test
+    public void testTupleError() throws Exception {
+        // the other tuples are still routed
+        submit("INSERT INTO `offer` VALUES (1,'a'),(-1,'b')");
+        router.await();
+        Mockito.verify(writer).write("dn1", HEADER + "(1,'a')", true, true);
+        Assert.assertEquals(1, context.getErrors().size());
+        Assert.assertTrue(context.getErrors().get(0).getErrorMeg().contains("(-1,'b')"));
+    }
+
+    @Test
+    public void testWorkerFailed() throws Exception {
+        String stmt = "INSERT INTO `offer` VALUES (1,'a')";
+        Mockito.doThrow(new IllegalStateException("unexpected")).when(writer).write("dn1", HEADER + "(1,'a')", true, true);
+        submit(stmt);
+        try {
+            router.await();
+            Assert.fail("the split must fail");
+        } catch (RuntimeException e) {
+            Assert.assertTrue(e.getMessage().contains("unexpected"));
+        }
+        Assert.assertEquals(1, context.getErrors().size());
+        ErrorMsg error = context.getErrors().get(0);
+        Assert.assertEquals("mysqldb-offer", error.getTarget());
+        Assert.assertTrue(error.getErrorMeg().contains(stmt));
+        Assert.assertTrue(error.getErrorMeg().contains("unexpected"));
+
+        // no more statement is routed
+        try {
+            submit("INSERT INTO `offer` VALUES (2,'b')");
+            Assert.fail("the split must fail");
+        } catch (RuntimeException e) {
+            Assert.assertTrue(e.getMessage().contains("unexpected"));
+        }
+        Assert.assertEquals(1, router.getStatements());
+    }
+
+    private void submit(String stmt) throws InterruptedException {
+        router.submit(new InsertRouteTask(context, stmt, HEADER, new AtomicBoolean(false)));
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2016-2020 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.net;
+
+import com.actiontech.dble.ServerConfigResource;
+import com.actiontech.dble.net.handler.FrontendPrivileges;
+import com.actiontech.dble.net.handler.FrontendQueryHandler;
+import com.actiontech.dble.net.mysql.CharsetNames;
+import com.actiontech.dble.net.mysql.MySQLPacket;
+import com.actiontech.dble.server.ServerConnection;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class FrontendConnectionTest {
+
+    // the charset of the connection reads the system variables
+    @ClassRule
+    public static final ServerConfigResource SERVER_CONFIG = new ServerConfigResource();
+
+    private ServerConnection sc;
+    private FrontendQueryHandler queryHandler;
+
+    @Before
+    public void setUp() {
+        sc = new ServerConnection();
+        queryHandler = Mockito.mock(FrontendQueryHandler.class);
+        FrontendPrivileges privileges = Mockito.mock(FrontendPrivileges.class);
+        Mockito.when(privileges.checkFirewallSQLPolicy((String) Mockito.anyObject(), (String) Mockito.anyObject())).thenReturn(true);
+        sc.setQueryHandler(queryHandler);
+        sc.setPrivileges(privileges);
+        setCharset(sc, "utf8mb4", "utf8mb4_general_ci");
+    }
+
+    @Test
+    public void testQueryPacket() throws Exception {
+        byte[] packet = queryPacket(" select 1;", "UTF-8");
+        sc.query(packet);
+        Mockito.verify(queryHandler).query("select 1");
+        // the packet is forwarded as it is
+        Assert.assertSame(packet, sc.getQueryPacket("select 1", "utf8mb4"));
+        // the statement is rewritten by the route
+        Assert.assertNull(sc.getQueryPacket("select 1 limit 100", "utf8mb4"));
+        // the charset is changed after the packet is decoded
+        Assert.assertNull(sc.getQueryPacket("select 1", "latin1"));
+
+        // the sql is not from the client directly
+        sc.query("select 1");
+        Assert.assertNull(sc.getQueryPacket("select 1", "utf8mb4"));
+    }
+
+    @Test
+    public void testNotUtf8QueryPacket() throws Exception {
+        setCharset(sc, "gbk", "gbk_chinese_ci");
+        sc.query(queryPacket("select '中'", "GBK"));
+        Mockito.verify(queryHandler).query("select '中'");
+        // encoded again by the backend
+        Assert.assertNull(sc.getQueryPacket("select '中'", "gbk"));
+    }
+
+    private static void setCharset(AbstractConnection c, String charset, String collation) {
+        CharsetNames names = new CharsetNames();
+        names.setNames(charset, collation);
+        c.setCharsetName(names);
+    }
+
+    /**
+     * the COM_QUERY packet of the client
+     */
+    private static byte[] queryPacket(String sql, String javaCharset) throws Exception {
+        byte[] sqlBytes = sql.getBytes(javaCharset);
+        byte[] packet = new byte[MySQLPacket.PACKET_HEADER_SIZE + 1 + sqlBytes.length];
+        int length = sqlBytes.length + 1;
+        packet[0] = (byte) (length & 0xff);
+        packet[1] = (byte) (length >>> 8);
+        packet[2] = (byte) (length >>> 16);
+        packet[MySQLPacket.PACKET_HEADER_SIZE] = MySQLPacket.COM_QUERY;
+        System.arraycopy(sqlBytes, 0, packet, MySQLPacket.PACKET_HEADER_SIZE + 1, sqlBytes.length);
+        return packet;
+    }
+}
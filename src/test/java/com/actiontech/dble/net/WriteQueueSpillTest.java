@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2016-2020 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.net;
+
+import com.actiontech.dble.ServerConfigResource;
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+public class WriteQueueSpillTest {
+
+    // FileStore reads mappedFileSize from the server config
+    @ClassRule
+    public static final ServerConfigResource SERVER_CONFIG = new ServerConfigResource();
+
+    @Test
+    public void testOfferAndDrain() {
+        WriteQueueSpill spill = new WriteQueueSpill(1000);
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        for (int i = 0; i < 30; i++) {
+            ByteBuffer buffer = ByteBuffer.allocate(100);
+            for (int j = 0; j < 50; j++) {
+                buffer.put((byte) (i + j));
+                expected.write((byte) (i + j));
+            }
+            Assert.assertTrue(spill.offer(buffer));
+        }
+        Assert.assertTrue(spill.isFull());
+        Assert.assertFalse(spill.isRecovered());
+
+        ByteArrayOutputStream drained = new ByteArrayOutputStream();
+        AbstractConnection con = mockConnection(64, drained);
+
+        Assert.assertTrue(spill.drainTo(con, 20));
+        Assert.assertTrue(spill.isRecovered());
+        while (spill.drainTo(con, 10)) {
+            Assert.assertFalse(spill.isClosed());
+        }
+        // drained to the end, the later buffers go to the write queue
+        Assert.assertTrue(spill.isClosed());
+        Assert.assertFalse(spill.offer(ByteBuffer.allocate(10)));
+        Assert.assertArrayEquals(expected.toByteArray(), drained.toByteArray());
+    }
+
+    @Test
+    public void testFileSizeUnderSteadyDrain() {
+        WriteQueueSpill spill = new WriteQueueSpill(1000);
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        ByteArrayOutputStream drained = new ByteArrayOutputStream();
+        AbstractConnection con = mockConnection(50, drained);
+        int index = 0;
+        // a backlog of 1000 bytes is kept in the file
+        for (; index < 20; index++) {
+            Assert.assertTrue(spill.offer(newBuffer(index, 50, expected)));
+        }
+        for (; index < 2000; index++) {
+            Assert.assertTrue(spill.offer(newBuffer(index, 50, expected)));
+            Assert.assertTrue(spill.drainTo(con, 1));
+            Assert.assertTrue(spill.getFileLength() <= 3000);
+        }
+        Assert.assertTrue(spill.drainTo(con, 20));
+        Assert.assertArrayEquals(expected.toByteArray(), drained.toByteArray());
+
+        // the file is rewound when the reader catches up with the writer
+        for (; index < 4000; index++) {
+            Assert.assertTrue(spill.offer(newBuffer(index, 50, expected)));
+            Assert.assertTrue(spill.drainTo(con, 1));
+            Assert.assertEquals(0, spill.getFileLength());
+        }
+        Assert.assertFalse(spill.drainTo(con, 1));
+        Assert.assertTrue(spill.isClosed());
+        Assert.assertArrayEquals(expected.toByteArray(), drained.toByteArray());
+    }
+
+    private static ByteBuffer newBuffer(int index, int size, ByteArrayOutputStream expected) {
+        ByteBuffer buffer = ByteBuffer.allocate(size * 2);
+        for (int j = 0; j < size; j++) {
+            buffer.put((byte) (index + j));
+            expected.write((byte) (index + j));
+        }
+        return buffer;
+    }
+
+    private static AbstractConnection mockConnection(int bufferSize, ByteArrayOutputStream drained) {
+        AbstractConnection con = Mockito.mock(AbstractConnection.class);
+        Mockito.when(con.allocate()).thenAnswer(invocation -> ByteBuffer.allocate(bufferSize));
+        Mockito.doAnswer(invocation -> {
+            ByteBuffer buffer = (ByteBuffer) invocation.getArguments()[0];
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                drained.write(buffer.get());
+            }
+            return null;
+        }).when(con).offerWriteQueue(Mockito.any(ByteBuffer.class));
+        return con;
+    }
+}
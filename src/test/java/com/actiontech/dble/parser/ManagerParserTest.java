@@ -52,6 +52,30 @@ public class ManagerParserTest {
         Assert.assertEquals(ManagerParseShow.CONNECTION_COUNT, ManagerParseShow.parse("show @@conNection.counT ", 5));
     }
 
+    @Test
+    public void testShowLatency() {
+        Assert.assertEquals(ManagerParseShow.LATENCY, ManagerParseShow.parse("show @@latency", 5));
+        Assert.assertEquals(ManagerParseShow.LATENCY, ManagerParseShow.parse("SHOW @@LATENCY ", 5));
+        Assert.assertEquals(ManagerParseShow.OTHER, ManagerParseShow.parse("show @@latencyASDF", 5));
+        Assert.assertEquals(ManagerParseShow.OTHER, ManagerParseShow.parse("show @@late", 5));
+    }
+
+    @Test
+    public void testShowMemory() {
+        Assert.assertEquals(ManagerParseShow.MEMORY, ManagerParseShow.parse("show @@memory", 5));
+        Assert.assertEquals(ManagerParseShow.MEMORY, ManagerParseShow.parse("SHOW @@MEMORY ", 5));
+        Assert.assertEquals(ManagerParseShow.OTHER, ManagerParseShow.parse("show @@memoryASDF", 5));
+        Assert.assertEquals(ManagerParseShow.OTHER, ManagerParseShow.parse("show @@mem", 5));
+    }
+
+    @Test
+    public void testShowWorkload() {
+        Assert.assertEquals(ManagerParseShow.WORKLOAD, ManagerParseShow.parse("show @@workload", 5));
+        Assert.assertEquals(ManagerParseShow.WORKLOAD, ManagerParseShow.parse("SHOW @@WORKLOAD ", 5));
+        Assert.assertEquals(ManagerParseShow.OTHER, ManagerParseShow.parse("show @@workloads", 5));
+        Assert.assertEquals(ManagerParseShow.WHITE_HOST, ManagerParseShow.parse("show @@white", 5));
+    }
+
     @Test
     public void testShowConnectionSQL() {
         Assert.assertEquals(ManagerParseShow.CONNECTION_SQL, ManagerParseShow.parse("show @@connection.sql", 5));
@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2016-2020 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.plan.common.item.function.sumfunc;
+
+import org.apache.commons.lang.SerializationUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+public class ApproxSketchTest {
+
+    @Test
+    public void testHyperLogLogMerge() {
+        int shards = 4;
+        HyperLogLog[] sketches = new HyperLogLog[shards];
+        for (int i = 0; i < shards; i++) {
+            sketches[i] = new HyperLogLog();
+        }
+        int distinct = 200000;
+        for (int i = 0; i < distinct; i++) {
+            // values are duplicated over two shards
+            byte[] value = String.valueOf(i).getBytes();
+            sketches[i % shards].offer(value);
+            sketches[(i + 1) % shards].offer(value);
+        }
+        HyperLogLog merged = new HyperLogLog();
+        for (HyperLogLog sketch : sketches) {
+            merged.merge((HyperLogLog) SerializationUtils.clone(sketch));
+        }
+        Assert.assertEquals(distinct, merged.cardinality(), distinct * 0.03);
+    }
+
+    @Test
+    public void testHyperLogLogSparse() {
+        HyperLogLog sketch = new HyperLogLog();
+        for (int i = 0; i < 500; i++) {
+            sketch.offer(String.valueOf(i % 100).getBytes());
+        }
+        Assert.assertEquals(100, sketch.cardinality(), 3);
+        Assert.assertTrue(sketch.byteSize() < 1024);
+    }
+
+    @Test
+    public void testTDigestMerge() {
+        Random random = new Random(7);
+        int count = 100000;
+        double[] values = new double[count];
+        TDigest[] sketches = new TDigest[4];
+        for (int i = 0; i < sketches.length; i++) {
+            sketches[i] = new TDigest();
+        }
+        for (int i = 0; i < count; i++) {
+            values[i] = random.nextGaussian() * 100;
+            sketches[i % sketches.length].add(values[i]);
+        }
+        TDigest merged = new TDigest();
+        for (TDigest sketch : sketches) {
+            merged.merge((TDigest) SerializationUtils.clone(sketch));
+        }
+        Arrays.sort(values);
+        for (double q : new double[]{0.01, 0.25, 0.5, 0.9, 0.99}) {
+            double exact = values[(int) (q * (count - 1))];
+            // compare by rank, 1% error is allowed
+            int rank = Arrays.binarySearch(values, merged.quantile(q));
+            rank = rank < 0 ? -rank - 1 : rank;
+            Assert.assertEquals("q=" + q + ", exact=" + exact, q, (double) rank / count, 0.01);
+        }
+        Assert.assertEquals(values[0], merged.quantile(0), 1e-9);
+        Assert.assertEquals(values[count - 1], merged.quantile(1), 1e-9);
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright (C) 2016-2020 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.plan.optimizer;
+
+import com.actiontech.dble.ServerConfigResource;
+import com.actiontech.dble.backend.mysql.nio.handler.util.HandlerTool;
+import com.actiontech.dble.config.Fields;
+import com.actiontech.dble.meta.ProxyMetaManager;
+import com.actiontech.dble.meta.protocol.StructureMeta;
+import com.actiontech.dble.net.mysql.FieldPacket;
+import com.actiontech.dble.net.mysql.RowDataPacket;
+import com.actiontech.dble.plan.common.field.Field;
+import com.actiontech.dble.plan.common.item.Item;
+import com.actiontech.dble.plan.common.item.ItemField;
+import com.actiontech.dble.plan.node.JoinNode;
+import com.actiontech.dble.plan.node.PlanNode;
+import com.actiontech.dble.plan.node.QueryNode;
+import com.actiontech.dble.plan.node.TableNode;
+import com.actiontech.dble.plan.visitor.MySQLPlanNodeVisitor;
+import com.alibaba.druid.sql.ast.statement.SQLSelectStatement;
+import com.alibaba.druid.sql.dialect.mysql.parser.MySqlStatementParser;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class CorrelatedSubQueryProcessorTest {
+    private static final String SCHEMA = "dubbo2";
+    private static ProxyMetaManager metaManager;
+
+    // the plan reads the system config
+    @ClassRule
+    public static final ServerConfigResource SERVER_CONFIG = new ServerConfigResource();
+
+    @BeforeClass
+    public static void init() throws Exception {
+        // the tables are views of columns, so that no meta of backend is needed
+        metaManager = Mockito.mock(ProxyMetaManager.class);
+        Mockito.when(metaManager.getSyncView(Mockito.anyString(), Mockito.anyString())).thenAnswer(invocation -> {
+            String table = (String) invocation.getArguments()[1];
+            return table.startsWith("strict") ? null : new TableNode(SCHEMA, table, Arrays.asList("id", "cid", "amount", "status"));
+        });
+        // the tables of the meta, only the status can be null
+        StructureMeta.TableMeta.Builder meta = StructureMeta.TableMeta.newBuilder();
+        for (String column : new String[]{"id", "cid", "amount", "status"}) {
+            meta.addColumns(StructureMeta.ColumnMeta.newBuilder().setName(column).setDataType("int").setCanNull("status".equals(column)));
+        }
+        Mockito.when(metaManager.getSyncTableMeta(Mockito.anyString(), Mockito.anyString())).thenReturn(meta.build());
+    }
+
+    @Test
+    public void testExistsToSemiJoin() {
+        PlanNode node = decorrelate("select * from orders o where o.status = 1 and " +
+                "exists (select 1 from item i where i.cid = o.id and i.amount > 10)");
+        Assert.assertFalse(node.isCorrelatedSubQuery());
+        Assert.assertTrue(node instanceof JoinNode);
+        JoinNode join = (JoinNode) node;
+        Assert.assertTrue(join.isInnerJoin());
+        PlanNode right = join.getRightNode();
+        Assert.assertTrue(right instanceof QueryNode);
+        Assert.assertTrue(right.getChild().isDistinct());
+        Assert.assertNotNull(right.getChild().getWhereFilter());
+        Assert.assertNull(join.getLeftNode().getWhereFilter());
+        node.setUpFields();
+        // the star only gets the columns of the outer table
+        Assert.assertEquals(4, node.getColumnsSelected().size());
+    }
+
+    @Test
+    public void testNotExistsToAntiJoin() {
+        PlanNode node = decorrelate("select o.id from orders o where not exists (select 1 from item i where i.cid = o.id)");
+        Assert.assertFalse(node.isCorrelatedSubQuery());
+        JoinNode join = (JoinNode) node;
+        Assert.assertTrue(join.isLeftOuterJoin());
+        Assert.assertTrue(join.isNotIn());
+        Assert.assertEquals(1, join.getJoinFilter().size());
+        Assert.assertNull(join.getWhereFilter());
+        node.setUpFields();
+    }
+
+    @Test
+    public void testNotExistsWithNullKeys() {
+        JoinNode join = (JoinNode) decorrelate("select o.id from orders o where not exists (select 1 from item i where i.cid = o.id)");
+        join.setUpFields();
+        // the sub query gets the distinct keys of the items which match the where of the derived table
+        List<Field> fields = HandlerTool.createFields(Arrays.asList(makeField("i", "id"), makeField("i", "cid"),
+                makeField("i", "amount"), makeField("i", "status")));
+        Item filter = join.getRightNode().getChild().getWhereFilter();
+        Item where = filter == null ? null : bind(filter, fields);
+        Set<String> keys = new HashSet<>();
+        for (String cid : new String[]{"1", null, "3"}) {
+            HandlerTool.initFields(fields, makeRow("1", cid, "10", "0").fieldValues);
+            if (where == null || where.valBool()) {
+                keys.add(cid);
+            }
+        }
+        // the anti join takes null as equal to null as the merge of NotInHandler does
+        List<String> kept = new ArrayList<>();
+        for (String id : new String[]{null, "1", "2"}) {
+            if (!keys.contains(id)) {
+                kept.add(id);
+            }
+        }
+        // the same as not exists: the null id matches no item
+        Assert.assertEquals(Arrays.asList(null, "2"), kept);
+    }
+
+    @Test
+    public void testNotInOfNullableColumn() {
+        // not in is null if the value or any value of the sub query is null, the anti join can't do it
+        Assert.assertTrue(decorrelate("select o.id from orders o where o.amount not in (select i.amount from item i where i.cid = o.id)").isCorrelatedSubQuery());
+        Assert.assertTrue(decorrelate("select o.id from strict_orders o where o.status not in (select i.amount from strict_item i where i.cid = o.id)").isCorrelatedSubQuery());
+        Assert.assertTrue(decorrelate("select o.id from strict_orders o where o.amount not in (select i.status from strict_item i where i.cid = o.id)").isCorrelatedSubQuery());
+
+        PlanNode node = decorrelate("select o.id from strict_orders o where o.amount not in (select i.amount from strict_item i where i.cid = o.id)");
+        Assert.assertFalse(node.isCorrelatedSubQuery());
+        Assert.assertTrue(((JoinNode) node).isNotIn());
+        node.setUpFields();
+    }
+
+    @Test
+    public void testInWithTwoKeys() {
+        PlanNode node = decorrelate("select o.id from orders o where o.amount in (select i.amount from item i where i.cid = o.id and i.status = o.status)");
+        Assert.assertFalse(node.isCorrelatedSubQuery());
+        JoinNode join = (JoinNode) node;
+        Assert.assertTrue(join.isInnerJoin());
+        Assert.assertEquals(3, join.getRightNode().getChild().getColumnsSelected().size());
+        node.setUpFields();
+    }
+
+    @Test
+    public void testScalarToAggregatedLeftJoin() {
+        PlanNode node = decorrelate("select o.id from orders o where o.amount > (select max(i.amount) from item i where i.cid = o.id)");
+        Assert.assertFalse(node.isCorrelatedSubQuery());
+        JoinNode join = (JoinNode) node;
+        Assert.assertTrue(join.isLeftOuterJoin());
+        Assert.assertFalse(join.isNotIn());
+        Assert.assertEquals(1, join.getRightNode().getChild().getGroupBys().size());
+        node.setUpFields();
+    }
+
+    @Test
+    public void testNotRewritten() {
+        // count gets 0 without rows, the left join can't do it
+        Assert.assertTrue(decorrelate("select o.id from orders o where 0 = (select count(*) from item i where i.cid = o.id)").isCorrelatedSubQuery());
+        // not an equation
+        Assert.assertTrue(decorrelate("select o.id from orders o where exists (select 1 from item i where i.cid > o.id)").isCorrelatedSubQuery());
+    }
+
+    @Test
+    public void testAggregateNotRewritten() {
+        // the aggregate without group by gets one row even if no row matches
+        Assert.assertTrue(decorrelate("select o.id from orders o where exists (select max(i.amount) from item i where i.cid = o.id)").isCorrelatedSubQuery());
+        Assert.assertTrue(decorrelate("select o.id from orders o where not exists (select count(*) from item i where i.cid = o.id)").isCorrelatedSubQuery());
+        Assert.assertTrue(decorrelate("select o.id from orders o where o.amount in (select max(i.amount) from item i where i.cid = o.id)").isCorrelatedSubQuery());
+        Assert.assertTrue(decorrelate("select o.id from orders o where o.amount not in (select count(i.id) + 1 from item i where i.cid = o.id)").isCorrelatedSubQuery());
+    }
+
+    private static FieldPacket makeField(String table, String name) {
+        FieldPacket fp = new FieldPacket();
+        fp.setTable(table.getBytes());
+        fp.setName(name.getBytes());
+        fp.setType(Fields.FIELD_TYPE_LONG);
+        fp.setCharsetIndex(63);
+        return fp;
+    }
+
+    /**
+     * the item of the plan computed by the values of the fields
+     */
+    private static Item bind(Item item, List<Field> fields) {
+        if (item instanceof ItemField) {
+            return new ItemField(fields.get(HandlerTool.findField(item, fields, 0)));
+        }
+        List<Item> args = new ArrayList<>();
+        for (Item arg : item.arguments()) {
+            args.add(bind(arg, fields));
+        }
+        Item bound = item.reStruct(args, false, fields);
+        bound.fixFields();
+        return bound;
+    }
+
+    private static RowDataPacket makeRow(String... values) {
+        RowDataPacket row = new RowDataPacket(values.length);
+        for (String value : values) {
+            row.add(value == null ? null : value.getBytes());
+        }
+        return row;
+    }
+
+    private PlanNode decorrelate(String sql) {
+        SQLSelectStatement ast = (SQLSelectStatement) new MySqlStatementParser(sql).parseStatement();
+        MySQLPlanNodeVisitor visitor = new MySQLPlanNodeVisitor(SCHEMA, 33, metaManager, false, null);
+        visitor.visit(ast);
+        Assert.assertTrue(visitor.getTableNode().isCorrelatedSubQuery());
+        return CorrelatedSubQueryProcessor.optimize(visitor.getTableNode());
+    }
+}
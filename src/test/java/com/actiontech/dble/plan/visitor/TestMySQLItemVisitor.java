@@ -6,6 +6,8 @@
 package com.actiontech.dble.plan.visitor;
 
 import com.actiontech.dble.plan.common.item.Item;
+import com.actiontech.dble.plan.common.item.function.sumfunc.ItemSum;
+import com.actiontech.dble.plan.util.PlanUtil;
 import com.alibaba.druid.sql.ast.SQLExpr;
 import com.alibaba.druid.sql.ast.SQLOrderBy;
 import com.alibaba.druid.sql.ast.statement.*;
@@ -116,6 +118,20 @@ public class TestMySQLItemVisitor {
         Assert.assertEquals(true, "SUM(col1)".equals(item.getItemName()));
     }
 
+    @Test
+    public void testApproxSelectItem() {
+        MySqlSelectQueryBlock query = getQuery("select approx_count_distinct(col1), approx_percentile(col2, 0.99) from table1");
+        List<SQLSelectItem> items = query.getSelectList();
+
+        MySQLItemVisitor v = new MySQLItemVisitor(this.currentDb, utf8Charset, null, null);
+        items.get(0).accept(v);
+        Assert.assertEquals(ItemSum.SumFuncType.APPROX_COUNT_DISTINCT_FUNC, ((ItemSum) v.getItem()).sumType());
+        v = new MySQLItemVisitor(this.currentDb, utf8Charset, null, null);
+        items.get(1).accept(v);
+        Assert.assertEquals(ItemSum.SumFuncType.APPROX_PERCENTILE_FUNC, ((ItemSum) v.getItem()).sumType());
+        Assert.assertTrue(PlanUtil.isUnPushDownSum((ItemSum) v.getItem()));
+    }
+
     //TODO:SELECTITEM(function)
     private MySqlSelectQueryBlock getQuery(String sql) {
         SQLSelect select = getSelect(sql);
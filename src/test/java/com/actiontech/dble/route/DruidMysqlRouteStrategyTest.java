@@ -867,14 +867,11 @@ public class DruidMysqlRouteStrategyTest extends TestCase {
 
         SchemaConfig schema = schemaMap.get("TESTDB");
         RouteResultset rrs = null;
-        //not supprot childtable batch insert
+        //childtable batch insert is grouped by the data nodes of the parent keys
         String sql = "insert into orders (id,name,customer_id) values(1,'testonly',1),(2,'testonly',2000001)";
-        try {
-            rrs = routeStrategy.route(schema, 1, sql, null,
-                    cachePool);
-        } catch (Exception e) {
-            Assert.assertEquals("ChildTable multi insert not provided", e.getMessage());
-        }
+        rrs = routeStrategy.route(schema, 1, sql, null,
+                cachePool);
+        Assert.assertEquals(2, rrs.getNodes().length);
 
         sql = "insert into employee (id,name,customer_id) select id,name,customer_id from customer";
         try {
@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2016-2020 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.route.cache;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ParentKeyLocationCacheTest {
+
+    @After
+    public void tearDown() {
+        ParentKeyLocationCache.getInstance().init(0);
+    }
+
+    @Test
+    public void testInvalidate() {
+        ParentKeyLocationCache cache = ParentKeyLocationCache.getInstance();
+        cache.init(1600);
+        String key = cache.keyOf("testdb", "customer", "1");
+        Assert.assertNull(cache.getDataNode(key));
+        cache.putIfAbsent(key, "dn1");
+        Assert.assertEquals("dn1", cache.getDataNode(cache.keyOf("TESTDB", "CUSTOMER", "1")));
+
+        // a key made before the invalidation is never hit after it
+        String oldKey = cache.keyOf("testdb", "customer", "2");
+        cache.invalidate("testdb", "orders");
+        Assert.assertEquals("dn1", cache.getDataNode(cache.keyOf("testdb", "customer", "1")));
+        cache.invalidate("testdb", "customer");
+        cache.putIfAbsent(oldKey, "dn2");
+        Assert.assertNull(cache.getDataNode(cache.keyOf("testdb", "customer", "1")));
+        Assert.assertNull(cache.getDataNode(cache.keyOf("testdb", "customer", "2")));
+    }
+
+    @Test
+    public void testBounded() {
+        ParentKeyLocationCache cache = ParentKeyLocationCache.getInstance();
+        cache.init(160);
+        for (int i = 0; i < 10000; i++) {
+            cache.putIfAbsent(cache.keyOf("testdb", "customer", String.valueOf(i)), "dn" + (i % 4));
+        }
+        Assert.assertEquals(160, cache.getMaxSize());
+        Assert.assertTrue(cache.getCacheStatic().getItemSize() <= 160);
+        Assert.assertEquals("dn3", cache.getDataNode(cache.keyOf("testdb", "customer", "9999")));
+    }
+}
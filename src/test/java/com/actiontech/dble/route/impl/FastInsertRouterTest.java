@@ -0,0 +1,219 @@
+/*
+ * Copyright (C) 2016-2020 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.route.impl;
+
+import com.actiontech.dble.DbleServer;
+import com.actiontech.dble.ServerConfigResource;
+import com.actiontech.dble.config.model.SchemaConfig;
+import com.actiontech.dble.config.model.TableConfig;
+import com.actiontech.dble.meta.ProxyMetaManager;
+import com.actiontech.dble.meta.protocol.StructureMeta;
+import com.actiontech.dble.route.RouteResultset;
+import com.actiontech.dble.route.RouteResultsetNode;
+import com.actiontech.dble.route.parser.druid.DruidParser;
+import com.actiontech.dble.route.parser.druid.DruidParserFactory;
+import com.actiontech.dble.route.parser.druid.ServerSchemaStatVisitor;
+import com.actiontech.dble.route.util.RouterUtil;
+import com.actiontech.dble.server.NonBlockingSession;
+import com.actiontech.dble.server.ServerConnection;
+import com.actiontech.dble.server.parser.ServerParse;
+import com.actiontech.dble.singleton.ProxyMeta;
+import com.alibaba.druid.sql.ast.SQLStatement;
+import com.alibaba.druid.sql.dialect.mysql.parser.MySqlStatementParser;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * the routes of FastInsertRouter must be the same as the routes of the parser
+ */
+public class FastInsertRouterTest {
+
+    // the schemas of src/test/resources/schema.xml
+    @ClassRule
+    public static final ServerConfigResource SERVER_CONFIG = new ServerConfigResource();
+
+    private static ProxyMetaManager formerMetaManager;
+    private ServerConnection sc;
+
+    @BeforeClass
+    public static void init() throws Exception {
+        // no view, the parser only checks the nullable of the columns in the meta
+        StructureMeta.TableMeta.Builder meta = StructureMeta.TableMeta.newBuilder();
+        for (String column : new String[]{"id", "name", "member_id", "offer_id"}) {
+            meta.addColumns(StructureMeta.ColumnMeta.newBuilder().setName(column).setDataType("varchar").setCanNull(true));
+        }
+        ProxyMetaManager metaManager = Mockito.mock(ProxyMetaManager.class);
+        Mockito.when(metaManager.getSyncTableMeta(Mockito.anyString(), Mockito.anyString())).thenReturn(meta.build());
+        formerMetaManager = ProxyMeta.getInstance().getTmManager();
+        ProxyMeta.getInstance().setTmManager(metaManager);
+        SchemaConfig schema = getSchema("mysqldb");
+        TableConfig offer = schema.getTables().get("offer");
+        schema.getTables().put("autoinc", new TableConfig("autoinc", null, true, TableConfig.TableTypeEnum.TYPE_SHARDING_TABLE,
+                "dn1,dn2", offer.getRule(), true, "id", null, null, false));
+    }
+
+    @AfterClass
+    public static void restore() {
+        ProxyMeta.getInstance().setTmManager(formerMetaManager);
+    }
+
+    @Before
+    public void setUp() {
+        sc = Mockito.mock(ServerConnection.class);
+        NonBlockingSession session = Mockito.mock(NonBlockingSession.class);
+        Mockito.when(sc.getUser()).thenReturn("test");
+        Mockito.when(sc.getSession2()).thenReturn(session);
+        Mockito.when(session.getIsMultiStatement()).thenReturn(new AtomicBoolean(false));
+    }
+
+    @Test
+    public void testSingleNode() throws Exception {
+        assertSameRoute("mysqldb", "insert into offer(id,name) values(1,'a')", "dn1");
+        assertSameRoute("mysqldb", "INSERT INTO `offer` (`name`, `id`) VALUES ('b', 3000000)", "dn2");
+        // all the tuples are in the same data node
+        assertSameRoute("mysqldb", "insert into offer(id,name) values(1,'a'),(2,'b'),(3,'c')", "dn1");
+        // the same as the integer of the parser
+        assertSameRoute("mysqldb", "insert into offer(id,name) values(-0,'a'),(0007,'b')", "dn1");
+    }
+
+    @Test
+    public void testMultiNode() throws Exception {
+        assertSameRoute("mysqldb", "insert into offer(id,name) values(1,'a'),(3000000,'b'),(2,'c')", "dn1", "dn2");
+        assertSameRoute("mysqldb", "insert into offer (id, name) values (3000000, 'a'), (1, 'b(c),d'), (3000001, ')')", "dn1", "dn2");
+    }
+
+    @Test
+    public void testSchemaQualified() throws Exception {
+        // the schema is removed from the statements of the data nodes
+        assertSameRoute(null, "insert into mysqldb.offer(id,name) values(1,'a'),(3000000,'b')", "dn1", "dn2");
+        assertSameRoute("cndb", "insert into `mysqldb`.`offer`(id,name) values(1,'mysqldb.')", "dn1");
+        assertSameRoute("mysqldb", "insert into mysqldb.offer(id,name) values(3000000,'a')", "dn2");
+    }
+
+    @Test
+    public void testQuotedShardingValue() throws Exception {
+        SchemaConfig schema = getSchema("cndb");
+        TableConfig offer = schema.getTables().get("offer");
+        String[] values = {"'abc'", "'it''s'", "'it\\'s'", "'a,b)'", "''"};
+        StringBuilder sql = new StringBuilder("insert into offer(member_id,offer_id) values");
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                sql.append(',');
+            }
+            sql.append('(').append(values[i]).append(',').append(i).append(')');
+        }
+        RouteResultset fastRrs = fastRoute("cndb", sql.toString());
+        Assert.assertNotNull(fastRrs);
+        assertSameNodes(astRoute("cndb", sql.toString()), fastRrs);
+
+        // the escaped quotes are unescaped as the parser does
+        Integer nodeIndex = offer.getRule().getRuleAlgorithm().calculate("it's");
+        String dataNode = offer.getDataNodes().get(nodeIndex);
+        String node = fastRoute("cndb", "insert into offer(member_id,offer_id) values('it\\'s',1)").getNodes()[0].getName();
+        Assert.assertEquals(dataNode, node);
+        Assert.assertEquals(dataNode, fastRoute("cndb", "insert into offer(member_id,offer_id) values('it''s',1)").getNodes()[0].getName());
+    }
+
+    @Test
+    public void testNotPlainShardingValue() throws Exception {
+        // routed by the parser
+        Assert.assertNull(fastRoute("mysqldb", "insert into offer(id,name) values(null,'a')"));
+        Assert.assertNull(fastRoute("mysqldb", "insert into offer(id,name) values(1,'a'),(NULL,'b')"));
+        Assert.assertNull(fastRoute("mysqldb", "insert into offer(id,name) values(1+1,'a')"));
+        Assert.assertNull(fastRoute("mysqldb", "insert into offer(id,name) values(\"1\",'a')"));
+        Assert.assertNull(fastRoute("mysqldb", "insert into offer(id,name) values(1.5,'a')"));
+        // no data node of the value
+        Assert.assertNull(fastRoute("mysqldb", "insert into offer(id,name) values(-1,'a')"));
+        // the count of the values is wrong
+        Assert.assertNull(fastRoute("mysqldb", "insert into offer(id,name) values(1,'a'),(2)"));
+    }
+
+    @Test
+    public void testFallback() throws Exception {
+        Assert.assertNull(fastRoute("mysqldb", "insert into offer(id,name) values(1,'a') on duplicate key update name='b'"));
+        Assert.assertNull(fastRoute("mysqldb", "insert into offer(id,name) select id,name from offer1"));
+        Assert.assertNull(fastRoute("mysqldb", "insert into offer set id=1,name='a'"));
+        // global table
+        Assert.assertNull(fastRoute("cndb", "insert into independent(id,name) values(1,'a')"));
+        // child table of ER relation
+        Assert.assertNull(fastRoute("TESTDB", "insert into orders(id,customer_id) values(1,1)"));
+        // auto increment table
+        Assert.assertNull(fastRoute("mysqldb", "insert into autoinc(id,name) values(1,'a')"));
+        // no sharding table
+        Assert.assertNull(fastRoute("mysqldb", "insert into offer1(id,name) values(1,'a')"));
+        // the sharding column is missing
+        Assert.assertNull(fastRoute("mysqldb", "insert into offer(name) values('a')"));
+        // no schema
+        Assert.assertNull(fastRoute(null, "insert into offer(id,name) values(1,'a')"));
+    }
+
+    @Test
+    public void testRouteStrategy() throws Exception {
+        DefaultRouteStrategy strategy = new DefaultRouteStrategy();
+        String sql = "insert into offer(id,name) values(1,'a'),(3000000,'b')";
+        RouteResultset rrs = strategy.routeNormalSqlWithAST(getSchema("mysqldb"), sql, new RouteResultset(sql, ServerParse.INSERT), null, sc, false);
+        Mockito.verify(sc.getSession2()).endParse();
+        // the tuples are copied as they are
+        Assert.assertEquals(2, rrs.getNodes().length);
+        Assert.assertEquals("insert into offer(id,name) values(1,'a')", rrs.getNodes()[0].getStatement());
+        Assert.assertEquals("insert into offer(id,name) values(3000000,'b')", rrs.getNodes()[1].getStatement());
+
+        // explain is routed by the parser
+        rrs = strategy.routeNormalSqlWithAST(getSchema("mysqldb"), sql, new RouteResultset(sql, ServerParse.INSERT), null, sc, true);
+        assertSameNodes(rrs, fastRoute("mysqldb", sql));
+        Assert.assertNotEquals("insert into offer(id,name) values(1,'a')", rrs.getNodes()[0].getStatement());
+    }
+
+    private void assertSameRoute(String schemaName, String sql, String... dataNodes) throws Exception {
+        RouteResultset fastRrs = fastRoute(schemaName, sql);
+        Assert.assertNotNull(sql, fastRrs);
+        Assert.assertArrayEquals(dataNodes, assertSameNodes(astRoute(schemaName, sql), fastRrs).keySet().toArray());
+    }
+
+    /**
+     * @return the statements of the data nodes
+     */
+    private Map<String, String> assertSameNodes(RouteResultset astRrs, RouteResultset fastRrs) {
+        Map<String, String> astNodes = normalize(astRrs);
+        Map<String, String> fastNodes = normalize(fastRrs);
+        Assert.assertEquals(astNodes, fastNodes);
+        Assert.assertTrue(fastRrs.isFinishedRoute());
+        return fastNodes;
+    }
+
+    private static Map<String, String> normalize(RouteResultset rrs) {
+        Map<String, String> nodes = new TreeMap<>();
+        for (RouteResultsetNode node : rrs.getNodes()) {
+            Assert.assertEquals(ServerParse.INSERT, node.getSqlType());
+            nodes.put(node.getName(), new MySqlStatementParser(node.getStatement()).parseStatement().toString());
+        }
+        return nodes;
+    }
+
+    private RouteResultset fastRoute(String schemaName, String sql) {
+        return FastInsertRouter.route(getSchema(schemaName), sql, new RouteResultset(sql, ServerParse.INSERT), sc);
+    }
+
+    private RouteResultset astRoute(String schemaName, String sql) throws Exception {
+        SQLStatement statement = new MySqlStatementParser(sql).parseStatement();
+        DruidParser druidParser = DruidParserFactory.create(statement, ServerParse.INSERT);
+        return RouterUtil.routeFromParser(druidParser, getSchema(schemaName), new RouteResultset(sql, ServerParse.INSERT), statement,
+                sql, null, new ServerSchemaStatVisitor(), sc, null, false);
+    }
+
+    private static SchemaConfig getSchema(String schemaName) {
+        return schemaName == null ? null : DbleServer.getInstance().getConfig().getSchemas().get(schemaName);
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2016-2020 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+package com.actiontech.dble.route.parser.druid;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ReadOnlyStatementVisitorTest {
+
+    @Test
+    public void testReadOnly() {
+        Assert.assertTrue(ReadOnlyStatementVisitor.isReadOnlySelect("select id, name from t1 where id in (1, 2) order by name"));
+        Assert.assertTrue(ReadOnlyStatementVisitor.isReadOnlySelect("select count(*), max(id) from t1 group by name"));
+        Assert.assertTrue(ReadOnlyStatementVisitor.isReadOnlySelect("select a.id from t1 a join (select id from t2) b on a.id = b.id"));
+    }
+
+    @Test
+    public void testLockingRead() {
+        Assert.assertFalse(ReadOnlyStatementVisitor.isReadOnlySelect("select id from t1 where id = 1 for update"));
+        Assert.assertFalse(ReadOnlyStatementVisitor.isReadOnlySelect("select id from t1 where id = 1 lock in share mode"));
+        Assert.assertFalse(ReadOnlyStatementVisitor.isReadOnlySelect("select id from t1 where id in (select id from t2 for update)"));
+    }
+
+    @Test
+    public void testFunctionCall() {
+        Assert.assertFalse(ReadOnlyStatementVisitor.isReadOnlySelect("select f_insert_log(id) from t1"));
+        Assert.assertFalse(ReadOnlyStatementVisitor.isReadOnlySelect("select id from t1 where name = concat('a', id)"));
+    }
+
+    @Test
+    public void testNotSelect() {
+        Assert.assertFalse(ReadOnlyStatementVisitor.isReadOnlySelect("update t1 set name = 'a'"));
+        Assert.assertFalse(ReadOnlyStatementVisitor.isReadOnlySelect("select 1; delete from t1"));
+        Assert.assertFalse(ReadOnlyStatementVisitor.isReadOnlySelect("select from where"));
+    }
+}
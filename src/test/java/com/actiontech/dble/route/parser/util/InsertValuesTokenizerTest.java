@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2016-2020 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.route.parser.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.sql.SQLSyntaxErrorException;
+import java.util.Arrays;
+
+public class InsertValuesTokenizerTest {
+
+    @Test
+    public void testTuples() throws SQLSyntaxErrorException {
+        String stmt = "\n/* c */ INSERT INTO `t``1` (`id`, `name`, `v`) VALUES (1,'a,b)',NULL),(-2, 'it''s \\'x\\'' ,f(1, 2)) ,(3,\"c\\\\\",'')";
+        InsertValuesTokenizer tokenizer = new InsertValuesTokenizer(stmt);
+        Assert.assertNull(tokenizer.getSchema());
+        Assert.assertEquals("t`1", tokenizer.getTable());
+        Assert.assertEquals(Arrays.asList("id", "name", "v"), tokenizer.getColumns());
+        tokenizer.setWantedColumns(1, -1, 0);
+
+        Assert.assertTrue(tokenizer.nextTuple());
+        Assert.assertEquals("(1,'a,b)',NULL)", stmt.substring(tokenizer.getTupleStart(), tokenizer.getTupleEnd()));
+        Assert.assertEquals(3, tokenizer.getValueCount());
+        Assert.assertEquals("a,b)", tokenizer.getValue(0));
+        Assert.assertEquals("1", tokenizer.getValue(2));
+
+        Assert.assertTrue(tokenizer.nextTuple());
+        Assert.assertEquals("(-2, 'it''s \\'x\\'' ,f(1, 2))", stmt.substring(tokenizer.getTupleStart(), tokenizer.getTupleEnd()));
+        Assert.assertEquals("it's 'x'", tokenizer.getValue(0));
+        Assert.assertEquals("'it''s \\'x\\''", stmt.substring(tokenizer.getValueStart(0), tokenizer.getValueEnd(0)));
+        Assert.assertEquals("-2", tokenizer.getValue(2));
+
+        Assert.assertTrue(tokenizer.nextTuple());
+        Assert.assertEquals("c\\", tokenizer.getValue(0));
+        Assert.assertFalse(tokenizer.nextTuple());
+    }
+
+    @Test
+    public void testNullAndMissingColumns() throws SQLSyntaxErrorException {
+        InsertValuesTokenizer tokenizer = new InsertValuesTokenizer("INSERT INTO t VALUES (null,2),(3)");
+        Assert.assertEquals("t", tokenizer.getTable());
+        Assert.assertTrue(tokenizer.getColumns().isEmpty());
+        tokenizer.setWantedColumns(0, 1);
+        Assert.assertTrue(tokenizer.nextTuple());
+        Assert.assertNull(tokenizer.getValue(0));
+        Assert.assertEquals("2", tokenizer.getValue(1));
+        try {
+            tokenizer.nextTuple();
+            Assert.fail();
+        } catch (SQLSyntaxErrorException e) {
+            Assert.assertTrue(e.getMessage().contains("has no column 1"));
+        }
+    }
+
+    @Test
+    public void testSchema() throws SQLSyntaxErrorException {
+        String stmt = "insert into `db1`.t2 values (1),(2, 3)";
+        InsertValuesTokenizer tokenizer = new InsertValuesTokenizer(stmt);
+        Assert.assertEquals("db1", tokenizer.getSchema());
+        Assert.assertEquals("t2", tokenizer.getTable());
+        Assert.assertEquals("insert into `db1`.t2 values", stmt.substring(0, tokenizer.getValuesStart()));
+        tokenizer.setWantedColumns(0);
+        Assert.assertTrue(tokenizer.nextTuple());
+        Assert.assertEquals(1, tokenizer.getValueCount());
+        Assert.assertTrue(tokenizer.nextTuple());
+        Assert.assertEquals(2, tokenizer.getValueCount());
+        Assert.assertFalse(tokenizer.nextTuple());
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright (C) 2016-2020 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+package com.actiontech.dble.route.parser.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+public class SqlFingerprintTest {
+
+    @Test
+    public void testLiterals() {
+        SqlFingerprint fp = SqlFingerprint.of("select  name,t1.c2 from `t 1`\n where id = 123 and name='abc' and price>1.5 limit 10");
+        Assert.assertEquals("select name,t1.c2 from `t 1` where id = ? and name='?' and price>? limit ?", fp.getText());
+        Assert.assertEquals(Arrays.asList("123", "abc", "1.5", "10"), fp.getParams());
+        Assert.assertFalse(fp.hasDisjunction());
+
+        SqlFingerprint other = SqlFingerprint.of("select name,t1.c2 from `t 1` where id = 9 and name='x' and price>2 limit 1");
+        Assert.assertEquals(fp.getText(), other.getText());
+    }
+
+    @Test
+    public void testNotLiterals() {
+        SqlFingerprint fp = SqlFingerprint.of("select 1e5, 0x1f, _utf8'a', x'0F' from t2 /* id = 1 */ where id = 'it''s' -- 2\n");
+        Assert.assertEquals("select 1e5, 0x1f, _utf8'a', x'0F' from t2 /* id = 1 */ where id = '?' -- 2\n", fp.getText());
+        // escaped string is not decoded
+        Assert.assertEquals(1, fp.getParams().size());
+        Assert.assertNull(fp.getParams().get(0));
+    }
+
+    @Test
+    public void testDisjunction() {
+        Assert.assertTrue(SqlFingerprint.of("select * from t where id = 1 OR id = 2").hasDisjunction());
+        Assert.assertTrue(SqlFingerprint.of("select * from t where id = 1 || id = 2").hasDisjunction());
+        Assert.assertFalse(SqlFingerprint.of("select * from t where id = 1 and name = 'or'").hasDisjunction());
+        Assert.assertFalse(SqlFingerprint.of("select orders from `or` where id = 1").hasDisjunction());
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2016-2020 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.route.util;
+
+import com.actiontech.dble.config.model.SchemaConfig;
+import com.actiontech.dble.config.model.TableConfig;
+import com.actiontech.dble.config.model.rule.RuleConfig;
+import com.actiontech.dble.route.RouteResultset;
+import com.actiontech.dble.route.RouteResultsetNode;
+import com.actiontech.dble.route.function.PartitionByLong;
+import com.actiontech.dble.server.parser.ServerParse;
+import com.alibaba.druid.sql.ast.SQLStatement;
+import com.alibaba.druid.sql.dialect.mysql.parser.MySqlStatementParser;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+public class InListPrunerTest {
+
+    private final SchemaConfig schema = createSchema();
+
+    private static SchemaConfig createSchema() {
+        PartitionByLong algorithm = new PartitionByLong();
+        algorithm.setPartitionCount("4");
+        algorithm.setPartitionLength("1");
+        algorithm.init();
+        RuleConfig rule = new RuleConfig("ID", "func", algorithm);
+        ArrayList<String> dataNodes = new ArrayList<>(Arrays.asList("dn1", "dn2", "dn3", "dn4"));
+        Map<String, TableConfig> tables = new HashMap<>();
+        tables.put("t", new TableConfig("t", null, false, TableConfig.TableTypeEnum.TYPE_SHARDING_TABLE, dataNodes,
+                rule, true, null, null, null, null, null, null, false));
+        return new SchemaConfig("db", null, tables, -1);
+    }
+
+    private RouteResultset prune(String sql, String... dataNodes) {
+        SQLStatement statement = new MySqlStatementParser(sql).parseStatement();
+        RouteResultset rrs = new RouteResultset(sql, ServerParse.DELETE);
+        RouterUtil.routeToMultiNode(false, rrs, Arrays.asList(dataNodes));
+        InListPruner.prune(schema, rrs, statement, Collections.singletonList("t"));
+        return rrs;
+    }
+
+    @Test
+    public void testPrune() {
+        String sql = "delete from db.t where id in (1, 5, 2, 6) and status = 0";
+        RouteResultset rrs = prune(sql, "dn2", "dn3");
+        RouteResultsetNode[] nodes = rrs.getNodes();
+        Assert.assertEquals(2, nodes.length);
+        Assert.assertEquals("dn2", nodes[0].getName());
+        Assert.assertTrue(nodes[0].getStatement().contains("IN (1, 5)"));
+        Assert.assertFalse(nodes[0].getStatement().contains("db."));
+        Assert.assertEquals("dn3", nodes[1].getName());
+        Assert.assertTrue(nodes[1].getStatement().contains("IN (2, 6)"));
+        Assert.assertEquals(sql, rrs.getStatement());
+    }
+
+    @Test
+    public void testNodeWithoutValue() {
+        RouteResultset rrs = prune("select * from t where status = 0 and id in ('1', '2')", "dn1", "dn2", "dn3", "dn4");
+        Assert.assertEquals(2, rrs.getNodes().length);
+        Assert.assertEquals("dn2", rrs.getNodes()[0].getName());
+        Assert.assertTrue(rrs.getNodes()[0].getStatement().contains("IN ('1')"));
+        Assert.assertEquals("dn3", rrs.getNodes()[1].getName());
+    }
+
+    @Test
+    public void testNotPruned() {
+        String[] sqls = {
+                "delete from t where id in (1, 2) or status = 0",
+                "delete from t where id not in (1, 2)",
+                "delete from t where id in (1, 2 + 1)",
+                "update t set status = 1 where status in (1, 2)",
+        };
+        for (String sql : sqls) {
+            RouteResultset rrs = prune(sql, "dn2", "dn3");
+            Assert.assertEquals(2, rrs.getNodes().length);
+            Assert.assertEquals(sql, rrs.getNodes()[0].getStatement());
+            Assert.assertEquals(sql, rrs.getNodes()[1].getStatement());
+        }
+    }
+}
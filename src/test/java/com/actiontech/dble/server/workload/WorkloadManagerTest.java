@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2016-2020 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.server.workload;
+
+import com.actiontech.dble.config.model.UserConfig;
+import com.actiontech.dble.server.NonBlockingSession;
+import com.actiontech.dble.server.ServerConnection;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import java.util.Collections;
+
+public class WorkloadManagerTest {
+
+    @Test
+    public void testQueueAndRelease() {
+        WorkloadManager manager = WorkloadManager.getInstance();
+        init("wl_queue", 1, 0, 0L);
+        NonBlockingSession first = mockSession("wl_queue", false);
+        NonBlockingSession second = mockSession("wl_queue", true);
+        Assert.assertTrue(manager.admit(first, null, true, 2));
+        WorkloadTicket ticket = ticketOf(first);
+        Assert.assertFalse(manager.admit(second, null, true, 2));
+        // not complex, only the connections are limited
+        Assert.assertTrue(manager.admit(mockSession("wl_queue", false), null, false, 2));
+
+        WorkloadGroup group = group("wl_queue");
+        Assert.assertEquals(1, manager.getQueueStat(group)[0]);
+        ticket.release();
+        // the second one is admitted, but its connection is closed, so released at once
+        Assert.assertEquals(0, manager.getQueueStat(group)[0]);
+        Assert.assertEquals(0, manager.getRunningStat(group)[0]);
+        Assert.assertEquals(1, manager.getQueueStat(group)[1]);
+    }
+
+    @Test
+    public void testBackendConAndTimeout() {
+        WorkloadManager manager = WorkloadManager.getInstance();
+        init("wl_con", 0, 4, 0L);
+        NonBlockingSession first = mockSession("wl_con", false);
+        // a query needs more connections than the limit runs alone
+        Assert.assertTrue(manager.admit(first, null, false, 6));
+        NonBlockingSession second = mockSession("wl_con", false);
+        Assert.assertFalse(manager.admit(second, null, false, 1));
+
+        manager.checkQueueTimeout();
+        Mockito.verify(second.getSource()).writeErrMessage(Mockito.anyInt(), Mockito.anyString());
+        WorkloadGroup group = group("wl_con");
+        Assert.assertEquals(0, manager.getQueueStat(group)[0]);
+        Assert.assertEquals(1, manager.getQueueStat(group)[4]);
+        ticketOf(first).release();
+        Assert.assertEquals(0, manager.getRunningStat(group)[1]);
+    }
+
+    private static void init(String user, int maxComplexQuery, int maxBackendCon, long queueTimeout) {
+        UserConfig userConfig = new UserConfig();
+        userConfig.setName(user);
+        userConfig.setMaxComplexQuery(maxComplexQuery);
+        userConfig.setMaxBackendCon(maxBackendCon);
+        userConfig.setQueueTimeout(queueTimeout);
+        WorkloadManager.getInstance().initForLatest(Collections.singletonMap(user, userConfig), 0);
+    }
+
+    private static WorkloadGroup group(String user) {
+        for (WorkloadGroup group : WorkloadManager.getInstance().getGroups()) {
+            if (group.getUser().equals(user)) {
+                return group;
+            }
+        }
+        throw new IllegalStateException(user);
+    }
+
+    private static NonBlockingSession mockSession(String user, boolean closed) {
+        ServerConnection source = Mockito.mock(ServerConnection.class);
+        Mockito.when(source.getUser()).thenReturn(user);
+        Mockito.when(source.isClosed()).thenReturn(closed);
+        NonBlockingSession session = Mockito.mock(NonBlockingSession.class);
+        Mockito.when(session.getSource()).thenReturn(source);
+        return session;
+    }
+
+    private static WorkloadTicket ticketOf(NonBlockingSession session) {
+        ArgumentCaptor<WorkloadTicket> captor = ArgumentCaptor.forClass(WorkloadTicket.class);
+        Mockito.verify(session).setWorkloadTicket(captor.capture());
+        return captor.getValue();
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2016-2020 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.singleton;
+
+import com.actiontech.dble.backend.mysql.store.memalloc.MemSizeController;
+import com.actiontech.dble.config.model.SystemConfig;
+import com.actiontech.dble.route.RouteResultset;
+import com.actiontech.dble.server.NonBlockingSession;
+import com.actiontech.dble.server.ServerConnection;
+import com.actiontech.dble.server.parser.ServerParse;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class QueryMemoryGovernorTest {
+    private static final long MB = 1024L * 1024L;
+
+    @Test
+    public void testAdmitAndRelease() {
+        QueryMemoryGovernor governor = newGovernor(1000L);
+        MemSizeController controller = new MemSizeController(10 * MB, governor);
+        RouteResultset rrs = new RouteResultset("select 1", ServerParse.SELECT);
+        Assert.assertTrue(governor.admit(mockSession(), rrs));
+        // over the spill threshold
+        Assert.assertFalse(controller.addSize(MB));
+
+        NonBlockingSession waiting = mockSession();
+        Assert.assertFalse(governor.admit(waiting, rrs));
+        Assert.assertEquals(1, governor.getWaitingCount());
+        Mockito.verify(waiting, Mockito.never()).execute(rrs);
+
+        controller.subSize(MB / 2);
+        Assert.assertEquals(0, governor.getWaitingCount());
+        Assert.assertEquals(2, governor.getAdmittedCount());
+        Mockito.verify(waiting).setMemoryAdmitted(true);
+        Mockito.verify(waiting).execute(rrs);
+
+        // the session is closed before its buffers are freed
+        controller.releaseReserved();
+        Assert.assertEquals(0, governor.getUsed());
+        controller.subSize(MB / 2);
+        Assert.assertEquals(0, governor.getUsed());
+        Assert.assertEquals(MB, governor.getPeak());
+    }
+
+    @Test
+    public void testTimeout() {
+        QueryMemoryGovernor governor = newGovernor(1000L);
+        governor.reserve(MB);
+        NonBlockingSession waiting = mockSession();
+        Assert.assertFalse(governor.admit(waiting, null));
+        governor.checkQueueTimeout(System.currentTimeMillis());
+        Assert.assertEquals(1, governor.getWaitingCount());
+
+        governor.checkQueueTimeout(System.currentTimeMillis() + 1000L);
+        Assert.assertEquals(0, governor.getWaitingCount());
+        Assert.assertEquals(1, governor.getRejectedCount());
+        Mockito.verify(waiting.getSource()).writeErrMessage(Mockito.anyInt(), Mockito.anyString());
+        // the rejected one is not executed after the memory is released
+        governor.release(MB);
+        Mockito.verify(waiting, Mockito.never()).execute(Mockito.any(RouteResultset.class));
+        Assert.assertEquals(0, governor.getAdmittedCount());
+    }
+
+    @Test
+    public void testRejectWithoutTimeout() {
+        QueryMemoryGovernor governor = newGovernor(0L);
+        governor.reserve(MB);
+        NonBlockingSession session = mockSession();
+        Assert.assertFalse(governor.admit(session, null));
+        Assert.assertEquals(0, governor.getWaitingCount());
+        Assert.assertEquals(1, governor.getRejectedCount());
+        Mockito.verify(session.getSource()).writeErrMessage(Mockito.anyInt(), Mockito.anyString());
+    }
+
+    private static QueryMemoryGovernor newGovernor(long admissionTimeout) {
+        SystemConfig system = new SystemConfig(null);
+        system.setQueryMemoryBudget(1);
+        system.setQueryAdmissionTimeout(admissionTimeout);
+        QueryMemoryGovernor governor = new QueryMemoryGovernor();
+        // the admitted queries are executed at once
+        governor.init(system, Runnable::run);
+        return governor;
+    }
+
+    private static NonBlockingSession mockSession() {
+        ServerConnection source = Mockito.mock(ServerConnection.class);
+        NonBlockingSession session = Mockito.mock(NonBlockingSession.class);
+        Mockito.when(session.getSource()).thenReturn(source);
+        return session;
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2016-2020 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.sqlengine.mpp;
+
+import com.actiontech.dble.backend.mysql.PacketUtil;
+import com.actiontech.dble.config.Fields;
+import com.actiontech.dble.net.mysql.FieldPacket;
+import com.actiontech.dble.net.mysql.RowDataPacket;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class PartialAggregateMergerTest {
+
+    @Test
+    public void testGroupAndDistinct() {
+        // _dble_g0, _dble_d, count(*), sum(age), count(age)
+        List<FieldPacket> fields = Arrays.asList(
+                PacketUtil.getField("_dble_g0", Fields.FIELD_TYPE_VAR_STRING),
+                PacketUtil.getField("_dble_d", Fields.FIELD_TYPE_LONG),
+                PacketUtil.getField("_dble_p0", Fields.FIELD_TYPE_LONGLONG),
+                PacketUtil.getField("_dble_p1", Fields.FIELD_TYPE_NEW_DECIMAL),
+                PacketUtil.getField("_dble_p2", Fields.FIELD_TYPE_LONGLONG));
+        List<PartialAggregate> columns = new ArrayList<>();
+        columns.add(new PartialAggregate("name", PartialAggregate.Type.ANY, 0));
+        columns.add(new PartialAggregate("count(*)", PartialAggregate.Type.COUNT, 2));
+        columns.add(new PartialAggregate("avg(age)", PartialAggregate.Type.AVG, 3));
+        columns.add(new PartialAggregate("count(distinct dept)", PartialAggregate.Type.COUNT_DISTINCT, 1));
+        PartialAggregateMerger merger = new PartialAggregateMerger(new PartialAggregation(1, true, columns), fields, "utf8");
+        Assert.assertEquals(4, merger.getFieldPackets().size());
+
+        Assert.assertNull(merger.add(row("a", "1", "2", "10", "2")));
+        Assert.assertNull(merger.add(row("a", "1", "1", "5", "1")));
+        Assert.assertNull(merger.add(row("a", "2", "1", "3", "1")));
+        assertRow(merger.add(row("B", null, "1", "4", "1")), "a", "4", "4.5000", "2");
+        Assert.assertNull(merger.add(row("b", "3", "1", null, "0")));
+        assertRow(merger.finish(), "B", "2", "4.0000", "1");
+        Assert.assertNull(merger.finish());
+    }
+
+    @Test
+    public void testVarianceWithoutGroup() {
+        // count(x), sum(x), var_pop(x) of [1, 2, 3] and [4, 5]
+        List<FieldPacket> fields = Arrays.asList(
+                PacketUtil.getField("_dble_p0", Fields.FIELD_TYPE_LONGLONG),
+                PacketUtil.getField("_dble_p1", Fields.FIELD_TYPE_NEW_DECIMAL),
+                PacketUtil.getField("_dble_p2", Fields.FIELD_TYPE_DOUBLE));
+        PartialAggregate variance = new PartialAggregate("var_pop(x)", PartialAggregate.Type.VARIANCE, 0);
+        PartialAggregate stddev = new PartialAggregate("stddev_samp(x)", PartialAggregate.Type.VARIANCE, 0);
+        stddev.setSample(true);
+        stddev.setSqrt(true);
+        PartialAggregateMerger merger = new PartialAggregateMerger(new PartialAggregation(0, false, Arrays.asList(variance, stddev)), fields, "utf8");
+        Assert.assertNull(merger.add(row("3", "6", String.valueOf(2.0 / 3))));
+        Assert.assertNull(merger.add(row("2", "9", "0.25")));
+        RowDataPacket merged = merger.finish();
+        Assert.assertEquals(2.0, Double.parseDouble(new String(merged.getValue(0))), 1e-9);
+        Assert.assertEquals(Math.sqrt(2.5), Double.parseDouble(new String(merged.getValue(1))), 1e-9);
+    }
+
+    @Test
+    public void testDistinctOfEmptyTable() {
+        List<FieldPacket> fields = Arrays.asList(
+                PacketUtil.getField("_dble_d", Fields.FIELD_TYPE_LONG),
+                PacketUtil.getField("_dble_p0", Fields.FIELD_TYPE_LONG));
+        List<PartialAggregate> columns = new ArrayList<>();
+        columns.add(new PartialAggregate("count(distinct x)", PartialAggregate.Type.COUNT_DISTINCT, 0));
+        columns.add(new PartialAggregate("max(y)", PartialAggregate.Type.MAX, 1));
+        PartialAggregateMerger merger = new PartialAggregateMerger(new PartialAggregation(0, true, columns), fields, "utf8");
+        // a query without group by returns a row even if the data nodes return nothing
+        RowDataPacket merged = merger.finish();
+        Assert.assertEquals("0", new String(merged.getValue(0)));
+        Assert.assertNull(merged.getValue(1));
+        Assert.assertNull(merger.finish());
+    }
+
+    private static RowDataPacket row(String... values) {
+        RowDataPacket row = new RowDataPacket(values.length);
+        for (String value : values) {
+            row.add(value == null ? null : value.getBytes());
+        }
+        return row;
+    }
+
+    private static void assertRow(RowDataPacket row, String... expected) {
+        Assert.assertNotNull(row);
+        Assert.assertEquals(expected.length, row.getFieldCount());
+        for (int i = 0; i < expected.length; i++) {
+            Assert.assertEquals(expected[i], row.getValue(i) == null ? null : new String(row.getValue(i)));
+        }
+    }
+}
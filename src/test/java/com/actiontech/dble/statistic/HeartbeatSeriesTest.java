@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2016-2020 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.statistic;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+
+public class HeartbeatSeriesTest {
+
+    @Test
+    public void testRing() {
+        HeartbeatSeries series = new HeartbeatSeries(4);
+        for (int i = 0; i < 6; i++) {
+            series.record(i, i, -1);
+        }
+        List<HeartbeatSeries.Point> points = series.getPoints();
+        Assert.assertEquals(4, points.size());
+        for (int i = 0; i < 4; i++) {
+            Assert.assertEquals(i + 2, points.get(i).getTime());
+            Assert.assertEquals(i + 2, points.get(i).getRtt());
+        }
+    }
+
+    @Test
+    public void testUnstable() {
+        HeartbeatSeries series = new HeartbeatSeries(16);
+        for (int i = 0; i < 5; i++) {
+            series.record(i, 2, -1);
+        }
+        Assert.assertFalse(series.isUnstable(5));
+        series.record(5, 30, -1);
+        Assert.assertTrue(series.isUnstable(5));
+        series.record(6, 2, -1);
+        series.record(7, -1, -1);
+        Assert.assertTrue(series.isUnstable(5));
+        for (int i = 8; i < 13; i++) {
+            series.record(i, 2, -1);
+        }
+        Assert.assertFalse(series.isUnstable(5));
+    }
+
+    @Test
+    public void testLag() {
+        HeartbeatSeries series = new HeartbeatSeries(16);
+        Assert.assertFalse(series.isLagBelow(10, 3));
+        series.record(0, 1, 20);
+        Assert.assertTrue(series.isLagging());
+        series.record(1, 1, 5);
+        series.record(2, 1, 0);
+        Assert.assertFalse(series.isLagging());
+        Assert.assertFalse(series.isLagBelow(10, 3));
+        // the failed heartbeat is skipped
+        series.record(3, -1, -1);
+        series.record(4, 1, 3);
+        Assert.assertTrue(series.isLagBelow(10, 3));
+    }
+}
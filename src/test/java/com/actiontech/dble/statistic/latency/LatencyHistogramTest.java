@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2016-2020 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+package com.actiontech.dble.statistic.latency;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.internal.util.reflection.Whitebox;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testBuckets() {
+        for (long value = 0; value < 100000; value++) {
+            int index = LatencyHistogram.bucketIndex(value);
+            long upper = LatencyHistogram.bucketUpperBound(index);
+            Assert.assertTrue(value <= upper);
+            Assert.assertTrue(upper - value <= value / 8);
+            if (index > 0) {
+                Assert.assertTrue(value > LatencyHistogram.bucketUpperBound(index - 1));
+            }
+        }
+        Assert.assertEquals(LatencyHistogram.BUCKET_COUNT - 1, LatencyHistogram.bucketIndex(LatencyHistogram.MAX_VALUE));
+        Assert.assertEquals(LatencyHistogram.MAX_VALUE, LatencyHistogram.bucketUpperBound(LatencyHistogram.BUCKET_COUNT - 1));
+    }
+
+    @Test
+    public void testPercentile() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i);
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        Assert.assertEquals(1000, snapshot.getCount());
+        Assert.assertEquals(500500, snapshot.getSum());
+        Assert.assertEquals(1000, snapshot.getMax());
+        assertNear(500, snapshot.getValueAt(0.5));
+        assertNear(990, snapshot.getValueAt(0.99));
+        Assert.assertEquals(1000, snapshot.getValueAt(1));
+    }
+
+    @Test
+    public void testThreads() throws InterruptedException {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < 10000; j++) {
+                    histogram.record(j);
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assert.assertEquals(40000, histogram.snapshot().getCount());
+        Assert.assertEquals(9999, histogram.snapshot().getMax());
+    }
+
+    @Test
+    public void testShortLivedThreads() throws InterruptedException {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 500; i++) {
+            final long value = i;
+            Thread thread = new Thread(() -> histogram.record(value));
+            thread.start();
+            thread.join();
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        Assert.assertEquals(500, snapshot.getCount());
+        Assert.assertEquals(124750, snapshot.getSum());
+        Assert.assertEquals(499, snapshot.getMax());
+        // the counters don't grow with the threads
+        AtomicReferenceArray<?> stripes = (AtomicReferenceArray<?>) Whitebox.getInternalState(histogram, "stripes");
+        int used = 0;
+        for (int i = 0; i < stripes.length(); i++) {
+            used += stripes.get(i) == null ? 0 : 1;
+        }
+        Assert.assertTrue(used <= LatencyHistogram.STRIPE_COUNT);
+    }
+
+    private static void assertNear(long expected, long actual) {
+        Assert.assertTrue(actual >= expected && actual <= expected + expected / 8);
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2016-2020 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+package com.actiontech.dble.statistic.stat;
+
+import com.actiontech.dble.server.parser.ServerParse;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class QueryResultRingTest {
+
+    @Test
+    public void testDropWhenFull() {
+        QueryResultRing ring = new QueryResultRing(8);
+        for (int i = 0; i < 8; i++) {
+            Assert.assertTrue(ring.offer(newResult()));
+        }
+        Assert.assertFalse(ring.offer(newResult()));
+        Assert.assertFalse(ring.offer(newResult()));
+        Assert.assertEquals(2, ring.getDroppedCount());
+
+        List<QueryResult> batch = new ArrayList<>();
+        Assert.assertEquals(5, ring.drainTo(batch, 5));
+        // the slots drained are reused
+        for (int i = 0; i < 5; i++) {
+            Assert.assertTrue(ring.offer(newResult()));
+        }
+        Assert.assertFalse(ring.offer(newResult()));
+        Assert.assertEquals(8, ring.drainTo(batch, 100));
+        Assert.assertEquals(0, ring.drainTo(batch, 100));
+        Assert.assertEquals(13, batch.size());
+        Assert.assertEquals(3, ring.getDroppedCount());
+    }
+
+    @Test
+    public void testProducers() throws Exception {
+        final QueryResultRing ring = new QueryResultRing(64);
+        final int producerCount = 4;
+        final int perProducer = 20000;
+        final CountDownLatch finished = new CountDownLatch(producerCount);
+        final AtomicInteger offered = new AtomicInteger();
+        for (int i = 0; i < producerCount; i++) {
+            new Thread(() -> {
+                for (int j = 0; j < perProducer; j++) {
+                    if (ring.offer(newResult())) {
+                        offered.incrementAndGet();
+                    }
+                }
+                finished.countDown();
+            }).start();
+        }
+        Map<QueryResult, Boolean> consumed = new IdentityHashMap<>();
+        List<QueryResult> batch = new ArrayList<>();
+        while (finished.getCount() > 0 || ring.drainTo(batch, 16) > 0) {
+            ring.drainTo(batch, 16);
+            for (QueryResult result : batch) {
+                Assert.assertNull(consumed.put(result, Boolean.TRUE));
+            }
+            batch.clear();
+        }
+        // every result is consumed once or counted as dropped
+        Assert.assertEquals(offered.get(), consumed.size());
+        Assert.assertEquals(producerCount * perProducer, offered.get() + ring.getDroppedCount());
+    }
+
+    @Test
+    public void testParkedConsumer() throws Exception {
+        final QueryResultRing ring = new QueryResultRing(16);
+        final List<QueryResult> batch = new ArrayList<>();
+        final CountDownLatch consumed = new CountDownLatch(1);
+        Thread consumer = new Thread(() -> {
+            while (ring.drainTo(batch, 16) == 0) {
+                ring.await();
+            }
+            consumed.countDown();
+        });
+        consumer.start();
+        // the consumer is parked with an empty ring
+        Thread.sleep(100);
+        Assert.assertTrue(consumer.isAlive());
+        QueryResult result = newResult();
+        ring.offer(result);
+        Assert.assertTrue(consumed.await(10, TimeUnit.SECONDS));
+        consumer.join();
+        Assert.assertSame(result, batch.get(0));
+    }
+
+    private static QueryResult newResult() {
+        return new QueryResult("root", ServerParse.SELECT, "select 1", 0, 0, 0, 0, 0, 0);
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2016-2020 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+package com.actiontech.dble.statistic.stat;
+
+import com.actiontech.dble.DbleServer;
+import com.actiontech.dble.ServerConfigResource;
+import com.actiontech.dble.meta.ProxyMetaManager;
+import com.actiontech.dble.meta.protocol.StructureMeta;
+import com.actiontech.dble.route.RouteResultset;
+import com.actiontech.dble.route.parser.druid.DruidParser;
+import com.actiontech.dble.route.parser.druid.DruidParserFactory;
+import com.actiontech.dble.route.parser.druid.ServerSchemaStatVisitor;
+import com.actiontech.dble.route.util.RouterUtil;
+import com.actiontech.dble.server.NonBlockingSession;
+import com.actiontech.dble.server.ServerConnection;
+import com.actiontech.dble.server.parser.ServerParse;
+import com.actiontech.dble.singleton.ProxyMeta;
+import com.alibaba.druid.sql.ast.SQLStatement;
+import com.alibaba.druid.sql.dialect.mysql.parser.MySqlStatementParser;
+import com.alibaba.druid.sql.visitor.ParameterizedOutputVisitorUtils;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class QueryResultTest {
+
+    // the schemas of src/test/resources/schema.xml
+    @ClassRule
+    public static final ServerConfigResource SERVER_CONFIG = new ServerConfigResource();
+
+    private static ProxyMetaManager formerMetaManager;
+
+    @BeforeClass
+    public static void init() throws Exception {
+        StructureMeta.TableMeta.Builder meta = StructureMeta.TableMeta.newBuilder();
+        for (String column : new String[]{"id", "name"}) {
+            meta.addColumns(StructureMeta.ColumnMeta.newBuilder().setName(column).setDataType("varchar").setCanNull(true));
+        }
+        ProxyMetaManager metaManager = Mockito.mock(ProxyMetaManager.class);
+        Mockito.when(metaManager.getSyncTableMeta(Mockito.anyString(), Mockito.anyString())).thenReturn(meta.build());
+        formerMetaManager = ProxyMeta.getInstance().getTmManager();
+        ProxyMeta.getInstance().setTmManager(metaManager);
+    }
+
+    @AfterClass
+    public static void restore() {
+        ProxyMeta.getInstance().setTmManager(formerMetaManager);
+    }
+
+    @Test
+    public void testParameterizedSql() {
+        String sql = "select * from orders where id in (1, 2, 3, 4) and name = 'a'";
+        RouteResultset rrs = new RouteResultset(sql, ServerParse.SELECT);
+        rrs.setStatTables(Collections.singletonList("orders"));
+        QueryResult queryResult = new QueryResult("root", ServerParse.SELECT, sql, rrs, 0, 0, 0, 0, 0, 0);
+        String parameterized = queryResult.getParameterizedSql();
+        Assert.assertEquals(ParameterizedOutputVisitorUtils.parameterize(sql, "mysql").replace("\n", " "), parameterized);
+        // parsed once and shared by all the statistics
+        Assert.assertSame(parameterized, queryResult.getParameterizedSql());
+    }
+
+    @Test
+    public void testParameterizedStatement() {
+        String sql = "select * from orders where id in (1, 2, 3, 4) and name = 'a'";
+        RouteResultset rrs = new RouteResultset(sql, ServerParse.SELECT);
+        rrs.setStatStatement(new MySqlStatementParser(sql).parseStatement());
+        // printed from the statement of the route, the sql is not parsed
+        QueryResult queryResult = new QueryResult("root", ServerParse.SELECT, "not a sql", rrs, 0, 0, 0, 0, 0, 0);
+        Assert.assertEquals(ParameterizedOutputVisitorUtils.parameterize(sql, "mysql").replace("\n", " "), queryResult.getParameterizedSql());
+    }
+
+    @Test
+    public void testRouteStatement() throws Exception {
+        String sql = "select id, name from offer where name = 'a'";
+        RouteResultset rrs = route("mysqldb", sql);
+        // the route adds the limit of the schema, the statistics print the sql of the client
+        Assert.assertTrue(rrs.getNodes()[0].getStatement().toUpperCase().contains("LIMIT"));
+        Assert.assertNotNull(rrs.getStatStatement());
+        QueryResult queryResult = new QueryResult("root", ServerParse.SELECT, sql, rrs, 0, 0, 0, 0, 0, 0);
+        Assert.assertEquals(ParameterizedOutputVisitorUtils.parameterize(sql, "mysql").replace("\n", " "), queryResult.getParameterizedSql());
+
+        // the insert is parameterized from the sql as the fast insert route
+        sql = "insert into offer(id,name) values(1,'a')";
+        Assert.assertNull(route("mysqldb", sql).getStatStatement());
+    }
+
+    @Test
+    public void testParseSqlWithoutRoute() {
+        // the show statements and the sqls routed by hints have no parse info of the route
+        QueryResult queryResult = new QueryResult("root", ServerParse.SELECT,
+                "select * from orders o join customer c on o.cid = c.id where c.name = 'a'", 0, 0, 0, 0, 0, 0);
+        Assert.assertEquals("orders", queryResult.getTables().get(0));
+        Assert.assertEquals(2, queryResult.getTables().size());
+        Assert.assertEquals("customer", queryResult.getCurrentTable());
+        Assert.assertFalse(queryResult.getConditions().isEmpty());
+    }
+
+    private static RouteResultset route(String schemaName, String sql) throws Exception {
+        ServerConnection sc = Mockito.mock(ServerConnection.class);
+        NonBlockingSession session = Mockito.mock(NonBlockingSession.class);
+        Mockito.when(sc.getUser()).thenReturn("test");
+        Mockito.when(sc.getSession2()).thenReturn(session);
+        Mockito.when(session.getIsMultiStatement()).thenReturn(new AtomicBoolean(false));
+        int sqlType = ServerParse.parse(sql) & 0xff;
+        SQLStatement statement = new MySqlStatementParser(sql).parseStatement();
+        DruidParser druidParser = DruidParserFactory.create(statement, sqlType);
+        return RouterUtil.routeFromParser(druidParser, DbleServer.getInstance().getConfig().getSchemas().get(schemaName),
+                new RouteResultset(sql, sqlType), statement, sql, null, new ServerSchemaStatVisitor(), sc, null, false);
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2016-2020 ActionTech.
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher.
+ */
+
+package com.actiontech.dble.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class TimingWheelTest {
+    private static long current;
+
+    @Test
+    public void testExpireInTime() {
+        long start = 1000000L;
+        TimingWheel wheel = new TimingWheel(1000L, start);
+        Random random = new Random(1);
+        List<TestTimeout> timeouts = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            TestTimeout timeout = new TestTimeout();
+            // up to about 9 days, over the first two levels
+            long deadline = start + (i % 2 == 0 ? random.nextInt(600 * 1000) : (long) random.nextInt(800000) * 1000L);
+            timeout.expected = deadline;
+            wheel.schedule(timeout, deadline);
+            timeouts.add(timeout);
+        }
+        long end = start + 800000L * 1000L;
+        for (long now = start; now <= end + 1000L; now += 1000L) {
+            current = now;
+            wheel.advance(now);
+        }
+        for (TestTimeout timeout : timeouts) {
+            Assert.assertTrue(timeout.expiredAt >= timeout.expected);
+            Assert.assertTrue(timeout.expiredAt < timeout.expected + 1000L);
+            Assert.assertEquals(1, timeout.count);
+        }
+        Assert.assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void testScheduleEarlierAndAgain() {
+        TimingWheel wheel = new TimingWheel(100L, 0L);
+        TestTimeout timeout = new TestTimeout();
+        wheel.schedule(timeout, 100000L);
+        wheel.advance(100L);
+        // a later deadline is ignored, an earlier one moves it
+        wheel.schedule(timeout, 200000L);
+        Assert.assertEquals(100000L, timeout.getDeadline());
+        wheel.schedule(timeout, 500L);
+        Assert.assertEquals(0, wheel.advance(400L));
+        Assert.assertEquals(1, wheel.advance(500L));
+        Assert.assertEquals(Long.MAX_VALUE, timeout.getDeadline());
+        Assert.assertEquals(0, wheel.size());
+
+        // scheduled again after expired
+        wheel.schedule(timeout, 1000L);
+        Assert.assertEquals(0, wheel.advance(900L));
+        Assert.assertEquals(1, wheel.advance(1000L));
+        Assert.assertEquals(2, timeout.count);
+    }
+
+    private static class TestTimeout extends TimingWheel.Timeout {
+        private long expected;
+        private long expiredAt = -1;
+        private int count = 0;
+
+        @Override
+        protected void expire() {
+            expiredAt = current;
+            count++;
+        }
+    }
+}